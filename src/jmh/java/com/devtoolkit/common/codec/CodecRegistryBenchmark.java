@@ -0,0 +1,76 @@
+package com.devtoolkit.common.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting a small JSON document to another format, with mappers built per request (as the converter
+ * used to) against the shared readers and writers of {@link CodecRegistry}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CodecRegistryBenchmark {
+
+    @Param({"JSON", "YAML", "XML"})
+    public String target;
+
+    @Param({"20"})
+    public int items;
+
+    private String document;
+    private CodecRegistry codecs;
+    private CodecRegistry.Format targetFormat;
+
+    @Setup
+    public void setUp() {
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i).append(",\"name\":\"item-").append(i)
+                    .append("\",\"active\":true,\"score\":1.5,\"tags\":[\"a\",\"b\"]}");
+        }
+        document = json.append("]}").toString();
+        codecs = new CodecRegistry(64 * 1024 * 1024, true);
+        codecs.warmUp();
+        targetFormat = CodecRegistry.Format.of(target);
+    }
+
+    @Benchmark
+    public String perRequestMappers() throws IOException {
+        ObjectMapper jsonMapper = new ObjectMapper();
+        Object value = jsonMapper.readValue(document, Object.class);
+        ObjectMapper targetMapper;
+        switch (targetFormat) {
+            case YAML:
+                targetMapper = YAMLMapper.builder().build();
+                break;
+            case XML:
+                targetMapper = XmlMapper.builder().build();
+                break;
+            default:
+                targetMapper = jsonMapper;
+        }
+        return targetMapper.writerWithDefaultPrettyPrinter().writeValueAsString(value);
+    }
+
+    @Benchmark
+    public String sharedRegistry() throws IOException {
+        Object value = codecs.reader(CodecRegistry.Format.JSON).readValue(document);
+        return codecs.writer(targetFormat, true).writeValueAsString(value);
+    }
+}
@@ -0,0 +1,230 @@
+package com.devtoolkit.common.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Small in-process LRU cache bounded by total weight, with an optional time-to-live per entry.
+ * Entries are weighed once when stored; the least recently used ones are evicted until the total fits
+ * again. Expired entries are dropped when they are read, on a write once they are among the least
+ * recently used, or by {@link #cleanUp()}. An optional listener is called for every entry that leaves
+ * the cache (eviction, expiry, replacement or removal) outside the cache lock, so it may do I/O.
+ */
+public final class BoundedCache<K, V> {
+
+    private final long maxWeight;
+    private final long ttlNanos;
+    private final ToLongFunction<V> weigher;
+    private final BiConsumer<K, V> removalListener;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalWeight = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxWeight       upper bound of the summed entry weights
+     * @param ttlMillis       lifetime of an entry after it was stored, {@code <= 0} for no expiry
+     * @param weigher         weight of a value, e.g. its approximate size in bytes
+     * @param removalListener called with every entry that leaves the cache, may be null
+     */
+    public BoundedCache(long maxWeight, long ttlMillis, ToLongFunction<V> weigher, BiConsumer<K, V> removalListener) {
+        this.maxWeight = maxWeight;
+        this.ttlNanos = ttlMillis > 0 ? ttlMillis * 1_000_000L : 0;
+        this.weigher = weigher;
+        this.removalListener = removalListener;
+    }
+
+    public BoundedCache(long maxWeight, long ttlMillis, ToLongFunction<V> weigher) {
+        this(maxWeight, ttlMillis, weigher, null);
+    }
+
+    /**
+     * Returns the cached value, or null when it is absent or expired.
+     */
+    public V get(K key) {
+        List<Map.Entry<K, V>> removed = new ArrayList<>(1);
+        V value;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && isExpired(entry, System.nanoTime())) {
+                entries.remove(key);
+                totalWeight -= entry.weight;
+                removed.add(Map.entry(key, entry.value));
+                entry = null;
+            }
+            value = entry != null ? entry.value : null;
+        }
+        (value != null ? hits : misses).incrementAndGet();
+        notifyRemoved(removed);
+        return value;
+    }
+
+    /**
+     * Store a value. A value heavier than the whole cache is not stored and is reported as removed.
+     */
+    public void put(K key, V value) {
+        long weight = weigher.applyAsLong(value);
+        List<Map.Entry<K, V>> removed = new ArrayList<>();
+        synchronized (this) {
+            Entry<V> previous = entries.remove(key);
+            if (previous != null) {
+                totalWeight -= previous.weight;
+                if (previous.value != value) {
+                    removed.add(Map.entry(key, previous.value));
+                }
+            }
+            if (weight > maxWeight) {
+                removed.add(Map.entry(key, value));
+                evictions.incrementAndGet();
+            } else {
+                entries.put(key, new Entry<>(value, weight, System.nanoTime()));
+                totalWeight += weight;
+                evict(removed);
+            }
+        }
+        notifyRemoved(removed);
+    }
+
+    public V remove(K key) {
+        Entry<V> entry;
+        synchronized (this) {
+            entry = entries.remove(key);
+            if (entry != null) {
+                totalWeight -= entry.weight;
+            }
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (removalListener != null) {
+            removalListener.accept(key, entry.value);
+        }
+        return entry.value;
+    }
+
+    /**
+     * Drop every entry; the listener sees each one.
+     */
+    public void clear() {
+        List<Map.Entry<K, V>> removed = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<K, Entry<V>> entry : entries.entrySet()) {
+                removed.add(Map.entry(entry.getKey(), entry.getValue().value));
+            }
+            entries.clear();
+            totalWeight = 0;
+        }
+        notifyRemoved(removed);
+    }
+
+    /**
+     * Drop every expired entry now. Owners whose listener frees resources call this periodically, since
+     * otherwise an entry nobody reads again stays until writes push it out.
+     */
+    public void cleanUp() {
+        if (ttlNanos == 0) {
+            return;
+        }
+        List<Map.Entry<K, V>> removed = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<K, Entry<V>> entry = iterator.next();
+                if (isExpired(entry.getValue(), now)) {
+                    iterator.remove();
+                    totalWeight -= entry.getValue().weight;
+                    removed.add(Map.entry(entry.getKey(), entry.getValue().value));
+                }
+            }
+        }
+        notifyRemoved(removed);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return totalWeight;
+    }
+
+    public long hitCount() {
+        return hits.get();
+    }
+
+    public long missCount() {
+        return misses.get();
+    }
+
+    public long evictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Counters and occupancy, ready to be returned from an endpoint.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", size());
+        stats.put("weight", weight());
+        stats.put("maxWeight", maxWeight);
+        stats.put("hits", hitCount());
+        stats.put("misses", missCount());
+        stats.put("evictions", evictionCount());
+        return stats;
+    }
+
+    private void evict(List<Map.Entry<K, V>> removed) {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> eldest = iterator.next();
+            boolean expired = isExpired(eldest.getValue(), now);
+            if (!expired && totalWeight <= maxWeight) {
+                // Access order: once an entry is neither expired nor needed for room, stop scanning. Expired
+                // entries behind it are dropped when read or once they reach the head, so a put stays cheap
+                break;
+            }
+            iterator.remove();
+            totalWeight -= eldest.getValue().weight;
+            removed.add(Map.entry(eldest.getKey(), eldest.getValue().value));
+            if (!expired) {
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean isExpired(Entry<V> entry, long now) {
+        return ttlNanos > 0 && now - entry.storedAt > ttlNanos;
+    }
+
+    private void notifyRemoved(List<Map.Entry<K, V>> removed) {
+        if (removalListener == null) {
+            return;
+        }
+        for (Map.Entry<K, V> entry : removed) {
+            removalListener.accept(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long weight;
+        private final long storedAt;
+
+        Entry(V value, long weight, long storedAt) {
+            this.value = value;
+            this.weight = weight;
+            this.storedAt = storedAt;
+        }
+    }
+}
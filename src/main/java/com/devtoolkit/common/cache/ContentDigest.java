@@ -0,0 +1,39 @@
+package com.devtoolkit.common.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 cache keys over several inputs.
+ * Each part is prefixed with its length so that ("ab", "c") and ("a", "bc") never share a key.
+ */
+public final class ContentDigest {
+
+    private ContentDigest() {
+    }
+
+    public static String of(String... parts) {
+        MessageDigest digest = sha256();
+        byte[] length = new byte[8];
+        for (String part : parts) {
+            byte[] bytes = part != null ? part.getBytes(StandardCharsets.UTF_8) : new byte[0];
+            long size = part != null ? bytes.length : -1;
+            for (int i = 0; i < 8; i++) {
+                length[i] = (byte) (size >>> (56 - 8 * i));
+            }
+            digest.update(length);
+            digest.update(bytes);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.devtoolkit.common.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.javaprop.JavaPropsMapper;
+import com.fasterxml.jackson.dataformat.toml.TomlMapper;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.yaml.snakeyaml.LoaderOptions;
+
+import jakarta.annotation.PostConstruct;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One Jackson mapper per data format, shared by every service, with untyped readers and compact and
+ * pretty writers built once. Mappers keep their serializer and deserializer caches for the life of the
+ * application instead of rebuilding them per request, and readers and writers are immutable, so all of
+ * them are safe to use from any thread. The Spring MVC mapper is left as configured by Spring Boot.
+ */
+@Component
+public class CodecRegistry {
+    
+    public enum Format {
+        JSON,
+        YAML,
+        XML,
+        CSV,
+        PROPERTIES,
+        TOML;
+        
+        public static Format of(String name) {
+            if (name == null) {
+                throw new IllegalArgumentException("Format cannot be null");
+            }
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported format: " + name);
+            }
+        }
+    }
+    
+    private static final String WARM_UP_DOCUMENT =
+            "{\"text\":\"warm-up\",\"number\":1,\"decimal\":1.5,\"flag\":true,\"none\":null,\"list\":[1,\"two\",{\"three\":3}]}";
+    
+    private final Map<Format, ObjectMapper> mappers = new EnumMap<>(Format.class);
+    private final Map<Format, ObjectReader> readers = new EnumMap<>(Format.class);
+    private final Map<Format, ObjectWriter> compactWriters = new EnumMap<>(Format.class);
+    private final Map<Format, ObjectWriter> prettyWriters = new EnumMap<>(Format.class);
+    
+    public CodecRegistry(@Value("${codec.yaml.code-point-limit:67108864}") int yamlCodePointLimit,
+                         @Value("${codec.blackbird-enabled:true}") boolean blackbirdEnabled) {
+        // SnakeYAML refuses documents over 3M code points by default
+        LoaderOptions loaderOptions = new LoaderOptions();
+        loaderOptions.setCodePointLimit(yamlCodePointLimit);
+        
+        JsonMapper.Builder json = JsonMapper.builder();
+        YAMLMapper.Builder yaml = YAMLMapper.builder(YAMLFactory.builder().loaderOptions(loaderOptions).build());
+        XmlMapper.Builder xml = XmlMapper.builder();
+        CsvMapper.Builder csv = CsvMapper.builder().enable(CsvParser.Feature.SKIP_EMPTY_LINES);
+        JavaPropsMapper.Builder properties = JavaPropsMapper.builder();
+        TomlMapper.Builder toml = TomlMapper.builder();
+        if (blackbirdEnabled) {
+            json.addModule(new BlackbirdModule());
+            yaml.addModule(new BlackbirdModule());
+            xml.addModule(new BlackbirdModule());
+            csv.addModule(new BlackbirdModule());
+            properties.addModule(new BlackbirdModule());
+            toml.addModule(new BlackbirdModule());
+        }
+        mappers.put(Format.JSON, json.build());
+        mappers.put(Format.YAML, yaml.build());
+        mappers.put(Format.XML, xml.build());
+        mappers.put(Format.CSV, csv.build());
+        mappers.put(Format.PROPERTIES, properties.build());
+        mappers.put(Format.TOML, toml.build());
+        
+        for (Map.Entry<Format, ObjectMapper> entry : mappers.entrySet()) {
+            readers.put(entry.getKey(), entry.getValue().readerFor(Object.class));
+            compactWriters.put(entry.getKey(), entry.getValue().writer());
+            prettyWriters.put(entry.getKey(), entry.getValue().writerWithDefaultPrettyPrinter());
+        }
+    }
+    
+    /**
+     * The shared mapper; configure nothing on it, derive readers and writers instead.
+     */
+    public ObjectMapper mapper(Format format) {
+        return mappers.get(format);
+    }
+    
+    /**
+     * Reader of untyped values (maps, lists, scalars); {@code readTree} works on it as well.
+     */
+    public ObjectReader reader(Format format) {
+        return readers.get(format);
+    }
+    
+    public ObjectWriter writer(Format format, boolean pretty) {
+        return (pretty ? prettyWriters : compactWriters).get(format);
+    }
+    
+    /**
+     * Round-trip a small document through every reader and writer so the first request does not pay for
+     * building the untyped (de)serializers.
+     */
+    @PostConstruct
+    public void warmUp() {
+        try {
+            Object value = reader(Format.JSON).readValue(WARM_UP_DOCUMENT);
+            reader(Format.JSON).readTree(WARM_UP_DOCUMENT);
+            for (Format format : Format.values()) {
+                // CSV needs a column schema per document, there is no untyped round trip to warm up
+                if (format == Format.CSV) {
+                    continue;
+                }
+                writer(format, false).writeValueAsString(value);
+                reader(format).readValue(writer(format, true).writeValueAsString(value));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Codec warm-up failed", e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.devtoolkit.common.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ConcurrencyConfig {
+    
+    /**
+     * Dedicated pool for CPU-bound diff refinement, kept apart from the common pool and Tomcat workers
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool diffRefinementPool(@Value("${diff.refinement.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(threads);
+    }
+    
+    /**
+     * Fixed-size pool that runs the items of batch diff requests, with a bounded queue so load beyond it is refused
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService diffBatchExecutor(@Value("${diff.batch.threads:0}") int threads,
+                                             @Value("${diff.batch.queue-capacity:1024}") int queueCapacity) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = task -> {
+            Thread thread = new Thread(task, "diff-batch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -0,0 +1,12 @@
+package com.devtoolkit.common.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables {@code @Scheduled} housekeeping, such as sweeping expired archive diffs off disk
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,12 +1,30 @@
 package com.devtoolkit.diff;
 
 import com.devtoolkit.diff.dto.DiffRequest;
+import com.devtoolkit.diff.dto.DiffSessionEditRequest;
+import com.devtoolkit.diff.dto.SimilarityDocumentRequest;
+import com.devtoolkit.diff.dto.SimilarityQueryRequest;
+import com.devtoolkit.diff.service.BatchDiffService;
 import com.devtoolkit.diff.service.DiffService;
+import com.devtoolkit.diff.service.SimilarityService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -16,6 +34,12 @@ public class DiffController {
     @Autowired
     private DiffService diffService;
     
+    @Autowired
+    private BatchDiffService batchDiffService;
+    
+    @Autowired
+    private SimilarityService similarityService;
+    
     @PostMapping("/compare")
     public ResponseEntity<Map<String, Object>> compareText(@RequestBody DiffRequest request) {
         Map<String, Object> response = new HashMap<>();
@@ -33,18 +57,436 @@ public class DiffController {
     }
     
     @PostMapping("/enhanced")
-    public ResponseEntity<Map<String, Object>> enhancedCompare(@RequestBody DiffRequest request) {
+    public ResponseEntity<Map<String, Object>> enhancedCompare(
+            @RequestBody DiffRequest request,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
+        Map<String, Object> response = new HashMap<>();
+        String etag = null;
+        
+        try {
+            // Same inputs and options give the same result, so the digest doubles as the ETag; a windowed
+            // result is a handle into the side-by-side store, which may have dropped the rows since
+            String digest = diffService.getResultDigest(request);
+            if (!request.isWindowedSideBySide()) {
+                etag = "\"" + digest + "\"";
+                if (etag.equals(ifNoneMatch)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+                }
+            }
+            
+            Map<String, Object> result = diffService.generateEnhancedDiff(request, digest);
+            // A result cut short by the deadline is not cached either, revalidating must run the diff again
+            if (Boolean.TRUE.equals(result.get("deadlineExceeded"))) {
+                etag = null;
+            }
+            response.putAll(result);
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("error", e.getMessage());
+            response.put("success", false);
+            return ResponseEntity.ok(response);
+        }
+        
+        if (etag == null) {
+            return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(response);
+        }
+        return ResponseEntity.ok().eTag(etag).body(response);
+    }
+    
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> cacheStatistics() {
+        Map<String, Object> response = new HashMap<>(diffService.getCacheStatistics());
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/budget/stats")
+    public ResponseEntity<Map<String, Object>> budgetStatistics() {
+        Map<String, Object> response = new HashMap<>(diffService.getBudgetStatistics());
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/rows/{handle}")
+    public ResponseEntity<Map<String, Object>> sideBySideRows(
+            @PathVariable String handle,
+            @RequestParam("from") int fromRow,
+            @RequestParam("to") int toRow
+    ) {
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            Map<String, Object> result = diffService.getSideBySideRows(handle, fromRow, toRow);
+            response.putAll(result);
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("error", e.getMessage());
+            response.put("success", false);
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping("/sessions")
+    public ResponseEntity<Map<String, Object>> openSession(@RequestBody DiffRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            Map<String, Object> result = diffService.openDiffSession(request);
+            response.putAll(result);
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("error", e.getMessage());
+            response.put("success", false);
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping("/sessions/{sessionId}/edits")
+    public ResponseEntity<Map<String, Object>> editSession(
+            @PathVariable String sessionId,
+            @RequestBody DiffSessionEditRequest request
+    ) {
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            Map<String, Object> result = diffService.editDiffSession(sessionId, request);
+            response.putAll(result);
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("error", e.getMessage());
+            response.put("success", false);
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    @DeleteMapping("/sessions/{sessionId}")
+    public ResponseEntity<Map<String, Object>> closeSession(@PathVariable String sessionId) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("closed", diffService.closeDiffSession(sessionId));
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping("/similarity/documents")
+    public ResponseEntity<Map<String, Object>> addSimilarityDocument(@RequestBody SimilarityDocumentRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            Map<String, Object> result = similarityService.addDocument(request);
+            response.putAll(result);
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("error", e.getMessage());
+            response.put("success", false);
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping(value = "/similarity/documents/files", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> addSimilarityFiles(@RequestParam("files") List<MultipartFile> files) {
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            List<Map<String, Object>> documents = new ArrayList<>(files.size());
+            for (MultipartFile file : files) {
+                // Files are indexed under their name, uploading the same name again replaces the entry
+                SimilarityDocumentRequest request = new SimilarityDocumentRequest();
+                request.setId(file.getOriginalFilename());
+                request.setName(file.getOriginalFilename());
+                request.setText(new String(file.getBytes(), StandardCharsets.UTF_8));
+                documents.add(similarityService.addDocument(request));
+            }
+            response.put("documents", documents);
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("error", e.getMessage());
+            response.put("success", false);
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/similarity/documents")
+    public ResponseEntity<Map<String, Object>> listSimilarityDocuments() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("documents", similarityService.listDocuments());
+        response.put("statistics", similarityService.getStatistics());
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+    
+    @DeleteMapping("/similarity/documents/{id}")
+    public ResponseEntity<Map<String, Object>> removeSimilarityDocument(@PathVariable String id) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("removed", similarityService.removeDocument(id));
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping("/similarity/query")
+    public ResponseEntity<Map<String, Object>> findSimilar(@RequestBody SimilarityQueryRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            Map<String, Object> result = similarityService.findSimilar(request);
+            response.putAll(result);
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("error", e.getMessage());
+            response.put("success", false);
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping(value = "/xml", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> compareXmlFiles(
+            @RequestParam("file1") MultipartFile file1,
+            @RequestParam("file2") MultipartFile file2
+    ) throws IOException {
+        Map<String, Object> response = new HashMap<>();
+        Path path1 = spoolToTempFile(file1);
+        Path path2 = null;
+        
+        try {
+            // Both documents are read twice, from disk, and never held in memory
+            path2 = spoolToTempFile(file2);
+            Map<String, Object> result = diffService.compareXmlFiles(path1, path2);
+            response.putAll(result);
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("error", e.getMessage());
+            response.put("success", false);
+        } finally {
+            Files.deleteIfExists(path1);
+            if (path2 != null) {
+                Files.deleteIfExists(path2);
+            }
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping(value = "/binary", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> compareBinaryFiles(
+            @RequestParam("file1") MultipartFile file1,
+            @RequestParam("file2") MultipartFile file2
+    ) throws IOException {
+        Map<String, Object> response = new HashMap<>();
+        Path path1 = spoolToTempFile(file1);
+        Path path2 = null;
+        
+        try {
+            // Raw bytes, never decoded: both files are memory-mapped from disk
+            path2 = spoolToTempFile(file2);
+            Map<String, Object> result = diffService.compareBinaryFiles(path1, path2);
+            response.putAll(result);
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("error", e.getMessage());
+            response.put("success", false);
+        } finally {
+            Files.deleteIfExists(path1);
+            if (path2 != null) {
+                Files.deleteIfExists(path2);
+            }
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping(value = "/table", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> compareTableFiles(
+            @RequestParam("file1") MultipartFile file1,
+            @RequestParam("file2") MultipartFile file2,
+            @RequestParam(value = "keyColumns", required = false) List<String> keyColumns,
+            @RequestParam(value = "delimiter", required = false) String delimiter,
+            @RequestParam(value = "header", required = false, defaultValue = "true") boolean header,
+            @RequestParam(value = "ignoreCase", required = false, defaultValue = "false") boolean ignoreCase,
+            @RequestParam(value = "ignoreWhitespace", required = false, defaultValue = "false") boolean ignoreWhitespace
+    ) throws IOException {
+        DiffRequest options = new DiffRequest();
+        options.setDiffType(DiffRequest.DiffType.TABLE);
+        options.setTableKeyColumns(keyColumns);
+        options.setTableDelimiter(delimiter);
+        options.setTableHeader(header);
+        options.setIgnoreCase(ignoreCase);
+        options.setIgnoreWhitespace(ignoreWhitespace);
+        
+        Map<String, Object> response = new HashMap<>();
+        Path path1 = spoolToTempFile(file1);
+        Path path2 = null;
+        
+        try {
+            // Tables are streamed from disk, only the smaller one is held in memory
+            path2 = spoolToTempFile(file2);
+            Map<String, Object> result = diffService.compareTableFiles(path1, path2, options);
+            response.putAll(result);
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("error", e.getMessage());
+            response.put("success", false);
+        } finally {
+            Files.deleteIfExists(path1);
+            if (path2 != null) {
+                Files.deleteIfExists(path2);
+            }
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping(value = "/archive", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, Object>> compareArchives(
+            @RequestParam("file1") MultipartFile file1,
+            @RequestParam("file2") MultipartFile file2,
+            @RequestParam(value = "contextLines", required = false, defaultValue = "3") int contextLines,
+            @RequestParam(value = "algorithm", required = false, defaultValue = "MYERS") DiffRequest.DiffAlgorithm algorithm,
+            @RequestParam(value = "includeUnchanged", required = false, defaultValue = "false") boolean includeUnchanged
+    ) throws IOException {
+        DiffRequest options = new DiffRequest();
+        options.setContextLines(contextLines);
+        options.setAlgorithm(algorithm);
+        
         Map<String, Object> response = new HashMap<>();
+        Path path1 = spoolToTempFile(file1);
+        Path path2 = null;
         
         try {
-            Map<String, Object> result = diffService.generateEnhancedDiff(request);
+            // On success the archive diff owns both files and deletes them when it is closed or expires
+            path2 = spoolToTempFile(file2);
+            Map<String, Object> result = diffService.compareArchives(path1, path2, options, includeUnchanged);
             response.putAll(result);
             response.put("success", true);
         } catch (Exception e) {
+            Files.deleteIfExists(path1);
+            if (path2 != null) {
+                Files.deleteIfExists(path2);
+            }
             response.put("error", e.getMessage());
             response.put("success", false);
         }
         
         return ResponseEntity.ok(response);
     }
-} 
\ No newline at end of file
+    
+    @GetMapping("/archive/{handle}/entry")
+    public ResponseEntity<Map<String, Object>> getArchiveEntryDiff(
+            @PathVariable String handle,
+            @RequestParam("path") String path
+    ) {
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            Map<String, Object> result = diffService.getArchiveEntryDiff(handle, path);
+            response.putAll(result);
+            response.put("success", true);
+        } catch (Exception e) {
+            response.put("error", e.getMessage());
+            response.put("success", false);
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    @DeleteMapping("/archive/{handle}")
+    public ResponseEntity<Map<String, Object>> closeArchiveDiff(@PathVariable String handle) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("closed", diffService.closeArchiveDiff(handle));
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping(value = "/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamCompare(
+            @RequestParam("file1") MultipartFile file1,
+            @RequestParam("file2") MultipartFile file2,
+            @RequestParam(value = "contextLines", required = false, defaultValue = "3") int contextLines,
+            @RequestParam(value = "ignoreLineEndings", required = false, defaultValue = "false") boolean ignoreLineEndings
+    ) throws IOException {
+        DiffRequest options = new DiffRequest();
+        options.setContextLines(contextLines);
+        options.setIgnoreLineEndings(ignoreLineEndings);
+        
+        // Multipart parts are cleaned up when the handler returns, the body is written after that
+        Path path1 = spoolToTempFile(file1);
+        Path path2;
+        try {
+            path2 = spoolToTempFile(file2);
+        } catch (IOException e) {
+            Files.deleteIfExists(path1);
+            throw e;
+        }
+        
+        StreamingResponseBody body = out -> {
+            try {
+                BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+                diffService.streamUnifiedDiff(path1, path2, options, buffered);
+                buffered.flush();
+            } finally {
+                Files.deleteIfExists(path1);
+                Files.deleteIfExists(path2);
+            }
+        };
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(body);
+    }
+    
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> batchCompare(@RequestBody List<DiffRequest> requests) {
+        batchDiffService.validateBatch(requests);
+        
+        StreamingResponseBody body = out -> batchDiffService.compareBatch(requests, null, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+    
+    @PostMapping(value = "/batch/files", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> batchCompareFiles(
+            @RequestParam("files1") List<MultipartFile> files1,
+            @RequestParam("files2") List<MultipartFile> files2,
+            @RequestParam(value = "diffType", required = false, defaultValue = "TEXT") DiffRequest.DiffType diffType,
+            @RequestParam(value = "contextLines", required = false, defaultValue = "3") int contextLines,
+            @RequestParam(value = "ignoreWhitespace", required = false, defaultValue = "false") boolean ignoreWhitespace,
+            @RequestParam(value = "ignoreLineEndings", required = false, defaultValue = "false") boolean ignoreLineEndings
+    ) throws IOException {
+        if (files1.size() != files2.size()) {
+            throw new IllegalArgumentException("files1 and files2 must contain the same number of files");
+        }
+        
+        // Pairs are matched by position; parts are read now because they are cleaned up when the handler returns
+        List<DiffRequest> requests = new ArrayList<>(files1.size());
+        List<String> names = new ArrayList<>(files1.size());
+        for (int i = 0; i < files1.size(); i++) {
+            DiffRequest request = new DiffRequest();
+            request.setText1(new String(files1.get(i).getBytes(), StandardCharsets.UTF_8));
+            request.setText2(new String(files2.get(i).getBytes(), StandardCharsets.UTF_8));
+            request.setDiffType(diffType);
+            request.setContextLines(contextLines);
+            request.setIgnoreWhitespace(ignoreWhitespace);
+            request.setIgnoreLineEndings(ignoreLineEndings);
+            requests.add(request);
+            names.add(files1.get(i).getOriginalFilename());
+        }
+        batchDiffService.validateBatch(requests);
+        
+        StreamingResponseBody body = out -> batchDiffService.compareBatch(requests, names, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+    
+    private Path spoolToTempFile(MultipartFile file) throws IOException {
+        Path path = Files.createTempFile("devtoolkit-diff-", ".tmp");
+        file.transferTo(path);
+        return path;
+    }
+}
@@ -2,6 +2,8 @@ package com.devtoolkit.diff.dto;
 
 import lombok.Data;
 
+import java.util.List;
+
 @Data
 public class DiffRequest {
     private String text1;
@@ -11,11 +13,39 @@ public class DiffRequest {
     private boolean ignoreLineEndings = false;
     private int contextLines = 3;
     private DiffType diffType = DiffType.TEXT;
+    private DiffAlgorithm algorithm = DiffAlgorithm.MYERS;
+    private boolean compactOutput = false;
+    // Inline highlights of modified lines and diffDetails: common prefix/suffix, or a word-level diff
+    private InlineGranularity inlineGranularity = InlineGranularity.CHARACTER;
+    // Keep side-by-side rows on the server and return a handle plus hunk index instead
+    private boolean windowedSideBySide = false;
+    // JSON diff: field identifying array elements, RFC 6902 patch output, extra text diff of the formatted JSON
+    private String jsonArrayKey;
+    private boolean jsonPatch = false;
+    private boolean jsonTextDiff = false;
+    // XML diff: extra line diff of the raw documents next to the structural changes
+    private boolean xmlTextDiff = false;
+    // Table diff: key columns (names, or one-based numbers without a header; first column when empty),
+    // field delimiter (detected from the first line when empty) and whether the first row is a header
+    private List<String> tableKeyColumns;
+    private String tableDelimiter;
+    private boolean tableHeader = true;
     
     public enum DiffType {
         TEXT,           // Regular text diff
         JSON,           // JSON structural diff
         XML,            // XML structural diff
-        CODE            // Code-aware diff
+        CODE,           // Code-aware diff
+        TABLE           // Keyed CSV/TSV row diff
+    }
+    
+    public enum InlineGranularity {
+        CHARACTER,      // One changed middle between the common prefix and suffix
+        WORD            // Words, whitespace and punctuation aligned as tokens
+    }
+    
+    public enum DiffAlgorithm {
+        MYERS,          // Minimal O(ND) line alignment
+        HISTOGRAM       // Anchors on rare lines, reads better for moved blocks
     }
 } 
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.devtoolkit.diff.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class DiffSessionEdit {
+    private Side side = Side.LEFT;
+    // 1-based first line replaced; lineCount 0 inserts before it, fromLine = line count + 1 appends
+    private int fromLine = 1;
+    private int lineCount = 0;
+    private List<String> lines = new ArrayList<>();
+    
+    public enum Side {
+        LEFT,
+        RIGHT
+    }
+}
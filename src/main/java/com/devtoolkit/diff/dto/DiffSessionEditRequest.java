@@ -0,0 +1,13 @@
+package com.devtoolkit.diff.dto;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class DiffSessionEditRequest {
+    // Session version the edits were made against; rejected when the session has moved on
+    private Long baseVersion;
+    private List<DiffSessionEdit> edits = new ArrayList<>();
+}
@@ -0,0 +1,11 @@
+package com.devtoolkit.diff.dto;
+
+import lombok.Data;
+
+@Data
+public class SimilarityDocumentRequest {
+    // Replaces the document with the same id; a new id is assigned when empty
+    private String id;
+    private String name;
+    private String text;
+}
@@ -0,0 +1,11 @@
+package com.devtoolkit.diff.dto;
+
+import lombok.Data;
+
+@Data
+public class SimilarityQueryRequest {
+    private String text;
+    private int limit = 5;
+    // Estimated Jaccard similarity of the shingle sets, 0 to 1
+    private double minSimilarity = 0.0;
+}
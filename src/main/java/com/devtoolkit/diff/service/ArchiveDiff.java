@@ -0,0 +1,295 @@
+package com.devtoolkit.diff.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Two uploaded ZIP/JAR archives matched entry by entry from their central directories.
+ * Entries with the same name, size and CRC32 are taken as unchanged without being inflated; the others
+ * keep their line alignment (or a binary flag) so hunks can be rendered per entry on request. The
+ * archive files stay open until {@link #close()}, which also deletes them; reads that
+ * {@link #retain()} the diff keep them open until they {@link #release()} it.
+ */
+public final class ArchiveDiff {
+
+    public enum Status {
+        ADDED,
+        REMOVED,
+        MODIFIED,
+        UNCHANGED
+    }
+
+    private final String handle;
+    private final Path path1;
+    private final Path path2;
+    private final ZipFile archive1;
+    private final ZipFile archive2;
+    private final int contextLines;
+    private final Map<String, Entry> entries = new TreeMap<>();
+    private int references = 0;
+    private boolean closed = false;
+
+    ArchiveDiff(String handle, Path path1, Path path2, int contextLines) throws IOException {
+        this.handle = handle;
+        this.path1 = path1;
+        this.path2 = path2;
+        this.contextLines = contextLines;
+        this.archive1 = new ZipFile(path1.toFile());
+        ZipFile opened;
+        try {
+            opened = new ZipFile(path2.toFile());
+        } catch (IOException e) {
+            archive1.close();
+            throw e;
+        }
+        this.archive2 = opened;
+        indexEntries();
+    }
+
+    private void indexEntries() {
+        Map<String, ZipEntry> left = new TreeMap<>();
+        archive1.stream().filter(entry -> !entry.isDirectory()).forEach(entry -> left.put(entry.getName(), entry));
+
+        archive2.stream().filter(entry -> !entry.isDirectory()).forEach(entry2 -> {
+            ZipEntry entry1 = left.remove(entry2.getName());
+            Status status;
+            if (entry1 == null) {
+                status = Status.ADDED;
+            } else if (entry1.getCrc() == entry2.getCrc() && entry1.getSize() == entry2.getSize()
+                    && entry1.getCrc() != -1) {
+                status = Status.UNCHANGED;
+            } else {
+                status = Status.MODIFIED;
+            }
+            entries.put(entry2.getName(), new Entry(entry2.getName(), status, entry1, entry2));
+        });
+        for (ZipEntry entry1 : left.values()) {
+            entries.put(entry1.getName(), new Entry(entry1.getName(), Status.REMOVED, entry1, null));
+        }
+    }
+
+    public String getHandle() {
+        return handle;
+    }
+
+    public int getContextLines() {
+        return contextLines;
+    }
+
+    /**
+     * Entries in name order.
+     */
+    public Collection<Entry> getEntries() {
+        return entries.values();
+    }
+
+    public Entry getEntry(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Entries that differ between the archives, the ones worth inflating.
+     */
+    List<Entry> changedEntries() {
+        List<Entry> changed = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.status != Status.UNCHANGED) {
+                changed.add(entry);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Inflated content of one side of an entry, or null when the entry is absent on that side or larger
+     * than {@code maxBytes}. Safe to call from several threads.
+     */
+    byte[] read(Entry entry, boolean left, int maxBytes) throws IOException {
+        ZipEntry zipEntry = left ? entry.entry1 : entry.entry2;
+        if (zipEntry == null) {
+            return null;
+        }
+        if (zipEntry.getSize() > maxBytes) {
+            return null;
+        }
+        try (InputStream in = (left ? archive1 : archive2).getInputStream(zipEntry)) {
+            // The declared size is not trusted, reading stops just past the limit
+            byte[] content = in.readNBytes(maxBytes + 1);
+            return content.length > maxBytes ? null : content;
+        }
+    }
+
+    /**
+     * Rough footprint: both archives on disk plus the retained alignments.
+     */
+    public long estimatedSize() {
+        long size = 0;
+        try {
+            size += Files.size(path1) + Files.size(path2);
+        } catch (IOException e) {
+            // Already deleted, only the in-memory part remains
+        }
+        for (Entry entry : entries.values()) {
+            size += 96 + 2L * entry.name.length() + (entry.edits != null ? 32L * entry.edits.size() : 0);
+        }
+        return size;
+    }
+
+    /**
+     * Keep the archives open for a read outside the diffing itself; returns false once the diff has been
+     * closed. Every successful call must be paired with {@link #release()}.
+     */
+    synchronized boolean retain() {
+        if (closed) {
+            return false;
+        }
+        references++;
+        return true;
+    }
+
+    void release() {
+        boolean release;
+        synchronized (this) {
+            references--;
+            release = closed && references == 0;
+        }
+        if (release) {
+            closeFiles();
+        }
+    }
+
+    /**
+     * Close both archives and delete their files, once the last retained read has finished.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (references > 0) {
+                return;
+            }
+        }
+        closeFiles();
+    }
+
+    private void closeFiles() {
+        try {
+            archive1.close();
+        } catch (IOException e) {
+            // Nothing left to do with it
+        }
+        try {
+            archive2.close();
+        } catch (IOException e) {
+            // Nothing left to do with it
+        }
+        try {
+            Files.deleteIfExists(path1);
+            Files.deleteIfExists(path2);
+        } catch (IOException e) {
+            // Temp directory cleanup will get them
+        }
+    }
+
+    /**
+     * One entry name and what the diff found for it. Filled in by one thread, read after it finished.
+     */
+    public static final class Entry {
+
+        private final String name;
+        private final Status status;
+        private final ZipEntry entry1;
+        private final ZipEntry entry2;
+
+        private boolean binary = false;
+        private boolean tooLarge = false;
+        private boolean approximate = false;
+        private List<Edit> edits;
+        private int linesAdded = 0;
+        private int linesDeleted = 0;
+        private int hunks = 0;
+
+        Entry(String name, Status status, ZipEntry entry1, ZipEntry entry2) {
+            this.name = name;
+            this.status = status;
+            this.entry1 = entry1;
+            this.entry2 = entry2;
+        }
+
+        void setBinary(boolean binary, boolean tooLarge) {
+            this.binary = binary;
+            this.tooLarge = tooLarge;
+        }
+
+        void setAlignment(List<Edit> edits, int hunks, boolean approximate) {
+            this.edits = edits;
+            this.hunks = hunks;
+            this.approximate = approximate;
+            for (Edit edit : edits) {
+                linesAdded += edit.getLengthB();
+                linesDeleted += edit.getLengthA();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Uncompressed size on the left, or {@code -1} when absent.
+         */
+        public long getSize1() {
+            return entry1 != null ? entry1.getSize() : -1;
+        }
+
+        public long getSize2() {
+            return entry2 != null ? entry2.getSize() : -1;
+        }
+
+        public boolean isBinary() {
+            return binary;
+        }
+
+        public boolean isTooLarge() {
+            return tooLarge;
+        }
+
+        public boolean isApproximate() {
+            return approximate;
+        }
+
+        /**
+         * Line alignment of a text entry, null for unchanged and binary entries.
+         */
+        public List<Edit> getEdits() {
+            return edits;
+        }
+
+        public int getLinesAdded() {
+            return linesAdded;
+        }
+
+        public int getLinesDeleted() {
+            return linesDeleted;
+        }
+
+        public int getHunks() {
+            return hunks;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.devtoolkit.diff.service;
+
+import com.devtoolkit.common.cache.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+import java.util.Map;
+
+/**
+ * Archive diffs kept so clients can fetch the hunks of one entry at a time. Bounded by the archives'
+ * size on disk and a time-to-live; an archive diff leaving the store, for whatever reason, has its
+ * files closed and deleted by the removal listener. Expired diffs are swept periodically so their
+ * files go even when no further requests arrive.
+ */
+@Component
+public class ArchiveDiffStore {
+    
+    private final BoundedCache<String, ArchiveDiff> diffs;
+    private final long maxBytes;
+    
+    public ArchiveDiffStore(@Value("${diff.archive.max-bytes:536870912}") long maxBytes,
+                            @Value("${diff.archive.ttl-seconds:900}") long ttlSeconds) {
+        this.maxBytes = maxBytes;
+        this.diffs = new BoundedCache<>(maxBytes, ttlSeconds * 1000, ArchiveDiff::estimatedSize,
+                (handle, diff) -> diff.close());
+    }
+    
+    /**
+     * Store an archive diff; one larger than the whole store is closed and rejected instead of being
+     * evicted by its own put.
+     */
+    public void put(ArchiveDiff diff) {
+        checkSize(diff);
+        diffs.put(diff.getHandle(), diff);
+    }
+    
+    /**
+     * Close and reject an archive diff that could never be stored
+     */
+    public void checkSize(ArchiveDiff diff) {
+        long size = diff.estimatedSize();
+        if (size > maxBytes) {
+            diff.close();
+            throw new IllegalArgumentException("Archives are too large to keep for entry diffs (" + size 
+                + " bytes, at most " + maxBytes + ")");
+        }
+    }
+    
+    public ArchiveDiff get(String handle) {
+        ArchiveDiff diff = diffs.get(handle);
+        if (diff == null) {
+            throw new IllegalArgumentException("Unknown or expired archive diff: " + handle);
+        }
+        return diff;
+    }
+    
+    public boolean remove(String handle) {
+        return diffs.remove(handle) != null;
+    }
+    
+    public Map<String, Object> stats() {
+        return diffs.stats();
+    }
+    
+    @Scheduled(fixedDelayString = "${diff.archive.sweep-interval-ms:60000}")
+    public void expire() {
+        diffs.cleanUp();
+    }
+    
+    /**
+     * Temp files must not outlive the application
+     */
+    @PreDestroy
+    public void close() {
+        diffs.clear();
+    }
+}
@@ -0,0 +1,12 @@
+package com.devtoolkit.diff.service;
+
+import com.devtoolkit.diff.dto.DiffRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+public interface BatchDiffService {
+    void validateBatch(List<DiffRequest> requests);
+    void compareBatch(List<DiffRequest> requests, List<String> names, OutputStream out) throws IOException;
+}
@@ -0,0 +1,222 @@
+package com.devtoolkit.diff.service;
+
+import com.devtoolkit.diff.dto.DiffRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the items of a batch on the shared batch executor and writes one NDJSON line per item as soon as it
+ * finishes, so results arrive in completion order rather than request order; each line carries the item's
+ * {@code index}. A batch keeps at most one item per pool thread in flight, which keeps one large batch
+ * from filling the queue ahead of other callers.
+ */
+@Service
+public class BatchDiffServiceImpl implements BatchDiffService {
+    
+    private static final byte[] LINE_SEPARATOR = {'\n'};
+    
+    /** How often items still queued in the pool are checked for having started. */
+    private static final long START_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    
+    @Autowired
+    private DiffService diffService;
+    
+    @Autowired
+    @Qualifier("diffBatchExecutor")
+    private ExecutorService batchExecutor;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${diff.batch.max-items:1000}")
+    private int maxItems;
+    
+    @Value("${diff.batch.item-timeout-ms:30000}")
+    private long itemTimeoutMillis;
+    
+    @Override
+    public void validateBatch(List<DiffRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new IllegalArgumentException("Batch must contain at least one diff request");
+        }
+        if (requests.size() > maxItems) {
+            throw new IllegalArgumentException("Batch has " + requests.size() + " items, the limit is " + maxItems);
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            if (requests.get(i) == null) {
+                throw new IllegalArgumentException("Batch item " + i + " is empty");
+            }
+        }
+    }
+    
+    @Override
+    public void compareBatch(List<DiffRequest> requests, List<String> names, OutputStream out) throws IOException {
+        validateBatch(requests);
+        
+        BlockingQueue<BatchItem> completed = new LinkedBlockingQueue<>();
+        LinkedHashSet<BatchItem> running = new LinkedHashSet<>();
+        int window = inFlightLimit();
+        int next = 0;
+        
+        try {
+            while (next < requests.size() || !running.isEmpty()) {
+                while (running.size() < window && next < requests.size()) {
+                    BatchItem item = new BatchItem(next, names != null ? names.get(next) : null, requests.get(next));
+                    next++;
+                    if (submit(item, completed)) {
+                        running.add(item);
+                    } else {
+                        writeLine(out, item.outcome);
+                    }
+                }
+                
+                long wait = nextDeadline(running) - System.nanoTime();
+                BatchItem done = wait > 0 ? completed.poll(wait, TimeUnit.NANOSECONDS) : completed.poll();
+                if (done != null) {
+                    // A result that lands after its item timed out has already been reported
+                    if (running.remove(done)) {
+                        writeLine(out, done.outcome);
+                    }
+                    continue;
+                }
+                
+                long now = System.nanoTime();
+                Iterator<BatchItem> iterator = running.iterator();
+                while (iterator.hasNext()) {
+                    BatchItem item = iterator.next();
+                    if (!item.started || item.deadline - now > 0) {
+                        continue;
+                    }
+                    iterator.remove();
+                    item.future.cancel(true);
+                    writeLine(out, timeoutOutcome(item));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch diff interrupted", e);
+        } finally {
+            // Client went away or the batch failed: stop whatever is still running for it
+            for (BatchItem item : running) {
+                item.future.cancel(true);
+            }
+        }
+    }
+    
+    /**
+     * Earliest deadline of an item that has started; items still waiting for a thread are re-checked shortly.
+     */
+    private long nextDeadline(LinkedHashSet<BatchItem> running) {
+        long next = System.nanoTime() + START_POLL_NANOS;
+        for (BatchItem item : running) {
+            if (item.started && item.deadline - next < 0) {
+                next = item.deadline;
+            }
+        }
+        return next;
+    }
+    
+    private boolean submit(BatchItem item, BlockingQueue<BatchItem> completed) {
+        try {
+            item.future = batchExecutor.submit(() -> {
+                // The timeout runs from when a thread picks the item up, not from when it was queued
+                item.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(itemTimeoutMillis);
+                item.started = true;
+                item.outcome = runItem(item);
+                completed.add(item);
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            item.outcome = failureOutcome(item, "Diff executor is saturated, retry the item later");
+            return false;
+        }
+    }
+    
+    private Map<String, Object> runItem(BatchItem item) {
+        long started = System.nanoTime();
+        Map<String, Object> outcome;
+        try {
+            Map<String, Object> result = diffService.generateEnhancedDiff(item.request);
+            outcome = header(item);
+            outcome.putAll(result);
+            outcome.put("success", true);
+        } catch (Exception e) {
+            outcome = failureOutcome(item, e.getMessage());
+        }
+        outcome.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return outcome;
+    }
+    
+    private Map<String, Object> timeoutOutcome(BatchItem item) {
+        Map<String, Object> outcome = failureOutcome(item, "Diff did not finish within " + itemTimeoutMillis + " ms");
+        outcome.put("timedOut", true);
+        return outcome;
+    }
+    
+    private Map<String, Object> failureOutcome(BatchItem item, String error) {
+        Map<String, Object> outcome = header(item);
+        outcome.put("error", error);
+        outcome.put("success", false);
+        return outcome;
+    }
+    
+    private Map<String, Object> header(BatchItem item) {
+        Map<String, Object> outcome = new LinkedHashMap<>();
+        outcome.put("index", item.index);
+        if (item.name != null) {
+            outcome.put("name", item.name);
+        }
+        return outcome;
+    }
+    
+    private void writeLine(OutputStream out, Map<String, Object> outcome) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(outcome));
+        out.write(LINE_SEPARATOR);
+        out.flush();
+    }
+    
+    private int inFlightLimit() {
+        if (batchExecutor instanceof ThreadPoolExecutor) {
+            return ((ThreadPoolExecutor) batchExecutor).getMaximumPoolSize();
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+    
+    /**
+     * One request of a batch; outcome is written by the worker before the item is queued as completed.
+     */
+    private static final class BatchItem {
+        
+        private final int index;
+        private final String name;
+        private final DiffRequest request;
+        private volatile long deadline;
+        private volatile boolean started;
+        private volatile Future<?> future;
+        private volatile Map<String, Object> outcome;
+        
+        BatchItem(int index, String name, DiffRequest request) {
+            this.index = index;
+            this.name = name;
+            this.request = request;
+        }
+    }
+}
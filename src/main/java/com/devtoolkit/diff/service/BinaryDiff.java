@@ -0,0 +1,585 @@
+package com.devtoolkit.diff.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Block-level diff of two binary files using content-defined chunking.
+ * <p>
+ * Both files are memory-mapped and cut into chunks where a gear rolling hash over the last bytes hits a
+ * bit pattern, so chunk boundaries depend on content rather than position and resynchronise right after
+ * an insertion or deletion. Each chunk of the second file is looked up by fingerprint among the chunks
+ * of the first (and its bytes verified), giving a block map of copied and inserted ranges. Copies that
+ * keep their relative order are anchors; the others are reported as moved. Between two anchors the
+ * bytes only on one side are narrowed to their differing core and reported as modified, inserted or
+ * deleted, each with a hex view of the start of both sides.
+ */
+public final class BinaryDiff {
+
+    public enum BlockType {
+        COPY,
+        INSERT
+    }
+
+    public enum ChangeType {
+        MODIFIED,
+        INSERTED,
+        DELETED,
+        MOVED
+    }
+
+    private static final int HEX_LINE_BYTES = 16;
+    private static final int RESUME_CHUNKS = 3;
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // Fixed seed: chunk boundaries must be the same for both files and across runs
+        SplittableRandom random = new SplittableRandom(0x5DEECE66DL);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final int minChunk;
+    private final int maxChunk;
+    private final long mask;
+    private final int maxChanges;
+    private final int maxHexBytes;
+
+    private ByteBuffer data1;
+    private ByteBuffer data2;
+    private final List<Block> blocks = new ArrayList<>();
+    private final List<Map<String, Object>> changes = new ArrayList<>();
+    private boolean truncated = false;
+    private int chunks1 = 0;
+    private int chunks2 = 0;
+    private long bytesUnchanged = 0;
+    private long bytesMoved = 0;
+    private long bytesInserted = 0;
+    private long bytesDeleted = 0;
+
+    /**
+     * @param averageChunk expected chunk size, a power of two; chunks are between a quarter and eight times it
+     */
+    public BinaryDiff(int averageChunk, int maxChanges, int maxHexBytes) {
+        if (Integer.bitCount(averageChunk) != 1 || averageChunk < 64) {
+            throw new IllegalArgumentException("Average chunk size must be a power of two of at least 64: " + averageChunk);
+        }
+        this.minChunk = averageChunk / 4;
+        this.maxChunk = averageChunk * 8;
+        // Boundary test on high bits, the low bits of the gear hash only see the last few bytes
+        this.mask = (long) (averageChunk - 1) << (64 - Integer.numberOfTrailingZeros(averageChunk));
+        this.maxChanges = maxChanges;
+        this.maxHexBytes = maxHexBytes;
+    }
+
+    /**
+     * Compare two files; returns whether their contents are equal.
+     */
+    public boolean compare(Path file1, Path file2) throws IOException {
+        data1 = map(file1);
+        data2 = map(file2);
+        if (data1.limit() == data2.limit() && data1.mismatch(data2) < 0) {
+            if (data1.limit() > 0) {
+                Block copy = new Block(BlockType.COPY, 0, 0, data1.limit());
+                copy.anchor = true;
+                blocks.add(copy);
+            }
+            bytesUnchanged = data1.limit();
+            return true;
+        }
+
+        Chunks left = chunk(data1);
+        Chunks right = chunk(data2);
+        chunks1 = left.size;
+        chunks2 = right.size;
+        buildBlocks(left, right);
+        extendCopies();
+        markAnchors();
+        collectChanges();
+        return false;
+    }
+
+    public List<Map<String, Object>> getBlocks() {
+        List<Map<String, Object>> list = new ArrayList<>(blocks.size());
+        for (Block block : blocks) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("type", block.type.name());
+            entry.put("offset2", block.offset2);
+            entry.put("length", block.length);
+            if (block.type == BlockType.COPY) {
+                entry.put("offset1", block.offset1);
+                entry.put("moved", !block.anchor);
+            }
+            list.add(entry);
+        }
+        return list;
+    }
+
+    public List<Map<String, Object>> getChanges() {
+        return changes;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("size1", data1.limit());
+        statistics.put("size2", data2.limit());
+        statistics.put("chunks1", chunks1);
+        statistics.put("chunks2", chunks2);
+        statistics.put("bytesUnchanged", bytesUnchanged);
+        statistics.put("bytesMoved", bytesMoved);
+        statistics.put("bytesInserted", bytesInserted);
+        statistics.put("bytesDeleted", bytesDeleted);
+        return statistics;
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("File is too large to diff: " + size + " bytes");
+            }
+            // The mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Cut a file into content-defined chunks and fingerprint each one.
+     */
+    private Chunks chunk(ByteBuffer data) {
+        int size = data.limit();
+        Chunks chunks = new Chunks(Math.max(16, size / (minChunk * 4)));
+        int start = 0;
+        while (start < size) {
+            int limit = Math.min(size, start + maxChunk);
+            int end = limit;
+            // No boundary test before the minimum size, the hash still needs warming up over it
+            long hash = 0;
+            for (int i = Math.min(limit, start + Math.max(0, minChunk - 64)); i < limit; i++) {
+                hash = (hash << 1) + GEAR[data.get(i) & 0xff];
+                if (i >= start + minChunk && (hash & mask) == 0) {
+                    end = i + 1;
+                    break;
+                }
+            }
+            chunks.add(start, end - start, fingerprint(data, start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private static long fingerprint(ByteBuffer data, int start, int end) {
+        long hash = 0x9E3779B97F4A7C15L ^ (end - start);
+        int i = start;
+        for (; i + 8 <= end; i += 8) {
+            hash = Long.rotateLeft(hash ^ data.getLong(i) * 0xC2B2AE3D27D4EB4FL, 31) * 0x9E3779B97F4A7C15L;
+        }
+        for (; i < end; i++) {
+            hash = (hash ^ (data.get(i) & 0xff)) * 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        return hash ^ (hash >>> 33);
+    }
+
+    private void buildBlocks(Chunks left, Chunks right) {
+        Map<Long, Integer> index = new HashMap<>(left.size * 2);
+        for (int c = left.size - 1; c >= 0; c--) {
+            index.put(left.fingerprints[c], c);
+        }
+
+        int previous = -1;
+        int expected = 0;
+        for (int c = 0; c < right.size; c++) {
+            int offset2 = right.starts[c];
+            int length = right.lengths[c];
+            long fingerprint = right.fingerprints[c];
+            // Continuing the previous copy wins, then resuming just after it, then the first chunk with the
+            // same content, so runs of repeated chunks (zero padding) stay in place
+            int match = -1;
+            if (previous >= 0 && isMatch(left, previous + 1, fingerprint, offset2, length)) {
+                match = previous + 1;
+            } else {
+                int next = Arrays.binarySearch(left.starts, 0, left.size, expected);
+                next = next >= 0 ? next : -next - 1;
+                for (int k = next; k < next + RESUME_CHUNKS && match < 0; k++) {
+                    if (isMatch(left, k, fingerprint, offset2, length)) {
+                        match = k;
+                    }
+                }
+                Integer candidate = index.get(fingerprint);
+                if (match < 0 && candidate != null && isMatch(left, candidate, fingerprint, offset2, length)) {
+                    match = candidate;
+                }
+            }
+
+            if (match >= 0) {
+                addBlock(BlockType.COPY, left.starts[match], offset2, length);
+                expected = left.starts[match] + length;
+            } else {
+                addBlock(BlockType.INSERT, -1, offset2, length);
+            }
+            previous = match;
+        }
+    }
+
+    private boolean isMatch(Chunks left, int chunk, long fingerprint, int offset2, int length) {
+        return chunk < left.size && left.fingerprints[chunk] == fingerprint && left.lengths[chunk] == length
+                && sameBytes(left.starts[chunk], offset2, length);
+    }
+
+    private boolean sameBytes(int offset1, int offset2, int length) {
+        return data1.slice(offset1, length).mismatch(data2.slice(offset2, length)) < 0;
+    }
+
+    private void addBlock(BlockType type, int offset1, int offset2, int length) {
+        if (!blocks.isEmpty()) {
+            Block last = blocks.get(blocks.size() - 1);
+            boolean contiguous = type == BlockType.INSERT || last.offset1 + last.length == offset1;
+            if (last.type == type && contiguous) {
+                last.length += length;
+                return;
+            }
+        }
+        blocks.add(new Block(type, offset1, offset2, length));
+    }
+
+    /**
+     * Chunk matches end at chunk boundaries; grow each copy byte by byte into the inserted blocks next to it
+     * while the bytes still agree, then merge whatever became contiguous.
+     */
+    private void extendCopies() {
+        for (int i = 0; i < blocks.size(); i++) {
+            Block copy = blocks.get(i);
+            if (copy.type != BlockType.COPY) {
+                continue;
+            }
+            if (i > 0 && blocks.get(i - 1).type == BlockType.INSERT) {
+                Block before = blocks.get(i - 1);
+                int n = 0;
+                while (n < before.length && copy.offset1 - n > 0
+                        && data1.get(copy.offset1 - n - 1) == data2.get(copy.offset2 - n - 1)) {
+                    n++;
+                }
+                before.length -= n;
+                copy.offset1 -= n;
+                copy.offset2 -= n;
+                copy.length += n;
+            }
+            if (i + 1 < blocks.size() && blocks.get(i + 1).type == BlockType.INSERT) {
+                Block after = blocks.get(i + 1);
+                int end1 = copy.offset1 + copy.length;
+                int n = 0;
+                while (n < after.length && end1 + n < data1.limit()
+                        && data1.get(end1 + n) == data2.get(after.offset2 + n)) {
+                    n++;
+                }
+                after.offset2 += n;
+                after.length -= n;
+                copy.length += n;
+            }
+        }
+
+        List<Block> merged = new ArrayList<>(blocks.size());
+        for (Block block : blocks) {
+            if (block.length == 0) {
+                continue;
+            }
+            Block last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && last.type == block.type
+                    && (block.type == BlockType.INSERT || last.offset1 + last.length == block.offset1)) {
+                last.length += block.length;
+            } else {
+                merged.add(block);
+            }
+        }
+        blocks.clear();
+        blocks.addAll(merged);
+    }
+
+    /**
+     * Copies on the heaviest run, by copied bytes, that moves forward in both files stay in place; the rest moved.
+     */
+    private void markAnchors() {
+        List<Block> copies = new ArrayList<>();
+        for (Block block : blocks) {
+            if (block.type == BlockType.COPY) {
+                copies.add(block);
+            }
+        }
+        int n = copies.size();
+        long[] best = new long[n];
+        int[] previous = new int[n];
+        int last = -1;
+        for (int i = 0; i < n; i++) {
+            best[i] = copies.get(i).length;
+            previous[i] = -1;
+            // Quadratic in the number of copies, which coalescing keeps small for similar files
+            for (int j = Math.max(0, i - 4096); j < i; j++) {
+                // Sources may overlap a little: copies grown over repeated bytes (zero padding) can meet
+                if (copies.get(j).offset1 < copies.get(i).offset1
+                        && best[j] + copies.get(i).length > best[i]) {
+                    best[i] = best[j] + copies.get(i).length;
+                    previous[i] = j;
+                }
+            }
+            if (last < 0 || best[i] > best[last]) {
+                last = i;
+            }
+        }
+        for (int i = last; i >= 0; i = previous[i]) {
+            copies.get(i).anchor = true;
+        }
+        for (Block copy : copies) {
+            if (copy.anchor) {
+                bytesUnchanged += copy.length;
+            } else {
+                bytesMoved += copy.length;
+            }
+        }
+    }
+
+    private void collectChanges() {
+        // Bytes of the first file that some copy reads, in place or moved
+        List<int[]> covered = new ArrayList<>();
+        for (Block block : blocks) {
+            if (block.type == BlockType.COPY) {
+                covered.add(new int[]{block.offset1, block.offset1 + block.length});
+                if (!block.anchor) {
+                    Map<String, Object> change = createChange(ChangeType.MOVED, block.offset1, block.length,
+                            block.offset2, block.length);
+                    if (change != null) {
+                        change.put("hex", hexDump(data2, block.offset2, block.length));
+                    }
+                }
+            }
+        }
+        covered.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+        // Walk the gaps between consecutive anchors on both sides
+        int end1 = 0;
+        int coveredIndex = 0;
+        List<Block> anchors = new ArrayList<>();
+        for (Block block : blocks) {
+            if (block.type == BlockType.COPY && block.anchor) {
+                anchors.add(block);
+            }
+        }
+        anchors.add(new Block(BlockType.COPY, data1.limit(), data2.limit(), 0));
+        int blockIndex = 0;
+        for (Block anchor : anchors) {
+            List<int[]> deleted = new ArrayList<>();
+            int position = end1;
+            while (coveredIndex < covered.size() && covered.get(coveredIndex)[1] <= end1) {
+                coveredIndex++;
+            }
+            for (int k = coveredIndex; k < covered.size() && covered.get(k)[0] < anchor.offset1; k++) {
+                int[] range = covered.get(k);
+                if (range[0] > position) {
+                    deleted.add(new int[]{position, range[0]});
+                }
+                position = Math.max(position, range[1]);
+            }
+            if (position < anchor.offset1) {
+                deleted.add(new int[]{position, anchor.offset1});
+            }
+
+            List<int[]> inserted = new ArrayList<>();
+            while (blockIndex < blocks.size() && blocks.get(blockIndex).offset2 < anchor.offset2) {
+                Block block = blocks.get(blockIndex++);
+                if (block.type == BlockType.INSERT) {
+                    inserted.add(new int[]{block.offset2, block.offset2 + block.length});
+                }
+            }
+            if (blockIndex < blocks.size() && blocks.get(blockIndex) == anchor) {
+                blockIndex++;
+            }
+
+            if (deleted.size() == 1 && inserted.size() == 1) {
+                addModified(deleted.get(0)[0], deleted.get(0)[1], inserted.get(0)[0], inserted.get(0)[1]);
+            } else {
+                for (int[] range : deleted) {
+                    addOneSided(ChangeType.DELETED, range[0], range[1]);
+                }
+                for (int[] range : inserted) {
+                    addOneSided(ChangeType.INSERTED, range[0], range[1]);
+                }
+            }
+            end1 = anchor.offset1 + anchor.length;
+        }
+    }
+
+    /**
+     * One replaced range on each side; chunk boundaries are coarse, so equal leading and trailing bytes are
+     * trimmed first.
+     */
+    private void addModified(int from1, int to1, int from2, int to2) {
+        int prefix = 0;
+        int maxPrefix = Math.min(to1 - from1, to2 - from2);
+        int mismatch = data1.slice(from1, maxPrefix).mismatch(data2.slice(from2, maxPrefix));
+        prefix = mismatch < 0 ? maxPrefix : mismatch;
+        int suffix = 0;
+        while (suffix < maxPrefix - prefix && data1.get(to1 - 1 - suffix) == data2.get(to2 - 1 - suffix)) {
+            suffix++;
+        }
+        from1 += prefix;
+        from2 += prefix;
+        to1 -= suffix;
+        to2 -= suffix;
+        bytesUnchanged += prefix + suffix;
+
+        if (from1 == to1 && from2 == to2) {
+            return;
+        }
+        if (from1 == to1) {
+            addOneSided(ChangeType.INSERTED, from2, to2);
+            return;
+        }
+        if (from2 == to2) {
+            addOneSided(ChangeType.DELETED, from1, to1);
+            return;
+        }
+        bytesDeleted += to1 - from1;
+        bytesInserted += to2 - from2;
+        Map<String, Object> change = createChange(ChangeType.MODIFIED, from1, to1 - from1, from2, to2 - from2);
+        if (change != null) {
+            change.put("hex1", hexDump(data1, from1, to1 - from1));
+            change.put("hex2", hexDump(data2, from2, to2 - from2));
+        }
+    }
+
+    private void addOneSided(ChangeType type, int from, int to) {
+        boolean deleted = type == ChangeType.DELETED;
+        if (deleted) {
+            bytesDeleted += to - from;
+        } else {
+            bytesInserted += to - from;
+        }
+        Map<String, Object> change = deleted
+                ? createChange(type, from, to - from, -1, 0)
+                : createChange(type, -1, 0, from, to - from);
+        if (change != null) {
+            change.put(deleted ? "hex1" : "hex2", hexDump(deleted ? data1 : data2, from, to - from));
+        }
+    }
+
+    /**
+     * New entry in the change list, or null once the list is full.
+     */
+    private Map<String, Object> createChange(ChangeType type, int offset1, int length1, int offset2, int length2) {
+        if (changes.size() >= maxChanges) {
+            truncated = true;
+            return null;
+        }
+        Map<String, Object> change = new LinkedHashMap<>();
+        change.put("type", type.name());
+        if (offset1 >= 0) {
+            change.put("offset1", offset1);
+            change.put("length1", length1);
+        }
+        if (offset2 >= 0) {
+            change.put("offset2", offset2);
+            change.put("length2", length2);
+        }
+        changes.add(change);
+        return change;
+    }
+
+    /**
+     * Classic hex dump lines ({@code offset  hex bytes  |ascii|}) of the first {@code maxHexBytes} bytes.
+     */
+    private List<String> hexDump(ByteBuffer data, int offset, int length) {
+        int shown = Math.min(length, maxHexBytes);
+        List<String> lines = new ArrayList<>((shown + HEX_LINE_BYTES - 1) / HEX_LINE_BYTES + 1);
+        char[] hex = "0123456789abcdef".toCharArray();
+        for (int line = offset; line < offset + shown; line += HEX_LINE_BYTES) {
+            int count = Math.min(HEX_LINE_BYTES, offset + shown - line);
+            StringBuilder text = new StringBuilder(80);
+            String address = Integer.toHexString(line);
+            for (int pad = address.length(); pad < 8; pad++) {
+                text.append('0');
+            }
+            text.append(address).append(' ');
+            char[] ascii = new char[count];
+            for (int i = 0; i < HEX_LINE_BYTES; i++) {
+                if (i < count) {
+                    int b = data.get(line + i) & 0xff;
+                    text.append(' ').append(hex[b >>> 4]).append(hex[b & 0xf]);
+                    ascii[i] = b >= 0x20 && b < 0x7f ? (char) b : '.';
+                } else {
+                    text.append("   ");
+                }
+            }
+            text.append("  |").append(ascii).append('|');
+            lines.add(text.toString());
+        }
+        if (shown < length) {
+            lines.add("... " + (length - shown) + " more bytes");
+        }
+        return lines;
+    }
+
+    /**
+     * A run of the second file: copied from {@code offset1} in the first, or only in the second.
+     */
+    private static final class Block {
+
+        private final BlockType type;
+        private int offset1;
+        private int offset2;
+        private int length;
+        private boolean anchor = false;
+
+        Block(BlockType type, int offset1, int offset2, int length) {
+            this.type = type;
+            this.offset1 = offset1;
+            this.offset2 = offset2;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Chunk starts, lengths and fingerprints of one file, in file order.
+     */
+    private static final class Chunks {
+
+        private int[] starts;
+        private int[] lengths;
+        private long[] fingerprints;
+        private int size = 0;
+
+        Chunks(int capacity) {
+            this.starts = new int[capacity];
+            this.lengths = new int[capacity];
+            this.fingerprints = new long[capacity];
+        }
+
+        void add(int start, int length, long fingerprint) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+                fingerprints = Arrays.copyOf(fingerprints, size * 2);
+            }
+            starts[size] = start;
+            lengths[size] = length;
+            fingerprints[size] = fingerprint;
+            size++;
+        }
+    }
+}
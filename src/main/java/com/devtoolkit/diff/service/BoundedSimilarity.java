@@ -0,0 +1,109 @@
+package com.devtoolkit.diff.service;
+
+import org.apache.commons.text.similarity.LevenshteinDistance;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers "is the Levenshtein similarity of these two strings above a cut-off?" without computing
+ * the full O(n·m) distance.
+ * <p>
+ * The cut-off is turned into a maximum edit distance {@code k}; pairs whose length difference already
+ * exceeds {@code k} are rejected up front, the common prefix and suffix are trimmed, and only the
+ * remaining core is run through a banded distance that gives up as soon as its band is exceeded
+ * (O(k·n) cells). The band starts narrow and doubles up to {@code k}, so near-identical inputs stay
+ * cheap even when {@code k} is large. One instance is created per request and carries its cell budget:
+ * once the budget is spent, or the request's deadline has passed, pairs are judged from the trimmed core
+ * lengths alone. The budget is shared safely when a request refines line pairs on several threads.
+ */
+public final class BoundedSimilarity {
+
+    private final AtomicLong remainingCells;
+    private final DiffBudget deadline;
+    private volatile boolean budgetExhausted = false;
+
+    public BoundedSimilarity(long cellBudget) {
+        this(cellBudget, DiffBudget.UNLIMITED);
+    }
+
+    public BoundedSimilarity(long cellBudget, DiffBudget deadline) {
+        this.remainingCells = new AtomicLong(cellBudget);
+        this.deadline = deadline;
+    }
+
+    /**
+     * Returns whether {@code 1 - distance / max(length)} is strictly greater than {@code minSimilarity}.
+     */
+    public boolean isAbove(CharSequence text1, CharSequence text2, double minSimilarity) {
+        int maxLength = Math.max(text1.length(), text2.length());
+        if (maxLength == 0) {
+            return false;
+        }
+
+        // similarity > min  <=>  distance < (1 - min) * maxLength
+        int maxDistance = (int) Math.ceil((1.0 - minSimilarity) * maxLength) - 1;
+        if (maxDistance < 0 || Math.abs(text1.length() - text2.length()) > maxDistance) {
+            return false;
+        }
+
+        int prefix = commonPrefix(text1, text2);
+        int suffix = commonSuffix(text1, text2, prefix);
+        int core1 = text1.length() - prefix - suffix;
+        int core2 = text2.length() - prefix - suffix;
+        if (core1 == 0 || core2 == 0) {
+            return Math.max(core1, core2) <= maxDistance;
+        }
+
+        // Probe with a growing band so the work tracks the actual distance, not the cut-off
+        CharSequence left = text1.subSequence(prefix, prefix + core1);
+        CharSequence right = text2.subSequence(prefix, prefix + core2);
+        int band = Math.min(maxDistance, Math.max(16, Math.abs(core1 - core2) * 2));
+        while (true) {
+            long cells = (2L * band + 1) * Math.min(core1, core2);
+            boolean expired = deadline.isExpired();
+            if (expired) {
+                deadline.noteDeadlineExceeded();
+            }
+            if (expired || remainingCells.addAndGet(-cells) < 0) {
+                // Out of budget: replacing the whole core is an upper bound on the distance
+                budgetExhausted = true;
+                return Math.max(core1, core2) <= maxDistance;
+            }
+
+            if (new LevenshteinDistance(band).apply(left, right) >= 0) {
+                return true;
+            }
+            if (band == maxDistance) {
+                return false;
+            }
+            band = (int) Math.min(maxDistance, band * 2L);
+        }
+    }
+
+    public boolean isBudgetExhausted() {
+        return budgetExhausted;
+    }
+
+    static int commonPrefix(CharSequence s1, CharSequence s2) {
+        int minLength = Math.min(s1.length(), s2.length());
+        for (int i = 0; i < minLength; i++) {
+            if (s1.charAt(i) != s2.charAt(i)) {
+                return i;
+            }
+        }
+        return minLength;
+    }
+
+    /**
+     * Common suffix that does not overlap an already matched prefix.
+     */
+    static int commonSuffix(CharSequence s1, CharSequence s2, int prefix) {
+        int maxLength = Math.min(s1.length(), s2.length()) - prefix;
+        for (int i = 1; i <= maxLength; i++) {
+            if (s1.charAt(s1.length() - i) != s2.charAt(s2.length() - i)) {
+                return i - 1;
+            }
+        }
+        return maxLength;
+    }
+}
@@ -0,0 +1,321 @@
+package com.devtoolkit.diff.service;
+
+import java.util.Arrays;
+
+/**
+ * Token stream of a C-family source (Java, JavaScript, C, C#, Go, ...), produced by a single-pass lexer.
+ * Whitespace and comments are dropped from the stream, so layout and comment edits do not show up as
+ * code changes; identifiers, numbers, string/char/template literals and punctuation become tokens, and
+ * every distinct token text gets an int id shared by both sides of a diff. Line statistics are counted
+ * during the same scan: a line with any token is a line of code, a line with only comments a comment line.
+ */
+public final class CodeTokens {
+
+    public static final byte IDENTIFIER = 0;
+    public static final byte NUMBER = 1;
+    public static final byte STRING = 2;
+    public static final byte PUNCTUATION = 3;
+
+    private final String source;
+    private int[] starts;
+    private int[] ends;
+    private int[] lines;
+    private int[] ids;
+    private byte[] kinds;
+    private int size = 0;
+
+    private int linesOfCode = 0;
+    private int commentLines = 0;
+
+    private CodeTokens(String source) {
+        this.source = source;
+        int capacity = Math.max(16, source.length() / 4);
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+        this.lines = new int[capacity];
+        this.kinds = new byte[capacity];
+    }
+
+    /**
+     * Tokenise both sides of a diff against one interner so equal tokens get equal ids across sides.
+     */
+    public static CodeTokens[] tokenize(String code1, String code2) {
+        CodeTokens tokens1 = new CodeTokens(code1);
+        CodeTokens tokens2 = new CodeTokens(code2);
+        tokens1.lex();
+        tokens2.lex();
+
+        Interner interner = new Interner(tokens1.size + tokens2.size);
+        tokens1.ids = interner.index(tokens1);
+        tokens2.ids = interner.index(tokens2);
+        return new CodeTokens[]{tokens1, tokens2};
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The id sequence; callers must not modify it.
+     */
+    public int[] ids() {
+        return ids;
+    }
+
+    public byte kind(int token) {
+        return kinds[token];
+    }
+
+    public int start(int token) {
+        return starts[token];
+    }
+
+    public int end(int token) {
+        return ends[token];
+    }
+
+    /**
+     * Zero-based line the token starts on.
+     */
+    public int line(int token) {
+        return lines[token];
+    }
+
+    public String text(int token) {
+        return source.substring(starts[token], ends[token]);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public int getLinesOfCode() {
+        return linesOfCode;
+    }
+
+    public int getCommentLines() {
+        return commentLines;
+    }
+
+    private void lex() {
+        String text = source;
+        int length = text.length();
+        int line = 0;
+        boolean lineHasCode = false;
+        boolean lineHasComment = false;
+
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+
+            if (c == '\n') {
+                countLine(lineHasCode, lineHasComment);
+                lineHasCode = false;
+                lineHasComment = false;
+                line++;
+                i++;
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            char next = i + 1 < length ? text.charAt(i + 1) : '\0';
+            if (c == '/' && next == '/') {
+                lineHasComment = true;
+                while (i < length && text.charAt(i) != '\n') {
+                    i++;
+                }
+                continue;
+            }
+            if (c == '/' && next == '*') {
+                // Every line the block comment touches counts as a comment line unless it also has code
+                lineHasComment = true;
+                i += 2;
+                while (i < length && !(text.charAt(i) == '*' && i + 1 < length && text.charAt(i + 1) == '/')) {
+                    if (text.charAt(i) == '\n') {
+                        countLine(lineHasCode, true);
+                        lineHasCode = false;
+                        line++;
+                    }
+                    i++;
+                }
+                i = Math.min(length, i + 2);
+                continue;
+            }
+
+            int start = i;
+            int startLine = line;
+            byte kind;
+            if (c == '"' || c == '\'' || c == '`') {
+                kind = STRING;
+                boolean textBlock = c == '"' && text.startsWith("\"\"\"", i);
+                i = textBlock ? i + 3 : i + 1;
+                // Plain quotes end at the line break when unterminated, text blocks and templates span lines
+                boolean multiLine = textBlock || c == '`';
+                while (i < length) {
+                    char s = text.charAt(i);
+                    if (s == '\\') {
+                        if (i + 1 < length && text.charAt(i + 1) == '\n') {
+                            countLine(true, lineHasComment);
+                            lineHasComment = false;
+                            line++;
+                        }
+                        i += 2;
+                        continue;
+                    }
+                    if (s == '\n') {
+                        if (!multiLine) {
+                            break;
+                        }
+                        countLine(true, lineHasComment);
+                        lineHasComment = false;
+                        line++;
+                    }
+                    if (textBlock ? text.startsWith("\"\"\"", i) : s == c) {
+                        i += textBlock ? 3 : 1;
+                        break;
+                    }
+                    i++;
+                }
+                i = Math.min(i, length);
+            } else if (Character.isJavaIdentifierStart(c)) {
+                kind = IDENTIFIER;
+                i++;
+                while (i < length && Character.isJavaIdentifierPart(text.charAt(i))) {
+                    i++;
+                }
+            } else if (isDigit(c) || (c == '.' && isDigit(next))) {
+                kind = NUMBER;
+                boolean hex = c == '0' && (next == 'x' || next == 'X');
+                i++;
+                while (i < length) {
+                    char d = text.charAt(i);
+                    if ((d == '+' || d == '-') && isExponent(text.charAt(i - 1), hex)) {
+                        i++;
+                    } else if (Character.isLetterOrDigit(d) || d == '.' || d == '_') {
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+            } else {
+                kind = PUNCTUATION;
+                i++;
+            }
+
+            add(kind, start, i, startLine);
+            lineHasCode = true;
+        }
+
+        if (lineHasCode || lineHasComment) {
+            countLine(lineHasCode, lineHasComment);
+        }
+    }
+
+    private void countLine(boolean hasCode, boolean hasComment) {
+        if (hasCode) {
+            linesOfCode++;
+        } else if (hasComment) {
+            commentLines++;
+        }
+    }
+
+    private void add(byte kind, int start, int end, int line) {
+        if (size == kinds.length) {
+            int grown = size * 2;
+            starts = Arrays.copyOf(starts, grown);
+            ends = Arrays.copyOf(ends, grown);
+            lines = Arrays.copyOf(lines, grown);
+            kinds = Arrays.copyOf(kinds, grown);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        lines[size] = line;
+        kinds[size] = kind;
+        size++;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Exponent marker of a decimal literal, or of a hex literal, where {@code e} is a digit.
+     */
+    private static boolean isExponent(char c, boolean hex) {
+        return hex ? c == 'p' || c == 'P' : c == 'e' || c == 'E';
+    }
+
+    /**
+     * Open-addressing table from token text to id; entries remember one occurrence of each token.
+     */
+    private static final class Interner {
+
+        private final int[] slots;
+        private final int mask;
+        private CodeTokens[] owners;
+        private int[] tokens;
+        private int[] hashes;
+        private int size = 0;
+
+        Interner(int expectedTokens) {
+            int capacity = Integer.highestOneBit(Math.max(4, expectedTokens * 2 - 1)) << 1;
+            this.slots = new int[capacity];
+            this.mask = capacity - 1;
+            int initial = Math.max(16, Math.min(expectedTokens, 1024));
+            this.owners = new CodeTokens[initial];
+            this.tokens = new int[initial];
+            this.hashes = new int[initial];
+        }
+
+        int[] index(CodeTokens code) {
+            int[] ids = new int[code.size];
+            for (int t = 0; t < code.size; t++) {
+                ids[t] = intern(code, t);
+            }
+            return ids;
+        }
+
+        private int intern(CodeTokens code, int token) {
+            String text = code.source;
+            int start = code.starts[token];
+            int length = code.ends[token] - start;
+            int hash = 0;
+            for (int i = start; i < start + length; i++) {
+                hash = 31 * hash + text.charAt(i);
+            }
+
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (true) {
+                int entry = slots[slot];
+                if (entry == 0) {
+                    return add(slot, code, token, hash);
+                }
+                int id = entry - 1;
+                CodeTokens owner = owners[id];
+                int other = tokens[id];
+                if (hashes[id] == hash && owner.ends[other] - owner.starts[other] == length
+                        && text.regionMatches(start, owner.source, owner.starts[other], length)) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private int add(int slot, CodeTokens code, int token, int hash) {
+            if (size == owners.length) {
+                int grown = size * 2;
+                owners = Arrays.copyOf(owners, grown);
+                tokens = Arrays.copyOf(tokens, grown);
+                hashes = Arrays.copyOf(hashes, grown);
+            }
+            owners[size] = code;
+            tokens[size] = token;
+            hashes[size] = hash;
+            slots[slot] = size + 1;
+            return size++;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.devtoolkit.diff.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 record reader for CSV and TSV. Fields may be quoted, with doubled quotes for a
+ * literal quote and line breaks allowed inside quotes; CRLF and LF both end a record, empty lines are
+ * skipped and a leading byte order mark is dropped. Only the current record is held in memory.
+ */
+public final class CsvReader implements Closeable {
+
+    private final Reader reader;
+    private final char delimiter;
+    private final char[] buffer = new char[64 * 1024];
+    private int position = 0;
+    private int limit = 0;
+
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+    private long line = 1;
+    private long recordLine = 0;
+    private boolean started = false;
+
+    public CsvReader(Reader reader, char delimiter) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * Delimiter of a delimited text guessed from its first line: tab when it has more tabs than commas or
+     * semicolons, otherwise whichever of comma and semicolon occurs more often.
+     */
+    public static char detectDelimiter(CharSequence firstLine) {
+        int tabs = 0;
+        int commas = 0;
+        int semicolons = 0;
+        for (int i = 0; i < firstLine.length(); i++) {
+            char c = firstLine.charAt(i);
+            if (c == '\t') {
+                tabs++;
+            } else if (c == ',') {
+                commas++;
+            } else if (c == ';') {
+                semicolons++;
+            }
+        }
+        if (tabs > commas && tabs > semicolons) {
+            return '\t';
+        }
+        return semicolons > commas ? ';' : ',';
+    }
+
+    /**
+     * The next record, or null at the end of the input.
+     */
+    public String[] next() throws IOException {
+        if (!started) {
+            started = true;
+            if (fill() && buffer[position] == '\uFEFF') {
+                position++;
+            }
+        }
+
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                return null;
+            }
+            if (c == '\r' || c == '\n') {
+                // Blank line, no record
+                consumeLineEnd(c);
+                continue;
+            }
+            position--;
+            break;
+        }
+
+        recordLine = line;
+        fields.clear();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean afterQuote = false;
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                fields.add(field.toString());
+                break;
+            }
+            if (quoted) {
+                if (c == '"') {
+                    if (peek() == '"') {
+                        position++;
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        afterQuote = true;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+                continue;
+            }
+            if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+                afterQuote = false;
+            } else if (c == '\r' || c == '\n') {
+                consumeLineEnd(c);
+                fields.add(field.toString());
+                break;
+            } else if (c == '"' && field.length() == 0 && !afterQuote) {
+                quoted = true;
+            } else {
+                // Text after a closing quote, or a stray quote inside a bare field, is kept as it is
+                field.append((char) c);
+            }
+        }
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * One-based line on which the last record returned by {@link #next()} started.
+     */
+    public long getRecordLine() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void consumeLineEnd(int c) throws IOException {
+        if (c == '\r' && peek() == '\n') {
+            position++;
+        }
+        line++;
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        int read = reader.read(buffer, 0, buffer.length);
+        while (read == 0) {
+            read = reader.read(buffer, 0, buffer.length);
+        }
+        if (read < 0) {
+            position = limit = 0;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,166 @@
+package com.devtoolkit.diff.service;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Time and memory allowance of one diff request, and the level of detail it can still afford.
+ * The level is picked up front from a rough working-set estimate of the input size and lowered while
+ * the diff runs: aligners call {@link #checkpoint()} and give up with {@link Exceeded} once the deadline
+ * has passed, and the caller then falls back to the next cheaper strategy. Checkpoints also honour thread
+ * interruption, so a cancelled request stops instead of running to completion.
+ */
+public final class DiffBudget {
+
+    public enum Level {
+        /** Line alignment plus character-level highlights and similarity. */
+        FULL(24),
+        /** Line alignment only; modified rows are not refined and details come from prefix/suffix. */
+        LINES_ONLY(12),
+        /** No alignment: common leading and trailing lines, everything between is one change. */
+        PREFIX_SUFFIX(4);
+
+        private final int bytesPerChar;
+
+        Level(int bytesPerChar) {
+            this.bytesPerChar = bytesPerChar;
+        }
+
+        /**
+         * Rough working memory in bytes per input character at this level.
+         */
+        public int getBytesPerChar() {
+            return bytesPerChar;
+        }
+    }
+
+    /** Never expires; used by callers that bound their work by other means. */
+    public static final DiffBudget UNLIMITED = new DiffBudget(0, Level.FULL, false);
+
+    /** Checkpoints between clock reads. */
+    private static final int CHECK_INTERVAL = 256;
+
+    private final long deadline;
+    private final boolean limited;
+    private final boolean memoryLimited;
+    private final DiffBudget parent;
+    private volatile Level level;
+    private volatile boolean deadlineExceeded = false;
+    private int countdown = CHECK_INTERVAL;
+
+    private DiffBudget(long deadline, Level level, boolean limited) {
+        this(deadline, level, limited, level != Level.FULL, null);
+    }
+
+    private DiffBudget(long deadline, Level level, boolean limited, boolean memoryLimited, DiffBudget parent) {
+        this.deadline = deadline;
+        this.level = level;
+        this.limited = limited;
+        this.memoryLimited = memoryLimited;
+        this.parent = parent;
+    }
+
+    /**
+     * Start a budget for {@code inputChars} characters of input: the deadline is {@code timeoutMillis} from
+     * now ({@code <= 0} for none) and the first level whose estimate fits {@code maxBytes} is used.
+     */
+    public static DiffBudget start(long timeoutMillis, long maxBytes, long inputChars) {
+        Level level = Level.PREFIX_SUFFIX;
+        for (Level candidate : Level.values()) {
+            if (inputChars * candidate.getBytesPerChar() <= maxBytes) {
+                level = candidate;
+                break;
+            }
+        }
+        if (timeoutMillis <= 0) {
+            return new DiffBudget(0, level, false);
+        }
+        return new DiffBudget(System.nanoTime() + timeoutMillis * 1_000_000L, level, true);
+    }
+
+    /**
+     * Called from aligner loops; throws {@link Exceeded} once the deadline has passed. Not thread-safe,
+     * one thread aligns at a time.
+     */
+    public void checkpoint() {
+        if (--countdown > 0) {
+            return;
+        }
+        countdown = CHECK_INTERVAL;
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Diff was cancelled");
+        }
+        if (isExpired()) {
+            noteDeadlineExceeded();
+            throw Exceeded.INSTANCE;
+        }
+    }
+
+    /**
+     * Budget with the same deadline for aligning on another thread. It counts its own checkpoints; an
+     * exceeded deadline and any degradation are recorded on this budget as well.
+     */
+    public DiffBudget fork() {
+        return new DiffBudget(deadline, level, limited, memoryLimited, this);
+    }
+
+    public boolean isExpired() {
+        return limited && System.nanoTime() - deadline > 0;
+    }
+
+    /**
+     * Lower the level to {@code lowest} unless it is already at or below it.
+     */
+    public synchronized void degrade(Level lowest) {
+        if (lowest.compareTo(level) > 0) {
+            level = lowest;
+        }
+        if (parent != null) {
+            parent.degrade(lowest);
+        }
+    }
+
+    /**
+     * Lower the level after the deadline passed between checkpoints.
+     */
+    public void degradeOnDeadline(Level lowest) {
+        noteDeadlineExceeded();
+        degrade(lowest);
+    }
+
+    /**
+     * Record that part of the result was estimated because the deadline had passed.
+     */
+    public void noteDeadlineExceeded() {
+        deadlineExceeded = true;
+        if (parent != null) {
+            parent.noteDeadlineExceeded();
+        }
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public boolean isDeadlineExceeded() {
+        return deadlineExceeded;
+    }
+
+    /**
+     * Whether the starting level was already lowered because of the input size.
+     */
+    public boolean isMemoryLimited() {
+        return memoryLimited;
+    }
+
+    /**
+     * Thrown by {@link #checkpoint()} when the deadline has passed; carries no stack trace.
+     */
+    public static final class Exceeded extends RuntimeException {
+
+        private static final Exceeded INSTANCE = new Exceeded();
+
+        private Exceeded() {
+            super("Diff deadline exceeded", null, false, false);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.devtoolkit.diff.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often enhanced diffs finish at each budget level and why they were degraded.
+ */
+@Component
+public class DiffBudgetMetrics {
+    
+    private final Map<DiffBudget.Level, LongAdder> levels = new EnumMap<>(DiffBudget.Level.class);
+    private final LongAdder deadlineExceeded = new LongAdder();
+    private final LongAdder memoryLimited = new LongAdder();
+    private final LongAdder approximate = new LongAdder();
+    
+    public DiffBudgetMetrics() {
+        for (DiffBudget.Level level : DiffBudget.Level.values()) {
+            levels.put(level, new LongAdder());
+        }
+    }
+    
+    public void record(DiffBudget budget, boolean approximateResult) {
+        levels.get(budget.getLevel()).increment();
+        if (budget.isDeadlineExceeded()) {
+            deadlineExceeded.increment();
+        }
+        if (budget.isMemoryLimited()) {
+            memoryLimited.increment();
+        }
+        if (approximateResult) {
+            approximate.increment();
+        }
+    }
+    
+    public Map<String, Object> stats() {
+        Map<String, Object> counts = new LinkedHashMap<>();
+        for (Map.Entry<DiffBudget.Level, LongAdder> entry : levels.entrySet()) {
+            counts.put(entry.getKey().name(), entry.getValue().sum());
+        }
+        
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("levels", counts);
+        stats.put("deadlineExceeded", deadlineExceeded.sum());
+        stats.put("memoryLimited", memoryLimited.sum());
+        stats.put("approximate", approximate.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,11 @@
+package com.devtoolkit.diff.service;
+
+/**
+ * Read access to the lines of one side of a diff, enough to render hunks.
+ */
+public interface DiffLines {
+
+    int size();
+
+    StringBuilder appendLine(StringBuilder target, int line);
+}
@@ -0,0 +1,63 @@
+package com.devtoolkit.diff.service;
+
+import com.devtoolkit.common.cache.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Enhanced diff results keyed by the digest of both inputs and every option that shapes the result.
+ * Bounded by an estimate of each result's size; results are shared between requests and must not be
+ * modified by callers.
+ */
+@Component
+public class DiffResultCache {
+    
+    private final BoundedCache<String, Map<String, Object>> results;
+    
+    public DiffResultCache(@Value("${diff.cache.max-bytes:134217728}") long maxBytes,
+                           @Value("${diff.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.results = new BoundedCache<>(maxBytes, ttlSeconds * 1000, DiffResultCache::estimateSize);
+    }
+    
+    public Map<String, Object> get(String digest) {
+        return results.get(digest);
+    }
+    
+    public void put(String digest, Map<String, Object> result) {
+        results.put(digest, result);
+    }
+    
+    public Map<String, Object> stats() {
+        return results.stats();
+    }
+    
+    /**
+     * Approximate heap size of a result tree, dominated by its strings and side-by-side rows
+     */
+    static long estimateSize(Object value) {
+        if (value instanceof CharSequence text) {
+            return 40 + 2L * text.length();
+        }
+        if (value instanceof SideBySideDiff sideBySide) {
+            return sideBySide.estimatedSize();
+        }
+        if (value instanceof Map<?, ?> map) {
+            long size = 64;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += 32 + estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+            }
+            return size;
+        }
+        if (value instanceof Collection<?> collection) {
+            long size = 40;
+            for (Object element : collection) {
+                size += 8 + estimateSize(element);
+            }
+            return size;
+        }
+        return 16;
+    }
+}
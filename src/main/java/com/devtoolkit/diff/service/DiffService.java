@@ -1,9 +1,29 @@
 package com.devtoolkit.diff.service;
 
 import com.devtoolkit.diff.dto.DiffRequest;
+import com.devtoolkit.diff.dto.DiffSessionEditRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.Map;
 
 public interface DiffService {
     Map<String, Object> compareText(String text1, String text2);
     Map<String, Object> generateEnhancedDiff(DiffRequest request);
+    Map<String, Object> generateEnhancedDiff(DiffRequest request, String resultDigest);
+    String getResultDigest(DiffRequest request);
+    Map<String, Object> getCacheStatistics();
+    Map<String, Object> getBudgetStatistics();
+    Map<String, Object> getSideBySideRows(String handle, int fromRow, int toRow);
+    Map<String, Object> compareXmlFiles(Path file1, Path file2) throws IOException;
+    Map<String, Object> openDiffSession(DiffRequest request);
+    Map<String, Object> editDiffSession(String sessionId, DiffSessionEditRequest request);
+    boolean closeDiffSession(String sessionId);
+    Map<String, Object> compareArchives(Path file1, Path file2, DiffRequest options, boolean includeUnchanged) throws IOException;
+    Map<String, Object> getArchiveEntryDiff(String handle, String path) throws IOException;
+    boolean closeArchiveDiff(String handle);
+    Map<String, Object> compareTableFiles(Path file1, Path file2, DiffRequest options);
+    Map<String, Object> compareBinaryFiles(Path file1, Path file2) throws IOException;
+    int streamUnifiedDiff(Path file1, Path file2, DiffRequest options, OutputStream out) throws IOException;
 } 
\ No newline at end of file
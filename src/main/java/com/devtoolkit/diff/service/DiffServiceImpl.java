@@ -1,19 +1,116 @@
 package com.devtoolkit.diff.service;
 
+import com.devtoolkit.common.cache.ContentDigest;
+import com.devtoolkit.common.codec.CodecRegistry;
 import com.devtoolkit.diff.dto.DiffRequest;
+import com.devtoolkit.diff.dto.DiffSessionEdit;
+import com.devtoolkit.diff.dto.DiffSessionEditRequest;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.commons.text.similarity.LevenshteinDistance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.regex.Pattern;
+import java.util.zip.ZipException;
 
 @Service
 public class DiffServiceImpl implements DiffService {
     
-    private final ObjectMapper objectMapper = new ObjectMapper();
-    private final LevenshteinDistance levenshteinDistance = new LevenshteinDistance();
+    private static final DiffLines EMPTY_LINES = new DiffLines() {
+        @Override
+        public int size() {
+            return 0;
+        }
+        
+        @Override
+        public StringBuilder appendLine(StringBuilder target, int line) {
+            throw new IndexOutOfBoundsException("No lines");
+        }
+    };
+    
+    @Autowired
+    private CodecRegistry codecs;
+    
+    @Value("${diff.highlight.max-cells:50000000}")
+    private long highlightCellBudget;
+    
+    @Value("${diff.refinement.sequential-threshold:64}")
+    private int refinementSequentialThreshold;
+    
+    @Autowired
+    @Qualifier("diffRefinementPool")
+    private ForkJoinPool refinementPool;
+    
+    @Autowired
+    private SideBySideStore sideBySideStore;
+    
+    @Autowired
+    private DiffResultCache resultCache;
+    
+    @Value("${diff.window.max-rows:1000}")
+    private int windowMaxRows;
+    
+    @Value("${diff.xml.max-changes:10000}")
+    private int xmlMaxChanges;
+    
+    @Value("${diff.stream.window-lines:10000}")
+    private int streamWindowLines;
+    
+    @Value("${diff.stream.max-hunk-lines:5000}")
+    private int streamMaxHunkLines;
+    
+    @Autowired
+    private DiffSessionStore diffSessionStore;
+    
+    @Value("${diff.session.realign-margin:32}")
+    private int sessionRealignMargin;
+    
+    @Autowired
+    private DiffBudgetMetrics budgetMetrics;
+    
+    @Value("${diff.budget.timeout-ms:5000}")
+    private long budgetTimeoutMillis;
+    
+    @Value("${diff.budget.max-bytes:536870912}")
+    private long budgetMaxBytes;
+    
+    @Autowired
+    private ArchiveDiffStore archiveDiffStore;
+    
+    @Value("${diff.archive.max-entry-bytes:8388608}")
+    private int archiveMaxEntryBytes;
+    
+    @Value("${diff.table.max-changes:10000}")
+    private int tableMaxChanges;
+    
+    @Value("${diff.table.max-memory-bytes:268435456}")
+    private long tableMaxMemoryBytes;
+    
+    @Value("${diff.table.spill-enabled:false}")
+    private boolean tableSpillEnabled;
+    
+    @Value("${diff.binary.average-chunk:8192}")
+    private int binaryAverageChunk;
+    
+    @Value("${diff.binary.max-changes:1000}")
+    private int binaryMaxChanges;
+    
+    @Value("${diff.binary.max-hex-bytes:256}")
+    private int binaryMaxHexBytes;
     
     @Override
     public Map<String, Object> compareText(String text1, String text2) {
@@ -38,10 +135,74 @@ public class DiffServiceImpl implements DiffService {
     
     @Override
     public Map<String, Object> generateEnhancedDiff(DiffRequest request) {
+        return generateEnhancedDiff(request, getResultDigest(request));
+    }
+    
+    @Override
+    public Map<String, Object> generateEnhancedDiff(DiffRequest request, String resultDigest) {
+        // Windowed results point at rows in the side-by-side store, which has its own lifetime
+        if (request.isWindowedSideBySide()) {
+            return computeEnhancedDiff(request, startBudget(request));
+        }
+        
+        Map<String, Object> result = resultCache.get(resultDigest);
+        if (result == null) {
+            DiffBudget budget = startBudget(request);
+            result = Collections.unmodifiableMap(computeEnhancedDiff(request, budget));
+            // A result cut short by the clock may come out complete next time, so it is not kept
+            if (!budget.isDeadlineExceeded()) {
+                resultCache.put(resultDigest, result);
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public String getResultDigest(DiffRequest request) {
+        return ContentDigest.of(request.getText1(), request.getText2(), describeResultOptions(request));
+    }
+    
+    @Override
+    public Map<String, Object> getCacheStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("results", resultCache.stats());
+        stats.put("sideBySide", sideBySideStore.stats());
+        stats.put("sessions", diffSessionStore.stats());
+        stats.put("archives", archiveDiffStore.stats());
+        return stats;
+    }
+    
+    @Override
+    public Map<String, Object> getBudgetStatistics() {
+        return budgetMetrics.stats();
+    }
+    
+    private DiffBudget startBudget(DiffRequest request) {
+        long inputChars = (request.getText1() != null ? request.getText1().length() : 0L) 
+            + (request.getText2() != null ? request.getText2().length() : 0L);
+        return DiffBudget.start(budgetTimeoutMillis, budgetMaxBytes, inputChars);
+    }
+    
+    private Map<String, Object> computeEnhancedDiff(DiffRequest request, DiffBudget budget) {
         Map<String, Object> result = new HashMap<>();
         
-        String text1 = preprocessText(request.getText1(), request);
-        String text2 = preprocessText(request.getText2(), request);
+        if (request.getDiffType() == DiffRequest.DiffType.TABLE) {
+            // Rows are parsed from the raw text; the normalising options apply to keys and cells, not delimiters
+            result.put("length1", request.getText1() != null ? request.getText1().length() : 0);
+            result.put("length2", request.getText2() != null ? request.getText2().length() : 0);
+            result.putAll(generateTableDiff(TableDiff.Source.of(request.getText1()), 
+                                            TableDiff.Source.of(request.getText2()), request, budget));
+            recordBudget(result, budget);
+            return result;
+        }
+        
+        // One normalising scan per side; offsets back to the input are only needed for the text view
+        TextNormalizer normalizer = TextNormalizer.forRequest(request);
+        boolean trackOffsets = request.getDiffType() == DiffRequest.DiffType.TEXT;
+        NormalizedText normalized1 = normalizer.normalize(request.getText1(), trackOffsets);
+        NormalizedText normalized2 = normalizer.normalize(request.getText2(), trackOffsets);
+        String text1 = normalized1.getText();
+        String text2 = normalized2.getText();
         
         // Basic comparison
         result.put("identical", text1.equals(text2));
@@ -54,151 +215,757 @@ public class DiffServiceImpl implements DiffService {
             result.put("unifiedDiff", "");
             result.put("sideBySide", new HashMap<>());
             result.put("statistics", createEmptyStatistics());
+            recordBudget(result, budget);
             return result;
         }
         
         // Generate different types of diffs based on request
         switch (request.getDiffType()) {
             case JSON:
-                result.putAll(generateJsonDiff(text1, text2));
+                result.putAll(generateJsonDiff(text1, text2, request, budget));
                 break;
             case XML:
-                result.putAll(generateXmlDiff(text1, text2));
+                result.putAll(generateXmlDiff(text1, text2, request, budget));
                 break;
             case CODE:
-                result.putAll(generateCodeDiff(text1, text2, request));
+                result.putAll(generateCodeDiff(text1, text2, request, budget));
                 break;
             default:
-                result.putAll(generateTextDiff(text1, text2, request));
+                result.putAll(generateTextDiff(normalized1, normalized2, request, budget));
+        }
+        
+        recordBudget(result, budget);
+        return result;
+    }
+    
+    /**
+     * Mark how much of the diff the budget allowed and count it
+     */
+    private void recordBudget(Map<String, Object> result, DiffBudget budget) {
+        boolean approximate = budget.getLevel() != DiffBudget.Level.FULL 
+            || Boolean.TRUE.equals(result.get("approximateHighlights"));
+        result.put("approximate", approximate);
+        result.put("degradationLevel", budget.getLevel().name());
+        result.put("deadlineExceeded", budget.isDeadlineExceeded());
+        budgetMetrics.record(budget, approximate);
+    }
+    
+    @Override
+    public Map<String, Object> compareXmlFiles(Path file1, Path file2) throws IOException {
+        Map<String, Object> result = new HashMap<>();
+        result.put("type", "xml");
+        
+        // Deadline only: the index is streamed, so file size does not lower the starting level
+        DiffBudget budget = DiffBudget.start(budgetTimeoutMillis, Long.MAX_VALUE, 0);
+        try {
+            XmlStructuralDiff structuralDiff = new XmlStructuralDiff(xmlMaxChanges, budget);
+            boolean identical = structuralDiff.compare(file1, file2);
+            result.put("identical", identical);
+            result.put("structuralChanges", structuralDiff.getChanges());
+            result.put("truncated", structuralDiff.isTruncated());
+            recordBudget(result, budget);
+        } catch (XMLStreamException e) {
+            throw new IllegalArgumentException("Invalid XML format: " + e.getMessage(), e);
+        }
+        
+        return result;
+    }
+    
+    @Override
+    public Map<String, Object> compareTableFiles(Path file1, Path file2, DiffRequest options) {
+        // The join is linear and spills to disk, so large files run to completion
+        return generateTableDiff(TableDiff.Source.of(file1), TableDiff.Source.of(file2), options, DiffBudget.UNLIMITED);
+    }
+    
+    @Override
+    public Map<String, Object> compareBinaryFiles(Path file1, Path file2) throws IOException {
+        long start = System.nanoTime();
+        BinaryDiff binaryDiff = new BinaryDiff(binaryAverageChunk, binaryMaxChanges, binaryMaxHexBytes);
+        boolean identical = binaryDiff.compare(file1, file2);
+        long elapsedNanos = System.nanoTime() - start;
+        
+        Map<String, Object> statistics = binaryDiff.getStatistics();
+        long scanned = ((Number) statistics.get("size1")).longValue() + ((Number) statistics.get("size2")).longValue();
+        statistics.put("elapsedMillis", elapsedNanos / 1_000_000);
+        statistics.put("throughputMBps", elapsedNanos > 0 ? Math.round(scanned * 1000.0 / elapsedNanos) : 0);
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("type", "binary");
+        result.put("identical", identical);
+        result.put("blocks", binaryDiff.getBlocks());
+        result.put("changes", binaryDiff.getChanges());
+        result.put("truncated", binaryDiff.isTruncated());
+        result.put("statistics", statistics);
+        return result;
+    }
+    
+    @Override
+    public int streamUnifiedDiff(Path file1, Path file2, DiffRequest options, OutputStream out) throws IOException {
+        MappedLines left = MappedLines.open(file1, options.isIgnoreLineEndings());
+        MappedLines right = MappedLines.open(file2, options.isIgnoreLineEndings());
+        
+        return new StreamingUnifiedDiff(left, right, out, streamWindowLines, 
+                options.getContextLines(), streamMaxHunkLines).run();
+    }
+    
+    @Override
+    public Map<String, Object> compareArchives(Path file1, Path file2, DiffRequest options, 
+                                               boolean includeUnchanged) throws IOException {
+        ArchiveDiff archiveDiff;
+        try {
+            archiveDiff = new ArchiveDiff(UUID.randomUUID().toString(), file1, file2, options.getContextLines());
+        } catch (ZipException e) {
+            throw new IllegalArgumentException("Invalid archive: " + e.getMessage(), e);
+        }
+        archiveDiffStore.checkSize(archiveDiff);
+        
+        // Only entries whose name, size or CRC differ are inflated, each on its own pool task
+        List<ArchiveDiff.Entry> changed = archiveDiff.changedEntries();
+        try {
+            refinementPool.invoke(new ArchiveEntryTask(archiveDiff, changed, options, 0, changed.size()));
+        } catch (RuntimeException e) {
+            archiveDiff.close();
+            throw e;
+        }
+        archiveDiffStore.put(archiveDiff);
+        
+        Map<String, Object> result = new HashMap<>();
+        Map<String, Integer> summary = new LinkedHashMap<>();
+        for (ArchiveDiff.Status status : ArchiveDiff.Status.values()) {
+            summary.put(status.name().toLowerCase(), 0);
+        }
+        for (ArchiveDiff.Entry entry : archiveDiff.getEntries()) {
+            summary.merge(entry.getStatus().name().toLowerCase(), 1, Integer::sum);
+        }
+        result.put("type", "archive");
+        result.put("handle", archiveDiff.getHandle());
+        result.put("identical", changed.isEmpty());
+        result.put("summary", summary);
+        result.put("tree", createArchiveTree(archiveDiff, includeUnchanged));
+        return result;
+    }
+    
+    @Override
+    public Map<String, Object> getArchiveEntryDiff(String handle, String path) throws IOException {
+        ArchiveDiff archiveDiff = archiveDiffStore.get(handle);
+        ArchiveDiff.Entry entry = archiveDiff.getEntry(path);
+        if (entry == null) {
+            throw new IllegalArgumentException("No entry " + path + " in archive diff " + handle);
+        }
+        
+        Map<String, Object> result = describeArchiveEntry(entry);
+        result.put("handle", handle);
+        if (entry.getEdits() == null) {
+            result.put("unifiedDiff", "");
+            return result;
         }
         
+        // Hunks are rendered on request from the stored alignment and the re-read entry text; the store may
+        // evict the diff meanwhile, so the archives are held open until both sides are read
+        if (!archiveDiff.retain()) {
+            throw new IllegalArgumentException("Unknown or expired archive diff: " + handle);
+        }
+        DiffLines lines1 = EMPTY_LINES;
+        DiffLines lines2 = EMPTY_LINES;
+        try {
+            if (entry.getStatus() != ArchiveDiff.Status.ADDED) {
+                lines1 = LineTable.build(decodeArchiveText(archiveDiff.read(entry, true, archiveMaxEntryBytes)), "")[0];
+            }
+            if (entry.getStatus() != ArchiveDiff.Status.REMOVED) {
+                lines2 = LineTable.build(decodeArchiveText(archiveDiff.read(entry, false, archiveMaxEntryBytes)), "")[0];
+            }
+        } finally {
+            archiveDiff.release();
+        }
+        result.put("unifiedDiff", generateContextAwareUnifiedDiff(lines1, lines2, entry.getEdits(), 
+                                                                  archiveDiff.getContextLines()));
         return result;
     }
     
+    @Override
+    public boolean closeArchiveDiff(String handle) {
+        return archiveDiffStore.remove(handle);
+    }
+    
+    /**
+     * Inflate and align one changed entry; binary and oversized entries are only flagged
+     */
+    private void diffArchiveEntry(ArchiveDiff archiveDiff, ArchiveDiff.Entry entry, DiffRequest options) {
+        try {
+            boolean hasLeft = entry.getStatus() != ArchiveDiff.Status.ADDED;
+            boolean hasRight = entry.getStatus() != ArchiveDiff.Status.REMOVED;
+            byte[] content1 = hasLeft ? readArchiveEntry(archiveDiff, entry, true) : null;
+            byte[] content2 = hasRight ? readArchiveEntry(archiveDiff, entry, false) : null;
+            if ((hasLeft && content1 == null) || (hasRight && content2 == null)) {
+                entry.setBinary(false, true);
+                return;
+            }
+            
+            String text1 = hasLeft ? decodeArchiveText(content1) : "";
+            String text2 = hasRight ? decodeArchiveText(content2) : "";
+            if (text1 == null || text2 == null) {
+                entry.setBinary(true, false);
+                return;
+            }
+            
+            List<Edit> edits;
+            DiffBudget budget = DiffBudget.start(budgetTimeoutMillis, budgetMaxBytes, 
+                                                 (long) text1.length() + text2.length());
+            if (!hasLeft) {
+                edits = List.of(new Edit(0, 0, 0, LineTable.build(text2, "")[0].size()));
+            } else if (!hasRight) {
+                edits = List.of(new Edit(0, LineTable.build(text1, "")[0].size(), 0, 0));
+            } else {
+                LineTable[] tables = LineTable.build(text1, text2);
+                edits = alignLines(tables[0], tables[1], options.getAlgorithm(), budget);
+            }
+            entry.setAlignment(edits, groupEdits(edits, options.getContextLines()).size(), 
+                               budget.getLevel() != DiffBudget.Level.FULL);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archive entry " + entry.getName(), e);
+        }
+    }
+    
+    /**
+     * Inflate one side of an entry as a managed block, so the CPU-sized refinement pool adds a thread
+     * while this one waits on the disk
+     */
+    private byte[] readArchiveEntry(ArchiveDiff archiveDiff, ArchiveDiff.Entry entry, boolean left) 
+            throws IOException {
+        ArchiveEntryRead read = new ArchiveEntryRead(archiveDiff, entry, left, archiveMaxEntryBytes);
+        try {
+            ForkJoinPool.managedBlock(read);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Archive diff was cancelled");
+        }
+        if (read.failure != null) {
+            throw read.failure;
+        }
+        return read.content;
+    }
+    
+    /**
+     * Strict UTF-8 decoding; null for content that looks binary (NUL bytes or invalid UTF-8)
+     */
+    private String decodeArchiveText(byte[] content) {
+        for (byte b : content) {
+            if (b == 0) {
+                return null;
+            }
+        }
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(ByteBuffer.wrap(content))
+                .toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Directory tree of the archive entries; directories are modified when anything below them is
+     */
+    private Map<String, Object> createArchiveTree(ArchiveDiff archiveDiff, boolean includeUnchanged) {
+        Map<String, Map<String, Object>> directories = new HashMap<>();
+        Map<String, Object> root = createDirectoryNode("", "");
+        directories.put("", root);
+        
+        for (ArchiveDiff.Entry entry : archiveDiff.getEntries()) {
+            boolean changed = entry.getStatus() != ArchiveDiff.Status.UNCHANGED;
+            if (!changed && !includeUnchanged) {
+                continue;
+            }
+            
+            Map<String, Object> parent = root;
+            int slash = entry.getName().indexOf('/');
+            while (slash >= 0) {
+                String directoryPath = entry.getName().substring(0, slash + 1);
+                Map<String, Object> directory = directories.get(directoryPath);
+                if (directory == null) {
+                    int nameStart = directoryPath.lastIndexOf('/', directoryPath.length() - 2) + 1;
+                    directory = createDirectoryNode(directoryPath.substring(nameStart, directoryPath.length() - 1), 
+                                                    directoryPath);
+                    directories.put(directoryPath, directory);
+                    childrenOf(parent).add(directory);
+                }
+                if (changed) {
+                    directory.put("status", ArchiveDiff.Status.MODIFIED.name());
+                }
+                parent = directory;
+                slash = entry.getName().indexOf('/', slash + 1);
+            }
+            
+            Map<String, Object> file = new LinkedHashMap<>();
+            file.put("name", entry.getName().substring(entry.getName().lastIndexOf('/') + 1));
+            file.put("type", "file");
+            file.putAll(describeArchiveEntry(entry));
+            childrenOf(parent).add(file);
+            if (changed) {
+                root.put("status", ArchiveDiff.Status.MODIFIED.name());
+            }
+        }
+        
+        return root;
+    }
+    
+    private Map<String, Object> createDirectoryNode(String name, String path) {
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("name", name);
+        node.put("path", path);
+        node.put("type", "directory");
+        node.put("status", ArchiveDiff.Status.UNCHANGED.name());
+        node.put("children", new ArrayList<Map<String, Object>>());
+        return node;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> childrenOf(Map<String, Object> directory) {
+        return (List<Map<String, Object>>) directory.get("children");
+    }
+    
+    private Map<String, Object> describeArchiveEntry(ArchiveDiff.Entry entry) {
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("path", entry.getName());
+        node.put("status", entry.getStatus().name());
+        node.put("size1", entry.getSize1());
+        node.put("size2", entry.getSize2());
+        if (entry.getStatus() != ArchiveDiff.Status.UNCHANGED) {
+            node.put("binary", entry.isBinary());
+            node.put("tooLarge", entry.isTooLarge());
+            node.put("linesAdded", entry.getLinesAdded());
+            node.put("linesDeleted", entry.getLinesDeleted());
+            node.put("hunks", entry.getHunks());
+            node.put("approximate", entry.isApproximate());
+        }
+        return node;
+    }
+    
     /**
-     * Preprocess text based on diff options
+     * Blocking read of one archive entry side, run through {@link ForkJoinPool#managedBlock}
      */
-    private String preprocessText(String text, DiffRequest request) {
-        if (text == null) return "";
+    private static final class ArchiveEntryRead implements ForkJoinPool.ManagedBlocker {
+        private final ArchiveDiff archiveDiff;
+        private final ArchiveDiff.Entry entry;
+        private final boolean left;
+        private final int maxBytes;
+        private boolean done = false;
+        private byte[] content;
+        private IOException failure;
         
-        String processed = text;
+        ArchiveEntryRead(ArchiveDiff archiveDiff, ArchiveDiff.Entry entry, boolean left, int maxBytes) {
+            this.archiveDiff = archiveDiff;
+            this.entry = entry;
+            this.left = left;
+            this.maxBytes = maxBytes;
+        }
         
-        if (request.isIgnoreLineEndings()) {
-            processed = processed.replaceAll("\\r\\n", "\n").replaceAll("\\r", "\n");
+        @Override
+        public boolean block() {
+            try {
+                content = archiveDiff.read(entry, left, maxBytes);
+            } catch (IOException e) {
+                failure = e;
+            }
+            done = true;
+            return true;
         }
         
-        if (request.isIgnoreWhitespace()) {
-            processed = processed.replaceAll("\\s+", " ").trim();
+        @Override
+        public boolean isReleasable() {
+            return done;
         }
+    }
+    
+    /**
+     * Splits the changed entries of an archive until each task diffs a single entry
+     */
+    private class ArchiveEntryTask extends RecursiveAction {
+        private final ArchiveDiff archiveDiff;
+        private final List<ArchiveDiff.Entry> entries;
+        private final DiffRequest options;
+        private final int from;
+        private final int to;
         
-        if (request.isIgnoreCase()) {
-            processed = processed.toLowerCase();
+        ArchiveEntryTask(ArchiveDiff archiveDiff, List<ArchiveDiff.Entry> entries, DiffRequest options, 
+                         int from, int to) {
+            this.archiveDiff = archiveDiff;
+            this.entries = entries;
+            this.options = options;
+            this.from = from;
+            this.to = to;
         }
         
-        return processed;
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    diffArchiveEntry(archiveDiff, entries.get(from), options);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ArchiveEntryTask(archiveDiff, entries, options, from, middle), 
+                      new ArchiveEntryTask(archiveDiff, entries, options, middle, to));
+        }
     }
     
     /**
-     * Generate advanced text diff using java-diff-utils
+     * Generate advanced text diff driven by a single line alignment
      */
-    private Map<String, Object> generateTextDiff(String text1, String text2, DiffRequest request) {
+    private Map<String, Object> generateTextDiff(NormalizedText normalized1, NormalizedText normalized2, 
+                                                 DiffRequest request, DiffBudget budget) {
         Map<String, Object> result = new HashMap<>();
+        String text1 = normalized1.getText();
+        String text2 = normalized2.getText();
+        
+        // Index both texts once, every view below works on the same line tables and edit script
+        LineTable[] tables = LineTable.build(text1, text2);
+        LineTable lines1 = tables[0];
+        LineTable lines2 = tables[1];
+        List<Edit> edits = alignLines(lines1, lines2, request.getAlgorithm(), budget);
+        BoundedSimilarity similarity = new BoundedSimilarity(highlightCellBudget, budget);
         
-        // Line-by-line diff using java-diff-utils
-        List<String> lines1 = Arrays.asList(text1.split("\n", -1));
-        List<String> lines2 = Arrays.asList(text2.split("\n", -1));
+        // Character-level refinement is the first thing to go once time runs out
+        if (budget.getLevel() == DiffBudget.Level.FULL && budget.isExpired()) {
+            budget.degradeOnDeadline(DiffBudget.Level.LINES_ONLY);
+        }
+        boolean refine = budget.getLevel() == DiffBudget.Level.FULL;
+        boolean words = request.getInlineGranularity() == DiffRequest.InlineGranularity.WORD;
         
         // Generate unified diff with context
-        String unifiedDiff = generateContextAwareUnifiedDiff(lines1, lines2, request.getContextLines());
+        String unifiedDiff = generateContextAwareUnifiedDiff(lines1, lines2, edits, request.getContextLines());
         result.put("unifiedDiff", unifiedDiff);
         
         // Generate side-by-side comparison with highlighting
-        Map<String, Object> sideBySide = generateEnhancedSideBySideDiff(lines1, lines2);
-        result.put("sideBySide", sideBySide);
+        if (request.isWindowedSideBySide()) {
+            // Rows stay on the server, the response only carries the handle and where the hunks are
+            String handle = ContentDigest.of(request.getText1(), request.getText2(), describeRowOptions(request));
+            SideBySideDiff sideBySide = sideBySideStore.find(handle);
+            if (sideBySide == null) {
+                sideBySide = generateEnhancedSideBySideDiff(lines1, normalized1, lines2, normalized2, 
+                                                            edits, similarity, refine, words, budget, 
+                                                            request.isCompactOutput());
+                // Rows cut short by the clock stay pageable under their own handle, so the next identical
+                // request builds complete rows instead of finding these
+                if (budget.isDeadlineExceeded()) {
+                    handle = ContentDigest.of(request.getText1(), request.getText2(), 
+                                              describeRowOptions(request) + ",degraded=" + budget.getLevel());
+                }
+                sideBySideStore.put(handle, sideBySide);
+            }
+            result.put("sideBySide", createWindowIndex(handle, sideBySide, request.getContextLines()));
+        } else {
+            SideBySideDiff sideBySide = generateEnhancedSideBySideDiff(lines1, normalized1, lines2, normalized2, 
+                                                                       edits, similarity, refine, words, budget, 
+                                                                       request.isCompactOutput());
+            result.put("sideBySide", sideBySide);
+        }
         
         // Generate character-level diff with Levenshtein distance
-        List<Map<String, Object>> diffDetails = generateCharacterLevelDiff(text1, text2);
-        result.put("diffDetails", diffDetails);
+        List<Map<String, Object>> diffDetails = words && refine 
+            ? generateWordLevelDiff(text1, text2, lines1, lines2, edits, budget) 
+            : generateCharacterLevelDiff(text1, text2, similarity, refine);
+        if (!request.isWindowedSideBySide()) {
+            result.put("diffDetails", diffDetails);
+        }
+        result.put("approximateHighlights", similarity.isBudgetExhausted());
         
         // Calculate comprehensive statistics
-        Map<String, Object> stats = calculateEnhancedStatistics(lines1, lines2, diffDetails);
+        Map<String, Object> stats = calculateEnhancedStatistics(lines1, lines2, edits, diffDetails);
         result.put("statistics", stats);
         
         return result;
     }
     
+    @Override
+    public Map<String, Object> getSideBySideRows(String handle, int fromRow, int toRow) {
+        SideBySideDiff sideBySide = sideBySideStore.get(handle);
+        if (fromRow < 1 || toRow < fromRow) {
+            throw new IllegalArgumentException("Invalid row range: " + fromRow + "-" + toRow);
+        }
+        
+        // Rows are 1-based and inclusive, like lineNumber in the rows themselves
+        int from = Math.min(fromRow - 1, sideBySide.size());
+        int to = Math.min(toRow, Math.min(sideBySide.size(), from + windowMaxRows));
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("handle", handle);
+        result.put("fromRow", from + 1);
+        result.put("toRow", to);
+        result.put("totalLines", sideBySide.size());
+        result.put(sideBySide.isCompact() ? "rows" : "comparison", new SideBySideRows(sideBySide, from, to));
+        return result;
+    }
+    
+    @Override
+    public Map<String, Object> openDiffSession(DiffRequest request) {
+        DiffSession session = new DiffSession(UUID.randomUUID().toString(), request, sessionRealignMargin);
+        
+        Map<String, Object> result;
+        synchronized (session) {
+            session.takeChangedRange();
+            result = describeSession(session);
+            result.put("unifiedDiff", generateContextAwareUnifiedDiff(session.getLines(DiffSession.LEFT), 
+                session.getLines(DiffSession.RIGHT), session.getEdits(), session.getContextLines()));
+        }
+        diffSessionStore.put(session);
+        return result;
+    }
+    
+    @Override
+    public Map<String, Object> editDiffSession(String sessionId, DiffSessionEditRequest request) {
+        DiffSession session = diffSessionStore.get(sessionId);
+        
+        Map<String, Object> result;
+        synchronized (session) {
+            if (request.getBaseVersion() != null && request.getBaseVersion() != session.getVersion()) {
+                throw new IllegalArgumentException("Diff session is at version " + session.getVersion() 
+                    + ", edits were made against version " + request.getBaseVersion());
+            }
+            
+            // Each edit addresses the documents as left by the edits before it; all of them are checked
+            // against the running sizes first, so a bad edit leaves the session and its version untouched
+            int[] sizes = {session.getLines(DiffSession.LEFT).size(), session.getLines(DiffSession.RIGHT).size()};
+            for (DiffSessionEdit edit : request.getEdits()) {
+                if (edit.getFromLine() < 1) {
+                    throw new IllegalArgumentException("fromLine must be at least 1");
+                }
+                int side = sessionSide(edit);
+                DiffSession.checkRange(edit.getFromLine() - 1, edit.getLineCount(), sizes[side]);
+                sizes[side] += (edit.getLines() != null ? edit.getLines().size() : 0) - edit.getLineCount();
+            }
+            
+            long realignedBefore = session.getRealignedLines();
+            for (DiffSessionEdit edit : request.getEdits()) {
+                List<String> lines = edit.getLines() != null ? edit.getLines() : Collections.emptyList();
+                session.replace(sessionSide(edit), edit.getFromLine() - 1, edit.getLineCount(), lines);
+            }
+            
+            result = describeSession(session);
+            result.put("realignedLines", session.getRealignedLines() - realignedBefore);
+            int[] changed = session.takeChangedRange();
+            if (changed != null) {
+                result.put("changedFromLine", changed[0] + 1);
+                result.put("changedToLine", changed[1]);
+                result.put("unifiedDiff", generateChangedHunks(session, changed[0], changed[1]));
+            } else {
+                result.put("unifiedDiff", "");
+            }
+        }
+        // Stored again so the store sees the new size and the idle time starts over
+        diffSessionStore.put(session);
+        return result;
+    }
+    
+    private static int sessionSide(DiffSessionEdit edit) {
+        return edit.getSide() == DiffSessionEdit.Side.RIGHT ? DiffSession.RIGHT : DiffSession.LEFT;
+    }
+    
+    @Override
+    public boolean closeDiffSession(String sessionId) {
+        return diffSessionStore.remove(sessionId);
+    }
+    
+    private Map<String, Object> describeSession(DiffSession session) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("sessionId", session.getId());
+        result.put("version", session.getVersion());
+        result.put("identical", session.getEdits().isEmpty());
+        result.put("lines1", session.getLines(DiffSession.LEFT).size());
+        result.put("lines2", session.getLines(DiffSession.RIGHT).size());
+        result.put("hunkCount", groupEdits(session.getEdits(), session.getContextLines()).size());
+        return result;
+    }
+    
     /**
-     * Generate context-aware unified diff
+     * Unified diff of only the hunks that reach into the re-aligned left-side range
      */
-    private String generateContextAwareUnifiedDiff(List<String> lines1, List<String> lines2, int contextLines) {
+    private String generateChangedHunks(DiffSession session, int changedFrom, int changedTo) {
         StringBuilder diff = new StringBuilder();
-        List<Integer> changedLines = new ArrayList<>();
+        int contextLines = session.getContextLines();
         
-        // Find changed lines
-        int maxLines = Math.max(lines1.size(), lines2.size());
-        for (int i = 0; i < maxLines; i++) {
-            String line1 = i < lines1.size() ? lines1.get(i) : "";
-            String line2 = i < lines2.size() ? lines2.get(i) : "";
-            if (!line1.equals(line2)) {
-                changedLines.add(i);
+        for (List<Edit> hunk : groupEdits(session.getEdits(), contextLines)) {
+            int hunkStart = hunk.get(0).getBeginA() - contextLines;
+            int hunkEnd = hunk.get(hunk.size() - 1).getEndA() + contextLines;
+            if (hunkStart <= changedTo && hunkEnd >= changedFrom) {
+                appendHunk(diff, session.getLines(DiffSession.LEFT), session.getLines(DiffSession.RIGHT), 
+                           hunk, contextLines);
             }
         }
         
-        if (changedLines.isEmpty()) {
-            return "";
-        }
-        
-        // Group consecutive changes
-        List<List<Integer>> changeGroups = groupConsecutiveChanges(changedLines, contextLines);
+        return diff.toString();
+    }
+    
+    /**
+     * Options that change the side-by-side rows, part of the handle next to both texts
+     */
+    private String describeRowOptions(DiffRequest request) {
+        return "ignoreCase=" + request.isIgnoreCase() 
+            + ",ignoreWhitespace=" + request.isIgnoreWhitespace() 
+            + ",ignoreLineEndings=" + request.isIgnoreLineEndings() 
+            + ",algorithm=" + request.getAlgorithm() 
+            + ",compact=" + request.isCompactOutput() 
+            + ",inline=" + request.getInlineGranularity();
+    }
+    
+    /**
+     * Every option that changes the enhanced diff result, part of the result digest next to both texts
+     */
+    private String describeResultOptions(DiffRequest request) {
+        return describeRowOptions(request) 
+            + ",contextLines=" + request.getContextLines() 
+            + ",diffType=" + request.getDiffType() 
+            + ",windowed=" + request.isWindowedSideBySide() 
+            + ",jsonArrayKey=" + request.getJsonArrayKey() 
+            + ",jsonPatch=" + request.isJsonPatch() 
+            + ",jsonTextDiff=" + request.isJsonTextDiff() 
+            + ",xmlTextDiff=" + request.isXmlTextDiff() 
+            + ",tableKeyColumns=" + request.getTableKeyColumns() 
+            + ",tableDelimiter=" + request.getTableDelimiter() 
+            + ",tableHeader=" + request.isTableHeader();
+    }
+    
+    /**
+     * Handle plus the row ranges of each hunk, so a client can jump between changes and fetch only those rows
+     */
+    private Map<String, Object> createWindowIndex(String handle, SideBySideDiff sideBySide, int contextLines) {
+        Map<String, Object> index = new HashMap<>();
+        List<Map<String, Object>> hunks = new ArrayList<>();
         
-        for (List<Integer> group : changeGroups) {
-            int start = Math.max(0, group.get(0) - contextLines);
-            int end = Math.min(maxLines, group.get(group.size() - 1) + contextLines + 1);
-            
-            diff.append(String.format("@@ -%d,%d +%d,%d @@\n", 
-                start + 1, end - start, start + 1, end - start));
+        int row = 0;
+        while (row < sideBySide.size()) {
+            if (sideBySide.getStatus(row) == SideBySideDiff.RowStatus.UNCHANGED) {
+                row++;
+                continue;
+            }
             
-            for (int i = start; i < end; i++) {
-                String line1 = i < lines1.size() ? lines1.get(i) : "";
-                String line2 = i < lines2.size() ? lines2.get(i) : "";
-                
-                if (line1.equals(line2)) {
-                    diff.append("  ").append(line1).append("\n");
-                } else {
-                    if (i < lines1.size()) {
-                        diff.append("- ").append(line1).append("\n");
-                    }
-                    if (i < lines2.size()) {
-                        diff.append("+ ").append(line2).append("\n");
-                    }
+            // Extend the hunk over changes separated by no more than twice the context
+            int changeStart = row;
+            int changeEnd = row;
+            int changedRows = 0;
+            while (row < sideBySide.size()) {
+                if (sideBySide.getStatus(row) != SideBySideDiff.RowStatus.UNCHANGED) {
+                    changeEnd = row + 1;
+                    changedRows++;
+                } else if (row - changeEnd >= contextLines * 2) {
+                    break;
                 }
+                row++;
             }
-            diff.append("\n");
+            
+            Map<String, Object> hunk = new HashMap<>();
+            hunk.put("fromRow", Math.max(0, changeStart - contextLines) + 1);
+            hunk.put("toRow", Math.min(sideBySide.size(), changeEnd + contextLines));
+            hunk.put("changedRows", changedRows);
+            hunks.add(hunk);
+        }
+        
+        index.put("handle", handle);
+        index.put("totalLines", sideBySide.size());
+        index.put("hunks", hunks);
+        return index;
+    }
+    
+    /**
+     * Align two line tables by their interned line ids
+     */
+    private List<Edit> alignLines(LineTable lines1, LineTable lines2, DiffRequest.DiffAlgorithm algorithm, 
+                                  DiffBudget budget) {
+        return alignIds(lines1.ids(), lines2.ids(), algorithm, budget);
+    }
+    
+    /**
+     * Align two id sequences, falling back to a single prefix/suffix edit when the budget runs out
+     */
+    private List<Edit> alignIds(int[] ids1, int[] ids2, DiffRequest.DiffAlgorithm algorithm, DiffBudget budget) {
+        if (budget.getLevel() == DiffBudget.Level.PREFIX_SUFFIX) {
+            return MyersDiff.prefixSuffix(ids1, ids2);
+        }
+        try {
+            if (algorithm == DiffRequest.DiffAlgorithm.HISTOGRAM) {
+                return HistogramDiff.diff(ids1, ids2, budget);
+            }
+            return MyersDiff.diff(ids1, ids2, budget);
+        } catch (DiffBudget.Exceeded e) {
+            budget.degrade(DiffBudget.Level.PREFIX_SUFFIX);
+            return MyersDiff.prefixSuffix(ids1, ids2);
+        }
+    }
+    
+    /**
+     * Generate context-aware unified diff
+     */
+    private String generateContextAwareUnifiedDiff(DiffLines lines1, DiffLines lines2, 
+                                                   List<Edit> edits, int contextLines) {
+        StringBuilder diff = new StringBuilder();
+        
+        if (edits.isEmpty()) {
+            return "";
+        }
+        
+        // Group edits whose context windows touch
+        List<List<Edit>> hunks = groupEdits(edits, contextLines);
+        
+        for (List<Edit> hunk : hunks) {
+            appendHunk(diff, lines1, lines2, hunk, contextLines);
         }
         
         return diff.toString();
     }
     
     /**
-     * Group consecutive changes for context-aware diff
+     * Append one hunk: header, its edits and the context lines around them
      */
-    private List<List<Integer>> groupConsecutiveChanges(List<Integer> changedLines, int contextLines) {
-        List<List<Integer>> groups = new ArrayList<>();
-        List<Integer> currentGroup = new ArrayList<>();
+    private void appendHunk(StringBuilder diff, DiffLines lines1, DiffLines lines2, 
+                            List<Edit> hunk, int contextLines) {
+        Edit first = hunk.get(0);
+        Edit last = hunk.get(hunk.size() - 1);
+        int startA = Math.max(0, first.getBeginA() - contextLines);
+        int startB = first.getBeginB() - (first.getBeginA() - startA);
+        int endA = Math.min(lines1.size(), last.getEndA() + contextLines);
+        int endB = last.getEndB() + (endA - last.getEndA());
         
-        for (int i = 0; i < changedLines.size(); i++) {
-            if (currentGroup.isEmpty()) {
-                currentGroup.add(changedLines.get(i));
-            } else {
-                int lastInGroup = currentGroup.get(currentGroup.size() - 1);
-                if (changedLines.get(i) - lastInGroup <= contextLines * 2) {
-                    currentGroup.add(changedLines.get(i));
-                } else {
-                    groups.add(new ArrayList<>(currentGroup));
-                    currentGroup.clear();
-                    currentGroup.add(changedLines.get(i));
+        diff.append(String.format("@@ -%d,%d +%d,%d @@\n", 
+            startA + 1, endA - startA, startB + 1, endB - startB));
+        
+        int a = startA;
+        for (Edit edit : hunk) {
+            while (a < edit.getBeginA()) {
+                lines1.appendLine(diff.append("  "), a++).append("\n");
+            }
+            for (int i = edit.getBeginA(); i < edit.getEndA(); i++) {
+                lines1.appendLine(diff.append("- "), i).append("\n");
+            }
+            for (int i = edit.getBeginB(); i < edit.getEndB(); i++) {
+                lines2.appendLine(diff.append("+ "), i).append("\n");
+            }
+            a = edit.getEndA();
+        }
+        while (a < endA) {
+            lines1.appendLine(diff.append("  "), a++).append("\n");
+        }
+        diff.append("\n");
+    }
+    
+    /**
+     * Group edits separated by no more than twice the context into hunks
+     */
+    private List<List<Edit>> groupEdits(List<Edit> edits, int contextLines) {
+        List<List<Edit>> groups = new ArrayList<>();
+        List<Edit> currentGroup = new ArrayList<>();
+        
+        for (Edit edit : edits) {
+            if (!currentGroup.isEmpty()) {
+                Edit lastInGroup = currentGroup.get(currentGroup.size() - 1);
+                if (edit.getBeginA() - lastInGroup.getEndA() > contextLines * 2) {
+                    groups.add(currentGroup);
+                    currentGroup = new ArrayList<>();
                 }
             }
+            currentGroup.add(edit);
         }
         
         if (!currentGroup.isEmpty()) {
@@ -211,133 +978,251 @@ public class DiffServiceImpl implements DiffService {
     /**
      * Generate enhanced side-by-side diff with highlighting
      */
-    private Map<String, Object> generateEnhancedSideBySideDiff(List<String> lines1, List<String> lines2) {
-        Map<String, Object> sideBySide = new HashMap<>();
-        List<Map<String, Object>> comparison = new ArrayList<>();
+    private SideBySideDiff generateEnhancedSideBySideDiff(LineTable lines1, NormalizedText normalized1, 
+                                                          LineTable lines2, NormalizedText normalized2, 
+                                                          List<Edit> edits, BoundedSimilarity similarity, 
+                                                          boolean refine, boolean words, DiffBudget budget, 
+                                                          boolean compact) {
+        SideBySideDiff sideBySide = new SideBySideDiff(lines1, normalized1, lines2, normalized2, compact);
+        int[] modifiedRows = new int[16];
+        int modifiedCount = 0;
         
-        int maxLines = Math.max(lines1.size(), lines2.size());
-        
-        for (int i = 0; i < maxLines; i++) {
-            Map<String, Object> lineComparison = new HashMap<>();
-            String line1 = i < lines1.size() ? lines1.get(i) : "";
-            String line2 = i < lines2.size() ? lines2.get(i) : "";
-            
-            lineComparison.put("lineNumber", i + 1);
-            lineComparison.put("left", line1);
-            lineComparison.put("right", line2);
-            
-            if (line1.equals(line2)) {
-                lineComparison.put("status", "unchanged");
-                lineComparison.put("cssClass", "diff-unchanged");
-            } else {
-                lineComparison.put("status", "modified");
-                lineComparison.put("cssClass", "diff-modified");
-                
-                // Add character-level highlighting
-                List<Map<String, Object>> leftHighlights = generateCharacterHighlights(line1, line2);
-                List<Map<String, Object>> rightHighlights = generateCharacterHighlights(line2, line1);
-                
-                lineComparison.put("leftHighlights", leftHighlights);
-                lineComparison.put("rightHighlights", rightHighlights);
+        int a = 0;
+        int b = 0;
+        for (Edit edit : edits) {
+            while (a < edit.getBeginA()) {
+                sideBySide.addRow(a++, b++, SideBySideDiff.RowStatus.UNCHANGED);
             }
             
-            comparison.add(lineComparison);
+            // Pair up replaced lines, the remainder is a pure deletion or insertion
+            int paired = Math.min(edit.getLengthA(), edit.getLengthB());
+            for (int i = 0; i < paired; i++) {
+                if (modifiedCount == modifiedRows.length) {
+                    modifiedRows = Arrays.copyOf(modifiedRows, modifiedCount * 2);
+                }
+                modifiedRows[modifiedCount++] = sideBySide.addRow(a++, b++, SideBySideDiff.RowStatus.MODIFIED);
+            }
+            while (a < edit.getEndA()) {
+                sideBySide.addRow(a++, -1, SideBySideDiff.RowStatus.REMOVED);
+            }
+            while (b < edit.getEndB()) {
+                sideBySide.addRow(-1, b++, SideBySideDiff.RowStatus.ADDED);
+            }
+        }
+        while (a < lines1.size()) {
+            sideBySide.addRow(a++, b++, SideBySideDiff.RowStatus.UNCHANGED);
         }
         
-        sideBySide.put("comparison", comparison);
-        sideBySide.put("totalLines", maxLines);
+        // Character-level highlighting of modified pairs is independent per row
+        if (refine) {
+            refineModifiedRows(sideBySide, modifiedRows, modifiedCount, similarity, words ? budget : null);
+        }
         
         return sideBySide;
     }
     
     /**
-     * Generate character-level highlights for side-by-side comparison
+     * Add left/right highlights to modified rows, in parallel once there are enough of them; rows are
+     * aligned word by word when a word budget is given, otherwise split on their common prefix and suffix
      */
-    private List<Map<String, Object>> generateCharacterHighlights(String text1, String text2) {
-        List<Map<String, Object>> highlights = new ArrayList<>();
-        
-        // Use Levenshtein distance to find similar substrings
-        int distance = levenshteinDistance.apply(text1, text2);
-        double similarity = 1.0 - (double) distance / Math.max(text1.length(), text2.length());
-        
-        if (similarity > 0.5) {
-            // Find common prefixes and suffixes
-            int commonPrefix = findCommonPrefix(text1, text2);
-            int commonSuffix = findCommonSuffix(text1, text2);
-            
-            if (commonPrefix > 0) {
-                Map<String, Object> prefix = new HashMap<>();
-                prefix.put("start", 0);
-                prefix.put("end", commonPrefix);
-                prefix.put("type", "unchanged");
-                prefix.put("cssClass", "diff-unchanged");
-                highlights.add(prefix);
+    private void refineModifiedRows(SideBySideDiff sideBySide, int[] modifiedRows, int modifiedCount, 
+                                    BoundedSimilarity similarity, DiffBudget wordBudget) {
+        if (modifiedCount <= refinementSequentialThreshold) {
+            for (int i = 0; i < modifiedCount; i++) {
+                refineRow(sideBySide, modifiedRows[i], similarity, wordBudget);
             }
-            
-            if (commonPrefix < text1.length() - commonSuffix) {
-                Map<String, Object> middle = new HashMap<>();
-                middle.put("start", commonPrefix);
-                middle.put("end", text1.length() - commonSuffix);
-                middle.put("type", "changed");
-                middle.put("cssClass", "diff-changed");
-                highlights.add(middle);
+        } else {
+            refinementPool.invoke(new RefinementTask(sideBySide, modifiedRows, similarity, wordBudget, 
+                                                     0, modifiedCount));
+        }
+    }
+    
+    private void refineRow(SideBySideDiff sideBySide, int row, BoundedSimilarity similarity, DiffBudget wordBudget) {
+        String line1 = sideBySide.normalizedLeft(row);
+        String line2 = sideBySide.normalizedRight(row);
+        
+        if (wordBudget != null) {
+            // Rows may be refined on several threads, each alignment checks the deadline on its own fork
+            WordDiff wordDiff = WordDiff.of(line1, line2, wordBudget.fork());
+            if (wordDiff.hasCommonWords()) {
+                sideBySide.setHighlights(row, wordDiff.highlights(true), wordDiff.highlights(false));
+            } else {
+                sideBySide.setHighlights(row, generateCharacterHighlights(line1.length(), null), 
+                                         generateCharacterHighlights(line2.length(), null));
             }
-            
-            if (commonSuffix > 0) {
-                Map<String, Object> suffix = new HashMap<>();
-                suffix.put("start", text1.length() - commonSuffix);
-                suffix.put("end", text1.length());
-                suffix.put("type", "unchanged");
-                suffix.put("cssClass", "diff-unchanged");
-                highlights.add(suffix);
+            return;
+        }
+        
+        // The pair is measured once on the normalised text, the right side mirrors the left
+        int[] commonParts = findCommonParts(line1, line2, similarity);
+        sideBySide.setHighlights(row, generateCharacterHighlights(line1.length(), commonParts), 
+                                 generateCharacterHighlights(line2.length(), commonParts));
+    }
+    
+    /**
+     * Splits a range of modified rows until it is small enough to refine on the current thread
+     */
+    private class RefinementTask extends RecursiveAction {
+        private final SideBySideDiff sideBySide;
+        private final int[] rows;
+        private final BoundedSimilarity similarity;
+        private final DiffBudget wordBudget;
+        private final int from;
+        private final int to;
+        
+        RefinementTask(SideBySideDiff sideBySide, int[] rows, BoundedSimilarity similarity, DiffBudget wordBudget, 
+                       int from, int to) {
+            this.sideBySide = sideBySide;
+            this.rows = rows;
+            this.similarity = similarity;
+            this.wordBudget = wordBudget;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= refinementSequentialThreshold) {
+                for (int i = from; i < to; i++) {
+                    refineRow(sideBySide, rows[i], similarity, wordBudget);
+                }
+                return;
             }
-        } else {
+            int middle = (from + to) >>> 1;
+            invokeAll(new RefinementTask(sideBySide, rows, similarity, wordBudget, from, middle), 
+                      new RefinementTask(sideBySide, rows, similarity, wordBudget, middle, to));
+        }
+    }
+    
+    /**
+     * Common prefix and suffix lengths of a similar line pair, or null when the lines are too different
+     */
+    private int[] findCommonParts(String text1, String text2, BoundedSimilarity similarity) {
+        // Bounded Levenshtein check, only needs to know whether the distance stays under the cut-off
+        if (!similarity.isAbove(text1, text2, 0.5)) {
+            return null;
+        }
+        int commonPrefix = BoundedSimilarity.commonPrefix(text1, text2);
+        int commonSuffix = BoundedSimilarity.commonSuffix(text1, text2, commonPrefix);
+        return new int[]{commonPrefix, commonSuffix};
+    }
+    
+    /**
+     * Generate character-level highlights for one side of a modified line as packed start/end/type triples
+     */
+    private int[] generateCharacterHighlights(int length, int[] commonParts) {
+        if (commonParts == null) {
             // Completely different
-            Map<String, Object> highlight = new HashMap<>();
-            highlight.put("start", 0);
-            highlight.put("end", text1.length());
-            highlight.put("type", "deleted");
-            highlight.put("cssClass", "diff-deleted");
-            highlights.add(highlight);
+            return new int[]{0, length, SideBySideDiff.SpanType.DELETED.ordinal()};
         }
         
-        return highlights;
+        int commonPrefix = commonParts[0];
+        int commonSuffix = commonParts[1];
+        int[] spans = new int[9];
+        int size = 0;
+        
+        if (commonPrefix > 0) {
+            size = addSpan(spans, size, 0, commonPrefix, SideBySideDiff.SpanType.UNCHANGED);
+        }
+        if (commonPrefix < length - commonSuffix) {
+            size = addSpan(spans, size, commonPrefix, length - commonSuffix, SideBySideDiff.SpanType.CHANGED);
+        }
+        if (commonSuffix > 0) {
+            size = addSpan(spans, size, length - commonSuffix, length, SideBySideDiff.SpanType.UNCHANGED);
+        }
+        
+        return size == spans.length ? spans : Arrays.copyOf(spans, size);
+    }
+    
+    private int addSpan(int[] spans, int size, int start, int end, SideBySideDiff.SpanType type) {
+        spans[size] = start;
+        spans[size + 1] = end;
+        spans[size + 2] = type.ordinal();
+        return size + 3;
     }
     
-    private int findCommonPrefix(String s1, String s2) {
-        int minLength = Math.min(s1.length(), s2.length());
-        for (int i = 0; i < minLength; i++) {
-            if (s1.charAt(i) != s2.charAt(i)) {
-                return i;
+    /**
+     * Generate word-level diff: equal, deleted and inserted runs in text order. Replaced lines are paired
+     * like the side-by-side rows and aligned pair by pair, the lines left over in one piece.
+     */
+    private List<Map<String, Object>> generateWordLevelDiff(String text1, String text2, LineTable lines1, 
+                                                            LineTable lines2, List<Edit> edits, DiffBudget budget) {
+        List<Map<String, Object>> diffDetails = new ArrayList<>();
+        
+        // Equal text is contiguous in the first text, it is emitted once the next change starts
+        int equalFrom = 0;
+        for (Edit edit : edits) {
+            // Regions start at the line break before their first line, which one side may lack at the end
+            int paired = Math.min(edit.getLengthA(), edit.getLengthB());
+            for (int i = 0; i <= paired; i++) {
+                int a = edit.getBeginA() + i;
+                int b = edit.getBeginB() + i;
+                int start1 = a > 0 ? lines1.lineEnd(a - 1) : 0;
+                int start2 = b > 0 ? lines2.lineEnd(b - 1) : 0;
+                int end1 = i < paired ? lines1.lineEnd(a) : regionOffset(lines1, edit.getEndA());
+                int end2 = i < paired ? lines2.lineEnd(b) : regionOffset(lines2, edit.getEndB());
+                equalFrom = appendWordDiff(diffDetails, text1, start1, end1, text2, start2, end2, equalFrom, budget);
             }
         }
-        return minLength;
+        addDiffDetail(diffDetails, "EQUAL", text1, equalFrom, text1.length());
+        
+        return diffDetails;
     }
     
-    private int findCommonSuffix(String s1, String s2) {
-        int minLength = Math.min(s1.length(), s2.length());
-        for (int i = 1; i <= minLength; i++) {
-            if (s1.charAt(s1.length() - i) != s2.charAt(s2.length() - i)) {
-                return i - 1;
-            }
+    /**
+     * Word-diff one region of both texts into the details; returns where the pending equal text now starts
+     */
+    private int appendWordDiff(List<Map<String, Object>> diffDetails, String text1, int start1, int end1, 
+                               String text2, int start2, int end2, int equalFrom, DiffBudget budget) {
+        WordDiff wordDiff = WordDiff.of(text1.substring(start1, end1), text2.substring(start2, end2), budget);
+        WordTokens tokens1 = wordDiff.getTokens1();
+        WordTokens tokens2 = wordDiff.getTokens2();
+        for (Edit words : wordDiff.getEdits()) {
+            int deleteFrom = start1 + tokens1.offset(words.getBeginA());
+            int deleteTo = start1 + tokens1.offset(words.getEndA());
+            addDiffDetail(diffDetails, "EQUAL", text1, equalFrom, deleteFrom);
+            addDiffDetail(diffDetails, "DELETE", text1, deleteFrom, deleteTo);
+            addDiffDetail(diffDetails, "INSERT", text2, start2 + tokens2.offset(words.getBeginB()), 
+                          start2 + tokens2.offset(words.getEndB()));
+            equalFrom = deleteTo;
+        }
+        return equalFrom;
+    }
+    
+    /**
+     * Character offset where a line starts, or the text length past the last line
+     */
+    private int regionOffset(LineTable lines, int line) {
+        return line < lines.size() ? lines.lineStart(line) : lines.getText().length();
+    }
+    
+    private void addDiffDetail(List<Map<String, Object>> diffDetails, String operation, String text, 
+                               int start, int end) {
+        if (start == end) {
+            return;
         }
-        return minLength;
+        String type = operation.equals("EQUAL") ? "unchanged" : operation.equals("DELETE") ? "deleted" : "added";
+        Map<String, Object> detail = new HashMap<>();
+        detail.put("operation", operation);
+        detail.put("text", text.substring(start, end));
+        detail.put("length", end - start);
+        detail.put("type", type);
+        detail.put("cssClass", "diff-" + type);
+        diffDetails.add(detail);
     }
     
     /**
      * Generate character-level diff with advanced algorithms
      */
-    private List<Map<String, Object>> generateCharacterLevelDiff(String text1, String text2) {
+    private List<Map<String, Object>> generateCharacterLevelDiff(String text1, String text2, 
+                                                                 BoundedSimilarity similarity, boolean measure) {
         List<Map<String, Object>> diffDetails = new ArrayList<>();
         
-        // Use Levenshtein distance for character-level diff
-        int distance = levenshteinDistance.apply(text1, text2);
-        double similarity = 1.0 - (double) distance / Math.max(text1.length(), text2.length());
-        
-        if (similarity > 0.8) {
+        // Without a similarity measurement the texts are split on their common prefix and suffix
+        if (!measure || similarity.isAbove(text1, text2, 0.8)) {
             // High similarity - find common parts
-            int commonPrefix = findCommonPrefix(text1, text2);
-            int commonSuffix = findCommonSuffix(text1, text2);
+            int commonPrefix = BoundedSimilarity.commonPrefix(text1, text2);
+            int commonSuffix = BoundedSimilarity.commonSuffix(text1, text2, commonPrefix);
             
             if (commonPrefix > 0) {
                 Map<String, Object> prefix = new HashMap<>();
@@ -405,30 +1290,40 @@ public class DiffServiceImpl implements DiffService {
     /**
      * Generate JSON structural diff
      */
-    private Map<String, Object> generateJsonDiff(String json1, String json2) {
+    private Map<String, Object> generateJsonDiff(String json1, String json2, DiffRequest request, 
+                                                 DiffBudget budget) {
         Map<String, Object> result = new HashMap<>();
         
         try {
-            JsonNode node1 = objectMapper.readTree(json1);
-            JsonNode node2 = objectMapper.readTree(json2);
+            JsonNode node1 = codecs.reader(CodecRegistry.Format.JSON).readTree(json1);
+            JsonNode node2 = codecs.reader(CodecRegistry.Format.JSON).readTree(json2);
             
-            result.put("identical", node1.equals(node2));
+            // Subtree hashes let the walk skip everything that did not change
+            JsonStructuralDiff structuralDiff = new JsonStructuralDiff(request.getJsonArrayKey(), request.isJsonPatch(), 
+                                                                       budget);
+            boolean identical = structuralDiff.compare(node1, node2);
+            result.put("identical", identical);
             result.put("type", "json");
             
-            if (!node1.equals(node2)) {
-                // Generate structural diff
-                List<Map<String, Object>> structuralChanges = compareJsonNodes(node1, node2, "");
-                result.put("structuralChanges", structuralChanges);
-                
-                // Also generate text diff for the formatted JSON
-                String formattedJson1 = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(node1);
-                String formattedJson2 = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(node2);
-                
-                List<String> lines1 = Arrays.asList(formattedJson1.split("\n", -1));
-                List<String> lines2 = Arrays.asList(formattedJson2.split("\n", -1));
+            if (!identical) {
+                result.put("structuralChanges", structuralDiff.getChanges());
+                if (request.isJsonPatch()) {
+                    result.put("jsonPatch", structuralDiff.getPatch());
+                }
                 
-                String unifiedDiff = generateContextAwareUnifiedDiff(lines1, lines2, 3);
-                result.put("unifiedDiff", unifiedDiff);
+                // Text diff of the formatted JSON only on request, it doubles the work on large documents
+                if (request.isJsonTextDiff()) {
+                    String formattedJson1 = codecs.writer(CodecRegistry.Format.JSON, true).writeValueAsString(node1);
+                    String formattedJson2 = codecs.writer(CodecRegistry.Format.JSON, true).writeValueAsString(node2);
+                    
+                    LineTable[] tables = LineTable.build(formattedJson1, formattedJson2);
+                    LineTable lines1 = tables[0];
+                    LineTable lines2 = tables[1];
+                    
+                    List<Edit> edits = alignLines(lines1, lines2, DiffRequest.DiffAlgorithm.MYERS, budget);
+                    String unifiedDiff = generateContextAwareUnifiedDiff(lines1, lines2, edits, 3);
+                    result.put("unifiedDiff", unifiedDiff);
+                }
             }
             
         } catch (Exception e) {
@@ -439,103 +1334,80 @@ public class DiffServiceImpl implements DiffService {
     }
     
     /**
-     * Compare JSON nodes recursively
+     * Generate keyed row diff of two CSV/TSV tables
      */
-    private List<Map<String, Object>> compareJsonNodes(JsonNode node1, JsonNode node2, String path) {
-        List<Map<String, Object>> changes = new ArrayList<>();
+    private Map<String, Object> generateTableDiff(TableDiff.Source table1, TableDiff.Source table2, 
+                                                  DiffRequest request, DiffBudget budget) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("type", "table");
         
-        if (node1.getNodeType() != node2.getNodeType()) {
-            Map<String, Object> change = new HashMap<>();
-            change.put("path", path);
-            change.put("type", "TYPE_CHANGED");
-            change.put("oldValue", node1.toString());
-            change.put("newValue", node2.toString());
-            changes.add(change);
-            return changes;
+        boolean normalize = request.isIgnoreCase() || request.isIgnoreWhitespace() || request.isIgnoreLineEndings();
+        TableDiff tableDiff = new TableDiff(request.getTableKeyColumns(), parseTableDelimiter(request.getTableDelimiter()), 
+                                            request.isTableHeader(), normalize ? TextNormalizer.forRequest(request) : null, 
+                                            tableMaxChanges, tableMaxMemoryBytes, tableSpillEnabled, budget);
+        try {
+            boolean identical = tableDiff.compare(table1, table2);
+            result.put("identical", identical && tableDiff.getAddedColumns().isEmpty() 
+                && tableDiff.getRemovedColumns().isEmpty());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read table: " + e.getMessage(), e);
         }
         
-        if (node1.isObject()) {
-            Iterator<String> fieldNames1 = node1.fieldNames();
-            while (fieldNames1.hasNext()) {
-                String fieldName = fieldNames1.next();
-                String newPath = path.isEmpty() ? fieldName : path + "." + fieldName;
-                
-                if (node2.has(fieldName)) {
-                    changes.addAll(compareJsonNodes(node1.get(fieldName), node2.get(fieldName), newPath));
-                } else {
-                    Map<String, Object> change = new HashMap<>();
-                    change.put("path", newPath);
-                    change.put("type", "FIELD_REMOVED");
-                    change.put("oldValue", node1.get(fieldName).toString());
-                    changes.add(change);
-                }
-            }
-            
-            Iterator<String> fieldNames2 = node2.fieldNames();
-            while (fieldNames2.hasNext()) {
-                String fieldName = fieldNames2.next();
-                if (!node1.has(fieldName)) {
-                    String newPath = path.isEmpty() ? fieldName : path + "." + fieldName;
-                    Map<String, Object> change = new HashMap<>();
-                    change.put("path", newPath);
-                    change.put("type", "FIELD_ADDED");
-                    change.put("newValue", node2.get(fieldName).toString());
-                    changes.add(change);
-                }
-            }
-        } else if (node1.isArray()) {
-            int size1 = node1.size();
-            int size2 = node2.size();
-            int maxSize = Math.max(size1, size2);
-            
-            for (int i = 0; i < maxSize; i++) {
-                String newPath = path + "[" + i + "]";
-                if (i < size1 && i < size2) {
-                    changes.addAll(compareJsonNodes(node1.get(i), node2.get(i), newPath));
-                } else if (i < size1) {
-                    Map<String, Object> change = new HashMap<>();
-                    change.put("path", newPath);
-                    change.put("type", "ARRAY_ELEMENT_REMOVED");
-                    change.put("oldValue", node1.get(i).toString());
-                    changes.add(change);
-                } else {
-                    Map<String, Object> change = new HashMap<>();
-                    change.put("path", newPath);
-                    change.put("type", "ARRAY_ELEMENT_ADDED");
-                    change.put("newValue", node2.get(i).toString());
-                    changes.add(change);
-                }
-            }
-        } else if (!node1.equals(node2)) {
-            Map<String, Object> change = new HashMap<>();
-            change.put("path", path);
-            change.put("type", "VALUE_CHANGED");
-            change.put("oldValue", node1.toString());
-            change.put("newValue", node2.toString());
-            changes.add(change);
+        result.put("keyColumns", tableDiff.getKeyColumns());
+        result.put("columns1", tableDiff.getColumns1());
+        result.put("columns2", tableDiff.getColumns2());
+        result.put("addedColumns", tableDiff.getAddedColumns());
+        result.put("removedColumns", tableDiff.getRemovedColumns());
+        result.put("rowChanges", tableDiff.getChanges());
+        result.put("truncated", tableDiff.isTruncated());
+        result.put("partitions", tableDiff.getPartitions());
+        result.put("tableStatistics", tableDiff.getStatistics());
+        return result;
+    }
+    
+    private Character parseTableDelimiter(String delimiter) {
+        if (delimiter == null || delimiter.isEmpty()) {
+            return null;
         }
-        
-        return changes;
+        if (delimiter.equals("\\t") || delimiter.equalsIgnoreCase("tab")) {
+            return '\t';
+        }
+        if (delimiter.length() != 1 || delimiter.charAt(0) == '"' || delimiter.charAt(0) == '\n' 
+                || delimiter.charAt(0) == '\r') {
+            throw new IllegalArgumentException("Table delimiter must be a single character: " + delimiter);
+        }
+        return delimiter.charAt(0);
     }
     
     /**
-     * Generate XML diff (simplified)
+     * Generate structural XML diff, optionally followed by a text diff of the raw documents
      */
-    private Map<String, Object> generateXmlDiff(String xml1, String xml2) {
+    private Map<String, Object> generateXmlDiff(String xml1, String xml2, DiffRequest request, 
+                                                DiffBudget budget) {
         Map<String, Object> result = new HashMap<>();
-        
-        // For now, treat XML as text diff
-        // In production, you might want to use a proper XML diff library
-        result.put("identical", xml1.equals(xml2));
         result.put("type", "xml");
-        result.put("note", "XML diff is currently treated as text diff");
         
-        if (!xml1.equals(xml2)) {
-            List<String> lines1 = Arrays.asList(xml1.split("\n", -1));
-            List<String> lines2 = Arrays.asList(xml2.split("\n", -1));
+        try {
+            XmlStructuralDiff structuralDiff = new XmlStructuralDiff(xmlMaxChanges, budget);
+            boolean identical = structuralDiff.compare(xml1, xml2);
+            result.put("identical", identical);
             
-            String unifiedDiff = generateContextAwareUnifiedDiff(lines1, lines2, 3);
-            result.put("unifiedDiff", unifiedDiff);
+            if (!identical) {
+                result.put("structuralChanges", structuralDiff.getChanges());
+                result.put("truncated", structuralDiff.isTruncated());
+                
+                if (request.isXmlTextDiff()) {
+                    LineTable[] tables = LineTable.build(xml1, xml2);
+                    LineTable lines1 = tables[0];
+                    LineTable lines2 = tables[1];
+                    
+                    List<Edit> edits = alignLines(lines1, lines2, DiffRequest.DiffAlgorithm.MYERS, budget);
+                    String unifiedDiff = generateContextAwareUnifiedDiff(lines1, lines2, edits, 3);
+                    result.put("unifiedDiff", unifiedDiff);
+                }
+            }
+        } catch (XMLStreamException e) {
+            result.put("error", "Invalid XML format: " + e.getMessage());
         }
         
         return result;
@@ -544,30 +1416,45 @@ public class DiffServiceImpl implements DiffService {
     /**
      * Generate code-aware diff
      */
-    private Map<String, Object> generateCodeDiff(String code1, String code2, DiffRequest request) {
+    private Map<String, Object> generateCodeDiff(String code1, String code2, DiffRequest request, 
+                                                 DiffBudget budget) {
         Map<String, Object> result = new HashMap<>();
         
-        // Remove comments and normalize whitespace for code comparison
-        String normalizedCode1 = normalizeCode(code1);
-        String normalizedCode2 = normalizeCode(code2);
+        // One lexer pass per side: comments and layout drop out, statistics come from the same scan
+        CodeTokens[] tokens = CodeTokens.tokenize(code1, code2);
+        CodeTokens tokens1 = tokens[0];
+        CodeTokens tokens2 = tokens[1];
+        boolean identical = Arrays.equals(tokens1.ids(), tokens2.ids());
         
-        result.put("identical", normalizedCode1.equals(normalizedCode2));
+        result.put("identical", identical);
         result.put("type", "code");
         result.put("originalIdentical", code1.equals(code2));
         
-        if (!normalizedCode1.equals(normalizedCode2)) {
-            List<String> lines1 = Arrays.asList(code1.split("\n", -1));
-            List<String> lines2 = Arrays.asList(code2.split("\n", -1));
+        if (!identical) {
+            List<Edit> tokenEdits = alignIds(tokens1.ids(), tokens2.ids(), request.getAlgorithm(), budget);
+            result.put("tokenChanges", createTokenChanges(tokens1, tokens2, tokenEdits));
             
-            String unifiedDiff = generateContextAwareUnifiedDiff(lines1, lines2, request.getContextLines());
+            LineTable[] tables = LineTable.build(code1, code2);
+            LineTable lines1 = tables[0];
+            LineTable lines2 = tables[1];
+            
+            List<Edit> edits = alignLines(lines1, lines2, request.getAlgorithm(), budget);
+            String unifiedDiff = generateContextAwareUnifiedDiff(lines1, lines2, edits, request.getContextLines());
             result.put("unifiedDiff", unifiedDiff);
             
             // Add code-specific statistics
+            int changedTokens = 0;
+            for (Edit edit : tokenEdits) {
+                changedTokens += Math.max(edit.getLengthA(), edit.getLengthB());
+            }
             Map<String, Object> codeStats = new HashMap<>();
-            codeStats.put("linesOfCode1", countLinesOfCode(code1));
-            codeStats.put("linesOfCode2", countLinesOfCode(code2));
-            codeStats.put("commentLines1", countCommentLines(code1));
-            codeStats.put("commentLines2", countCommentLines(code2));
+            codeStats.put("linesOfCode1", tokens1.getLinesOfCode());
+            codeStats.put("linesOfCode2", tokens2.getLinesOfCode());
+            codeStats.put("commentLines1", tokens1.getCommentLines());
+            codeStats.put("commentLines2", tokens2.getCommentLines());
+            codeStats.put("tokens1", tokens1.size());
+            codeStats.put("tokens2", tokens2.size());
+            codeStats.put("changedTokens", changedTokens);
             result.put("codeStatistics", codeStats);
         }
         
@@ -575,36 +1462,35 @@ public class DiffServiceImpl implements DiffService {
     }
     
     /**
-     * Normalize code by removing comments and extra whitespace
+     * Describe each token edit with the source it covers on both sides
      */
-    private String normalizeCode(String code) {
-        // Remove single-line comments
-        String normalized = code.replaceAll("(?m)//.*$", "");
-        // Remove multi-line comments (simplified)
-        normalized = normalized.replaceAll("(?s)/\\*.*?\\*/", "");
-        // Normalize whitespace
-        normalized = normalized.replaceAll("\\s+", " ").trim();
-        return normalized;
-    }
-    
-    private int countLinesOfCode(String code) {
-        return (int) Arrays.stream(code.split("\n"))
-                .map(String::trim)
-                .filter(line -> !line.isEmpty() && !line.startsWith("//") && !line.startsWith("/*"))
-                .count();
-    }
-    
-    private int countCommentLines(String code) {
-        return (int) Arrays.stream(code.split("\n"))
-                .map(String::trim)
-                .filter(line -> line.startsWith("//") || line.startsWith("/*") || line.startsWith("*"))
-                .count();
+    private List<Map<String, Object>> createTokenChanges(CodeTokens tokens1, CodeTokens tokens2, List<Edit> edits) {
+        List<Map<String, Object>> changes = new ArrayList<>();
+        
+        for (Edit edit : edits) {
+            Map<String, Object> change = new HashMap<>();
+            change.put("type", edit.getType().name());
+            if (edit.getLengthA() > 0) {
+                change.put("oldLine", tokens1.line(edit.getBeginA()) + 1);
+                change.put("oldText", tokens1.getSource().substring(tokens1.start(edit.getBeginA()), 
+                                                                    tokens1.end(edit.getEndA() - 1)));
+            }
+            if (edit.getLengthB() > 0) {
+                change.put("newLine", tokens2.line(edit.getBeginB()) + 1);
+                change.put("newText", tokens2.getSource().substring(tokens2.start(edit.getBeginB()), 
+                                                                    tokens2.end(edit.getEndB() - 1)));
+            }
+            changes.add(change);
+        }
+        
+        return changes;
     }
     
     /**
      * Calculate enhanced statistics
      */
-    private Map<String, Object> calculateEnhancedStatistics(List<String> lines1, List<String> lines2, 
+    private Map<String, Object> calculateEnhancedStatistics(LineTable lines1, LineTable lines2, 
+                                                           List<Edit> edits, 
                                                            List<Map<String, Object>> diffDetails) {
         Map<String, Object> stats = new HashMap<>();
         
@@ -612,21 +1498,20 @@ public class DiffServiceImpl implements DiffService {
         stats.put("totalLines1", lines1.size());
         stats.put("totalLines2", lines2.size());
         
-        int unchangedLines = 0;
+        int addedLines = 0;
+        int deletedLines = 0;
         int changedLines = 0;
         
-        for (int i = 0; i < Math.min(lines1.size(), lines2.size()); i++) {
-            if (lines1.get(i).equals(lines2.get(i))) {
-                unchangedLines++;
-            } else {
-                changedLines++;
-            }
+        for (Edit edit : edits) {
+            addedLines += edit.getLengthB();
+            deletedLines += edit.getLengthA();
+            changedLines += Math.max(edit.getLengthA(), edit.getLengthB());
         }
         
-        changedLines += Math.abs(lines1.size() - lines2.size());
-        
-        stats.put("unchangedLines", unchangedLines);
+        stats.put("unchangedLines", lines1.size() - deletedLines);
         stats.put("changedLines", changedLines);
+        stats.put("addedLines", addedLines);
+        stats.put("deletedLines", deletedLines);
         stats.put("changePercentage", lines1.size() > 0 ? 
             (double) changedLines / lines1.size() * 100 : 0);
         
@@ -673,6 +1558,8 @@ public class DiffServiceImpl implements DiffService {
         stats.put("totalLines2", 0);
         stats.put("unchangedLines", 0);
         stats.put("changedLines", 0);
+        stats.put("addedLines", 0);
+        stats.put("deletedLines", 0);
         stats.put("changePercentage", 0.0);
         stats.put("addedCharacters", 0);
         stats.put("deletedCharacters", 0);
@@ -0,0 +1,317 @@
+package com.devtoolkit.diff.service;
+
+import com.devtoolkit.diff.dto.DiffRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Two editable documents and their line alignment, kept between requests so an edit only re-aligns the
+ * lines around it. An edit replaces a line range on one side; the window that is aligned again starts
+ * and ends in unchanged lines at least {@code margin} lines away from the edit, widened over any change
+ * region it touches, and the new edits are spliced into the existing script. The result is a valid
+ * alignment, though not always the minimal one a full diff would find. Callers synchronise on the session.
+ */
+public final class DiffSession {
+
+    public static final int LEFT = 0;
+    public static final int RIGHT = 1;
+
+    private final String id;
+    private final TextNormalizer normalizer;
+    private final boolean ignoreLineEndings;
+    private final DiffRequest.DiffAlgorithm algorithm;
+    private final int contextLines;
+    private final int margin;
+
+    private final Document[] documents = new Document[2];
+    private final Map<String, Integer> lineIds = new HashMap<>();
+    private List<Edit> edits;
+    private long version = 0;
+
+    /** Left-side line range touched by the edits applied since the last call to {@link #takeChangedRange()}. */
+    private int changedFrom = Integer.MAX_VALUE;
+    private int changedTo = -1;
+    private long realignedLines = 0;
+
+    DiffSession(String id, DiffRequest request, int margin) {
+        this.id = id;
+        this.normalizer = TextNormalizer.forRequest(request);
+        this.ignoreLineEndings = request.isIgnoreLineEndings();
+        this.algorithm = request.getAlgorithm();
+        this.contextLines = request.getContextLines();
+        this.margin = margin;
+
+        documents[LEFT] = new Document(splitLines(request.getText1()));
+        documents[RIGHT] = new Document(splitLines(request.getText2()));
+        internAll();
+        this.edits = align(documents[LEFT].ids, 0, documents[LEFT].size,
+                documents[RIGHT].ids, 0, documents[RIGHT].size);
+        this.realignedLines = documents[LEFT].size + documents[RIGHT].size;
+    }
+
+    /**
+     * Replace {@code count} lines starting at zero-based {@code from} on one side with {@code lines}.
+     */
+    void replace(int side, int from, int count, List<String> lines) {
+        Document document = documents[side];
+        checkRange(from, count, document.size);
+        int other = 1 - side;
+        int delta = lines.size() - count;
+
+        // Window on the edited side, widened over every change region it reaches
+        int lo = Math.max(0, from - margin);
+        int hi = Math.min(document.size, from + count + margin);
+        int first = 0;
+        while (first < edits.size() && end(edits.get(first), side) < lo) {
+            first++;
+        }
+        int last = first - 1;
+        while (last + 1 < edits.size() && begin(edits.get(last + 1), side) <= hi) {
+            last++;
+        }
+        if (last >= first) {
+            lo = Math.min(lo, begin(edits.get(first), side));
+            hi = Math.max(hi, end(edits.get(last), side));
+        }
+        if (2L * (hi - lo) > document.size) {
+            // Most of the document is affected, aligning everything is no slower and gives the best script
+            lo = 0;
+            hi = document.size;
+            first = 0;
+            last = edits.size() - 1;
+        }
+
+        // Window boundaries sit in unchanged lines, so the other side follows from the edit before each
+        int otherLo = lo + (first > 0 ? end(edits.get(first - 1), other) - end(edits.get(first - 1), side) : 0);
+        int otherHi = hi + (last >= 0 ? end(edits.get(last), other) - end(edits.get(last), side) : 0);
+
+        document.replace(from, count, lines, this);
+        hi += delta;
+        if (lineIds.size() > 2 * (documents[LEFT].size + documents[RIGHT].size) + 1024) {
+            // Edited-away lines keep their ids until the table is rebuilt
+            internAll();
+        }
+
+        Document left = documents[LEFT];
+        Document right = documents[RIGHT];
+        List<Edit> window = side == LEFT
+                ? align(left.ids, lo, hi, right.ids, otherLo, otherHi)
+                : align(left.ids, otherLo, otherHi, right.ids, lo, hi);
+
+        List<Edit> spliced = new ArrayList<>(edits.size() + window.size());
+        for (int i = 0; i < first; i++) {
+            append(spliced, edits.get(i));
+        }
+        for (Edit edit : window) {
+            append(spliced, edit);
+        }
+        for (int i = last + 1; i < edits.size(); i++) {
+            Edit edit = edits.get(i);
+            append(spliced, side == LEFT
+                    ? new Edit(edit.getBeginA() + delta, edit.getEndA() + delta, edit.getBeginB(), edit.getEndB())
+                    : new Edit(edit.getBeginA(), edit.getEndA(), edit.getBeginB() + delta, edit.getEndB() + delta));
+        }
+        edits = spliced;
+        version++;
+        realignedLines += (hi - lo) + (otherHi - otherLo);
+
+        int changedLo = side == LEFT ? lo : otherLo;
+        int changedHi = side == LEFT ? hi : otherHi;
+        if (side == LEFT && changedTo >= 0) {
+            // Ranges recorded for earlier edits move with the lines after this one
+            if (changedFrom > from + count) {
+                changedFrom += delta;
+            }
+            if (changedTo > from + count) {
+                changedTo += delta;
+            }
+        }
+        changedFrom = Math.min(changedFrom, changedLo);
+        changedTo = Math.max(changedTo, changedHi);
+    }
+
+    /**
+     * Throws unless {@code count} lines from zero-based {@code from} lie within a document of {@code size} lines.
+     */
+    static void checkRange(int from, int count, int size) {
+        if (from < 0 || count < 0 || from + count > size) {
+            throw new IllegalArgumentException("Line range " + (from + 1) + "+" + count
+                    + " is outside the document (" + size + " lines)");
+        }
+    }
+
+    /**
+     * Left-side range {@code [from, to)} re-aligned since the previous call, or null when nothing changed.
+     */
+    int[] takeChangedRange() {
+        if (changedTo < 0) {
+            return null;
+        }
+        int[] range = {changedFrom, changedTo};
+        changedFrom = Integer.MAX_VALUE;
+        changedTo = -1;
+        return range;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Edit> getEdits() {
+        return edits;
+    }
+
+    public DiffLines getLines(int side) {
+        return documents[side];
+    }
+
+    public int getContextLines() {
+        return contextLines;
+    }
+
+    /**
+     * Lines handed to the aligner over the session's lifetime, the full diff on open included.
+     */
+    public long getRealignedLines() {
+        return realignedLines;
+    }
+
+    /**
+     * Rough retained heap size in bytes: line strings and arrays of both sides plus the id table.
+     */
+    public long estimatedSize() {
+        return documents[LEFT].estimatedSize() + documents[RIGHT].estimatedSize()
+                + 64L * lineIds.size() + 32L * edits.size();
+    }
+
+    private List<Edit> align(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi) {
+        if (algorithm != DiffRequest.DiffAlgorithm.HISTOGRAM) {
+            return MyersDiff.diff(a, aLo, aHi, b, bLo, bHi);
+        }
+        List<Edit> local = HistogramDiff.diff(Arrays.copyOfRange(a, aLo, aHi), Arrays.copyOfRange(b, bLo, bHi));
+        List<Edit> shifted = new ArrayList<>(local.size());
+        for (Edit edit : local) {
+            shifted.add(new Edit(edit.getBeginA() + aLo, edit.getEndA() + aLo,
+                    edit.getBeginB() + bLo, edit.getEndB() + bLo));
+        }
+        return shifted;
+    }
+
+    /**
+     * Append an edit, merging it with the previous one when the two touch at a splice point.
+     */
+    private static void append(List<Edit> edits, Edit edit) {
+        if (!edits.isEmpty()) {
+            Edit previous = edits.get(edits.size() - 1);
+            if (previous.getEndA() == edit.getBeginA() && previous.getEndB() == edit.getBeginB()) {
+                edits.set(edits.size() - 1, new Edit(previous.getBeginA(), edit.getEndA(),
+                        previous.getBeginB(), edit.getEndB()));
+                return;
+            }
+        }
+        edits.add(edit);
+    }
+
+    private static int begin(Edit edit, int side) {
+        return side == LEFT ? edit.getBeginA() : edit.getBeginB();
+    }
+
+    private static int end(Edit edit, int side) {
+        return side == LEFT ? edit.getEndA() : edit.getEndB();
+    }
+
+    private void internAll() {
+        lineIds.clear();
+        for (Document document : documents) {
+            for (int i = 0; i < document.size; i++) {
+                document.ids[i] = intern(document.lines[i]);
+            }
+        }
+    }
+
+    /**
+     * Lines compare by their normalised form; the normaliser runs per line, so whitespace never joins lines.
+     */
+    private int intern(String line) {
+        String key = line;
+        if (ignoreLineEndings && key.endsWith("\r")) {
+            key = key.substring(0, key.length() - 1);
+        }
+        key = normalizer.normalize(key, false).getText();
+        Integer id = lineIds.get(key);
+        if (id == null) {
+            id = lineIds.size();
+            lineIds.put(key, id);
+        }
+        return id;
+    }
+
+    private static String[] splitLines(String text) {
+        return (text != null ? text : "").split("\n", -1);
+    }
+
+    /**
+     * One side's lines with their ids, in arrays that are spliced in place on every edit.
+     */
+    private static final class Document implements DiffLines {
+
+        private String[] lines;
+        private int[] ids;
+        private int size;
+        private long chars;
+
+        Document(String[] lines) {
+            this.lines = lines;
+            this.ids = new int[lines.length];
+            this.size = lines.length;
+            for (String line : lines) {
+                chars += line.length();
+            }
+        }
+
+        void replace(int from, int count, List<String> replacement, DiffSession session) {
+            int newSize = size - count + replacement.size();
+            if (newSize > lines.length) {
+                int capacity = Math.max(newSize, lines.length + (lines.length >> 1));
+                lines = Arrays.copyOf(lines, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+            }
+            for (int i = from; i < from + count; i++) {
+                chars -= lines[i].length();
+            }
+            int tail = size - from - count;
+            System.arraycopy(lines, from + count, lines, from + replacement.size(), tail);
+            System.arraycopy(ids, from + count, ids, from + replacement.size(), tail);
+            for (int i = 0; i < replacement.size(); i++) {
+                String line = replacement.get(i);
+                lines[from + i] = line;
+                ids[from + i] = session.intern(line);
+                chars += line.length();
+            }
+            Arrays.fill(lines, newSize, size > newSize ? size : newSize, null);
+            size = newSize;
+        }
+
+        long estimatedSize() {
+            return 2L * chars + 48L * size + 12L * lines.length;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public StringBuilder appendLine(StringBuilder target, int line) {
+            return target.append(lines[line]);
+        }
+    }
+}
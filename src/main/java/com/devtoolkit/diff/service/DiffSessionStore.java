@@ -0,0 +1,43 @@
+package com.devtoolkit.diff.service;
+
+import com.devtoolkit.common.cache.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Open incremental diff sessions. Least recently used sessions are dropped once the estimated heap of all
+ * sessions exceeds the bound, and idle ones after the time-to-live; every edit stores the session again,
+ * which refreshes both its weight and its lifetime.
+ */
+@Component
+public class DiffSessionStore {
+    
+    private final BoundedCache<String, DiffSession> sessions;
+    
+    public DiffSessionStore(@Value("${diff.session.max-bytes:134217728}") long maxBytes,
+                            @Value("${diff.session.ttl-seconds:1800}") long ttlSeconds) {
+        this.sessions = new BoundedCache<>(maxBytes, ttlSeconds * 1000, DiffSession::estimatedSize);
+    }
+    
+    public void put(DiffSession session) {
+        sessions.put(session.getId(), session);
+    }
+    
+    public DiffSession get(String id) {
+        DiffSession session = sessions.get(id);
+        if (session == null) {
+            throw new IllegalArgumentException("Unknown or expired diff session: " + id);
+        }
+        return session;
+    }
+    
+    public boolean remove(String id) {
+        return sessions.remove(id) != null;
+    }
+    
+    public Map<String, Object> stats() {
+        return sessions.stats();
+    }
+}
@@ -0,0 +1,66 @@
+package com.devtoolkit.diff.service;
+
+/**
+ * A single change region produced by a sequence aligner.
+ * Covers {@code [beginA, endA)} of the old sequence and {@code [beginB, endB)} of the new one;
+ * everything between two edits is equal on both sides.
+ */
+public final class Edit {
+
+    public enum Type {
+        INSERT,
+        DELETE,
+        REPLACE
+    }
+
+    private final int beginA;
+    private final int endA;
+    private final int beginB;
+    private final int endB;
+
+    public Edit(int beginA, int endA, int beginB, int endB) {
+        this.beginA = beginA;
+        this.endA = endA;
+        this.beginB = beginB;
+        this.endB = endB;
+    }
+
+    public int getBeginA() {
+        return beginA;
+    }
+
+    public int getEndA() {
+        return endA;
+    }
+
+    public int getBeginB() {
+        return beginB;
+    }
+
+    public int getEndB() {
+        return endB;
+    }
+
+    public int getLengthA() {
+        return endA - beginA;
+    }
+
+    public int getLengthB() {
+        return endB - beginB;
+    }
+
+    public Type getType() {
+        if (beginA == endA) {
+            return Type.INSERT;
+        }
+        if (beginB == endB) {
+            return Type.DELETE;
+        }
+        return Type.REPLACE;
+    }
+
+    @Override
+    public String toString() {
+        return getType() + "(" + beginA + "-" + endA + "," + beginB + "-" + endB + ")";
+    }
+}
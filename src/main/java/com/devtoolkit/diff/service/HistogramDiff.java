@@ -0,0 +1,238 @@
+package com.devtoolkit.diff.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Histogram diff over int sequences.
+ * Anchors on the longest common region built around the rarest shared element and recurses on both
+ * sides of it, which keeps moved blocks and repeated boilerplate lines (braces, blank lines) from
+ * being matched against each other. Regions without a usable anchor fall back to {@link MyersDiff}.
+ */
+public final class HistogramDiff {
+
+    /** Elements occurring more often than this in a region are never used as anchors. */
+    private static final int MAX_CHAIN_LENGTH = 64;
+
+    private final int[] a;
+    private final int[] b;
+    private final int[] counts;
+    private final int[] countsB;
+    private final int[] heads;
+    private final DiffBudget budget;
+    private final List<Edit> edits = new ArrayList<>();
+
+    private HistogramDiff(int[] a, int[] b, DiffBudget budget) {
+        this.a = a;
+        this.b = b;
+        this.budget = budget;
+        int maxId = -1;
+        for (int id : a) {
+            maxId = Math.max(maxId, id);
+        }
+        for (int id : b) {
+            maxId = Math.max(maxId, id);
+        }
+        this.counts = new int[maxId + 1];
+        this.countsB = new int[maxId + 1];
+        this.heads = new int[maxId + 1];
+        Arrays.fill(heads, -1);
+    }
+
+    public static List<Edit> diff(int[] a, int[] b) {
+        return diff(a, b, DiffBudget.UNLIMITED);
+    }
+
+    /**
+     * Diff under a budget; throws {@link DiffBudget.Exceeded} once its deadline has passed.
+     */
+    public static List<Edit> diff(int[] a, int[] b, DiffBudget budget) {
+        HistogramDiff histogram = new HistogramDiff(a, b, budget);
+        histogram.compute(0, a.length, 0, b.length);
+        return histogram.edits;
+    }
+
+    private void compute(int aLo, int aHi, int bLo, int bHi) {
+        // Explicit stack of pending regions; the left part of a split is always processed first,
+        // so edits come out in order without recursing once per anchor
+        Deque<int[]> pending = new ArrayDeque<>();
+        pending.push(new int[]{aLo, aHi, bLo, bHi});
+
+        while (!pending.isEmpty()) {
+            budget.checkpoint();
+            int[] region = pending.pop();
+            aLo = region[0];
+            aHi = region[1];
+            bLo = region[2];
+            bHi = region[3];
+
+            while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+                aLo++;
+                bLo++;
+            }
+            while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+                aHi--;
+                bHi--;
+            }
+
+            if (aLo == aHi && bLo == bHi) {
+                continue;
+            }
+            if (aLo == aHi || bLo == bHi) {
+                MyersDiff.addEdit(edits, aLo, aHi, bLo, bHi);
+                continue;
+            }
+
+            int[] anchor = findAnchor(aLo, aHi, bLo, bHi);
+            if (anchor == null) {
+                MyersDiff.compute(a, aLo, aHi, b, bLo, bHi, edits, budget);
+                continue;
+            }
+
+            // When the rarest anchor is unique, split on every line unique to both sides at once
+            // (patience style) instead of peeling one anchor per pass
+            if (anchor[4] == 1 && splitOnUniqueLines(aLo, aHi, bLo, bHi, pending)) {
+                continue;
+            }
+
+            pending.push(new int[]{anchor[1], aHi, anchor[3], bHi});
+            pending.push(new int[]{aLo, anchor[0], bLo, anchor[2]});
+        }
+    }
+
+    /**
+     * Returns {@code {beginA, endA, beginB, endB, count}} of the best common region, or {@code null}.
+     */
+    private int[] findAnchor(int aLo, int aHi, int bLo, int bHi) {
+        // Build occurrence counts and a position chain (latest first) for the A region
+        int[] previous = new int[aHi - aLo];
+        for (int i = aLo; i < aHi; i++) {
+            int id = a[i];
+            counts[id]++;
+            previous[i - aLo] = heads[id];
+            heads[id] = i;
+        }
+
+        int[] best = null;
+        int bestCount = MAX_CHAIN_LENGTH + 1;
+        int bi = bLo;
+        while (bi < bHi) {
+            int count = counts[b[bi]];
+            if (count == 0 || count > MAX_CHAIN_LENGTH || count > bestCount) {
+                bi++;
+                continue;
+            }
+
+            int nextBi = bi + 1;
+            for (int ai = heads[b[bi]]; ai >= 0; ai = previous[ai - aLo]) {
+                int beginA = ai;
+                int beginB = bi;
+                int endA = ai + 1;
+                int endB = bi + 1;
+                int lowCount = count;
+
+                while (beginA > aLo && beginB > bLo && a[beginA - 1] == b[beginB - 1]) {
+                    beginA--;
+                    beginB--;
+                    lowCount = Math.min(lowCount, counts[a[beginA]]);
+                }
+                while (endA < aHi && endB < bHi && a[endA] == b[endB]) {
+                    lowCount = Math.min(lowCount, counts[a[endA]]);
+                    endA++;
+                    endB++;
+                }
+
+                nextBi = Math.max(nextBi, endB);
+                if (best == null || lowCount < bestCount
+                        || (lowCount == bestCount && endA - beginA > best[1] - best[0])) {
+                    best = new int[]{beginA, endA, beginB, endB, lowCount};
+                    bestCount = lowCount;
+                }
+            }
+            bi = nextBi;
+        }
+
+        // Reset the shared tables before recursing
+        for (int i = aLo; i < aHi; i++) {
+            counts[a[i]] = 0;
+            heads[a[i]] = -1;
+        }
+
+        return best;
+    }
+
+    /**
+     * Pushes the gaps between the longest increasing run of lines that occur exactly once on each side.
+     * Returns {@code false} when there is no such line.
+     */
+    private boolean splitOnUniqueLines(int aLo, int aHi, int bLo, int bHi, Deque<int[]> pending) {
+        for (int i = aLo; i < aHi; i++) {
+            counts[a[i]]++;
+            heads[a[i]] = i;
+        }
+        for (int i = bLo; i < bHi; i++) {
+            countsB[b[i]]++;
+        }
+
+        // Candidate pairs in B order; their A positions are then reduced to the longest increasing run
+        int[] pairA = new int[Math.min(aHi - aLo, bHi - bLo)];
+        int[] pairB = new int[pairA.length];
+        int pairs = 0;
+        for (int i = bLo; i < bHi && pairs < pairA.length; i++) {
+            int id = b[i];
+            if (counts[id] == 1 && countsB[id] == 1) {
+                pairA[pairs] = heads[id];
+                pairB[pairs] = i;
+                pairs++;
+            }
+        }
+
+        for (int i = aLo; i < aHi; i++) {
+            counts[a[i]] = 0;
+            heads[a[i]] = -1;
+        }
+        for (int i = bLo; i < bHi; i++) {
+            countsB[b[i]] = 0;
+        }
+
+        if (pairs == 0) {
+            return false;
+        }
+
+        // Patience sorting: tails[k] is the pair ending the best run of length k + 1
+        int[] tails = new int[pairs];
+        int[] predecessor = new int[pairs];
+        int length = 0;
+        for (int i = 0; i < pairs; i++) {
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (pairA[tails[middle]] < pairA[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            predecessor[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        // Walk the run backwards, pushing the region after each anchor so the first gap is popped first
+        int nextA = aHi;
+        int nextB = bHi;
+        for (int i = tails[length - 1]; i >= 0; i = predecessor[i]) {
+            pending.push(new int[]{pairA[i] + 1, nextA, pairB[i] + 1, nextB});
+            nextA = pairA[i];
+            nextB = pairB[i];
+        }
+        pending.push(new int[]{aLo, nextA, bLo, nextB});
+        return true;
+    }
+}
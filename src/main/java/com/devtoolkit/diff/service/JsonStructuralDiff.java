@@ -0,0 +1,496 @@
+package com.devtoolkit.diff.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Structural diff of two JSON trees.
+ * <p>
+ * Every subtree gets a 64-bit Merkle hash, computed once bottom-up (object hashes ignore field order,
+ * like {@code JsonNode.equals}), so identical subtrees are skipped without being walked; only a match of
+ * the two roots, which would report the documents equal, is confirmed with {@code equals}. Array elements
+ * are matched by a configurable identity field when every element carries a unique one, otherwise by
+ * an LCS over element hashes; identical elements found at another position are reported as moves, and
+ * the remaining elements of a changed region are paired in order and compared field by field. When the
+ * budget runs out the LCS falls back to the common prefix and suffix, so pairing stays linear.
+ * Optionally an RFC 6902 JSON Patch turning the first document into the second is built in the same walk.
+ */
+public final class JsonStructuralDiff {
+
+    private final String arrayKey;
+    private final boolean buildPatch;
+    private final DiffBudget budget;
+    private final IdentityHashMap<JsonNode, Long> hashes = new IdentityHashMap<>();
+    private final List<Map<String, Object>> changes = new ArrayList<>();
+    private final List<Map<String, Object>> patch = new ArrayList<>();
+
+    /**
+     * @param arrayKey   field identifying array elements (e.g. {@code "id"}), or null to match by content
+     * @param buildPatch whether to build a JSON Patch next to the change list
+     * @param budget     bounds the array alignment; degraded when it runs out
+     */
+    public JsonStructuralDiff(String arrayKey, boolean buildPatch, DiffBudget budget) {
+        this.arrayKey = arrayKey != null && !arrayKey.isEmpty() ? arrayKey : null;
+        this.buildPatch = buildPatch;
+        this.budget = budget;
+    }
+
+    /**
+     * Compare two documents; returns whether they are equal.
+     */
+    public boolean compare(JsonNode node1, JsonNode node2) {
+        // The one place a hash match is confirmed: an identical result must not rest on the hash alone
+        if (hash(node1) == hash(node2) && node1.equals(node2)) {
+            return true;
+        }
+        compareNodes(node1, node2, "", "");
+        return false;
+    }
+
+    public List<Map<String, Object>> getChanges() {
+        return changes;
+    }
+
+    public List<Map<String, Object>> getPatch() {
+        return patch;
+    }
+
+    private void compareNodes(JsonNode node1, JsonNode node2, String path, String pointer) {
+        if (hash(node1) == hash(node2)) {
+            return;
+        }
+
+        if (node1.getNodeType() != node2.getNodeType()) {
+            addChange(path, "TYPE_CHANGED", node1, node2);
+            addPatch("replace", pointer, node2);
+        } else if (node1.isObject()) {
+            compareObjects(node1, node2, path, pointer);
+        } else if (node1.isArray()) {
+            compareArrays(node1, node2, path, pointer);
+        } else {
+            addChange(path, "VALUE_CHANGED", node1, node2);
+            addPatch("replace", pointer, node2);
+        }
+    }
+
+    private void compareObjects(JsonNode node1, JsonNode node2, String path, String pointer) {
+        Iterator<Map.Entry<String, JsonNode>> fields1 = node1.fields();
+        while (fields1.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields1.next();
+            String fieldPath = path.isEmpty() ? field.getKey() : path + "." + field.getKey();
+            JsonNode other = node2.get(field.getKey());
+            if (other != null) {
+                compareNodes(field.getValue(), other, fieldPath, childPointer(pointer, field.getKey()));
+            } else {
+                addChange(fieldPath, "FIELD_REMOVED", field.getValue(), null);
+                addPatch("remove", childPointer(pointer, field.getKey()), null);
+            }
+        }
+
+        Iterator<Map.Entry<String, JsonNode>> fields2 = node2.fields();
+        while (fields2.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields2.next();
+            if (!node1.has(field.getKey())) {
+                String fieldPath = path.isEmpty() ? field.getKey() : path + "." + field.getKey();
+                addChange(fieldPath, "FIELD_ADDED", null, field.getValue());
+                addPatch("add", childPointer(pointer, field.getKey()), field.getValue());
+            }
+        }
+    }
+
+    private void compareArrays(JsonNode array1, JsonNode array2, String path, String pointer) {
+        int size1 = array1.size();
+        int size2 = array2.size();
+
+        // matchOf1[i] is the element of array2 paired with array1[i], or -1
+        int[] matchOf1 = arrayKey != null ? matchByKey(array1, array2) : null;
+        if (matchOf1 == null) {
+            matchOf1 = matchByContent(array1, array2);
+        }
+        int[] matchOf2 = new int[size2];
+        Arrays.fill(matchOf2, -1);
+        for (int i = 0; i < size1; i++) {
+            if (matchOf1[i] >= 0) {
+                matchOf2[matchOf1[i]] = i;
+            }
+        }
+
+        for (int i = 0; i < size1; i++) {
+            if (matchOf1[i] < 0) {
+                addChange(path + "[" + i + "]", "ARRAY_ELEMENT_REMOVED", array1.get(i), null);
+            }
+        }
+        for (int j = 0; j < size2; j++) {
+            if (matchOf2[j] < 0) {
+                addChange(path + "[" + j + "]", "ARRAY_ELEMENT_ADDED", null, array2.get(j));
+            }
+        }
+
+        // Pairs that keep their relative order form the longest increasing run, the rest moved
+        boolean[] stays = longestIncreasingRun(matchOf1);
+        for (int i = 0; i < size1; i++) {
+            if (matchOf1[i] >= 0 && !stays[i]) {
+                Map<String, Object> change = new HashMap<>();
+                change.put("path", path + "[" + matchOf1[i] + "]");
+                change.put("fromPath", path + "[" + i + "]");
+                change.put("type", "ARRAY_ELEMENT_MOVED");
+                change.put("value", array1.get(i).toString());
+                changes.add(change);
+            }
+        }
+
+        if (buildPatch) {
+            addArrayPatch(array2, matchOf1, matchOf2, stays, pointer);
+        }
+
+        // Element-level differences, addressed by the element's position in the second document
+        for (int j = 0; j < size2; j++) {
+            if (matchOf2[j] >= 0) {
+                compareNodes(array1.get(matchOf2[j]), array2.get(j), path + "[" + j + "]",
+                        buildPatch ? pointer + "/" + j : null);
+            }
+        }
+    }
+
+    /**
+     * Pair elements by the value of the identity field; null when some element lacks a unique one.
+     */
+    private int[] matchByKey(JsonNode array1, JsonNode array2) {
+        Map<JsonNode, Integer> positions2 = new HashMap<>();
+        for (int j = 0; j < array2.size(); j++) {
+            JsonNode key = array2.get(j).get(arrayKey);
+            if (key == null || !key.isValueNode() || positions2.put(key, j) != null) {
+                return null;
+            }
+        }
+
+        int[] matchOf1 = new int[array1.size()];
+        Map<JsonNode, Integer> seen = new HashMap<>();
+        for (int i = 0; i < array1.size(); i++) {
+            JsonNode key = array1.get(i).get(arrayKey);
+            if (key == null || !key.isValueNode() || seen.put(key, i) != null) {
+                return null;
+            }
+            Integer j = positions2.get(key);
+            matchOf1[i] = j != null ? j : -1;
+        }
+        return matchOf1;
+    }
+
+    /**
+     * Pair elements through an LCS of their hashes, then identical elements that moved, then the
+     * remaining elements of each changed region in order.
+     */
+    private int[] matchByContent(JsonNode array1, JsonNode array2) {
+        int size1 = array1.size();
+        int size2 = array2.size();
+        Map<Long, Integer> ids = new HashMap<>();
+        int[] ids1 = new int[size1];
+        int[] ids2 = new int[size2];
+        for (int i = 0; i < size1; i++) {
+            ids1[i] = ids.computeIfAbsent(hash(array1.get(i)), h -> ids.size());
+        }
+        for (int j = 0; j < size2; j++) {
+            ids2[j] = ids.computeIfAbsent(hash(array2.get(j)), h -> ids.size());
+        }
+
+        int[] matchOf1 = new int[size1];
+        boolean[] matched2 = new boolean[size2];
+        List<Edit> edits = align(ids1, ids2);
+        int a = 0;
+        int b = 0;
+        for (Edit edit : edits) {
+            while (a < edit.getBeginA()) {
+                matched2[b] = true;
+                matchOf1[a++] = b++;
+            }
+            for (int i = edit.getBeginA(); i < edit.getEndA(); i++) {
+                matchOf1[i] = -1;
+            }
+            a = edit.getEndA();
+            b = edit.getEndB();
+        }
+        while (a < size1) {
+            matched2[b] = true;
+            matchOf1[a++] = b++;
+        }
+
+        // Identical elements deleted in one place and inserted in another are moves
+        Map<Integer, List<Integer>> inserted = new HashMap<>();
+        for (int j = size2 - 1; j >= 0; j--) {
+            if (!matched2[j]) {
+                inserted.computeIfAbsent(ids2[j], id -> new ArrayList<>()).add(j);
+            }
+        }
+        for (int i = 0; i < size1; i++) {
+            List<Integer> candidates = matchOf1[i] < 0 ? inserted.get(ids1[i]) : null;
+            if (candidates != null && !candidates.isEmpty()) {
+                int j = candidates.remove(candidates.size() - 1);
+                matched2[j] = true;
+                matchOf1[i] = j;
+            }
+        }
+
+        // What is left of a changed region is most likely the same element, modified
+        for (Edit edit : edits) {
+            int j = edit.getBeginB();
+            for (int i = edit.getBeginA(); i < edit.getEndA(); i++) {
+                if (matchOf1[i] >= 0) {
+                    continue;
+                }
+                while (j < edit.getEndB() && matched2[j]) {
+                    j++;
+                }
+                if (j == edit.getEndB()) {
+                    break;
+                }
+                matched2[j] = true;
+                matchOf1[i] = j++;
+            }
+        }
+        return matchOf1;
+    }
+
+    /**
+     * LCS of the element hashes, or a single prefix/suffix edit once the budget has run out.
+     */
+    private List<Edit> align(int[] ids1, int[] ids2) {
+        if (budget.getLevel() == DiffBudget.Level.PREFIX_SUFFIX) {
+            return MyersDiff.prefixSuffix(ids1, ids2);
+        }
+        try {
+            return MyersDiff.diff(ids1, ids2, budget);
+        } catch (DiffBudget.Exceeded e) {
+            budget.degrade(DiffBudget.Level.PREFIX_SUFFIX);
+            return MyersDiff.prefixSuffix(ids1, ids2);
+        }
+    }
+
+    /**
+     * Marks the pairs on one longest run whose second-document positions increase (patience sorting).
+     */
+    private static boolean[] longestIncreasingRun(int[] matchOf1) {
+        int n = matchOf1.length;
+        int[] tails = new int[n];
+        int[] previous = new int[n];
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            if (matchOf1[i] < 0) {
+                continue;
+            }
+            int low = 0;
+            int high = length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (matchOf1[tails[middle]] < matchOf1[i]) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        boolean[] stays = new boolean[n];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            stays[i] = true;
+        }
+        return stays;
+    }
+
+    /**
+     * Remove, add and move operations that reorder the first array into the second. Elements on the longest
+     * increasing run stay put; every other matched element is moved once, right behind the element that
+     * precedes it in the second array, and added elements are inserted the same way. Operations apply in
+     * sequence, so positions are tracked in a Fenwick tree over the elements' final sort keys.
+     */
+    private void addArrayPatch(JsonNode array2, int[] matchOf1, int[] matchOf2, boolean[] stays, String pointer) {
+        // Removals from the back keep the indexes of earlier removals valid
+        for (int i = matchOf1.length - 1; i >= 0; i--) {
+            if (matchOf1[i] < 0) {
+                addPatch("remove", pointer + "/" + i, null);
+            }
+        }
+
+        // Sort key of an element: (index in the first array, -1) while it sits where it started, and
+        // (first component of its predecessor's key, index in the second array) once it has been placed
+        int size1 = matchOf1.length;
+        int size2 = matchOf2.length;
+        long[] placedKeys = new long[size2];
+        long previous = key(-1, -1);
+        for (int j = 0; j < size2; j++) {
+            int source = matchOf2[j];
+            placedKeys[j] = source >= 0 && stays[source] ? key(source, -1) : key(anchor(previous), j);
+            previous = placedKeys[j];
+        }
+        long[] universe = new long[size1 + size2];
+        int keys = 0;
+        for (int i = 0; i < size1; i++) {
+            universe[keys++] = key(i, -1);
+        }
+        for (int j = 0; j < size2; j++) {
+            int source = matchOf2[j];
+            if (source < 0 || !stays[source]) {
+                universe[keys++] = placedKeys[j];
+            }
+        }
+        Arrays.sort(universe, 0, keys);
+
+        // Present elements counted by key rank; a position is the number of present elements ranked lower
+        int[] tree = new int[keys + 1];
+        for (int i = 0; i < size1; i++) {
+            if (matchOf1[i] >= 0) {
+                fenwickAdd(tree, Arrays.binarySearch(universe, 0, keys, key(i, -1)), 1);
+            }
+        }
+        for (int j = 0; j < size2; j++) {
+            int source = matchOf2[j];
+            if (source >= 0 && stays[source]) {
+                continue;
+            }
+            int rank = Arrays.binarySearch(universe, 0, keys, placedKeys[j]);
+            if (source < 0) {
+                addPatch("add", pointer + "/" + fenwickCount(tree, rank), array2.get(j));
+            } else {
+                int from = Arrays.binarySearch(universe, 0, keys, key(source, -1));
+                int fromIndex = fenwickCount(tree, from);
+                fenwickAdd(tree, from, -1);
+                int toIndex = fenwickCount(tree, rank);
+                if (fromIndex != toIndex) {
+                    Map<String, Object> operation = new HashMap<>();
+                    operation.put("op", "move");
+                    operation.put("from", pointer + "/" + fromIndex);
+                    operation.put("path", pointer + "/" + toIndex);
+                    patch.add(operation);
+                }
+            }
+            fenwickAdd(tree, rank, 1);
+        }
+    }
+
+    /**
+     * Packs an anchor in {@code [-1, 2^31)} and a position in {@code [-1, 2^31)} into an ordered long.
+     */
+    private static long key(int anchor, int position) {
+        return ((long) (anchor + 1) << 32) | (position + 1L);
+    }
+
+    private static int anchor(long key) {
+        return (int) (key >>> 32) - 1;
+    }
+
+    private static void fenwickAdd(int[] tree, int rank, int delta) {
+        for (int i = rank + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Number of present elements ranked below {@code rank}.
+     */
+    private static int fenwickCount(int[] tree, int rank) {
+        int count = 0;
+        for (int i = rank; i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+
+    private void addChange(String path, String type, JsonNode oldValue, JsonNode newValue) {
+        Map<String, Object> change = new HashMap<>();
+        change.put("path", path);
+        change.put("type", type);
+        if (oldValue != null) {
+            change.put("oldValue", oldValue.toString());
+        }
+        if (newValue != null) {
+            change.put("newValue", newValue.toString());
+        }
+        changes.add(change);
+    }
+
+    private void addPatch(String op, String pointer, JsonNode value) {
+        if (!buildPatch) {
+            return;
+        }
+        Map<String, Object> operation = new HashMap<>();
+        operation.put("op", op);
+        operation.put("path", pointer);
+        if (value != null) {
+            operation.put("value", value);
+        }
+        patch.add(operation);
+    }
+
+    private String childPointer(String pointer, String field) {
+        if (!buildPatch) {
+            return null;
+        }
+        // RFC 6901 escaping
+        return pointer + "/" + field.replace("~", "~0").replace("/", "~1");
+    }
+
+    /**
+     * Merkle hash of a subtree, memoised per container node; scalars are cheaper to hash than to look up.
+     */
+    private long hash(JsonNode node) {
+        if (node.isValueNode()) {
+            long hash = hashText(node.asText(), node.getNodeType().ordinal() + 2);
+            return node.isNumber() ? mix(hash + node.numberType().ordinal()) : hash;
+        }
+
+        Long cached = hashes.get(node);
+        if (cached != null) {
+            return cached;
+        }
+
+        long hash;
+        if (node.isObject()) {
+            // Sum of mixed field hashes, so field order does not matter
+            hash = 0x9E3779B97F4A7C15L;
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                hash += mix(hashText(field.getKey(), 1) * 31 + hash(field.getValue()));
+            }
+        } else {
+            hash = 0xC2B2AE3D27D4EB4FL;
+            for (JsonNode element : node) {
+                hash = mix(hash * 31 + hash(element));
+            }
+        }
+        hash = mix(hash + node.size());
+
+        hashes.put(node, hash);
+        return hash;
+    }
+
+    private static long hashText(String text, long seed) {
+        long hash = 0xcbf29ce484222325L ^ seed;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,165 @@
+package com.devtoolkit.diff.service;
+
+import java.util.Arrays;
+
+/**
+ * Line index over a text, built in a single scan.
+ * Lines are kept as offsets into the original string (no substring per line) and every distinct line
+ * is given an int id, shared between the two sides of a diff, so aligners compare ids instead of
+ * strings. Splitting follows {@code String.split("\n", -1)}.
+ */
+public final class LineTable implements DiffLines {
+
+    private final String text;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] ids;
+
+    private LineTable(String text, int[] starts, int[] ends, int[] ids) {
+        this.text = text;
+        this.starts = starts;
+        this.ends = ends;
+        this.ids = ids;
+    }
+
+    /**
+     * Index both sides of a diff against one interner so equal lines get equal ids across sides.
+     */
+    public static LineTable[] build(String text1, String text2) {
+        Interner interner = new Interner(countLines(text1) + countLines(text2));
+        return new LineTable[]{interner.index(text1), interner.index(text2)};
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * The id sequence; callers must not modify it.
+     */
+    public int[] ids() {
+        return ids;
+    }
+
+    public int id(int line) {
+        return ids[line];
+    }
+
+    public String line(int line) {
+        return text.substring(starts[line], ends[line]);
+    }
+
+    @Override
+    public StringBuilder appendLine(StringBuilder target, int line) {
+        return target.append(text, starts[line], ends[line]);
+    }
+
+    public int lineStart(int line) {
+        return starts[line];
+    }
+
+    public int lineEnd(int line) {
+        return ends[line];
+    }
+
+    public int lineLength(int line) {
+        return ends[line] - starts[line];
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    private static int countLines(String text) {
+        int lines = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Open-addressing table from line content to id; entries remember one occurrence of each line.
+     */
+    private static final class Interner {
+
+        private final int[] slots;
+        private final int mask;
+        private String[] texts;
+        private int[] starts;
+        private int[] ends;
+        private int[] hashes;
+        private int size = 0;
+
+        Interner(int expectedLines) {
+            int capacity = Integer.highestOneBit(Math.max(4, expectedLines * 2 - 1)) << 1;
+            this.slots = new int[capacity];
+            this.mask = capacity - 1;
+            int initial = Math.min(expectedLines, 1024);
+            this.texts = new String[initial];
+            this.starts = new int[initial];
+            this.ends = new int[initial];
+            this.hashes = new int[initial];
+        }
+
+        LineTable index(String text) {
+            int lineCount = countLines(text);
+            int[] lineStarts = new int[lineCount];
+            int[] lineEnds = new int[lineCount];
+            int[] lineIds = new int[lineCount];
+
+            int line = 0;
+            int start = 0;
+            int hash = 0;
+            for (int i = 0; i <= text.length(); i++) {
+                if (i == text.length() || text.charAt(i) == '\n') {
+                    lineStarts[line] = start;
+                    lineEnds[line] = i;
+                    lineIds[line] = intern(text, start, i, hash);
+                    line++;
+                    start = i + 1;
+                    hash = 0;
+                } else {
+                    hash = 31 * hash + text.charAt(i);
+                }
+            }
+
+            return new LineTable(text, lineStarts, lineEnds, lineIds);
+        }
+
+        private int intern(String text, int start, int end, int hash) {
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (true) {
+                int entry = slots[slot];
+                if (entry == 0) {
+                    return add(slot, text, start, end, hash);
+                }
+                int id = entry - 1;
+                if (hashes[id] == hash && ends[id] - starts[id] == end - start
+                        && text.regionMatches(start, texts[id], starts[id], end - start)) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private int add(int slot, String text, int start, int end, int hash) {
+            if (size == texts.length) {
+                int grown = texts.length * 2;
+                texts = Arrays.copyOf(texts, grown);
+                starts = Arrays.copyOf(starts, grown);
+                ends = Arrays.copyOf(ends, grown);
+                hashes = Arrays.copyOf(hashes, grown);
+            }
+            texts[size] = text;
+            starts[size] = start;
+            ends[size] = end;
+            hashes[size] = hash;
+            slots[slot] = size + 1;
+            return size++;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.devtoolkit.diff.service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential line reader over a memory-mapped file.
+ * Lines are exposed as byte ranges of the mapping, so scanning a file never copies its content onto the heap.
+ * Splitting follows {@code String.split("\n", -1)}: a trailing newline yields a final empty line.
+ */
+public final class MappedLines {
+
+    private final MappedByteBuffer buffer;
+    private final int size;
+    private final boolean stripCarriageReturn;
+    private int position = 0;
+    private boolean exhausted = false;
+
+    private int lineStart;
+    private int lineEnd;
+    private long lineHash;
+
+    private MappedLines(MappedByteBuffer buffer, int size, boolean stripCarriageReturn) {
+        this.buffer = buffer;
+        this.size = size;
+        this.stripCarriageReturn = stripCarriageReturn;
+    }
+
+    public static MappedLines open(Path path, boolean stripCarriageReturn) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("File is too large to diff: " + size + " bytes");
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedLines(buffer, (int) size, stripCarriageReturn);
+        }
+    }
+
+    /**
+     * Advance to the next line. Returns {@code false} once the input is exhausted.
+     */
+    public boolean next() {
+        if (exhausted) {
+            return false;
+        }
+
+        long hash = 0xcbf29ce484222325L;
+        int start = position;
+        int i = start;
+        while (i < size && buffer.get(i) != '\n') {
+            i++;
+        }
+
+        int end = i;
+        if (stripCarriageReturn && end > start && buffer.get(end - 1) == '\r') {
+            end--;
+        }
+        for (int j = start; j < end; j++) {
+            hash ^= buffer.get(j);
+            hash *= 0x100000001b3L;
+        }
+
+        if (i < size) {
+            position = i + 1;
+        } else {
+            exhausted = true;
+        }
+
+        lineStart = start;
+        lineEnd = end;
+        lineHash = hash;
+        return true;
+    }
+
+    public int start() {
+        return lineStart;
+    }
+
+    public int end() {
+        return lineEnd;
+    }
+
+    public long hash() {
+        return lineHash;
+    }
+
+    public byte byteAt(int index) {
+        return buffer.get(index);
+    }
+
+    /**
+     * Compare a line of this file with a line of another mapped file byte by byte.
+     */
+    public boolean regionEquals(int start, int end, MappedLines other, int otherStart, int otherEnd) {
+        if (end - start != otherEnd - otherStart) {
+            return false;
+        }
+        for (int i = 0; i < end - start; i++) {
+            if (buffer.get(start + i) != other.buffer.get(otherStart + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy a line range into {@code target}, which must be large enough.
+     */
+    public void copy(int start, int end, byte[] target) {
+        buffer.get(start, target, 0, end - start);
+    }
+}
@@ -0,0 +1,147 @@
+package com.devtoolkit.diff.service;
+
+import java.util.Arrays;
+
+/**
+ * MinHash signature of a text's shingle set, for estimating Jaccard similarity without the texts.
+ * <p>
+ * The text is split into tokens (runs of letters and digits, and single punctuation characters;
+ * whitespace and layout are ignored), every run of {@link #SHINGLE_SIZE} consecutive tokens is hashed to
+ * 64 bits, and each of the signature's slots keeps the minimum of that hash under its own seeded mixing
+ * function. The fraction of slots two signatures agree on estimates the Jaccard similarity of their
+ * shingle sets, with a standard error of about {@code 1 / sqrt(slots)}.
+ */
+public final class MinHashSignature {
+
+    public static final int SHINGLE_SIZE = 3;
+
+    private final int[] slots;
+    private final int shingles;
+
+    private MinHashSignature(int[] slots, int shingles) {
+        this.slots = slots;
+        this.shingles = shingles;
+    }
+
+    public static MinHashSignature of(String text, int size) {
+        long[] seeds = seeds(size);
+        int[] slots = new int[size];
+        Arrays.fill(slots, Integer.MAX_VALUE);
+
+        long[] window = new long[SHINGLE_SIZE];
+        int tokens = 0;
+        int shingles = 0;
+        int length = text != null ? text.length() : 0;
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            // FNV-1a over the token's characters
+            long hash = 0xcbf29ce484222325L;
+            if (Character.isLetterOrDigit(c) || c == '_') {
+                while (i < length && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+                    hash = (hash ^ text.charAt(i++)) * 0x100000001b3L;
+                }
+            } else {
+                hash = (hash ^ c) * 0x100000001b3L;
+                i++;
+            }
+
+            window[tokens % SHINGLE_SIZE] = hash;
+            tokens++;
+            if (tokens >= SHINGLE_SIZE) {
+                add(slots, seeds, shingle(window, tokens));
+                shingles++;
+            }
+        }
+        if (tokens > 0 && tokens < SHINGLE_SIZE) {
+            // Texts shorter than one shingle are a single shingle of what they have
+            add(slots, seeds, shingle(window, tokens));
+            shingles++;
+        }
+        return new MinHashSignature(slots, shingles);
+    }
+
+    /**
+     * Estimated Jaccard similarity of the two shingle sets; signatures must have the same size.
+     */
+    public double similarity(MinHashSignature other) {
+        if (shingles == 0 || other.shingles == 0) {
+            return shingles == other.shingles ? 1.0 : 0.0;
+        }
+        int equal = 0;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == other.slots[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / slots.length;
+    }
+
+    /**
+     * Hash of the slots {@code [band * rows, (band + 1) * rows)}, the LSH bucket key of one band.
+     */
+    public long bandKey(int band, int rows) {
+        long key = band;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            key = mix(key * 31 + slots[i]);
+        }
+        return key;
+    }
+
+    public int size() {
+        return slots.length;
+    }
+
+    public int getShingles() {
+        return shingles;
+    }
+
+    /**
+     * Rough heap size in bytes.
+     */
+    public long estimatedSize() {
+        return 32 + 16 + 4L * slots.length;
+    }
+
+    private static long shingle(long[] window, int tokens) {
+        // Token hashes in text order, oldest first
+        int count = Math.min(tokens, SHINGLE_SIZE);
+        long hash = 0;
+        for (int k = tokens - count; k < tokens; k++) {
+            hash = mix(hash * 31 + window[k % SHINGLE_SIZE]);
+        }
+        return hash;
+    }
+
+    private static void add(int[] slots, long[] seeds, long shingle) {
+        for (int s = 0; s < slots.length; s++) {
+            int value = (int) (mix(shingle ^ seeds[s]) >>> 33);
+            if (value < slots[s]) {
+                slots[s] = value;
+            }
+        }
+    }
+
+    private static long[] seeds(int size) {
+        long[] seeds = new long[size];
+        long state = 0x9E3779B97F4A7C15L;
+        for (int s = 0; s < size; s++) {
+            state += 0x9E3779B97F4A7C15L;
+            seeds[s] = mix(state);
+        }
+        return seeds;
+    }
+
+    /**
+     * SplitMix64 finaliser.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,198 @@
+package com.devtoolkit.diff.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Linear-space O(ND) Myers diff over int sequences.
+ * Elements are compared by value only, so callers map lines (or tokens) to ids first.
+ */
+public final class MyersDiff {
+
+    private MyersDiff() {
+    }
+
+    public static List<Edit> diff(int[] a, int[] b) {
+        return diff(a, 0, a.length, b, 0, b.length);
+    }
+
+    /**
+     * Diff under a budget; throws {@link DiffBudget.Exceeded} once its deadline has passed.
+     */
+    public static List<Edit> diff(int[] a, int[] b, DiffBudget budget) {
+        List<Edit> edits = new ArrayList<>();
+        compute(a, 0, a.length, b, 0, b.length, edits, budget);
+        return edits;
+    }
+
+    /**
+     * Diff the sub-ranges {@code a[aLo, aHi)} and {@code b[bLo, bHi)}; edit positions are absolute.
+     */
+    public static List<Edit> diff(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi) {
+        List<Edit> edits = new ArrayList<>();
+        compute(a, aLo, aHi, b, bLo, bHi, edits, DiffBudget.UNLIMITED);
+        return edits;
+    }
+
+    /**
+     * Single edit covering everything between the common prefix and suffix, or none when equal.
+     * The cheapest valid alignment, used when there is no time left for a real one.
+     */
+    public static List<Edit> prefixSuffix(int[] a, int[] b) {
+        int prefix = 0;
+        while (prefix < a.length && prefix < b.length && a[prefix] == b[prefix]) {
+            prefix++;
+        }
+        int endA = a.length;
+        int endB = b.length;
+        while (endA > prefix && endB > prefix && a[endA - 1] == b[endB - 1]) {
+            endA--;
+            endB--;
+        }
+        List<Edit> edits = new ArrayList<>(1);
+        if (prefix < endA || prefix < endB) {
+            edits.add(new Edit(prefix, endA, prefix, endB));
+        }
+        return edits;
+    }
+
+    static void compute(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi, List<Edit> edits,
+                        DiffBudget budget) {
+        // Strip common prefix and suffix, they never take part in an edit
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            aLo++;
+            bLo++;
+        }
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            aHi--;
+            bHi--;
+        }
+
+        if (aLo == aHi && bLo == bHi) {
+            return;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            addEdit(edits, aLo, aHi, bLo, bHi);
+            return;
+        }
+
+        int[] split = middleSnake(a, aLo, aHi, b, bLo, bHi, budget);
+        if (split == null) {
+            addEdit(edits, aLo, aHi, bLo, bHi);
+            return;
+        }
+
+        compute(a, aLo, split[0], b, bLo, split[1], edits, budget);
+        compute(a, split[0], aHi, b, split[1], bHi, edits, budget);
+    }
+
+    /**
+     * Find the point where the forward and reverse D-paths overlap.
+     * Returns absolute {@code {x, y}} or {@code null} when the ranges share nothing.
+     */
+    private static int[] middleSnake(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi, DiffBudget budget) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int vOffset = maxD;
+        int vLength = 2 * maxD + 2;
+
+        int[] v1 = new int[vLength];
+        int[] v2 = new int[vLength];
+        Arrays.fill(v1, -1);
+        Arrays.fill(v2, -1);
+        v1[vOffset + 1] = 0;
+        v2[vOffset + 1] = 0;
+
+        int delta = n - m;
+        boolean front = (delta & 1) != 0;
+        int k1Start = 0;
+        int k1End = 0;
+        int k2Start = 0;
+        int k2End = 0;
+
+        for (int d = 0; d < maxD; d++) {
+            budget.checkpoint();
+
+            // Forward path
+            for (int k1 = -d + k1Start; k1 <= d - k1End; k1 += 2) {
+                int k1Offset = vOffset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d && v1[k1Offset - 1] < v1[k1Offset + 1])) {
+                    x1 = v1[k1Offset + 1];
+                } else {
+                    x1 = v1[k1Offset - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && a[aLo + x1] == b[bLo + y1]) {
+                    x1++;
+                    y1++;
+                }
+                v1[k1Offset] = x1;
+
+                if (x1 > n) {
+                    k1End += 2;
+                } else if (y1 > m) {
+                    k1Start += 2;
+                } else if (front) {
+                    int k2Offset = vOffset + delta - k1;
+                    if (k2Offset >= 0 && k2Offset < vLength && v2[k2Offset] != -1) {
+                        int x2 = n - v2[k2Offset];
+                        if (x1 >= x2) {
+                            return new int[]{aLo + x1, bLo + y1};
+                        }
+                    }
+                }
+            }
+
+            // Reverse path
+            for (int k2 = -d + k2Start; k2 <= d - k2End; k2 += 2) {
+                int k2Offset = vOffset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d && v2[k2Offset - 1] < v2[k2Offset + 1])) {
+                    x2 = v2[k2Offset + 1];
+                } else {
+                    x2 = v2[k2Offset - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m && a[aHi - x2 - 1] == b[bHi - y2 - 1]) {
+                    x2++;
+                    y2++;
+                }
+                v2[k2Offset] = x2;
+
+                if (x2 > n) {
+                    k2End += 2;
+                } else if (y2 > m) {
+                    k2Start += 2;
+                } else if (!front) {
+                    int k1Offset = vOffset + delta - k2;
+                    if (k1Offset >= 0 && k1Offset < vLength && v1[k1Offset] != -1) {
+                        int x1 = v1[k1Offset];
+                        int y1 = vOffset + x1 - k1Offset;
+                        if (x1 >= n - x2) {
+                            return new int[]{aLo + x1, bLo + y1};
+                        }
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Append an edit, merging it with the previous one when the two touch.
+     */
+    static void addEdit(List<Edit> edits, int beginA, int endA, int beginB, int endB) {
+        if (!edits.isEmpty()) {
+            Edit last = edits.get(edits.size() - 1);
+            if (last.getEndA() == beginA && last.getEndB() == beginB) {
+                edits.set(edits.size() - 1, new Edit(last.getBeginA(), endA, last.getBeginB(), endB));
+                return;
+            }
+        }
+        edits.add(new Edit(beginA, endA, beginB, endB));
+    }
+}
@@ -0,0 +1,51 @@
+package com.devtoolkit.diff.service;
+
+/**
+ * Result of {@link TextNormalizer}: the normalised text plus, when requested, the original offset of
+ * every normalised character so positions can be reported against the user's unmodified input.
+ */
+public final class NormalizedText {
+
+    private final String original;
+    private final String text;
+    private final int[] offsets;
+
+    NormalizedText(String original, String text, int[] offsets) {
+        this.original = original;
+        this.text = text;
+        this.offsets = offsets;
+    }
+
+    static NormalizedText unchanged(String text) {
+        return new NormalizedText(text, text, null);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public String getOriginal() {
+        return original;
+    }
+
+    /**
+     * Whether normalisation left the text as it was, in which case offsets map to themselves.
+     */
+    public boolean isIdentity() {
+        return text == original;
+    }
+
+    /**
+     * Original offset of the normalised position {@code index}; {@code index == length} maps to the end
+     * of the original text. Works as a span end too: it points at the origin of the next kept character.
+     */
+    public int toOriginal(int index) {
+        if (isIdentity()) {
+            return index;
+        }
+        if (offsets == null) {
+            throw new IllegalStateException("Offsets were not tracked for this text");
+        }
+        return offsets[index];
+    }
+}
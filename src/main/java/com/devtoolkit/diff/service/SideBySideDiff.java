@@ -0,0 +1,238 @@
+package com.devtoolkit.diff.service;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.util.Arrays;
+
+/**
+ * Side-by-side rows of a text diff.
+ * Rows are kept column-wise in primitive arrays (line indexes and a status per row) and line text is read
+ * from the line tables only when the rows are written, so a large diff costs a few arrays instead of a map
+ * per row and per highlight. Highlight spans are packed as {@code start, end, type} int triples relative
+ * to the displayed (original) line. Written by {@link SideBySideDiffSerializer}.
+ */
+@JsonSerialize(using = SideBySideDiffSerializer.class)
+public final class SideBySideDiff {
+
+    public enum RowStatus {
+        UNCHANGED("unchanged", "diff-unchanged"),
+        MODIFIED("modified", "diff-modified"),
+        REMOVED("removed", "diff-deleted"),
+        ADDED("added", "diff-added");
+
+        private final SerializedString name;
+        private final SerializedString cssClass;
+
+        RowStatus(String name, String cssClass) {
+            this.name = new SerializedString(name);
+            this.cssClass = new SerializedString(cssClass);
+        }
+
+        public SerializedString getName() {
+            return name;
+        }
+
+        public SerializedString getCssClass() {
+            return cssClass;
+        }
+    }
+
+    public enum SpanType {
+        UNCHANGED("unchanged", "diff-unchanged"),
+        CHANGED("changed", "diff-changed"),
+        DELETED("deleted", "diff-deleted"),
+        ADDED("added", "diff-added");
+
+        private static final SpanType[] VALUES = values();
+
+        private final SerializedString name;
+        private final SerializedString cssClass;
+
+        SpanType(String name, String cssClass) {
+            this.name = new SerializedString(name);
+            this.cssClass = new SerializedString(cssClass);
+        }
+
+        public SerializedString getName() {
+            return name;
+        }
+
+        public SerializedString getCssClass() {
+            return cssClass;
+        }
+
+        static SpanType of(int ordinal) {
+            return VALUES[ordinal];
+        }
+    }
+
+    private static final RowStatus[] STATUSES = RowStatus.values();
+
+    private final Side left;
+    private final Side right;
+    private final boolean compact;
+
+    private int[] leftIndexes;
+    private int[] rightIndexes;
+    private byte[] statuses;
+    private int[][] leftSpans;
+    private int[][] rightSpans;
+    private int size = 0;
+
+    SideBySideDiff(LineTable lines1, NormalizedText normalized1, LineTable lines2, NormalizedText normalized2,
+                   boolean compact) {
+        this.left = new Side(lines1, normalized1);
+        this.right = new Side(lines2, normalized2);
+        this.compact = compact;
+
+        int capacity = Math.max(16, Math.max(lines1.size(), lines2.size()));
+        this.leftIndexes = new int[capacity];
+        this.rightIndexes = new int[capacity];
+        this.statuses = new byte[capacity];
+        this.leftSpans = new int[capacity][];
+        this.rightSpans = new int[capacity][];
+    }
+
+    /**
+     * Append a row; a missing side is passed as {@code -1}. Returns the row number.
+     */
+    int addRow(int index1, int index2, RowStatus status) {
+        if (size == statuses.length) {
+            int grown = size * 2;
+            leftIndexes = Arrays.copyOf(leftIndexes, grown);
+            rightIndexes = Arrays.copyOf(rightIndexes, grown);
+            statuses = Arrays.copyOf(statuses, grown);
+            leftSpans = Arrays.copyOf(leftSpans, grown);
+            rightSpans = Arrays.copyOf(rightSpans, grown);
+        }
+        leftIndexes[size] = index1;
+        rightIndexes[size] = index2;
+        statuses[size] = (byte) status.ordinal();
+        return size++;
+    }
+
+    /**
+     * Attach highlights computed on the normalised lines of a row. Rows may be refined concurrently,
+     * each row by one thread.
+     */
+    void setHighlights(int row, int[] spans1, int[] spans2) {
+        leftSpans[row] = left.toDisplayOffsets(leftIndexes[row], spans1);
+        rightSpans[row] = right.toDisplayOffsets(rightIndexes[row], spans2);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Rough retained heap size in bytes: the row arrays, both texts and their offset tables.
+     */
+    public long estimatedSize() {
+        long rows = (long) statuses.length * (4 + 4 + 1 + 8 + 8);
+        long spans = 0;
+        for (int row = 0; row < size; row++) {
+            if (leftSpans[row] != null) {
+                spans += 16L + 4L * (leftSpans[row].length + rightSpans[row].length);
+            }
+        }
+        return rows + spans + left.estimatedSize() + right.estimatedSize();
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    public RowStatus getStatus(int row) {
+        return STATUSES[statuses[row]];
+    }
+
+    /**
+     * Zero-based line index on the left, or {@code -1} for an added row.
+     */
+    public int getLeftIndex(int row) {
+        return leftIndexes[row];
+    }
+
+    public int getRightIndex(int row) {
+        return rightIndexes[row];
+    }
+
+    /**
+     * Packed {@code start, end, type} triples, or null when the row has no highlights.
+     */
+    public int[] getLeftSpans(int row) {
+        return leftSpans[row];
+    }
+
+    public int[] getRightSpans(int row) {
+        return rightSpans[row];
+    }
+
+    Side left() {
+        return left;
+    }
+
+    Side right() {
+        return right;
+    }
+
+    /**
+     * Normalised lines used for refinement.
+     */
+    String normalizedLeft(int row) {
+        return left.lines.line(leftIndexes[row]);
+    }
+
+    String normalizedRight(int row) {
+        return right.lines.line(rightIndexes[row]);
+    }
+
+    /**
+     * One side of the diff: where each line sits in the text the user sent.
+     */
+    static final class Side {
+
+        private final LineTable lines;
+        private final NormalizedText normalized;
+
+        Side(LineTable lines, NormalizedText normalized) {
+            this.lines = lines;
+            this.normalized = normalized;
+        }
+
+        long estimatedSize() {
+            long text = 2L * lines.getText().length() + 12L * lines.size();
+            if (!normalized.isIdentity()) {
+                // Original text plus one offset per normalised character
+                text += 2L * normalized.getOriginal().length() + 4L * normalized.getText().length();
+            }
+            return text;
+        }
+
+        String source() {
+            return normalized.isIdentity() ? lines.getText() : normalized.getOriginal();
+        }
+
+        int displayStart(int index) {
+            return normalized.toOriginal(lines.lineStart(index));
+        }
+
+        int displayEnd(int index) {
+            return normalized.toOriginal(lines.lineEnd(index));
+        }
+
+        private int[] toDisplayOffsets(int index, int[] spans) {
+            if (normalized.isIdentity()) {
+                return spans;
+            }
+            int lineStart = lines.lineStart(index);
+            int displayStart = normalized.toOriginal(lineStart);
+            for (int i = 0; i < spans.length; i += 3) {
+                spans[i] = normalized.toOriginal(lineStart + spans[i]) - displayStart;
+                spans[i + 1] = normalized.toOriginal(lineStart + spans[i + 1]) - displayStart;
+            }
+            return spans;
+        }
+    }
+}
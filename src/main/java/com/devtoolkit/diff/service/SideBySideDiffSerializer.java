@@ -0,0 +1,177 @@
+package com.devtoolkit.diff.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Streams a {@link SideBySideDiff} straight into the response generator.
+ * <p>
+ * The default shape is the one the UI has always read:
+ * {@code {"comparison": [{"lineNumber", "leftLineNumber", "rightLineNumber", "left", "right", "status",
+ * "cssClass", "leftHighlights", "rightHighlights"}], "totalLines"}}.
+ * The compact shape writes each row as an array
+ * {@code [status, leftLineNumber, rightLineNumber, left, right, leftChanged, rightChanged]}, where the
+ * last two are flat {@code [start, end, ...]} pairs of the changed parts and are only present on
+ * modified rows.
+ */
+public class SideBySideDiffSerializer extends StdSerializer<SideBySideDiff> {
+
+    private static final SerializedString COMPARISON = new SerializedString("comparison");
+    private static final SerializedString ROWS = new SerializedString("rows");
+    private static final SerializedString FORMAT = new SerializedString("format");
+    private static final SerializedString COMPACT = new SerializedString("compact");
+    private static final SerializedString TOTAL_LINES = new SerializedString("totalLines");
+    private static final SerializedString LINE_NUMBER = new SerializedString("lineNumber");
+    private static final SerializedString LEFT_LINE_NUMBER = new SerializedString("leftLineNumber");
+    private static final SerializedString RIGHT_LINE_NUMBER = new SerializedString("rightLineNumber");
+    private static final SerializedString LEFT = new SerializedString("left");
+    private static final SerializedString RIGHT = new SerializedString("right");
+    private static final SerializedString STATUS = new SerializedString("status");
+    private static final SerializedString CSS_CLASS = new SerializedString("cssClass");
+    private static final SerializedString LEFT_HIGHLIGHTS = new SerializedString("leftHighlights");
+    private static final SerializedString RIGHT_HIGHLIGHTS = new SerializedString("rightHighlights");
+    private static final SerializedString START = new SerializedString("start");
+    private static final SerializedString END = new SerializedString("end");
+    private static final SerializedString TYPE = new SerializedString("type");
+
+    public SideBySideDiffSerializer() {
+        super(SideBySideDiff.class);
+    }
+
+    @Override
+    public void serialize(SideBySideDiff diff, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        if (diff.isCompact()) {
+            gen.writeFieldName(FORMAT);
+            gen.writeString(COMPACT);
+            gen.writeFieldName(ROWS);
+        } else {
+            gen.writeFieldName(COMPARISON);
+        }
+        writeRows(diff, 0, diff.size(), gen);
+        gen.writeFieldName(TOTAL_LINES);
+        gen.writeNumber(diff.size());
+        gen.writeEndObject();
+    }
+
+    /**
+     * Write rows {@code [from, to)} as a JSON array in the diff's shape.
+     */
+    static void writeRows(SideBySideDiff diff, int from, int to, JsonGenerator gen) throws IOException {
+        char[] buffer = new char[256];
+        gen.writeStartArray();
+        for (int row = from; row < to; row++) {
+            buffer = diff.isCompact() ? writeCompactRow(diff, row, gen, buffer) : writeRow(diff, row, gen, buffer);
+        }
+        gen.writeEndArray();
+    }
+
+    private static char[] writeRow(SideBySideDiff diff, int row, JsonGenerator gen, char[] buffer) throws IOException {
+        SideBySideDiff.RowStatus status = diff.getStatus(row);
+        int index1 = diff.getLeftIndex(row);
+        int index2 = diff.getRightIndex(row);
+
+        gen.writeStartObject();
+        gen.writeFieldName(LINE_NUMBER);
+        gen.writeNumber(row + 1);
+        gen.writeFieldName(LEFT_LINE_NUMBER);
+        writeLineNumber(index1, gen);
+        gen.writeFieldName(RIGHT_LINE_NUMBER);
+        writeLineNumber(index2, gen);
+        gen.writeFieldName(LEFT);
+        buffer = writeLine(diff.left(), index1, gen, buffer);
+        gen.writeFieldName(RIGHT);
+        buffer = writeLine(diff.right(), index2, gen, buffer);
+        gen.writeFieldName(STATUS);
+        gen.writeString(status.getName());
+        gen.writeFieldName(CSS_CLASS);
+        gen.writeString(status.getCssClass());
+        if (diff.getLeftSpans(row) != null) {
+            gen.writeFieldName(LEFT_HIGHLIGHTS);
+            writeHighlights(diff.getLeftSpans(row), gen);
+            gen.writeFieldName(RIGHT_HIGHLIGHTS);
+            writeHighlights(diff.getRightSpans(row), gen);
+        }
+        gen.writeEndObject();
+        return buffer;
+    }
+
+    private static char[] writeCompactRow(SideBySideDiff diff, int row, JsonGenerator gen, char[] buffer)
+            throws IOException {
+        int index1 = diff.getLeftIndex(row);
+        int index2 = diff.getRightIndex(row);
+
+        gen.writeStartArray();
+        gen.writeString(diff.getStatus(row).getName());
+        writeLineNumber(index1, gen);
+        writeLineNumber(index2, gen);
+        buffer = writeLine(diff.left(), index1, gen, buffer);
+        buffer = writeLine(diff.right(), index2, gen, buffer);
+        if (diff.getLeftSpans(row) != null) {
+            writeChangedPairs(diff.getLeftSpans(row), gen);
+            writeChangedPairs(diff.getRightSpans(row), gen);
+        }
+        gen.writeEndArray();
+        return buffer;
+    }
+
+    private static void writeLineNumber(int index, JsonGenerator gen) throws IOException {
+        if (index >= 0) {
+            gen.writeNumber(index + 1);
+        } else {
+            gen.writeNull();
+        }
+    }
+
+    /**
+     * Copy the line out of its source text into a reused buffer instead of allocating a substring.
+     */
+    private static char[] writeLine(SideBySideDiff.Side side, int index, JsonGenerator gen, char[] buffer)
+            throws IOException {
+        if (index < 0) {
+            gen.writeString("");
+            return buffer;
+        }
+        int start = side.displayStart(index);
+        int end = side.displayEnd(index);
+        if (buffer.length < end - start) {
+            buffer = new char[Math.max(end - start, buffer.length * 2)];
+        }
+        side.source().getChars(start, end, buffer, 0);
+        gen.writeString(buffer, 0, end - start);
+        return buffer;
+    }
+
+    private static void writeHighlights(int[] spans, JsonGenerator gen) throws IOException {
+        gen.writeStartArray();
+        for (int i = 0; i < spans.length; i += 3) {
+            SideBySideDiff.SpanType type = SideBySideDiff.SpanType.of(spans[i + 2]);
+            gen.writeStartObject();
+            gen.writeFieldName(START);
+            gen.writeNumber(spans[i]);
+            gen.writeFieldName(END);
+            gen.writeNumber(spans[i + 1]);
+            gen.writeFieldName(TYPE);
+            gen.writeString(type.getName());
+            gen.writeFieldName(CSS_CLASS);
+            gen.writeString(type.getCssClass());
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+
+    private static void writeChangedPairs(int[] spans, JsonGenerator gen) throws IOException {
+        gen.writeStartArray();
+        for (int i = 0; i < spans.length; i += 3) {
+            if (spans[i + 2] != SideBySideDiff.SpanType.UNCHANGED.ordinal()) {
+                gen.writeNumber(spans[i]);
+                gen.writeNumber(spans[i + 1]);
+            }
+        }
+        gen.writeEndArray();
+    }
+}
@@ -0,0 +1,28 @@
+package com.devtoolkit.diff.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * A window of rows {@code [from, to)} of a stored side-by-side diff, written as a JSON array in the
+ * diff's own row shape.
+ */
+@JsonSerialize(using = SideBySideRows.Serializer.class)
+public record SideBySideRows(SideBySideDiff diff, int from, int to) {
+
+    public static class Serializer extends StdSerializer<SideBySideRows> {
+
+        public Serializer() {
+            super(SideBySideRows.class);
+        }
+
+        @Override
+        public void serialize(SideBySideRows rows, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            SideBySideDiffSerializer.writeRows(rows.diff(), rows.from(), rows.to(), gen);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.devtoolkit.diff.service;
+
+import com.devtoolkit.common.cache.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Side-by-side diffs kept on the server so clients can page through rows by handle.
+ * The handle is a digest of the inputs and options, so posting the same documents again finds the
+ * stored diff. Bounded by the estimated heap size of the stored diffs and by a time-to-live.
+ */
+@Component
+public class SideBySideStore {
+    
+    private final BoundedCache<String, SideBySideDiff> diffs;
+    
+    public SideBySideStore(@Value("${diff.window.max-bytes:268435456}") long maxBytes,
+                           @Value("${diff.window.ttl-seconds:900}") long ttlSeconds) {
+        this.diffs = new BoundedCache<>(maxBytes, ttlSeconds * 1000, SideBySideDiff::estimatedSize);
+    }
+    
+    public void put(String handle, SideBySideDiff diff) {
+        diffs.put(handle, diff);
+    }
+    
+    /**
+     * Returns the stored diff or null when it was never stored, evicted or expired
+     */
+    public SideBySideDiff find(String handle) {
+        return diffs.get(handle);
+    }
+    
+    public SideBySideDiff get(String handle) {
+        SideBySideDiff diff = diffs.get(handle);
+        if (diff == null) {
+            throw new IllegalArgumentException("Unknown or expired diff handle: " + handle);
+        }
+        return diff;
+    }
+    
+    public Map<String, Object> stats() {
+        return diffs.stats();
+    }
+}
@@ -0,0 +1,275 @@
+package com.devtoolkit.diff.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory locality-sensitive hashing index over {@link MinHashSignature}s.
+ * <p>
+ * Each signature is cut into {@code bands} bands of {@code rows} slots and the document is filed under
+ * one bucket per band. A query only scores the documents that share at least one bucket with it, which
+ * finds pairs above roughly {@code (1 / bands) ^ (1 / rows)} Jaccard similarity with high probability.
+ * When that leaves fewer than the requested number of results and the query accepts matches below that
+ * threshold, the remaining documents are scored too, so a query always gets its closest matches. Reads
+ * run concurrently, writes exclusively.
+ */
+public final class SimilarityIndex {
+
+    private final int bands;
+    private final int rows;
+    private final double threshold;
+    private final int maxDocuments;
+    private final Map<String, Document> documents = new LinkedHashMap<>();
+    private final Map<Long, List<Document>> buckets = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public SimilarityIndex(int bands, int rows, int maxDocuments) {
+        this.bands = bands;
+        this.rows = rows;
+        this.maxDocuments = maxDocuments;
+        this.threshold = Math.pow(1.0 / bands, 1.0 / rows);
+    }
+
+    public int getSignatureSize() {
+        return bands * rows;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Add or replace a document; a new one is rejected once the index holds {@code maxDocuments}.
+     */
+    public void put(String id, String name, long length, MinHashSignature signature) {
+        Document document = new Document(id, name, length, signature);
+        lock.writeLock().lock();
+        try {
+            if (documents.size() >= maxDocuments && !documents.containsKey(id)) {
+                throw new IllegalArgumentException("Similarity index is full (" + maxDocuments + " documents)");
+            }
+            Document previous = documents.put(id, document);
+            if (previous != null) {
+                unfile(previous);
+            }
+            for (int band = 0; band < bands; band++) {
+                buckets.computeIfAbsent(signature.bandKey(band, rows), key -> new ArrayList<>(2)).add(document);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Document document = documents.remove(id);
+            if (document == null) {
+                return false;
+            }
+            unfile(document);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Document> list() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(documents.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The {@code limit} documents most similar to {@code signature} at or above {@code minSimilarity},
+     * most similar first.
+     */
+    public QueryResult query(MinHashSignature signature, int limit, double minSimilarity) {
+        lock.readLock().lock();
+        try {
+            Set<Document> candidates = new HashSet<>();
+            for (int band = 0; band < bands; band++) {
+                List<Document> bucket = buckets.get(signature.bandKey(band, rows));
+                if (bucket != null) {
+                    for (Document document : bucket) {
+                        candidates.add(document);
+                    }
+                }
+            }
+
+            PriorityQueue<Match> best = new PriorityQueue<>(Comparator.comparingDouble(Match::getSimilarity));
+            score(candidates, signature, limit, minSimilarity, best);
+            boolean exhaustive = false;
+            if (best.size() < limit && candidates.size() < documents.size() && minSimilarity < threshold) {
+                // Not enough near neighbours in shared buckets, fall back to scoring everything else
+                exhaustive = true;
+                List<Document> rest = new ArrayList<>(documents.size() - candidates.size());
+                for (Document document : documents.values()) {
+                    if (!candidates.contains(document)) {
+                        rest.add(document);
+                    }
+                }
+                score(rest, signature, limit, minSimilarity, best);
+            }
+
+            List<Match> matches = new ArrayList<>(best);
+            matches.sort(Comparator.comparingDouble(Match::getSimilarity).reversed());
+            return new QueryResult(matches, candidates.size(), exhaustive);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rough heap size in bytes: signatures plus bucket entries.
+     */
+    public long estimatedSize() {
+        lock.readLock().lock();
+        try {
+            long size = 64L * buckets.size();
+            for (Document document : documents.values()) {
+                size += 96 + 2L * (document.id.length() + document.name.length())
+                        + document.signature.estimatedSize() + 8L * bands;
+            }
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void score(Collection<Document> documents, MinHashSignature signature, int limit, double minSimilarity,
+                       PriorityQueue<Match> best) {
+        for (Document document : documents) {
+            double similarity = signature.similarity(document.signature);
+            // Nothing in common is no match, whatever the threshold
+            if (similarity == 0 || similarity < minSimilarity) {
+                continue;
+            }
+            if (best.size() < limit) {
+                best.add(new Match(document, similarity));
+            } else if (similarity > best.peek().similarity) {
+                best.poll();
+                best.add(new Match(document, similarity));
+            }
+        }
+    }
+
+    private void unfile(Document document) {
+        for (int band = 0; band < bands; band++) {
+            long key = document.signature.bandKey(band, rows);
+            List<Document> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(document);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * An indexed document: its signature and what is shown about it, not its text.
+     */
+    public static final class Document {
+
+        private final String id;
+        private final String name;
+        private final long length;
+        private final MinHashSignature signature;
+
+        Document(String id, String name, long length, MinHashSignature signature) {
+            this.id = id;
+            this.name = name;
+            this.length = length;
+            this.signature = signature;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public MinHashSignature getSignature() {
+            return signature;
+        }
+    }
+
+    public static final class Match {
+
+        private final Document document;
+        private final double similarity;
+
+        Match(Document document, double similarity) {
+            this.document = document;
+            this.similarity = similarity;
+        }
+
+        public Document getDocument() {
+            return document;
+        }
+
+        public double getSimilarity() {
+            return similarity;
+        }
+    }
+
+    public static final class QueryResult {
+
+        private final List<Match> matches;
+        private final int candidates;
+        private final boolean exhaustive;
+
+        QueryResult(List<Match> matches, int candidates, boolean exhaustive) {
+            this.matches = matches;
+            this.candidates = candidates;
+            this.exhaustive = exhaustive;
+        }
+
+        public List<Match> getMatches() {
+            return matches;
+        }
+
+        /**
+         * Documents that shared a bucket with the query.
+         */
+        public int getCandidates() {
+            return candidates;
+        }
+
+        /**
+         * Whether documents outside the shared buckets had to be scored as well.
+         */
+        public boolean isExhaustive() {
+            return exhaustive;
+        }
+    }
+}
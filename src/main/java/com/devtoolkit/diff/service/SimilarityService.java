@@ -0,0 +1,15 @@
+package com.devtoolkit.diff.service;
+
+import com.devtoolkit.diff.dto.SimilarityDocumentRequest;
+import com.devtoolkit.diff.dto.SimilarityQueryRequest;
+
+import java.util.List;
+import java.util.Map;
+
+public interface SimilarityService {
+    Map<String, Object> addDocument(SimilarityDocumentRequest request);
+    boolean removeDocument(String id);
+    List<Map<String, Object>> listDocuments();
+    Map<String, Object> findSimilar(SimilarityQueryRequest request);
+    Map<String, Object> getStatistics();
+}
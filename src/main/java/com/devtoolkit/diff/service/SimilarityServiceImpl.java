@@ -0,0 +1,118 @@
+package com.devtoolkit.diff.service;
+
+import com.devtoolkit.diff.dto.SimilarityDocumentRequest;
+import com.devtoolkit.diff.dto.SimilarityQueryRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Finds which indexed documents a text is closest to from MinHash signatures, instead of diffing it
+ * against each of them. Only signatures are kept, so the index holds thousands of documents in a few
+ * megabytes; similarities are estimated Jaccard similarities of the token shingle sets.
+ */
+@Service
+public class SimilarityServiceImpl implements SimilarityService {
+    
+    private final SimilarityIndex index;
+    private final int maxDocuments;
+    
+    @Value("${diff.similarity.max-results:100}")
+    private int maxResults;
+    
+    public SimilarityServiceImpl(@Value("${diff.similarity.bands:32}") int bands,
+                                 @Value("${diff.similarity.rows:4}") int rows,
+                                 @Value("${diff.similarity.max-documents:10000}") int maxDocuments) {
+        this.index = new SimilarityIndex(bands, rows, maxDocuments);
+        this.maxDocuments = maxDocuments;
+    }
+    
+    @Override
+    public Map<String, Object> addDocument(SimilarityDocumentRequest request) {
+        if (request.getText() == null) {
+            throw new IllegalArgumentException("Document text is required");
+        }
+        String id = request.getId() != null && !request.getId().isBlank() ? request.getId() : UUID.randomUUID().toString();
+        String name = request.getName() != null ? request.getName() : id;
+        
+        MinHashSignature signature = MinHashSignature.of(request.getText(), index.getSignatureSize());
+        index.put(id, name, request.getText().length(), signature);
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", id);
+        result.put("name", name);
+        result.put("length", request.getText().length());
+        result.put("shingles", signature.getShingles());
+        return result;
+    }
+    
+    @Override
+    public boolean removeDocument(String id) {
+        return index.remove(id);
+    }
+    
+    @Override
+    public List<Map<String, Object>> listDocuments() {
+        List<Map<String, Object>> documents = new ArrayList<>();
+        for (SimilarityIndex.Document document : index.list()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", document.getId());
+            entry.put("name", document.getName());
+            entry.put("length", document.getLength());
+            entry.put("shingles", document.getSignature().getShingles());
+            documents.add(entry);
+        }
+        return documents;
+    }
+    
+    @Override
+    public Map<String, Object> findSimilar(SimilarityQueryRequest request) {
+        if (request.getText() == null) {
+            throw new IllegalArgumentException("Query text is required");
+        }
+        if (request.getLimit() < 1 || request.getLimit() > maxResults) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxResults);
+        }
+        
+        long started = System.nanoTime();
+        MinHashSignature signature = MinHashSignature.of(request.getText(), index.getSignatureSize());
+        long signed = System.nanoTime();
+        SimilarityIndex.QueryResult queryResult = index.query(signature, request.getLimit(), request.getMinSimilarity());
+        long finished = System.nanoTime();
+        
+        List<Map<String, Object>> matches = new ArrayList<>();
+        for (SimilarityIndex.Match match : queryResult.getMatches()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", match.getDocument().getId());
+            entry.put("name", match.getDocument().getName());
+            entry.put("similarity", match.getSimilarity());
+            entry.put("similarityPercentage", match.getSimilarity() * 100);
+            matches.add(entry);
+        }
+        
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("matches", matches);
+        result.put("indexedDocuments", index.size());
+        result.put("candidates", queryResult.getCandidates());
+        result.put("exhaustive", queryResult.isExhaustive());
+        result.put("signatureMicros", (signed - started) / 1000);
+        result.put("lookupMicros", (finished - signed) / 1000);
+        return result;
+    }
+    
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("documents", index.size());
+        stats.put("maxDocuments", maxDocuments);
+        stats.put("signatureSize", index.getSignatureSize());
+        stats.put("threshold", index.getThreshold());
+        stats.put("estimatedBytes", index.estimatedSize());
+        return stats;
+    }
+}
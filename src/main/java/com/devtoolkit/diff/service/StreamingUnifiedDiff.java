@@ -0,0 +1,361 @@
+package com.devtoolkit.diff.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unified diff of two mapped files computed over a sliding window of lines.
+ * Each window is aligned with {@link MyersDiff}; only the part of the alignment that can no longer be
+ * affected by lines beyond the window is committed, and finished hunks are written out immediately.
+ * Heap use depends on the window size, never on the input size. A change block longer than the window
+ * is reported as a plain delete/insert of the window, so the result may be non-minimal in that case.
+ */
+public final class StreamingUnifiedDiff {
+
+    private final MappedLines left;
+    private final MappedLines right;
+    private final OutputStream out;
+    private final int windowLines;
+    private final int contextLines;
+    private final int maxHunkLines;
+
+    // Current window of not yet committed lines, per side
+    private final int[] startsA;
+    private final int[] endsA;
+    private final long[] hashesA;
+    private final int[] startsB;
+    private final int[] endsB;
+    private final long[] hashesB;
+    private final int[] idsA;
+    private final int[] idsB;
+    private int countA = 0;
+    private int countB = 0;
+    private boolean eofA = false;
+    private boolean eofB = false;
+
+    // Hunk being assembled: kind is ' ', '-' or '+', ranges point into the matching file
+    private byte[] hunkKinds;
+    private int[] hunkStarts;
+    private int[] hunkEnds;
+    private int hunkSize = 0;
+    private boolean inHunk = false;
+    private int trailingEqual = 0;
+    private long hunkStartA;
+    private long hunkStartB;
+
+    // Leading context kept while outside a hunk (ring buffer of left-side ranges)
+    private final int[] ringStarts;
+    private final int[] ringEnds;
+    private int ringHead = 0;
+    private int ringSize = 0;
+
+    private long lineA = 0;
+    private long lineB = 0;
+    private int hunkCount = 0;
+    private byte[] scratch = new byte[256];
+
+    public StreamingUnifiedDiff(MappedLines left, MappedLines right, OutputStream out,
+                                int windowLines, int contextLines, int maxHunkLines) {
+        this.left = left;
+        this.right = right;
+        this.out = out;
+        this.windowLines = Math.max(16, windowLines);
+        this.contextLines = Math.max(0, contextLines);
+        this.maxHunkLines = Math.max(this.contextLines * 2 + 1, maxHunkLines);
+
+        this.startsA = new int[this.windowLines];
+        this.endsA = new int[this.windowLines];
+        this.hashesA = new long[this.windowLines];
+        this.startsB = new int[this.windowLines];
+        this.endsB = new int[this.windowLines];
+        this.hashesB = new long[this.windowLines];
+        this.idsA = new int[this.windowLines];
+        this.idsB = new int[this.windowLines];
+
+        int initialHunk = Math.min(this.maxHunkLines, 1024);
+        this.hunkKinds = new byte[initialHunk];
+        this.hunkStarts = new int[initialHunk];
+        this.hunkEnds = new int[initialHunk];
+        this.ringStarts = new int[this.contextLines];
+        this.ringEnds = new int[this.contextLines];
+    }
+
+    /**
+     * Run the diff to completion and return the number of hunks written.
+     */
+    public int run() throws IOException {
+        fillWindows();
+
+        while (countA > 0 || countB > 0) {
+            assignIds();
+            List<Edit> edits = MyersDiff.diff(idsA, 0, countA, idsB, 0, countB);
+
+            // Anything aligned in the last quarter of an open window may still change once more lines arrive
+            boolean complete = eofA && eofB;
+            int limitA = complete ? countA : countA - countA / 4;
+            int limitB = complete ? countB : countB - countB / 4;
+
+            int a = 0;
+            int b = 0;
+            int index = 0;
+            while (index < edits.size()) {
+                Edit edit = edits.get(index);
+                if (!complete && (edit.getEndA() > limitA || edit.getEndB() > limitB)) {
+                    break;
+                }
+                a = emitEqual(a, edit.getBeginA());
+                b = edit.getBeginB();
+                emitEdit(edit);
+                a = edit.getEndA();
+                b = edit.getEndB();
+                index++;
+            }
+
+            // Carry on through the equal run that follows, staying inside the safe limits
+            int equalEnd = index < edits.size() ? edits.get(index).getBeginA() : countA;
+            int run = complete ? equalEnd - a : Math.min(equalEnd - a, Math.min(limitA - a, limitB - b));
+            if (run > 0) {
+                a = emitEqual(a, a + run);
+                b += run;
+            }
+
+            if (a == 0 && b == 0) {
+                // No resynchronisation point inside the window, give up on minimality to make progress
+                Edit edit = edits.get(0);
+                a = emitEqual(a, edit.getBeginA());
+                emitEdit(edit);
+                a = edit.getEndA();
+                b = edit.getEndB();
+            }
+
+            consume(a, b);
+            fillWindows();
+        }
+
+        finishHunk();
+        out.flush();
+        return hunkCount;
+    }
+
+    private void fillWindows() {
+        while (countA < windowLines && !eofA) {
+            if (left.next()) {
+                startsA[countA] = left.start();
+                endsA[countA] = left.end();
+                hashesA[countA] = left.hash();
+                countA++;
+            } else {
+                eofA = true;
+            }
+        }
+        while (countB < windowLines && !eofB) {
+            if (right.next()) {
+                startsB[countB] = right.start();
+                endsB[countB] = right.end();
+                hashesB[countB] = right.hash();
+                countB++;
+            } else {
+                eofB = true;
+            }
+        }
+    }
+
+    private void consume(int a, int b) {
+        System.arraycopy(startsA, a, startsA, 0, countA - a);
+        System.arraycopy(endsA, a, endsA, 0, countA - a);
+        System.arraycopy(hashesA, a, hashesA, 0, countA - a);
+        countA -= a;
+        System.arraycopy(startsB, b, startsB, 0, countB - b);
+        System.arraycopy(endsB, b, endsB, 0, countB - b);
+        System.arraycopy(hashesB, b, hashesB, 0, countB - b);
+        countB -= b;
+    }
+
+    /**
+     * Give every distinct line in the window a small int id; equal ids mean byte-identical lines.
+     */
+    private void assignIds() {
+        int capacity = Integer.highestOneBit(Math.max(4, (countA + countB) * 2 - 1)) << 1;
+        int mask = capacity - 1;
+        // Slot holds the id + 1 of its representative; representatives are remembered by side and index
+        int[] slots = new int[capacity];
+        boolean[] representativeOnLeft = new boolean[countA + countB];
+        int[] representativeIndex = new int[countA + countB];
+        int nextId = 0;
+
+        for (int side = 0; side < 2; side++) {
+            boolean onLeft = side == 0;
+            int count = onLeft ? countA : countB;
+            int[] ids = onLeft ? idsA : idsB;
+            for (int i = 0; i < count; i++) {
+                long hash = onLeft ? hashesA[i] : hashesB[i];
+                int slot = (int) (hash ^ (hash >>> 32)) & mask;
+                while (true) {
+                    int entry = slots[slot];
+                    if (entry == 0) {
+                        slots[slot] = nextId + 1;
+                        representativeOnLeft[nextId] = onLeft;
+                        representativeIndex[nextId] = i;
+                        ids[i] = nextId++;
+                        break;
+                    }
+                    int id = entry - 1;
+                    if (sameLine(onLeft, i, hash, representativeOnLeft[id], representativeIndex[id])) {
+                        ids[i] = id;
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+            }
+        }
+    }
+
+    private boolean sameLine(boolean onLeft, int index, long hash, boolean otherOnLeft, int otherIndex) {
+        long otherHash = otherOnLeft ? hashesA[otherIndex] : hashesB[otherIndex];
+        if (hash != otherHash) {
+            return false;
+        }
+        MappedLines lines = onLeft ? left : right;
+        MappedLines otherLines = otherOnLeft ? left : right;
+        return lines.regionEquals(onLeft ? startsA[index] : startsB[index], onLeft ? endsA[index] : endsB[index],
+                otherLines, otherOnLeft ? startsA[otherIndex] : startsB[otherIndex],
+                otherOnLeft ? endsA[otherIndex] : endsB[otherIndex]);
+    }
+
+    private int emitEqual(int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            equal(startsA[i], endsA[i]);
+        }
+        return to;
+    }
+
+    private void emitEdit(Edit edit) throws IOException {
+        for (int i = edit.getBeginA(); i < edit.getEndA(); i++) {
+            change((byte) '-', startsA[i], endsA[i]);
+        }
+        for (int i = edit.getBeginB(); i < edit.getEndB(); i++) {
+            change((byte) '+', startsB[i], endsB[i]);
+        }
+    }
+
+    private void equal(int start, int end) throws IOException {
+        lineA++;
+        lineB++;
+        if (inHunk) {
+            appendHunkLine((byte) ' ', start, end);
+            trailingEqual++;
+            if (trailingEqual > contextLines * 2) {
+                // Keep the first half as trailing context, the last half leads into the next hunk
+                int dropFrom = hunkSize - contextLines - 1;
+                for (int i = dropFrom + 1; i < hunkSize; i++) {
+                    pushRing(hunkStarts[i], hunkEnds[i]);
+                }
+                hunkSize = dropFrom;
+                writeHunk();
+            }
+        } else {
+            pushRing(start, end);
+        }
+    }
+
+    private void change(byte kind, int start, int end) throws IOException {
+        if (!inHunk) {
+            hunkStartA = lineA - ringSize;
+            hunkStartB = lineB - ringSize;
+            for (int i = 0; i < ringSize; i++) {
+                int slot = (ringHead + i) % contextLines;
+                appendHunkLine((byte) ' ', ringStarts[slot], ringEnds[slot]);
+            }
+            ringSize = 0;
+            ringHead = 0;
+            inHunk = true;
+        }
+
+        appendHunkLine(kind, start, end);
+        trailingEqual = 0;
+        if (kind == '-') {
+            lineA++;
+        } else {
+            lineB++;
+        }
+
+        if (hunkSize >= maxHunkLines) {
+            writeHunk();
+        }
+    }
+
+    private void finishHunk() throws IOException {
+        if (inHunk) {
+            hunkSize -= Math.max(0, trailingEqual - contextLines);
+            writeHunk();
+        }
+    }
+
+    private void pushRing(int start, int end) {
+        if (contextLines == 0) {
+            return;
+        }
+        int slot = (ringHead + ringSize) % contextLines;
+        ringStarts[slot] = start;
+        ringEnds[slot] = end;
+        if (ringSize < contextLines) {
+            ringSize++;
+        } else {
+            ringHead = (ringHead + 1) % contextLines;
+        }
+    }
+
+    private void appendHunkLine(byte kind, int start, int end) {
+        if (hunkSize == hunkKinds.length) {
+            int grown = Math.min(maxHunkLines + contextLines * 2 + 1, hunkKinds.length * 2);
+            hunkKinds = Arrays.copyOf(hunkKinds, grown);
+            hunkStarts = Arrays.copyOf(hunkStarts, grown);
+            hunkEnds = Arrays.copyOf(hunkEnds, grown);
+        }
+        hunkKinds[hunkSize] = kind;
+        hunkStarts[hunkSize] = start;
+        hunkEnds[hunkSize] = end;
+        hunkSize++;
+    }
+
+    private void writeHunk() throws IOException {
+        int count1 = 0;
+        int count2 = 0;
+        for (int i = 0; i < hunkSize; i++) {
+            if (hunkKinds[i] != '+') {
+                count1++;
+            }
+            if (hunkKinds[i] != '-') {
+                count2++;
+            }
+        }
+
+        String header = String.format("@@ -%d,%d +%d,%d @@\n", hunkStartA + 1, count1, hunkStartB + 1, count2);
+        out.write(header.getBytes(StandardCharsets.US_ASCII));
+        for (int i = 0; i < hunkSize; i++) {
+            MappedLines source = hunkKinds[i] == '+' ? right : left;
+            out.write(hunkKinds[i]);
+            out.write(' ');
+            writeRange(source, hunkStarts[i], hunkEnds[i]);
+            out.write('\n');
+        }
+        out.write('\n');
+
+        hunkCount++;
+        hunkSize = 0;
+        inHunk = false;
+        trailingEqual = 0;
+    }
+
+    private void writeRange(MappedLines source, int start, int end) throws IOException {
+        int length = end - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        source.copy(start, end, scratch);
+        out.write(scratch, 0, length);
+    }
+}
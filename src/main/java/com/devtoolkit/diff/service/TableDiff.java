@@ -0,0 +1,646 @@
+package com.devtoolkit.diff.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Keyed diff of two delimited tables (CSV/TSV), matching rows by their key columns instead of position.
+ * <p>
+ * Both tables are read with a streaming {@link CsvReader}. The smaller one is loaded into a hash table on
+ * its key and the larger one is streamed past it: a streamed row that finds its key is compared cell by
+ * cell and removed from the table, one that does not is only on its side, and whatever is left in the
+ * table afterwards is only on the other side. Memory holds the smaller table only. When that is estimated
+ * to exceed the memory limit and spilling is enabled, both tables are first partitioned by key hash into
+ * temporary files and joined one partition pair at a time. Duplicate keys pair up in file order. When the
+ * budget runs out the join stops where it is and the result is marked truncated.
+ */
+public final class TableDiff {
+
+    private static final int MAX_REPORTED_TEXT = 200;
+    private static final int MAX_PARTITIONS = 1024;
+    /** Rough heap bytes per character of delimited text once split into row and cell strings. */
+    private static final int BYTES_PER_CHAR = 16;
+    private static final char KEY_SEPARATOR = '\u0001';
+
+    /**
+     * A table to read, from memory or from a file.
+     */
+    public interface Source {
+
+        Reader open() throws IOException;
+
+        /** Size used to pick the side that is loaded into memory. */
+        long length() throws IOException;
+
+        static Source of(String text) {
+            String content = text != null ? text : "";
+            return new Source() {
+                @Override
+                public Reader open() {
+                    return new StringReader(content);
+                }
+
+                @Override
+                public long length() {
+                    return content.length();
+                }
+            };
+        }
+
+        static Source of(Path path) {
+            return new Source() {
+                @Override
+                public Reader open() throws IOException {
+                    // Malformed bytes become replacement characters rather than failing the diff
+                    return new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8);
+                }
+
+                @Override
+                public long length() throws IOException {
+                    return Files.size(path);
+                }
+            };
+        }
+    }
+
+    private final List<String> keyColumns;
+    private final Character delimiter;
+    private final boolean header;
+    private final TextNormalizer normalizer;
+    private final int maxChanges;
+    private final long maxMemoryBytes;
+    private final boolean spill;
+    private final DiffBudget budget;
+
+    private Layout left;
+    private Layout right;
+    /** Common columns compared cell by cell, as index pairs; null compares by position. */
+    private int[] compared1;
+    private int[] compared2;
+    private String[] comparedNames;
+
+    private final List<Map<String, Object>> changes = new ArrayList<>();
+    private boolean truncated = false;
+    private long rows1 = 0;
+    private long rows2 = 0;
+    private long added = 0;
+    private long removed = 0;
+    private long changed = 0;
+    private long unchanged = 0;
+    private int partitions = 1;
+
+    /**
+     * @param keyColumns     key column names, or one-based column numbers without a header; empty for the first column
+     * @param delimiter      field delimiter, or null to detect it per table from the first line
+     * @param normalizer     applied to keys and cell values before they are compared, or null to compare exactly
+     * @param maxMemoryBytes estimated heap the in-memory side may take
+     * @param spill          partition through temporary files instead of failing when that is exceeded
+     * @param budget         deadline of the join
+     */
+    public TableDiff(List<String> keyColumns, Character delimiter, boolean header, TextNormalizer normalizer,
+                     int maxChanges, long maxMemoryBytes, boolean spill, DiffBudget budget) {
+        this.keyColumns = keyColumns != null ? keyColumns : List.of();
+        this.delimiter = delimiter;
+        this.header = header;
+        this.normalizer = normalizer;
+        this.maxChanges = maxChanges;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.spill = spill;
+        this.budget = budget;
+    }
+
+    /**
+     * Compare two tables; returns whether every row has its match with equal cells.
+     */
+    public boolean compare(Source source1, Source source2) throws IOException {
+        try (CsvReader reader1 = new CsvReader(source1.open(), delimiterOf(source1));
+             CsvReader reader2 = new CsvReader(source2.open(), delimiterOf(source2))) {
+            left = new Layout(readHeader(reader1));
+            right = new Layout(readHeader(reader2));
+            left.resolveKey(keyColumns, "first");
+            right.resolveKey(keyColumns, "second");
+            matchColumns();
+
+            // The smaller table is the one held in memory
+            boolean buildLeft = source1.length() <= source2.length();
+            long estimated = Math.min(source1.length(), source2.length()) * BYTES_PER_CHAR;
+            try {
+                if (spill && estimated > maxMemoryBytes) {
+                    partitions = (int) Math.min(MAX_PARTITIONS, 2 * (estimated / maxMemoryBytes) + 1);
+                    joinPartitioned(reader1, reader2, buildLeft);
+                } else {
+                    RowSource rowSource1 = new CsvRowSource(reader1, left, true);
+                    RowSource rowSource2 = new CsvRowSource(reader2, right, false);
+                    join(buildLeft ? rowSource1 : rowSource2, buildLeft ? rowSource2 : rowSource1, buildLeft);
+                }
+            } catch (DiffBudget.Exceeded e) {
+                // Counts and changes so far stand; rows not reached yet are not reported
+                budget.degrade(DiffBudget.Level.PREFIX_SUFFIX);
+                truncated = true;
+            }
+        }
+        return added == 0 && removed == 0 && changed == 0;
+    }
+
+    public List<String> getColumns1() {
+        return left.names();
+    }
+
+    public List<String> getColumns2() {
+        return right.names();
+    }
+
+    public List<String> getKeyColumns() {
+        return keyColumns.isEmpty() ? left.keyNames() : keyColumns;
+    }
+
+    /**
+     * Header columns only in the second table.
+     */
+    public List<String> getAddedColumns() {
+        return onlyIn(right, left);
+    }
+
+    /**
+     * Header columns only in the first table.
+     */
+    public List<String> getRemovedColumns() {
+        return onlyIn(left, right);
+    }
+
+    public List<Map<String, Object>> getChanges() {
+        return changes;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        statistics.put("rows1", rows1);
+        statistics.put("rows2", rows2);
+        statistics.put("added", added);
+        statistics.put("removed", removed);
+        statistics.put("changed", changed);
+        statistics.put("unchanged", unchanged);
+        return statistics;
+    }
+
+    /**
+     * Key hash partitions the join ran in; 1 when it ran in memory.
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    private String[] readHeader(CsvReader reader) throws IOException {
+        if (!header) {
+            return null;
+        }
+        String[] columns = reader.next();
+        return columns != null ? columns : new String[0];
+    }
+
+    private char delimiterOf(Source source) throws IOException {
+        if (delimiter != null) {
+            return delimiter;
+        }
+        StringBuilder firstLine = new StringBuilder();
+        try (Reader reader = source.open()) {
+            int c;
+            while (firstLine.length() < 64 * 1024 && (c = reader.read()) >= 0 && c != '\n') {
+                firstLine.append((char) c);
+            }
+        }
+        return CsvReader.detectDelimiter(firstLine);
+    }
+
+    private void matchColumns() {
+        if (!header) {
+            return;
+        }
+        Map<String, Integer> rightIndex = new HashMap<>();
+        for (int i = right.columns.length - 1; i >= 0; i--) {
+            rightIndex.put(right.columns[i], i);
+        }
+        List<Integer> indexes1 = new ArrayList<>();
+        List<Integer> indexes2 = new ArrayList<>();
+        for (int i = 0; i < left.columns.length; i++) {
+            Integer j = rightIndex.remove(left.columns[i]);
+            if (j != null) {
+                indexes1.add(i);
+                indexes2.add(j);
+            }
+        }
+        compared1 = indexes1.stream().mapToInt(Integer::intValue).toArray();
+        compared2 = indexes2.stream().mapToInt(Integer::intValue).toArray();
+        comparedNames = new String[compared1.length];
+        for (int k = 0; k < compared1.length; k++) {
+            comparedNames[k] = left.columns[compared1[k]];
+        }
+    }
+
+    private static List<String> onlyIn(Layout layout, Layout other) {
+        if (layout.columns == null) {
+            return List.of();
+        }
+        List<String> names = new ArrayList<>();
+        List<String> otherNames = Arrays.asList(other.columns);
+        for (String column : layout.columns) {
+            if (!otherNames.contains(column)) {
+                names.add(column);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Hash join: load {@code build}, stream {@code probe} past it, then report what is left unmatched.
+     */
+    private void join(RowSource build, RowSource probe, boolean buildLeft) throws IOException {
+        Map<String, Row> table = new LinkedHashMap<>();
+        long memory = 0;
+        Row row;
+        while ((row = build.next()) != null) {
+            budget.checkpoint();
+            memory += row.estimatedSize();
+            if (memory > maxMemoryBytes) {
+                throw new IllegalArgumentException("Table is too large to join in memory (over " + maxMemoryBytes
+                        + " bytes); enable diff.table.spill-enabled or raise diff.table.max-memory-bytes");
+            }
+            Row first = table.putIfAbsent(row.key, row);
+            if (first != null) {
+                first.tail.next = row;
+                first.tail = row;
+            }
+        }
+
+        while ((row = probe.next()) != null) {
+            budget.checkpoint();
+            Row match = table.get(row.key);
+            if (match == null) {
+                if (buildLeft) {
+                    recordAdded(row);
+                } else {
+                    recordRemoved(row);
+                }
+                continue;
+            }
+            if (match.next != null) {
+                match.next.tail = match.tail;
+                table.put(row.key, match.next);
+            } else {
+                table.remove(row.key);
+            }
+            if (buildLeft) {
+                recordMatch(match, row);
+            } else {
+                recordMatch(row, match);
+            }
+        }
+
+        for (Row unmatched : table.values()) {
+            for (Row duplicate = unmatched; duplicate != null; duplicate = duplicate.next) {
+                if (buildLeft) {
+                    recordRemoved(duplicate);
+                } else {
+                    recordAdded(duplicate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Grace hash join: split both tables by key hash into partition files, then join each pair in memory.
+     */
+    private void joinPartitioned(CsvReader reader1, CsvReader reader2, boolean buildLeft) throws IOException {
+        Path directory = Files.createTempDirectory("devtoolkit-table-");
+        try {
+            Path[] files1 = partition(new CsvRowSource(reader1, left, true), directory, "1-");
+            Path[] files2 = partition(new CsvRowSource(reader2, right, false), directory, "2-");
+            for (int p = 0; p < partitions; p++) {
+                try (CsvReader part1 = new CsvReader(Files.newBufferedReader(files1[p]), ',');
+                     CsvReader part2 = new CsvReader(Files.newBufferedReader(files2[p]), ',')) {
+                    RowSource rowSource1 = new SpilledRowSource(part1, left);
+                    RowSource rowSource2 = new SpilledRowSource(part2, right);
+                    join(buildLeft ? rowSource1 : rowSource2, buildLeft ? rowSource2 : rowSource1, buildLeft);
+                }
+                Files.delete(files1[p]);
+                Files.delete(files2[p]);
+            }
+        } finally {
+            // Partition files left behind by a failure
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private Path[] partition(RowSource rows, Path directory, String prefix) throws IOException {
+        Path[] files = new Path[partitions];
+        Writer[] writers = new Writer[partitions];
+        try {
+            for (int p = 0; p < partitions; p++) {
+                files[p] = directory.resolve(prefix + p + ".csv");
+                writers[p] = new BufferedWriter(Files.newBufferedWriter(files[p]), 16 * 1024);
+            }
+            Row row;
+            while ((row = rows.next()) != null) {
+                budget.checkpoint();
+                int hash = row.key.hashCode();
+                Writer writer = writers[Math.floorMod(hash ^ (hash >>> 16), partitions)];
+                // The source line number travels as an extra first field
+                writer.write(Long.toString(row.line));
+                for (String cell : row.cells) {
+                    writer.write(',');
+                    writeField(writer, cell);
+                }
+                writer.write('\n');
+            }
+        } finally {
+            for (Writer writer : writers) {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+        }
+        return files;
+    }
+
+    private static void writeField(Writer writer, String value) throws IOException {
+        boolean quote = value.isEmpty() || value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        // Empty fields are quoted so an all-empty row is not read back as a blank line
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private void recordMatch(Row row1, Row row2) {
+        List<Map<String, Object>> cells = new ArrayList<>();
+        int count = compared1 != null ? compared1.length : Math.max(row1.cells.length, row2.cells.length);
+        for (int k = 0; k < count; k++) {
+            String value1 = cell(row1.cells, compared1 != null ? compared1[k] : k);
+            String value2 = cell(row2.cells, compared2 != null ? compared2[k] : k);
+            if (!normalize(value1).equals(normalize(value2))) {
+                Map<String, Object> cell = new LinkedHashMap<>();
+                cell.put("column", comparedNames != null ? comparedNames[k] : Integer.toString(k + 1));
+                cell.put("oldValue", abbreviate(value1));
+                cell.put("newValue", abbreviate(value2));
+                cells.add(cell);
+            }
+        }
+        if (cells.isEmpty()) {
+            unchanged++;
+            return;
+        }
+
+        changed++;
+        Map<String, Object> change = createChange("CHANGED", left, row1);
+        if (change != null) {
+            change.put("line1", row1.line);
+            change.put("line2", row2.line);
+            change.put("cells", cells);
+        }
+    }
+
+    private void recordAdded(Row row) {
+        added++;
+        Map<String, Object> change = createChange("ADDED", right, row);
+        if (change != null) {
+            change.put("line2", row.line);
+            change.put("values", right.values(row.cells));
+        }
+    }
+
+    private void recordRemoved(Row row) {
+        removed++;
+        Map<String, Object> change = createChange("REMOVED", left, row);
+        if (change != null) {
+            change.put("line1", row.line);
+            change.put("values", left.values(row.cells));
+        }
+    }
+
+    /**
+     * New entry in the change list, or null once the list is full.
+     */
+    private Map<String, Object> createChange(String type, Layout layout, Row row) {
+        if (changes.size() >= maxChanges) {
+            truncated = true;
+            return null;
+        }
+        Map<String, Object> change = new LinkedHashMap<>();
+        change.put("type", type);
+        Map<String, Object> key = new LinkedHashMap<>();
+        for (int i = 0; i < layout.key.length; i++) {
+            key.put(layout.name(layout.key[i]), abbreviate(cell(row.cells, layout.key[i])));
+        }
+        change.put("key", key);
+        changes.add(change);
+        return change;
+    }
+
+    private String normalize(String value) {
+        return normalizer != null ? normalizer.normalize(value, false).getText() : value;
+    }
+
+    private static String cell(String[] cells, int index) {
+        return index < cells.length ? cells[index] : "";
+    }
+
+    private static String abbreviate(String value) {
+        return value.length() <= MAX_REPORTED_TEXT ? value : value.substring(0, MAX_REPORTED_TEXT) + "...";
+    }
+
+    /**
+     * Header and key columns of one table.
+     */
+    private final class Layout {
+
+        private final String[] columns;
+        private int[] key;
+
+        Layout(String[] columns) {
+            this.columns = columns;
+        }
+
+        void resolveKey(List<String> names, String side) {
+            if (names.isEmpty()) {
+                key = new int[]{0};
+                return;
+            }
+            key = new int[names.size()];
+            for (int i = 0; i < names.size(); i++) {
+                key[i] = indexOf(names.get(i), side);
+            }
+        }
+
+        private int indexOf(String name, String side) {
+            if (columns != null && columns.length == 0) {
+                // Empty table, there are no rows to take a key from
+                return 0;
+            }
+            if (columns != null) {
+                int index = Arrays.asList(columns).indexOf(name);
+                if (index < 0) {
+                    throw new IllegalArgumentException("Key column '" + name + "' not found in the " + side + " table");
+                }
+                return index;
+            }
+            try {
+                int number = Integer.parseInt(name.trim());
+                if (number < 1) {
+                    throw new NumberFormatException();
+                }
+                return number - 1;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Without a header row, key columns are one-based column numbers: " + name);
+            }
+        }
+
+        String keyOf(String[] cells) {
+            if (key.length == 1) {
+                return normalize(cell(cells, key[0]));
+            }
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < key.length; i++) {
+                if (i > 0) {
+                    builder.append(KEY_SEPARATOR);
+                }
+                builder.append(normalize(cell(cells, key[i])));
+            }
+            return builder.toString();
+        }
+
+        String name(int index) {
+            return columns != null && index < columns.length ? columns[index] : Integer.toString(index + 1);
+        }
+
+        List<String> names() {
+            return columns != null ? Arrays.asList(columns) : List.of();
+        }
+
+        List<String> keyNames() {
+            List<String> names = new ArrayList<>(key.length);
+            for (int index : key) {
+                names.add(name(index));
+            }
+            return names;
+        }
+
+        Map<String, Object> values(String[] cells) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (int i = 0; i < cells.length; i++) {
+                values.put(name(i), abbreviate(cells[i]));
+            }
+            return values;
+        }
+    }
+
+    /**
+     * One data row; rows sharing a key are chained in file order, the first one keeps the chain's tail.
+     */
+    private static final class Row {
+
+        private final String key;
+        private final String[] cells;
+        private final long line;
+        private Row next;
+        private Row tail = this;
+
+        Row(String key, String[] cells, long line) {
+            this.key = key;
+            this.cells = cells;
+            this.line = line;
+        }
+
+        long estimatedSize() {
+            long size = 96 + 2L * key.length() + 16L * cells.length;
+            for (String cell : cells) {
+                size += 40 + 2L * cell.length();
+            }
+            return size;
+        }
+    }
+
+    private interface RowSource {
+        Row next() throws IOException;
+    }
+
+    /**
+     * Rows of an input table, counted as they are read.
+     */
+    private final class CsvRowSource implements RowSource {
+
+        private final CsvReader reader;
+        private final Layout layout;
+        private final boolean first;
+
+        CsvRowSource(CsvReader reader, Layout layout, boolean first) {
+            this.reader = reader;
+            this.layout = layout;
+            this.first = first;
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String[] cells = reader.next();
+            if (cells == null) {
+                return null;
+            }
+            if (first) {
+                rows1++;
+            } else {
+                rows2++;
+            }
+            return new Row(layout.keyOf(cells), cells, reader.getRecordLine());
+        }
+    }
+
+    /**
+     * Rows read back from a partition file, with their original line number in front.
+     */
+    private static final class SpilledRowSource implements RowSource {
+
+        private final CsvReader reader;
+        private final Layout layout;
+
+        SpilledRowSource(CsvReader reader, Layout layout) {
+            this.reader = reader;
+            this.layout = layout;
+        }
+
+        @Override
+        public Row next() throws IOException {
+            String[] fields = reader.next();
+            if (fields == null) {
+                return null;
+            }
+            String[] cells = Arrays.copyOfRange(fields, 1, fields.length);
+            return new Row(layout.keyOf(cells), cells, Long.parseLong(fields[0]));
+        }
+    }
+}
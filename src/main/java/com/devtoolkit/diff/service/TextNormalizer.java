@@ -0,0 +1,111 @@
+package com.devtoolkit.diff.service;
+
+import com.devtoolkit.diff.dto.DiffRequest;
+
+import java.util.Arrays;
+
+/**
+ * Single-scan text normaliser for the diff options.
+ * Line-ending folding, whitespace collapsing and lower-casing are applied in one pass into a per-thread
+ * buffer, so a large input is copied once instead of once per regex.
+ */
+public final class TextNormalizer {
+
+    /** Buffers above this size are not kept between calls. */
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[4096]);
+
+    private final boolean foldLineEndings;
+    private final boolean collapseWhitespace;
+    private final boolean lowerCase;
+
+    private TextNormalizer(boolean foldLineEndings, boolean collapseWhitespace, boolean lowerCase) {
+        this.foldLineEndings = foldLineEndings;
+        this.collapseWhitespace = collapseWhitespace;
+        this.lowerCase = lowerCase;
+    }
+
+    public static TextNormalizer forRequest(DiffRequest request) {
+        return new TextNormalizer(request.isIgnoreLineEndings(), request.isIgnoreWhitespace(),
+                request.isIgnoreCase());
+    }
+
+    public NormalizedText normalize(String text, boolean trackOffsets) {
+        if (text == null) {
+            return NormalizedText.unchanged("");
+        }
+        if (!foldLineEndings && !collapseWhitespace && !lowerCase) {
+            return NormalizedText.unchanged(text);
+        }
+
+        int length = text.length();
+        char[] out = buffer(length);
+        int[] offsets = trackOffsets ? new int[length + 1] : null;
+        int size = 0;
+
+        int pendingSpace = -1;
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+
+            int origin = i;
+            i++;
+            if (foldLineEndings && c == '\r') {
+                if (i < length && text.charAt(i) == '\n') {
+                    i++;
+                }
+                c = '\n';
+            }
+
+            if (collapseWhitespace && isWhitespace(c)) {
+                if (pendingSpace < 0) {
+                    pendingSpace = origin;
+                }
+                continue;
+            }
+
+            if (pendingSpace >= 0) {
+                // Collapsed run becomes one space, dropped at the start of the text
+                if (size > 0) {
+                    if (offsets != null) {
+                        offsets[size] = pendingSpace;
+                    }
+                    out[size++] = ' ';
+                }
+                pendingSpace = -1;
+            }
+
+            if (offsets != null) {
+                offsets[size] = origin;
+            }
+            out[size++] = lowerCase ? Character.toLowerCase(c) : c;
+        }
+
+        String normalized = new String(out, 0, size);
+        if (offsets != null) {
+            offsets[size] = length;
+            offsets = Arrays.copyOf(offsets, size + 1);
+        }
+        return new NormalizedText(text, normalized, offsets);
+    }
+
+    private static char[] buffer(int length) {
+        char[] buffer = BUFFER.get();
+        if (buffer.length >= length) {
+            return buffer;
+        }
+        buffer = new char[length];
+        if (length <= MAX_RETAINED_BUFFER) {
+            BUFFER.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Same set as the regex {@code \s}
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
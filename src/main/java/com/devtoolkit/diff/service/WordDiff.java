@@ -0,0 +1,147 @@
+package com.devtoolkit.diff.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Word-level alignment of two texts: both are split into {@link WordTokens} once and the token id arrays
+ * are diffed with Myers. A whitespace-only gap between two changes is folded into them, so a rewritten
+ * phrase reads as one change instead of alternating words and spaces. Highlights come out as packed
+ * {@code start, end, type} triples in the same shape as the character-level ones.
+ */
+public final class WordDiff {
+
+    private final WordTokens tokens1;
+    private final WordTokens tokens2;
+    private final List<Edit> edits;
+
+    private WordDiff(WordTokens tokens1, WordTokens tokens2, List<Edit> edits) {
+        this.tokens1 = tokens1;
+        this.tokens2 = tokens2;
+        this.edits = edits;
+    }
+
+    /**
+     * Align two texts under {@code budget}, which must not be in use on another thread. Once its deadline
+     * has passed, everything between the common leading and trailing tokens becomes one change.
+     */
+    public static WordDiff of(String text1, String text2, DiffBudget budget) {
+        WordTokens[] tokens = WordTokens.tokenize(text1, text2);
+        int[] a = tokens[0].ids();
+        int[] b = tokens[1].ids();
+        List<Edit> edits;
+        try {
+            edits = MyersDiff.diff(a, b, budget);
+        } catch (DiffBudget.Exceeded e) {
+            budget.degrade(DiffBudget.Level.LINES_ONLY);
+            edits = MyersDiff.prefixSuffix(a, b);
+        }
+        return new WordDiff(tokens[0], tokens[1], foldWhitespaceGaps(edits, tokens[0]));
+    }
+
+    public WordTokens getTokens1() {
+        return tokens1;
+    }
+
+    public WordTokens getTokens2() {
+        return tokens2;
+    }
+
+    /**
+     * Token edits; positions are token indexes on each side.
+     */
+    public List<Edit> getEdits() {
+        return edits;
+    }
+
+    /**
+     * Whether any word token is left unchanged; without one the texts are better shown as replaced.
+     */
+    public boolean hasCommonWords() {
+        int position = 0;
+        for (Edit edit : edits) {
+            if (containsWord(position, edit.getBeginA())) {
+                return true;
+            }
+            position = edit.getEndA();
+        }
+        return containsWord(position, tokens1.size());
+    }
+
+    /**
+     * Highlights of one side as packed {@code start, end, type} triples over its characters. Text only
+     * on this side is {@code DELETED} on the left and {@code ADDED} on the right, replaced text
+     * {@code CHANGED}.
+     */
+    public int[] highlights(boolean left) {
+        WordTokens tokens = left ? tokens1 : tokens2;
+        int[] spans = new int[3 * (2 * edits.size() + 1)];
+        int size = 0;
+        int position = 0;
+        for (Edit edit : edits) {
+            int begin = left ? edit.getBeginA() : edit.getBeginB();
+            int end = left ? edit.getEndA() : edit.getEndB();
+            int otherLength = left ? edit.getLengthB() : edit.getLengthA();
+            if (position < begin) {
+                size = addSpan(spans, size, tokens.offset(position), tokens.offset(begin),
+                        SideBySideDiff.SpanType.UNCHANGED);
+            }
+            if (begin < end) {
+                SideBySideDiff.SpanType type = otherLength > 0 ? SideBySideDiff.SpanType.CHANGED
+                        : left ? SideBySideDiff.SpanType.DELETED : SideBySideDiff.SpanType.ADDED;
+                size = addSpan(spans, size, tokens.offset(begin), tokens.offset(end), type);
+            }
+            position = end;
+        }
+        if (position < tokens.size()) {
+            size = addSpan(spans, size, tokens.offset(position), tokens.offset(tokens.size()),
+                    SideBySideDiff.SpanType.UNCHANGED);
+        }
+        return size == spans.length ? spans : Arrays.copyOf(spans, size);
+    }
+
+    private boolean containsWord(int from, int to) {
+        for (int t = from; t < to; t++) {
+            if (tokens1.kind(t) == WordTokens.WORD) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Edit> foldWhitespaceGaps(List<Edit> edits, WordTokens tokens1) {
+        if (edits.size() < 2) {
+            return edits;
+        }
+        List<Edit> folded = new ArrayList<>(edits.size());
+        Edit current = edits.get(0);
+        for (int i = 1; i < edits.size(); i++) {
+            Edit next = edits.get(i);
+            if (isWhitespace(tokens1, current.getEndA(), next.getBeginA())) {
+                current = new Edit(current.getBeginA(), next.getEndA(), current.getBeginB(), next.getEndB());
+            } else {
+                folded.add(current);
+                current = next;
+            }
+        }
+        folded.add(current);
+        return folded;
+    }
+
+    private static boolean isWhitespace(WordTokens tokens, int from, int to) {
+        for (int t = from; t < to; t++) {
+            if (tokens.kind(t) != WordTokens.WHITESPACE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int addSpan(int[] spans, int size, int start, int end, SideBySideDiff.SpanType type) {
+        spans[size] = start;
+        spans[size + 1] = end;
+        spans[size + 2] = type.ordinal();
+        return size + 3;
+    }
+}
@@ -0,0 +1,131 @@
+package com.devtoolkit.diff.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Prose tokens of a text for word-level diffs: runs of letters and digits, runs of horizontal whitespace,
+ * line breaks, and every other character on its own, so punctuation and Markdown markers change
+ * separately from the words next to them. Tokens cover the text without gaps, and both sides of a diff
+ * share one id table so equal tokens get equal ids.
+ */
+public final class WordTokens {
+
+    public static final byte WORD = 0;
+    public static final byte WHITESPACE = 1;
+    public static final byte LINE_BREAK = 2;
+    public static final byte PUNCTUATION = 3;
+
+    private final String text;
+    private int[] starts;
+    private int[] ids;
+    private byte[] kinds;
+    private int size = 0;
+
+    private WordTokens(String text) {
+        this.text = text;
+        int capacity = Math.max(8, text.length() / 3);
+        this.starts = new int[capacity];
+        this.kinds = new byte[capacity];
+    }
+
+    /**
+     * Tokenise both sides against one id table.
+     */
+    public static WordTokens[] tokenize(String text1, String text2) {
+        WordTokens tokens1 = new WordTokens(text1);
+        WordTokens tokens2 = new WordTokens(text2);
+        tokens1.lex();
+        tokens2.lex();
+
+        Map<String, Integer> table = new HashMap<>();
+        tokens1.intern(table);
+        tokens2.intern(table);
+        return new WordTokens[]{tokens1, tokens2};
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The id sequence; callers must not modify it.
+     */
+    public int[] ids() {
+        return ids;
+    }
+
+    public byte kind(int token) {
+        return kinds[token];
+    }
+
+    /**
+     * Character offset where {@code token} starts; {@code size()} maps to the end of the text.
+     */
+    public int offset(int token) {
+        return token < size ? starts[token] : text.length();
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    private void lex() {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int start = i;
+            int c = text.codePointAt(i);
+            i += Character.charCount(c);
+            byte kind;
+            if (isWordPart(c)) {
+                kind = WORD;
+                while (i < length && isWordPart(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+            } else if (c == '\n' || c == '\r') {
+                kind = LINE_BREAK;
+                if (c == '\r' && i < length && text.charAt(i) == '\n') {
+                    i++;
+                }
+            } else if (Character.isWhitespace(c)) {
+                kind = WHITESPACE;
+                while (i < length && text.charAt(i) != '\n' && text.charAt(i) != '\r'
+                        && Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+            } else {
+                kind = PUNCTUATION;
+            }
+            add(kind, start);
+        }
+    }
+
+    private static boolean isWordPart(int c) {
+        return Character.isLetterOrDigit(c) || c == '_' || Character.getType(c) == Character.NON_SPACING_MARK;
+    }
+
+    private void add(byte kind, int start) {
+        if (size == kinds.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            kinds = Arrays.copyOf(kinds, size * 2);
+        }
+        starts[size] = start;
+        kinds[size] = kind;
+        size++;
+    }
+
+    private void intern(Map<String, Integer> table) {
+        ids = new int[size];
+        for (int t = 0; t < size; t++) {
+            String token = text.substring(starts[t], offset(t + 1));
+            Integer id = table.get(token);
+            if (id == null) {
+                id = table.size();
+                table.put(token, id);
+            }
+            ids[t] = id;
+        }
+    }
+}
@@ -0,0 +1,649 @@
+package com.devtoolkit.diff.service;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Structural XML diff over StAX pull parsers, in two streaming passes per document.
+ * <p>
+ * The first pass hashes every element subtree (name, attributes in any order, child elements and the
+ * element's trimmed text segments joined in document order; whitespace-only text, comments and processing
+ * instructions are ignored) into primitive arrays indexed by element position in document order. The
+ * second pass walks both documents in lockstep: subtrees whose hashes agree are confirmed equal by
+ * streaming through both without building a change list, children of a changed element are aligned by
+ * their hashes, and element, attribute and text changes are reported with XPath locations.
+ * <p>
+ * The index takes about 16 bytes per element on each side, so memory grows with the element count
+ * rather than the document size; apart from it, only the text and attributes of the elements on the
+ * current path are held, and the number of reported changes is capped. Child alignment is bounded by
+ * the budget; once it runs out, children are paired by name between the common prefix and suffix.
+ */
+public final class XmlStructuralDiff {
+
+    private static final int MAX_REPORTED_TEXT = 200;
+    private static final long TEXT_SEED = 0xcbf29ce484222325L ^ 0x7E7L;
+
+    private final XMLInputFactory factory;
+    private final int maxChanges;
+    private final DiffBudget budget;
+    private final List<Map<String, Object>> changes = new ArrayList<>();
+    private boolean truncated = false;
+
+    public XmlStructuralDiff(int maxChanges, DiffBudget budget) {
+        this.maxChanges = maxChanges;
+        this.budget = budget;
+        this.factory = XMLInputFactory.newFactory();
+        // No DTDs or external entities from user input
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    }
+
+    /**
+     * Compare two documents held in memory; returns whether they are structurally equal.
+     */
+    public boolean compare(String xml1, String xml2) throws XMLStreamException {
+        ElementIndex index1 = index(factory.createXMLStreamReader(new StringReader(xml1)));
+        ElementIndex index2 = index(factory.createXMLStreamReader(new StringReader(xml2)));
+        if (index1.rootHash() == index2.rootHash()
+                && sameDocument(factory.createXMLStreamReader(new StringReader(xml1)), index1,
+                        factory.createXMLStreamReader(new StringReader(xml2)), index2)) {
+            return true;
+        }
+        diff(factory.createXMLStreamReader(new StringReader(xml1)), index1,
+                factory.createXMLStreamReader(new StringReader(xml2)), index2);
+        return false;
+    }
+
+    /**
+     * Compare two files without loading them; returns whether they are structurally equal.
+     */
+    public boolean compare(Path file1, Path file2) throws IOException, XMLStreamException {
+        ElementIndex index1;
+        ElementIndex index2;
+        try (InputStream in1 = Files.newInputStream(file1); InputStream in2 = Files.newInputStream(file2)) {
+            index1 = index(factory.createXMLStreamReader(in1));
+            index2 = index(factory.createXMLStreamReader(in2));
+        }
+        if (index1.rootHash() == index2.rootHash()) {
+            try (InputStream in1 = Files.newInputStream(file1); InputStream in2 = Files.newInputStream(file2)) {
+                if (sameDocument(factory.createXMLStreamReader(in1), index1, factory.createXMLStreamReader(in2), index2)) {
+                    return true;
+                }
+            }
+        }
+        try (InputStream in1 = Files.newInputStream(file1); InputStream in2 = Files.newInputStream(file2)) {
+            diff(factory.createXMLStreamReader(in1), index1, factory.createXMLStreamReader(in2), index2);
+        }
+        return false;
+    }
+
+    public List<Map<String, Object>> getChanges() {
+        return changes;
+    }
+
+    /**
+     * Whether more changes were found than {@code maxChanges}.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    private ElementIndex index(XMLStreamReader reader) throws XMLStreamException {
+        ElementIndex index = new ElementIndex();
+        long[] accumulators = new long[32];
+        // Running hash of each open element's text, fed the same joined segments the walk collects
+        long[] texts = new long[32];
+        boolean[] hasText = new boolean[32];
+        int[] ordinals = new int[32];
+        int depth = 0;
+
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (depth == accumulators.length) {
+                        accumulators = Arrays.copyOf(accumulators, depth * 2);
+                        texts = Arrays.copyOf(texts, depth * 2);
+                        hasText = Arrays.copyOf(hasText, depth * 2);
+                        ordinals = Arrays.copyOf(ordinals, depth * 2);
+                    }
+                    long name = hashName(reader);
+                    ordinals[depth] = index.add(name);
+                    accumulators[depth] = mix(name + attributesHash(reader));
+                    hasText[depth] = false;
+                    depth++;
+                } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                    int start = trimStart(reader);
+                    int end = trimEnd(reader, start);
+                    if (depth > 0 && start < end) {
+                        texts[depth - 1] = appendText(hasText[depth - 1] ? texts[depth - 1] : TEXT_SEED,
+                                hasText[depth - 1], reader.getTextCharacters(), start, end);
+                        hasText[depth - 1] = true;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    long hash = mix(hasText[depth] ? accumulators[depth] * 31 + mix(texts[depth]) : accumulators[depth]);
+                    index.finish(ordinals[depth], hash);
+                    if (depth > 0) {
+                        accumulators[depth - 1] = mix(accumulators[depth - 1] * 31 + hash);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        if (index.size() == 0) {
+            throw new XMLStreamException("Document has no root element");
+        }
+        return index;
+    }
+
+    private void diff(XMLStreamReader reader1, ElementIndex index1, XMLStreamReader reader2, ElementIndex index2)
+            throws XMLStreamException {
+        try {
+            Cursor left = new Cursor(reader1, index1);
+            Cursor right = new Cursor(reader2, index2);
+            left.nextChild(null);
+            right.nextChild(null);
+
+            String path1 = "/" + left.name() + "[1]";
+            String path2 = "/" + right.name() + "[1]";
+            if (!left.name().equals(right.name())) {
+                addChange(path1, "ELEMENT_REMOVED", left.name(), null);
+                addChange(path2, "ELEMENT_ADDED", null, right.name());
+                return;
+            }
+            compareElements(left, right, path1);
+        } finally {
+            reader1.close();
+            reader2.close();
+        }
+    }
+
+    /**
+     * Whether two documents with equal root hashes really are equal.
+     */
+    private boolean sameDocument(XMLStreamReader reader1, ElementIndex index1, XMLStreamReader reader2,
+                                 ElementIndex index2) throws XMLStreamException {
+        try {
+            Cursor left = new Cursor(reader1, index1);
+            Cursor right = new Cursor(reader2, index2);
+            left.nextChild(null);
+            right.nextChild(null);
+            return confirmEqual(left, right);
+        } finally {
+            reader1.close();
+            reader2.close();
+        }
+    }
+
+    /**
+     * Both cursors sit on a start tag; walks both subtrees in lockstep comparing names, attributes and
+     * text, and stops at the first difference. Consumes both elements up to their end tags either way.
+     */
+    private static boolean confirmEqual(Cursor left, Cursor right) throws XMLStreamException {
+        int ordinal1 = left.ordinal;
+        int ordinal2 = right.ordinal;
+        ArrayDeque<StringBuilder> texts1 = new ArrayDeque<>();
+        ArrayDeque<StringBuilder> texts2 = new ArrayDeque<>();
+        texts1.push(new StringBuilder());
+        texts2.push(new StringBuilder());
+        int depth1 = 1;
+        int depth2 = 1;
+        boolean equal = left.sameStartTag(right);
+        while (equal && depth1 > 0) {
+            boolean child1 = left.nextChild(texts1.peek());
+            boolean child2 = right.nextChild(texts2.peek());
+            depth1 += child1 ? 1 : -1;
+            depth2 += child2 ? 1 : -1;
+            if (child1 != child2) {
+                equal = false;
+            } else if (child1) {
+                equal = left.sameStartTag(right);
+                texts1.push(new StringBuilder());
+                texts2.push(new StringBuilder());
+            } else {
+                equal = texts1.pop().toString().equals(texts2.pop().toString());
+            }
+        }
+        left.skip(depth1, ordinal1);
+        right.skip(depth2, ordinal2);
+        return equal;
+    }
+
+    /**
+     * Both cursors sit on the start tag of elements with the same name; consumes both up to their end tags.
+     */
+    private void compareElements(Cursor left, Cursor right, String path) throws XMLStreamException {
+        int ordinal1 = left.ordinal;
+        int ordinal2 = right.ordinal;
+        compareAttributes(left.attributes(), right.attributes(), path);
+
+        // Align the children by subtree hash; the index knows them without reading ahead
+        int[] children1 = left.index.children(ordinal1);
+        int[] children2 = right.index.children(ordinal2);
+        List<Edit> edits = align(foldedHashes(left.index, children1), foldedHashes(right.index, children2));
+
+        Children side1 = new Children(left, path);
+        Children side2 = new Children(right, path);
+        int a = 0;
+        int b = 0;
+        for (Edit edit : edits) {
+            while (a < edit.getBeginA()) {
+                compareAligned(side1, side2, children1[a++], children2[b++]);
+            }
+
+            // Replaced children are paired with the next child of the same name, the rest are removed or added
+            Map<Integer, ArrayDeque<Integer>> byName = new HashMap<>();
+            for (int j = edit.getBeginB(); j < edit.getEndB(); j++) {
+                byName.computeIfAbsent(right.index.nameHash(children2[j]), name -> new ArrayDeque<>()).add(j);
+            }
+            for (int i = edit.getBeginA(); i < edit.getEndA(); i++) {
+                ArrayDeque<Integer> candidates = byName.get(left.index.nameHash(children1[i]));
+                while (candidates != null && !candidates.isEmpty() && candidates.peekFirst() < b) {
+                    candidates.pollFirst();
+                }
+                if (candidates == null || candidates.isEmpty()) {
+                    side1.report("ELEMENT_REMOVED");
+                    continue;
+                }
+                int match = candidates.pollFirst();
+                while (b < match) {
+                    side2.report("ELEMENT_ADDED");
+                    b++;
+                }
+                compareAligned(side1, side2, -1, -1);
+                b++;
+            }
+            while (b < edit.getEndB()) {
+                side2.report("ELEMENT_ADDED");
+                b++;
+            }
+            a = edit.getEndA();
+        }
+        while (a < children1.length) {
+            compareAligned(side1, side2, children1[a++], children2[b++]);
+        }
+
+        left.nextChild(side1.text);
+        right.nextChild(side2.text);
+        if (!side1.text.toString().equals(side2.text.toString())) {
+            addChange(path + "/text()", "TEXT_CHANGED", side1.text.toString(), side2.text.toString());
+        }
+    }
+
+    /**
+     * Move both sides to their next child; when the ordinals are given and their full hashes agree, only
+     * confirm that the subtrees are equal, otherwise compare them in place.
+     */
+    private void compareAligned(Children side1, Children side2, int ordinal1, int ordinal2)
+            throws XMLStreamException {
+        side1.next();
+        side2.next();
+        String name1 = side1.cursor.name();
+        String name2 = side2.cursor.name();
+        int position1 = side1.position(name1);
+        int position2 = side2.position(name2);
+
+        boolean equal = ordinal1 >= 0 && side1.cursor.index.hash(ordinal1) == side2.cursor.index.hash(ordinal2);
+        if (equal) {
+            if (!confirmEqual(side1.cursor, side2.cursor)) {
+                // Hash collision: the subtrees are consumed by now, so they are reported as a whole
+                addChange(side1.path(name1, position1), "ELEMENT_CHANGED", name1, name2);
+            }
+        } else if (name1.equals(name2)) {
+            compareElements(side1.cursor, side2.cursor, side1.path(name1, position1));
+        } else {
+            addChange(side1.path(name1, position1), "ELEMENT_REMOVED", name1, null);
+            addChange(side2.path(name2, position2), "ELEMENT_ADDED", null, name2);
+            side1.cursor.skipElement();
+            side2.cursor.skipElement();
+        }
+    }
+
+    private void compareAttributes(Map<String, String> attributes1, Map<String, String> attributes2, String path) {
+        for (Map.Entry<String, String> attribute : attributes1.entrySet()) {
+            String other = attributes2.get(attribute.getKey());
+            String attributePath = path + "/@" + attribute.getKey();
+            if (other == null) {
+                addChange(attributePath, "ATTRIBUTE_REMOVED", attribute.getValue(), null);
+            } else if (!other.equals(attribute.getValue())) {
+                addChange(attributePath, "ATTRIBUTE_CHANGED", attribute.getValue(), other);
+            }
+        }
+        for (Map.Entry<String, String> attribute : attributes2.entrySet()) {
+            if (!attributes1.containsKey(attribute.getKey())) {
+                addChange(path + "/@" + attribute.getKey(), "ATTRIBUTE_ADDED", null, attribute.getValue());
+            }
+        }
+    }
+
+    /**
+     * LCS of the child hashes, or a single prefix/suffix edit once the budget has run out.
+     */
+    private List<Edit> align(int[] hashes1, int[] hashes2) {
+        if (budget.getLevel() == DiffBudget.Level.PREFIX_SUFFIX) {
+            return MyersDiff.prefixSuffix(hashes1, hashes2);
+        }
+        try {
+            return MyersDiff.diff(hashes1, hashes2, budget);
+        } catch (DiffBudget.Exceeded e) {
+            budget.degrade(DiffBudget.Level.PREFIX_SUFFIX);
+            return MyersDiff.prefixSuffix(hashes1, hashes2);
+        }
+    }
+
+    /**
+     * Child hashes folded to ints for alignment; equal subtrees always fold alike, and a rare false match
+     * is caught by comparing the full hashes when the aligned pair is visited.
+     */
+    private static int[] foldedHashes(ElementIndex index, int[] children) {
+        int[] folded = new int[children.length];
+        for (int i = 0; i < children.length; i++) {
+            long hash = index.hash(children[i]);
+            folded[i] = (int) (hash ^ (hash >>> 32));
+        }
+        return folded;
+    }
+
+    private void addChange(String path, String type, String oldValue, String newValue) {
+        if (changes.size() >= maxChanges) {
+            truncated = true;
+            return;
+        }
+        Map<String, Object> change = new HashMap<>();
+        change.put("path", path);
+        change.put("type", type);
+        if (oldValue != null) {
+            change.put("oldValue", abbreviate(oldValue));
+        }
+        if (newValue != null) {
+            change.put("newValue", abbreviate(newValue));
+        }
+        changes.add(change);
+    }
+
+    private static String abbreviate(String value) {
+        return value.length() <= MAX_REPORTED_TEXT ? value : value.substring(0, MAX_REPORTED_TEXT) + "...";
+    }
+
+    private static long hashName(XMLStreamReader reader) {
+        String namespace = reader.getNamespaceURI();
+        long hash = hashChars(reader.getLocalName(), 0x51ED27L);
+        return namespace != null ? mix(hash * 31 + hashChars(namespace, 0x4E53L)) : hash;
+    }
+
+    /**
+     * Order-insensitive: a sum of mixed name/value hashes.
+     */
+    private static long attributesHash(XMLStreamReader reader) {
+        long hash = 0;
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            long name = hashChars(attributeName(reader, i), 0xA77L);
+            hash += mix(name * 31 + hashChars(reader.getAttributeValue(i), 0xA7AL));
+        }
+        return hash;
+    }
+
+    /**
+     * FNV-1a over one trimmed text segment, separated by a space from the segments before it.
+     */
+    private static long appendText(long hash, boolean separate, char[] chars, int start, int end) {
+        if (separate) {
+            hash ^= ' ';
+            hash *= 0x100000001b3L;
+        }
+        for (int i = start; i < end; i++) {
+            hash ^= chars[i];
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static int trimStart(XMLStreamReader reader) {
+        char[] chars = reader.getTextCharacters();
+        int start = reader.getTextStart();
+        int end = start + reader.getTextLength();
+        while (start < end && Character.isWhitespace(chars[start])) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(XMLStreamReader reader, int start) {
+        char[] chars = reader.getTextCharacters();
+        int end = reader.getTextStart() + reader.getTextLength();
+        while (end > start && Character.isWhitespace(chars[end - 1])) {
+            end--;
+        }
+        return end;
+    }
+
+    private static String attributeName(XMLStreamReader reader, int i) {
+        String prefix = reader.getAttributePrefix(i);
+        String local = reader.getAttributeLocalName(i);
+        return prefix != null && !prefix.isEmpty() ? prefix + ":" + local : local;
+    }
+
+    private static long hashChars(String text, long seed) {
+        long hash = 0xcbf29ce484222325L ^ seed;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * The children of one element on one side while they are being walked: collects the element's own
+     * text and numbers same-name siblings for XPath locations.
+     */
+    private final class Children {
+        private final Cursor cursor;
+        private final String parentPath;
+        private final StringBuilder text = new StringBuilder();
+        private final Map<String, Integer> positions = new HashMap<>();
+
+        Children(Cursor cursor, String parentPath) {
+            this.cursor = cursor;
+            this.parentPath = parentPath;
+        }
+
+        void next() throws XMLStreamException {
+            cursor.nextChild(text);
+        }
+
+        int position(String name) {
+            return positions.merge(name, 1, Integer::sum);
+        }
+
+        String path(String name, int position) {
+            return parentPath + "/" + name + "[" + position + "]";
+        }
+
+        /**
+         * Report the next child as removed or added as a whole.
+         */
+        void report(String type) throws XMLStreamException {
+            next();
+            String name = cursor.name();
+            boolean removed = type.equals("ELEMENT_REMOVED");
+            addChange(path(name, position(name)), type, removed ? name : null, removed ? null : name);
+            cursor.skipElement();
+        }
+    }
+
+    /**
+     * Subtree hash, name hash and subtree size (in elements) of every element, by document-order position.
+     */
+    private static final class ElementIndex {
+        private long[] hashes = new long[1024];
+        private int[] names = new int[1024];
+        private int[] sizes = new int[1024];
+        private int count = 0;
+
+        int add(long nameHash) {
+            if (count == hashes.length) {
+                hashes = Arrays.copyOf(hashes, count * 2);
+                names = Arrays.copyOf(names, count * 2);
+                sizes = Arrays.copyOf(sizes, count * 2);
+            }
+            names[count] = (int) (nameHash ^ (nameHash >>> 32));
+            return count++;
+        }
+
+        int nameHash(int ordinal) {
+            return names[ordinal];
+        }
+
+        void finish(int ordinal, long hash) {
+            hashes[ordinal] = hash;
+            sizes[ordinal] = count - ordinal;
+        }
+
+        int size() {
+            return count;
+        }
+
+        long hash(int ordinal) {
+            return hashes[ordinal];
+        }
+
+        long rootHash() {
+            return hashes[0];
+        }
+
+        int[] children(int ordinal) {
+            int childCount = 0;
+            int end = ordinal + sizes[ordinal];
+            for (int child = ordinal + 1; child < end; child += sizes[child]) {
+                childCount++;
+            }
+            int[] children = new int[childCount];
+            int i = 0;
+            for (int child = ordinal + 1; child < end; child += sizes[child]) {
+                children[i++] = child;
+            }
+            return children;
+        }
+    }
+
+    /**
+     * Second-pass reader that knows the document-order position of the element it is on.
+     */
+    private static final class Cursor {
+        private final XMLStreamReader reader;
+        private final ElementIndex index;
+        private int ordinal = -1;
+        private int nextOrdinal = 0;
+
+        Cursor(XMLStreamReader reader, ElementIndex index) {
+            this.reader = reader;
+            this.index = index;
+        }
+
+        /**
+         * Advance to the next child start tag or to the end tag of the current element, collecting
+         * trimmed text on the way. Returns whether a child was found.
+         */
+        boolean nextChild(StringBuilder text) throws XMLStreamException {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    ordinal = nextOrdinal++;
+                    return true;
+                }
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    return false;
+                }
+                if (text != null && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+                    int start = trimStart(reader);
+                    int end = trimEnd(reader, start);
+                    if (start < end) {
+                        if (text.length() > 0) {
+                            text.append(' ');
+                        }
+                        text.append(reader.getTextCharacters(), start, end - start);
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Consume the current element up to and including its end tag.
+         */
+        void skipElement() throws XMLStreamException {
+            skip(1, ordinal);
+        }
+
+        /**
+         * Consume events until {@code depth} more end tags than start tags have been read, which leaves
+         * the element at {@code start} that the reader is inside of.
+         */
+        void skip(int depth, int start) throws XMLStreamException {
+            while (depth > 0) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+            nextOrdinal = start + index.sizes[start];
+        }
+
+        /**
+         * Whether both readers are on start tags with the same namespace, local name and attributes.
+         */
+        boolean sameStartTag(Cursor other) {
+            return Objects.equals(reader.getNamespaceURI(), other.reader.getNamespaceURI())
+                    && reader.getLocalName().equals(other.reader.getLocalName())
+                    && attributes().equals(other.attributes());
+        }
+
+        String name() {
+            String prefix = reader.getPrefix();
+            String local = reader.getLocalName();
+            return prefix != null && !prefix.isEmpty() ? prefix + ":" + local : local;
+        }
+
+        /**
+         * Attributes of the current start tag, sorted by name.
+         */
+        Map<String, String> attributes() {
+            Map<String, String> attributes = new TreeMap<>();
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                attributes.put(attributeName(reader, i), reader.getAttributeValue(i));
+            }
+            return attributes;
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package com.devtoolkit.jwt.service;
 
+import com.devtoolkit.common.codec.CodecRegistry;
 import com.devtoolkit.jwt.exception.JwtException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.Jwts;
@@ -18,7 +19,11 @@ import java.util.Map;
 @Service
 public class JwtServiceImpl implements JwtService {
     
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectReader claimsReader;
+    
+    public JwtServiceImpl(CodecRegistry codecs) {
+        this.claimsReader = codecs.reader(CodecRegistry.Format.JSON).forType(Map.class);
+    }
     
     @Override
     public Map<String, Object> decodeToken(String token) {
@@ -57,7 +62,7 @@ public class JwtServiceImpl implements JwtService {
             // Decode and validate header
             try {
                 String headerJson = new String(Base64.getUrlDecoder().decode(parts[0]));
-                Map<String, Object> header = objectMapper.readValue(headerJson, Map.class);
+                Map<String, Object> header = claimsReader.readValue(headerJson);
                 result.put("header", header);
             } catch (IllegalArgumentException e) {
                 throw new JwtException.InvalidEncoding("Invalid Base64 encoding in header: " + e.getMessage());
@@ -68,7 +73,7 @@ public class JwtServiceImpl implements JwtService {
             // Decode and validate payload
             try {
                 String payloadJson = new String(Base64.getUrlDecoder().decode(parts[1]));
-                Map<String, Object> payload = objectMapper.readValue(payloadJson, Map.class);
+                Map<String, Object> payload = claimsReader.readValue(payloadJson);
                 result.put("payload", payload);
             } catch (IllegalArgumentException e) {
                 throw new JwtException.InvalidEncoding("Invalid Base64 encoding in payload: " + e.getMessage());
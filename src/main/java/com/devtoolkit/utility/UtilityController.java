@@ -1,11 +1,21 @@
 package com.devtoolkit.utility;
 
+import com.devtoolkit.utility.codec.FormatCodec;
 import com.devtoolkit.utility.dto.UtilityRequest;
 import com.devtoolkit.utility.service.UtilityService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -113,7 +123,50 @@ public class UtilityController {
         return ResponseEntity.ok(response);
     }
     
-
+    @GetMapping("/converter/formats")
+    public ResponseEntity<Map<String, Object>> getConverterFormats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("formats", utilityService.getSupportedFormats());
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping(value = "/converter/file", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> convertFile(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam("sourceFormat") String sourceFormat,
+            @RequestParam("targetFormat") String targetFormat
+    ) throws IOException {
+        // Unknown formats are rejected before anything is written
+        FormatCodec source = utilityService.getFormatCodec(sourceFormat);
+        FormatCodec target = utilityService.getFormatCodec(targetFormat);
+        
+        // Multipart parts are cleaned up when the handler returns, the body is written after that
+        Path path = Files.createTempFile("devtoolkit-convert-", ".tmp");
+        try {
+            file.transferTo(path);
+        } catch (IOException e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+        
+        StreamingResponseBody body = out -> {
+            try {
+                BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+                utilityService.convertFormat(path, source, target, buffered);
+                buffered.flush();
+            } finally {
+                Files.deleteIfExists(path);
+            }
+        };
+        
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(target.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(convertedFileName(file.getOriginalFilename(), target))
+                        .build().toString())
+                .body(body);
+    }
     
     @PostMapping("/curl/generate")
     public ResponseEntity<Map<String, Object>> generateCurl(@RequestBody UtilityRequest request) {
@@ -152,8 +205,9 @@ public class UtilityController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            String result = utilityService.testRegex(request.getText(), request.getFormat());
-            response.put("result", result);
+            Map<String, Object> result = utilityService.testRegex(request.getText(), request.getFormat(),
+                    request.getFlags());
+            response.putAll(result);
             response.put("success", true);
         } catch (Exception e) {
             response.put("error", e.getMessage());
@@ -178,4 +232,13 @@ public class UtilityController {
         
         return ResponseEntity.ok(response);
     }
-} 
\ No newline at end of file
+    
+    private String convertedFileName(String originalName, FormatCodec format) {
+        String base = originalName == null || originalName.isBlank() ? "converted" : originalName;
+        int dot = base.lastIndexOf('.');
+        if (dot > 0) {
+            base = base.substring(0, dot);
+        }
+        return base + "." + format.getFileExtension();
+    }
+}
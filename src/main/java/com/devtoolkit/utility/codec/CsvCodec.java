@@ -0,0 +1,132 @@
+package com.devtoolkit.utility.codec;
+
+import com.devtoolkit.common.codec.CodecRegistry;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * CSV with a header row, streamed one row at a time. Each row reads as an object keyed by the header,
+ * with string values. On output the columns come from the first record; later records may leave columns
+ * out but not add new ones, and nested values are written as compact JSON in their cell.
+ */
+@Component
+public class CsvCodec implements FormatCodec {
+    
+    private final ObjectMapper mapper;
+    
+    public CsvCodec(CodecRegistry codecs) {
+        this.mapper = codecs.mapper(CodecRegistry.Format.CSV);
+    }
+    
+    @Override
+    public String getName() {
+        return "CSV";
+    }
+    
+    @Override
+    public String getMediaType() {
+        return "text/csv";
+    }
+    
+    @Override
+    public String getFileExtension() {
+        return "csv";
+    }
+    
+    @Override
+    public boolean isRecordStream() {
+        return true;
+    }
+    
+    @Override
+    public JsonParser createParser(InputStream in) throws IOException {
+        JsonParser parser = mapper.createParser(in);
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        parser.setSchema(CsvSchema.emptySchema().withHeader());
+        return parser;
+    }
+    
+    @Override
+    public FormatWriter createWriter(OutputStream out) {
+        return new RowWriter(out);
+    }
+    
+    private final class RowWriter implements FormatWriter {
+        
+        private final OutputStream out;
+        private CsvSchema schema;
+        private SequenceWriter rows;
+        
+        RowWriter(OutputStream out) {
+            this.out = out;
+        }
+        
+        @Override
+        public void writeValue(JsonParser parser) throws IOException {
+            if (parser.currentToken() == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    writeRecord(parser);
+                }
+            } else {
+                writeRecord(parser);
+            }
+        }
+        
+        @Override
+        public void writeStartRecords() {
+        }
+        
+        @Override
+        public void writeRecord(JsonParser parser) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("CSV rows must be objects, found " + parser.currentToken());
+            }
+            // One record at a time as a tree, so nested values can be flattened into their cell
+            ObjectNode row = mapper.readTree(parser);
+            if (rows == null) {
+                CsvSchema.Builder builder = CsvSchema.builder().setUseHeader(true);
+                row.fieldNames().forEachRemaining(builder::addColumn);
+                schema = builder.build();
+                rows = mapper.writer(schema).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValues(out);
+            }
+            
+            Iterator<Map.Entry<String, JsonNode>> fields = row.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (schema.column(field.getKey()) == null) {
+                    throw new IllegalArgumentException("Field '" + field.getKey()
+                            + "' is not a CSV column; columns come from the first record: " + schema.getColumnDesc());
+                }
+                if (field.getValue().isContainerNode()) {
+                    field.setValue(TextNode.valueOf(field.getValue().toString()));
+                }
+            }
+            rows.write(row);
+        }
+        
+        @Override
+        public void writeEndRecords() {
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (rows != null) {
+                rows.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.devtoolkit.utility.codec;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Writer for single-document formats: the token stream is copied into the format's generator as is, and
+ * the records of a record-stream source become the items of a root array.
+ */
+public class DocumentWriter implements FormatWriter {
+    
+    protected final ObjectMapper mapper;
+    protected final JsonGenerator generator;
+    
+    public DocumentWriter(ObjectMapper mapper, OutputStream out, boolean pretty) throws IOException {
+        this(mapper, mapper.createGenerator(out), pretty);
+    }
+    
+    public DocumentWriter(ObjectMapper mapper, Writer out, boolean pretty) throws IOException {
+        this(mapper, mapper.createGenerator(out), pretty);
+    }
+    
+    private DocumentWriter(ObjectMapper mapper, JsonGenerator generator, boolean pretty) {
+        this.mapper = mapper;
+        this.generator = generator;
+        this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (pretty) {
+            this.generator.setPrettyPrinter(mapper.getSerializationConfig().constructDefaultPrettyPrinter());
+        }
+    }
+    
+    @Override
+    public void writeValue(JsonParser parser) throws IOException {
+        generator.copyCurrentStructure(parser);
+    }
+    
+    @Override
+    public void writeStartRecords() throws IOException {
+        generator.writeStartArray();
+    }
+    
+    @Override
+    public void writeRecord(JsonParser parser) throws IOException {
+        generator.copyCurrentStructure(parser);
+    }
+    
+    @Override
+    public void writeEndRecords() throws IOException {
+        generator.writeEndArray();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        generator.close();
+    }
+}
@@ -0,0 +1,48 @@
+package com.devtoolkit.utility.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * A format the converter can read and write. Every codec exposes its input as a Jackson token stream
+ * and writes one back, so any pair of registered formats converts through the same pipeline. Codecs are
+ * Spring beans; adding one is enough to make it available to the converter.
+ */
+public interface FormatCodec {
+    
+    /**
+     * Upper-case name used in requests, e.g. {@code CSV}.
+     */
+    String getName();
+    
+    /**
+     * Other upper-case names accepted for this format.
+     */
+    default List<String> getAliases() {
+        return List.of();
+    }
+    
+    String getMediaType();
+    
+    String getFileExtension();
+    
+    /**
+     * Whether the format is a sequence of records (JSON Lines, CSV) rather than a single document.
+     */
+    boolean isRecordStream();
+    
+    /**
+     * Parser over {@code in}, which the parser must not close. A record stream yields one root value per
+     * record.
+     */
+    JsonParser createParser(InputStream in) throws IOException;
+    
+    /**
+     * Writer onto {@code out}, which closing the writer must not close.
+     */
+    FormatWriter createWriter(OutputStream out) throws IOException;
+}
@@ -0,0 +1,53 @@
+package com.devtoolkit.utility.codec;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * All {@link FormatCodec} beans, looked up by name or alias, case-insensitively.
+ */
+@Component
+public class FormatCodecs {
+    
+    private final List<FormatCodec> codecs;
+    private final Map<String, FormatCodec> byName = new HashMap<>();
+    
+    public FormatCodecs(List<FormatCodec> codecs) {
+        this.codecs = codecs;
+        for (FormatCodec codec : codecs) {
+            register(codec.getName(), codec);
+            for (String alias : codec.getAliases()) {
+                register(alias, codec);
+            }
+        }
+    }
+    
+    public FormatCodec get(String name) {
+        FormatCodec codec = name != null ? byName.get(name.trim().toUpperCase(Locale.ROOT)) : null;
+        if (codec == null) {
+            throw new IllegalArgumentException("Unsupported format: " + name + " (supported: " + getNames() + ")");
+        }
+        return codec;
+    }
+    
+    public List<String> getNames() {
+        List<String> names = new ArrayList<>(codecs.size());
+        for (FormatCodec codec : codecs) {
+            names.add(codec.getName());
+        }
+        return names;
+    }
+    
+    private void register(String name, FormatCodec codec) {
+        FormatCodec previous = byName.put(name.toUpperCase(Locale.ROOT), codec);
+        if (previous != null && previous != codec) {
+            throw new IllegalStateException("Format name " + name + " is claimed by both "
+                    + previous.getClass().getSimpleName() + " and " + codec.getClass().getSimpleName());
+        }
+    }
+}
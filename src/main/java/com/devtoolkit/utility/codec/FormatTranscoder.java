@@ -0,0 +1,61 @@
+package com.devtoolkit.utility.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts between any two {@link FormatCodec}s by pulling tokens from the source codec's parser and
+ * pushing them into the target codec's writer, so memory grows with nesting depth (or record size)
+ * rather than document size, except where a codec itself needs the whole document.
+ * <p>
+ * A record-stream source becomes a root array for a document target; a document source written to a
+ * record format is split into one record per item of its root array, and every further root value
+ * (the other documents of a YAML stream) follows as records too.
+ */
+public final class FormatTranscoder {
+
+    private FormatTranscoder() {
+    }
+
+    public static String transcode(String text, FormatCodec source, FormatCodec target) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(text.length() + text.length() / 4);
+        transcode(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), source, target, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Convert {@code in} to {@code out}; neither is closed.
+     */
+    public static void transcode(InputStream in, FormatCodec source, FormatCodec target, OutputStream out)
+            throws IOException {
+        try (JsonParser parser = source.createParser(in);
+             FormatWriter writer = target.createWriter(out)) {
+            JsonToken token = parser.nextToken();
+            if (source.isRecordStream()) {
+                writer.writeStartRecords();
+                for (; token != null; token = parser.nextToken()) {
+                    writer.writeRecord(parser);
+                }
+                writer.writeEndRecords();
+                return;
+            }
+
+            if (token == null) {
+                throw new IllegalArgumentException("No content to convert");
+            }
+            writer.writeValue(parser);
+            if (target.isRecordStream()) {
+                while (parser.nextToken() != null) {
+                    writer.writeValue(parser);
+                }
+            }
+        }
+    }
+}
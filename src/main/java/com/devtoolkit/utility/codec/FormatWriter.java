@@ -0,0 +1,27 @@
+package com.devtoolkit.utility.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Target side of a conversion. Each write consumes the value the parser is positioned at, leaving the
+ * parser on that value's last token.
+ */
+public interface FormatWriter extends Closeable {
+    
+    /**
+     * Write a whole document. Record formats write a root array one record per item.
+     */
+    void writeValue(JsonParser parser) throws IOException;
+    
+    /**
+     * Start the records of a record-stream source; document formats open a root array for them.
+     */
+    void writeStartRecords() throws IOException;
+    
+    void writeRecord(JsonParser parser) throws IOException;
+    
+    void writeEndRecords() throws IOException;
+}
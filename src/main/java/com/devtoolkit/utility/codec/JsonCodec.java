@@ -0,0 +1,50 @@
+package com.devtoolkit.utility.codec;
+
+import com.devtoolkit.common.codec.CodecRegistry;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+@Component
+public class JsonCodec implements FormatCodec {
+    
+    private final ObjectMapper mapper;
+    
+    public JsonCodec(CodecRegistry codecs) {
+        this.mapper = codecs.mapper(CodecRegistry.Format.JSON);
+    }
+    
+    @Override
+    public String getName() {
+        return "JSON";
+    }
+    
+    @Override
+    public String getMediaType() {
+        return "application/json";
+    }
+    
+    @Override
+    public String getFileExtension() {
+        return "json";
+    }
+    
+    @Override
+    public boolean isRecordStream() {
+        return false;
+    }
+    
+    @Override
+    public JsonParser createParser(InputStream in) throws IOException {
+        return mapper.createParser(in).disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+    
+    @Override
+    public FormatWriter createWriter(OutputStream out) throws IOException {
+        return new DocumentWriter(mapper, out, true);
+    }
+}
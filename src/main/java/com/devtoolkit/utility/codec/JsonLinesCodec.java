@@ -0,0 +1,107 @@
+package com.devtoolkit.utility.codec;
+
+import com.devtoolkit.common.codec.CodecRegistry;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * JSON Lines (NDJSON): one compact JSON value per line, converted one record at a time.
+ */
+@Component
+public class JsonLinesCodec implements FormatCodec {
+    
+    private static final SerializedString LINE_SEPARATOR = new SerializedString("\n");
+    
+    private final ObjectMapper mapper;
+    
+    public JsonLinesCodec(CodecRegistry codecs) {
+        this.mapper = codecs.mapper(CodecRegistry.Format.JSON);
+    }
+    
+    @Override
+    public String getName() {
+        return "JSONL";
+    }
+    
+    @Override
+    public List<String> getAliases() {
+        return List.of("NDJSON", "JSON_LINES", "JSONLINES");
+    }
+    
+    @Override
+    public String getMediaType() {
+        return "application/x-ndjson";
+    }
+    
+    @Override
+    public String getFileExtension() {
+        return "jsonl";
+    }
+    
+    @Override
+    public boolean isRecordStream() {
+        return true;
+    }
+    
+    @Override
+    public JsonParser createParser(InputStream in) throws IOException {
+        // The JSON parser reads whitespace-separated root values, which covers one per line
+        return mapper.createParser(in).disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+    
+    @Override
+    public FormatWriter createWriter(OutputStream out) throws IOException {
+        return new LinesWriter(out);
+    }
+    
+    private final class LinesWriter extends DocumentWriter {
+        
+        private boolean written = false;
+        
+        LinesWriter(OutputStream out) throws IOException {
+            super(JsonLinesCodec.this.mapper, out, false);
+            generator.setRootValueSeparator(LINE_SEPARATOR);
+        }
+        
+        @Override
+        public void writeValue(JsonParser parser) throws IOException {
+            if (parser.currentToken() == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    writeRecord(parser);
+                }
+            } else {
+                writeRecord(parser);
+            }
+        }
+        
+        @Override
+        public void writeStartRecords() {
+        }
+        
+        @Override
+        public void writeRecord(JsonParser parser) throws IOException {
+            generator.copyCurrentStructure(parser);
+            written = true;
+        }
+        
+        @Override
+        public void writeEndRecords() {
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (written) {
+                generator.writeRaw('\n');
+            }
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.devtoolkit.utility.codec;
+
+import com.devtoolkit.common.codec.CodecRegistry;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.javaprop.JavaPropsFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Java {@code .properties}, read as UTF-8. Dotted keys become nested objects and numeric segments array
+ * indexes ({@code servers.1.host}), and back again on output. The file is loaded whole, keeping key order.
+ */
+@Component
+public class PropertiesCodec implements FormatCodec {
+    
+    private final ObjectMapper mapper;
+    
+    public PropertiesCodec(CodecRegistry codecs) {
+        this.mapper = codecs.mapper(CodecRegistry.Format.PROPERTIES);
+    }
+    
+    @Override
+    public String getName() {
+        return "PROPERTIES";
+    }
+    
+    @Override
+    public String getMediaType() {
+        return "text/plain";
+    }
+    
+    @Override
+    public String getFileExtension() {
+        return "properties";
+    }
+    
+    @Override
+    public boolean isRecordStream() {
+        return false;
+    }
+    
+    @Override
+    public JsonParser createParser(InputStream in) throws IOException {
+        // Properties itself is a hash table; record the order load() puts the keys in
+        Map<Object, Object> ordered = new LinkedHashMap<>();
+        Properties properties = new Properties() {
+            @Override
+            public synchronized Object put(Object key, Object value) {
+                ordered.put(key, value);
+                return super.put(key, value);
+            }
+        };
+        properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+        return ((JavaPropsFactory) mapper.getFactory()).createParser(ordered);
+    }
+    
+    @Override
+    public FormatWriter createWriter(OutputStream out) throws IOException {
+        // The byte-stream generator writes ISO-8859-1; stay UTF-8 like the input side
+        return new DocumentWriter(mapper, new OutputStreamWriter(out, StandardCharsets.UTF_8), false);
+    }
+}
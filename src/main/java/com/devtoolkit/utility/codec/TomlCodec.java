@@ -0,0 +1,75 @@
+package com.devtoolkit.utility.codec;
+
+import com.devtoolkit.common.codec.CodecRegistry;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * TOML. The parser reads the whole document before the first token; TOML has no null, so nulls are
+ * written as empty strings. A TOML document is a table, so only an object can be written as its root.
+ */
+@Component
+public class TomlCodec implements FormatCodec {
+    
+    private final ObjectMapper mapper;
+    
+    public TomlCodec(CodecRegistry codecs) {
+        this.mapper = codecs.mapper(CodecRegistry.Format.TOML);
+    }
+    
+    @Override
+    public String getName() {
+        return "TOML";
+    }
+    
+    @Override
+    public String getMediaType() {
+        return "application/toml";
+    }
+    
+    @Override
+    public String getFileExtension() {
+        return "toml";
+    }
+    
+    @Override
+    public boolean isRecordStream() {
+        return false;
+    }
+    
+    @Override
+    public JsonParser createParser(InputStream in) throws IOException {
+        return mapper.createParser(in).disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+    
+    @Override
+    public FormatWriter createWriter(OutputStream out) throws IOException {
+        return new TableWriter(out);
+    }
+    
+    private final class TableWriter extends DocumentWriter {
+        
+        TableWriter(OutputStream out) throws IOException {
+            super(TomlCodec.this.mapper, out, false);
+        }
+        
+        @Override
+        public void writeValue(JsonParser parser) throws IOException {
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("TOML root must be an object, found " + parser.currentToken());
+            }
+            super.writeValue(parser);
+        }
+        
+        @Override
+        public void writeStartRecords() {
+            throw new IllegalArgumentException("TOML root must be an object, found a stream of records");
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.devtoolkit.utility.codec;
+
+import com.devtoolkit.common.codec.CodecRegistry;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.dataformat.xml.ser.ToXmlGenerator;
+import org.springframework.stereotype.Component;
+
+import javax.xml.namespace.QName;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * XML. Input goes through an object tree: the XML parser reports repeated elements as repeated fields,
+ * and only the untyped deserializer folds them into arrays. Output streams, with the root and item
+ * element names {@link XmlMapper} gives the maps and lists it serialises, and an XML declaration.
+ */
+@Component
+public class XmlCodec implements FormatCodec {
+    
+    private static final byte[] XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final QName OBJECT_ROOT = new QName("LinkedHashMap");
+    private static final QName ARRAY_ROOT = new QName("ArrayList");
+    private static final String ARRAY_ITEM = "item";
+    
+    private final ObjectMapper mapper;
+    private final ObjectMapper jsonMapper;
+    private final ObjectReader valueReader;
+    private final ObjectWriter valueWriter;
+    
+    public XmlCodec(CodecRegistry codecs) {
+        this.mapper = codecs.mapper(CodecRegistry.Format.XML);
+        this.jsonMapper = codecs.mapper(CodecRegistry.Format.JSON);
+        this.valueReader = codecs.reader(CodecRegistry.Format.XML);
+        this.valueWriter = codecs.writer(CodecRegistry.Format.XML, true);
+    }
+    
+    @Override
+    public String getName() {
+        return "XML";
+    }
+    
+    @Override
+    public String getMediaType() {
+        return "application/xml";
+    }
+    
+    @Override
+    public String getFileExtension() {
+        return "xml";
+    }
+    
+    @Override
+    public boolean isRecordStream() {
+        return false;
+    }
+    
+    @Override
+    public JsonParser createParser(InputStream in) throws IOException {
+        // The XML parser rejects a declaration that does not start the input
+        PushbackInputStream trimmed = new PushbackInputStream(in, 1);
+        int first;
+        do {
+            first = trimmed.read();
+        } while (first == ' ' || first == '\t' || first == '\r' || first == '\n');
+        if (first >= 0) {
+            trimmed.unread(first);
+        }
+        
+        Object value;
+        try (JsonParser parser = mapper.createParser(trimmed).disable(JsonParser.Feature.AUTO_CLOSE_SOURCE)) {
+            value = valueReader.readValue(parser);
+        }
+        return jsonMapper.valueToTree(value).traverse(jsonMapper);
+    }
+    
+    @Override
+    public FormatWriter createWriter(OutputStream out) throws IOException {
+        out.write(XML_DECLARATION);
+        return new XmlWriter(out);
+    }
+    
+    private final class XmlWriter extends DocumentWriter {
+        
+        XmlWriter(OutputStream out) throws IOException {
+            super(XmlCodec.this.mapper, out, true);
+        }
+        
+        @Override
+        public void writeValue(JsonParser parser) throws IOException {
+            ToXmlGenerator xml = (ToXmlGenerator) generator;
+            if (parser.currentToken() == JsonToken.START_OBJECT) {
+                xml.setNextName(OBJECT_ROOT);
+                xml.copyCurrentStructure(parser);
+            } else if (parser.currentToken() == JsonToken.START_ARRAY) {
+                // XML has a single root element, so a root array becomes one element per item
+                writeStartRecords();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    writeRecord(parser);
+                }
+                writeEndRecords();
+            } else {
+                // A lone scalar: its root element is named after its type
+                valueWriter.writeValue(xml, mapper.readValue(parser, Object.class));
+            }
+        }
+        
+        @Override
+        public void writeStartRecords() throws IOException {
+            ((ToXmlGenerator) generator).setNextName(ARRAY_ROOT);
+            generator.writeStartObject();
+        }
+        
+        @Override
+        public void writeRecord(JsonParser parser) throws IOException {
+            generator.writeFieldName(ARRAY_ITEM);
+            generator.copyCurrentStructure(parser);
+        }
+        
+        @Override
+        public void writeEndRecords() throws IOException {
+            generator.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.devtoolkit.utility.codec;
+
+import com.devtoolkit.common.codec.CodecRegistry;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * YAML; only the first document of a multi-document stream is converted, except into a record format,
+ * which gets every document.
+ */
+@Component
+public class YamlCodec implements FormatCodec {
+    
+    private final ObjectMapper mapper;
+    
+    public YamlCodec(CodecRegistry codecs) {
+        this.mapper = codecs.mapper(CodecRegistry.Format.YAML);
+    }
+    
+    @Override
+    public String getName() {
+        return "YAML";
+    }
+    
+    @Override
+    public List<String> getAliases() {
+        return List.of("YML");
+    }
+    
+    @Override
+    public String getMediaType() {
+        return "application/yaml";
+    }
+    
+    @Override
+    public String getFileExtension() {
+        return "yaml";
+    }
+    
+    @Override
+    public boolean isRecordStream() {
+        return false;
+    }
+    
+    @Override
+    public JsonParser createParser(InputStream in) throws IOException {
+        return mapper.createParser(in).disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+    
+    @Override
+    public FormatWriter createWriter(OutputStream out) throws IOException {
+        return new DocumentWriter(mapper, out, true);
+    }
+}
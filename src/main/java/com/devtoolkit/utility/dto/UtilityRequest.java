@@ -18,4 +18,5 @@ public class UtilityRequest {
     private String sql;
     private String dialect;
     private Integer count;
+    private String flags;
 } 
\ No newline at end of file
@@ -0,0 +1,106 @@
+package com.devtoolkit.utility.service;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Read-only view of a text that bounds how long a regex may work on it. {@code java.util.regex} reads its
+ * input one {@link #charAt(int)} at a time and offers no timeout of its own, so every read counts as a step
+ * and the clock is checked every {@link #CHECK_INTERVAL} steps. Once the step or time allowance is used up
+ * the read throws {@link Exceeded}, which unwinds the matcher even from catastrophic backtracking; thread
+ * interruption stops it the same way. Sub-sequences share the allowance. Not thread-safe, one matcher
+ * reads it at a time.
+ */
+final class BudgetedCharSequence implements CharSequence {
+
+    /** Reads between clock and interrupt checks. */
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final CharSequence text;
+    private final int offset;
+    private final int length;
+    private final Budget budget;
+
+    BudgetedCharSequence(CharSequence text, long timeoutMillis, long maxSteps) {
+        this(text, 0, text.length(), new Budget(timeoutMillis, maxSteps));
+    }
+
+    private BudgetedCharSequence(CharSequence text, int offset, int length, Budget budget) {
+        this.text = text;
+        this.offset = offset;
+        this.length = length;
+        this.budget = budget;
+    }
+
+    @Override
+    public char charAt(int index) {
+        Budget budget = this.budget;
+        if (--budget.countdown <= 0) {
+            budget.check();
+        }
+        return text.charAt(offset + index);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        return new BudgetedCharSequence(text, offset + start, end - start, budget);
+    }
+
+    @Override
+    public String toString() {
+        return text.subSequence(offset, offset + length).toString();
+    }
+
+    /**
+     * Characters read so far, across this sequence and its sub-sequences.
+     */
+    long getSteps() {
+        return budget.steps + (CHECK_INTERVAL - budget.countdown);
+    }
+
+    private static final class Budget {
+
+        private final long deadline;
+        private final boolean limited;
+        private final long maxSteps;
+        private long steps = 0;
+        private int countdown = CHECK_INTERVAL;
+
+        Budget(long timeoutMillis, long maxSteps) {
+            this.limited = timeoutMillis > 0;
+            this.deadline = System.nanoTime() + Math.max(timeoutMillis, 0) * 1_000_000L;
+            this.maxSteps = maxSteps > 0 ? maxSteps : Long.MAX_VALUE;
+        }
+
+        void check() {
+            steps += CHECK_INTERVAL - countdown;
+            countdown = CHECK_INTERVAL;
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Regex evaluation was cancelled");
+            }
+            if (steps >= maxSteps) {
+                throw new Exceeded("step limit of " + maxSteps + " character reads");
+            }
+            if (limited && System.nanoTime() - deadline > 0) {
+                throw new Exceeded("time limit");
+            }
+        }
+    }
+
+    /**
+     * Thrown from {@link #charAt(int)} once the allowance is used up; carries no stack trace.
+     */
+    static final class Exceeded extends RuntimeException {
+
+        Exceeded(String limit) {
+            super(limit, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.devtoolkit.utility.service;
+
+import com.devtoolkit.common.cache.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled regex patterns keyed by flags and pattern text, least recently used evicted first. Patterns
+ * are immutable and thread-safe, so one compiled instance is shared by every request that uses it.
+ * Bounded by the total length of the cached pattern texts, which both the key and the compiled form
+ * grow with; a pattern longer than the whole bound is compiled per request.
+ */
+@Component
+public class RegexCache {
+    
+    private final BoundedCache<String, Pattern> patterns;
+    
+    public RegexCache(@Value("${utility.regex.cache-max-chars:1048576}") long maxChars) {
+        this.patterns = new BoundedCache<>(maxChars, 0, pattern -> 64 + pattern.pattern().length());
+    }
+    
+    /**
+     * The compiled pattern; a syntax error is not cached and surfaces as a {@code PatternSyntaxException}.
+     */
+    public Pattern compile(String regex, int flags) {
+        String key = flags + ":" + regex;
+        Pattern pattern = patterns.get(key);
+        if (pattern == null) {
+            pattern = Pattern.compile(regex, flags);
+            patterns.put(key, pattern);
+        }
+        return pattern;
+    }
+    
+    public Map<String, Object> stats() {
+        return patterns.stats();
+    }
+}
@@ -1,5 +1,10 @@
 package com.devtoolkit.utility.service;
 
+import com.devtoolkit.utility.codec.FormatCodec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.List;
 
@@ -10,8 +15,11 @@ public interface UtilityService {
     List<String> generateMultipleUuids(String type, int count);
     String convertTimestamp(String timestamp, String format);
     String convertFormat(String text, String sourceFormat, String targetFormat);
+    FormatCodec getFormatCodec(String format);
+    List<String> getSupportedFormats();
+    void convertFormat(Path file, FormatCodec sourceFormat, FormatCodec targetFormat, OutputStream out) throws IOException;
     Map<String, Object> compareText(String text1, String text2);
     String generateCurl(String url, String method, String headers, String body);
     String formatSql(String sql, String dialect);
-    String testRegex(String pattern, String text);
+    Map<String, Object> testRegex(String pattern, String text, String flags);
 } 
\ No newline at end of file
@@ -1,31 +1,63 @@
 package com.devtoolkit.utility.service;
 
+import com.devtoolkit.utility.codec.FormatCodec;
+import com.devtoolkit.utility.codec.FormatCodecs;
+import com.devtoolkit.utility.codec.FormatTranscoder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.net.URLEncoder;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import com.github.vertical_blank.sqlformatter.SqlFormatter;
 import com.github.vertical_blank.sqlformatter.languages.Dialect;
 
 @Service
 public class UtilityServiceImpl implements UtilityService {
     
-
+    private static final String REGEX_FLAG_LETTERS = "imsxudU";
+    private static final int[] REGEX_FLAG_BITS = {
+            Pattern.CASE_INSENSITIVE, Pattern.MULTILINE, Pattern.DOTALL, Pattern.COMMENTS,
+            Pattern.UNICODE_CASE, Pattern.UNIX_LINES, Pattern.UNICODE_CHARACTER_CLASS
+    };
+    
+    private final FormatCodecs formatCodecs;
+    
+    @Autowired
+    private RegexCache regexCache;
+    
+    @Value("${utility.regex.timeout-ms:1000}")
+    private long regexTimeoutMs;
+    
+    @Value("${utility.regex.max-steps:100000000}")
+    private long regexMaxSteps;
+    
+    @Value("${utility.regex.max-matches:1000}")
+    private int regexMaxMatches;
+    
+    public UtilityServiceImpl(FormatCodecs formatCodecs) {
+        this.formatCodecs = formatCodecs;
+    }
     
     @Override
     public String encodeUrl(String url) {
@@ -116,32 +148,34 @@ public class UtilityServiceImpl implements UtilityService {
         }
         
         try {
-            // Handle same format (just format/prettify)
-            if (sourceFormat.equalsIgnoreCase(targetFormat)) {
-                return formatText(text, sourceFormat);
-            }
-            
-            // Convert between different formats
-            if ("JSON".equalsIgnoreCase(sourceFormat) && "YAML".equalsIgnoreCase(targetFormat)) {
-                return convertJsonToYaml(text);
-            } else if ("YAML".equalsIgnoreCase(sourceFormat) && "JSON".equalsIgnoreCase(targetFormat)) {
-                return convertYamlToJson(text);
-            } else if ("JSON".equalsIgnoreCase(sourceFormat) && "XML".equalsIgnoreCase(targetFormat)) {
-                return convertJsonToXml(text);
-            } else if ("XML".equalsIgnoreCase(sourceFormat) && "JSON".equalsIgnoreCase(targetFormat)) {
-                return convertXmlToJson(text);
-            } else if ("YAML".equalsIgnoreCase(sourceFormat) && "XML".equalsIgnoreCase(targetFormat)) {
-                return convertYamlToXml(text);
-            } else if ("XML".equalsIgnoreCase(sourceFormat) && "YAML".equalsIgnoreCase(targetFormat)) {
-                return convertXmlToYaml(text);
-            }
-            
-            throw new IllegalArgumentException("Conversion from " + sourceFormat + " to " + targetFormat + " is not supported");
+            // Every pair goes through the codecs' common token stream; same format just re-indents
+            FormatCodec source = formatCodecs.get(sourceFormat);
+            FormatCodec target = formatCodecs.get(targetFormat);
+            return FormatTranscoder.transcode(text, source, target);
         } catch (Exception e) {
             throw new IllegalArgumentException("Failed to convert format: " + e.getMessage());
         }
     }
     
+    @Override
+    public FormatCodec getFormatCodec(String format) {
+        return formatCodecs.get(format);
+    }
+    
+    @Override
+    public List<String> getSupportedFormats() {
+        return formatCodecs.getNames();
+    }
+    
+    @Override
+    public void convertFormat(Path file, FormatCodec sourceFormat, FormatCodec targetFormat, 
+                              OutputStream out) throws IOException {
+        // Raw bytes in and out, never held whole unless a codec needs the full document
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            FormatTranscoder.transcode(in, sourceFormat, targetFormat, out);
+        }
+    }
+    
     @Override
     public Map<String, Object> compareText(String text1, String text2) {
         // Basic text comparison - for advanced diff, use the dedicated diff service
@@ -207,90 +241,150 @@ public class UtilityServiceImpl implements UtilityService {
     }
     
     @Override
-    public String testRegex(String pattern, String text) {
+    public Map<String, Object> testRegex(String pattern, String text, String flags) {
         if (pattern == null || pattern.trim().isEmpty()) {
             throw new IllegalArgumentException("Pattern cannot be null or empty");
         }
         
+        int flagBits = parseRegexFlags(flags);
+        Pattern regex;
         try {
-            Pattern regex = Pattern.compile(pattern);
-            boolean matches = regex.matcher(text != null ? text : "").matches();
-            return matches ? "Pattern matches" : "Pattern does not match";
-        } catch (Exception e) {
+            regex = regexCache.compile(pattern, flagBits);
+        } catch (PatternSyntaxException e) {
             throw new IllegalArgumentException("Invalid regex pattern: " + e.getMessage());
         }
-    }
-    
-    private String formatText(String text, String format) throws JsonProcessingException {
-        switch (format.toUpperCase()) {
-            case "JSON":
-                ObjectMapper jsonMapper = new ObjectMapper();
-                Object jsonObject = jsonMapper.readValue(text, Object.class);
-                return jsonMapper.writerWithDefaultPrettyPrinter().writeValueAsString(jsonObject);
-            case "YAML":
-                YAMLMapper yamlMapper = YAMLMapper.builder().build();
-                Object yamlObject = yamlMapper.readValue(text, Object.class);
-                return yamlMapper.writerWithDefaultPrettyPrinter().writeValueAsString(yamlObject);
-            case "XML":
-                XmlMapper xmlMapper = XmlMapper.builder().build();
-                Object xmlObject = xmlMapper.readValue(text, Object.class);
-                return xmlMapper.writerWithDefaultPrettyPrinter().writeValueAsString(xmlObject);
-            default:
-                return text;
-        }
-    }
-    
-    private String convertJsonToYaml(String json) throws JsonProcessingException {
-        ObjectMapper jsonMapper = new ObjectMapper();
-        YAMLMapper yamlMapper = YAMLMapper.builder().build();
         
-        Object obj = jsonMapper.readValue(json, Object.class);
-        return yamlMapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj);
+        long start = System.nanoTime();
+        BudgetedCharSequence input = new BudgetedCharSequence(text != null ? text : "", regexTimeoutMs, regexMaxSteps);
+        Map<Integer, String> groupNames = namedGroups(pattern);
+        Map<String, Object> result = new LinkedHashMap<>();
+        try {
+            Matcher matcher = regex.matcher(input);
+            boolean matches = matcher.matches();
+            
+            // Every occurrence, as find() walks the text left to right
+            matcher.reset();
+            List<Map<String, Object>> found = new ArrayList<>();
+            boolean truncated = false;
+            while (matcher.find()) {
+                if (found.size() >= regexMaxMatches) {
+                    truncated = true;
+                    break;
+                }
+                found.add(describeMatch(matcher, input, groupNames));
+            }
+            
+            result.put("result", matches ? "Pattern matches" : "Pattern does not match");
+            result.put("matches", matches);
+            result.put("found", found);
+            result.put("matchCount", found.size());
+            result.put("truncated", truncated);
+        } catch (BudgetedCharSequence.Exceeded e) {
+            throw new IllegalArgumentException("Regex evaluation stopped after " + (System.nanoTime() - start) / 1_000_000
+                    + " ms at the " + e.getMessage() + "; the pattern backtracks too much on this input");
+        } catch (StackOverflowError e) {
+            // java.util.regex recurses per repetition of a group, so long inputs can exhaust the stack first
+            throw new IllegalArgumentException("Regex evaluation stopped after " + (System.nanoTime() - start) / 1_000_000
+                    + " ms at the stack depth limit; the pattern recurses too deeply on this input");
+        }
+        result.put("flags", formatRegexFlags(flagBits));
+        result.put("groupCount", regex.matcher("").groupCount());
+        result.put("groupNames", new ArrayList<>(groupNames.values()));
+        result.put("steps", input.getSteps());
+        result.put("elapsedMillis", (System.nanoTime() - start) / 1_000_000);
+        return result;
     }
     
-    private String convertYamlToJson(String yaml) throws JsonProcessingException {
-        YAMLMapper yamlMapper = YAMLMapper.builder().build();
-        ObjectMapper jsonMapper = new ObjectMapper();
+    private static Map<String, Object> describeMatch(Matcher matcher, CharSequence input, Map<Integer, String> groupNames) {
+        Map<String, Object> match = new LinkedHashMap<>();
+        match.put("start", matcher.start());
+        match.put("end", matcher.end());
+        match.put("value", input.subSequence(matcher.start(), matcher.end()).toString());
         
-        Object obj = yamlMapper.readValue(yaml, Object.class);
-        return jsonMapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj);
+        List<Map<String, Object>> groups = new ArrayList<>(matcher.groupCount());
+        for (int g = 1; g <= matcher.groupCount(); g++) {
+            Map<String, Object> group = new LinkedHashMap<>();
+            group.put("index", g);
+            group.put("name", groupNames.get(g));
+            // A group that took no part in the match has no span
+            group.put("start", matcher.start(g));
+            group.put("end", matcher.end(g));
+            group.put("value", matcher.start(g) >= 0
+                    ? input.subSequence(matcher.start(g), matcher.end(g)).toString() : null);
+            groups.add(group);
+        }
+        match.put("groups", groups);
+        return match;
     }
     
-    private String convertJsonToXml(String json) throws JsonProcessingException {
-        ObjectMapper jsonMapper = new ObjectMapper();
-        XmlMapper xmlMapper = XmlMapper.builder().build();
-        
-        Object obj = jsonMapper.readValue(json, Object.class);
-        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + xmlMapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj);
+    /**
+     * Named groups by group number. Java 17 has no public name-to-number map, so capturing groups are counted
+     * in the pattern; escapes, quoted sections and character classes are skipped.
+     */
+    private static Map<Integer, String> namedGroups(String pattern) {
+        Map<Integer, String> names = new LinkedHashMap<>();
+        int group = 0;
+        boolean inClass = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (pattern.startsWith("\\Q", i)) {
+                int end = pattern.indexOf("\\E", i + 2);
+                i = end < 0 ? pattern.length() : end + 1;
+            } else if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                inClass = c != ']';
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(' && isCapturingGroup(pattern, i)) {
+                group++;
+                int end = pattern.startsWith("(?<", i) ? pattern.indexOf('>', i + 3) : -1;
+                if (end > 0) {
+                    names.put(group, pattern.substring(i + 3, end));
+                }
+            }
+        }
+        return names;
     }
     
-    private String convertXmlToJson(String xml) throws JsonProcessingException {
-        XmlMapper xmlMapper = XmlMapper.builder().build();
-        ObjectMapper jsonMapper = new ObjectMapper();
-        
-        // Remove XML declaration if present
-        String cleanXml = xml.replaceFirst("<\\?xml[^>]*\\?>\\s*", "");
-        Object obj = xmlMapper.readValue(cleanXml, Object.class);
-        return jsonMapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj);
+    private static boolean isCapturingGroup(String pattern, int open) {
+        if (!pattern.startsWith("(?", open)) {
+            return true;
+        }
+        // (?<name> captures, (?<= and (?<! are lookbehinds
+        return pattern.startsWith("(?<", open) && open + 3 < pattern.length()
+                && pattern.charAt(open + 3) != '=' && pattern.charAt(open + 3) != '!';
     }
     
-    private String convertYamlToXml(String yaml) throws JsonProcessingException {
-        YAMLMapper yamlMapper = YAMLMapper.builder().build();
-        XmlMapper xmlMapper = XmlMapper.builder().build();
-        
-        Object obj = yamlMapper.readValue(yaml, Object.class);
-        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + xmlMapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj);
+    /**
+     * Inline-flag letters as in {@code (?imsx)}: i, m, s, x, u, d and U for Unicode character classes.
+     */
+    private static int parseRegexFlags(String flags) {
+        int bits = 0;
+        if (flags == null) {
+            return bits;
+        }
+        for (char c : flags.toCharArray()) {
+            int index = REGEX_FLAG_LETTERS.indexOf(c);
+            if (index < 0) {
+                if (Character.isWhitespace(c) || c == ',') {
+                    continue;
+                }
+                throw new IllegalArgumentException("Unknown regex flag '" + c + "', expected any of " + REGEX_FLAG_LETTERS);
+            }
+            bits |= REGEX_FLAG_BITS[index];
+        }
+        return bits;
     }
     
-    private String convertXmlToYaml(String xml) throws JsonProcessingException {
-        XmlMapper xmlMapper = XmlMapper.builder().build();
-        YAMLMapper yamlMapper = YAMLMapper.builder().build();
-        
-        // Remove XML declaration if present
-        String cleanXml = xml.replaceFirst("<\\?xml[^>]*\\?>\\s*", "");
-        Object obj = xmlMapper.readValue(cleanXml, Object.class);
-        return yamlMapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj);
+    private static String formatRegexFlags(int bits) {
+        StringBuilder flags = new StringBuilder();
+        for (int i = 0; i < REGEX_FLAG_BITS.length; i++) {
+            if ((bits & REGEX_FLAG_BITS[i]) != 0) {
+                flags.append(REGEX_FLAG_LETTERS.charAt(i));
+            }
+        }
+        return flags.toString();
     }
-    
 
 } 
\ No newline at end of file
@@ -0,0 +1,65 @@
+package com.devtoolkit.common.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BoundedCacheTest {
+
+    @Test
+    void leastRecentlyUsedEntriesAreEvictedByWeight() {
+        List<String> removed = new ArrayList<>();
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 0, String::length,
+                (key, value) -> removed.add(key));
+        cache.put("a", "xxxx");
+        cache.put("b", "xxxx");
+        cache.get("a");
+        cache.put("c", "xxxx");
+
+        assertNull(cache.get("b"));
+        assertEquals("xxxx", cache.get("a"));
+        assertEquals(8, cache.weight());
+        assertEquals(List.of("b"), removed);
+
+        // Heavier than the whole cache: never stored, reported as removed
+        cache.put("d", "x".repeat(11));
+        assertNull(cache.get("d"));
+        assertEquals(List.of("b", "d"), removed);
+    }
+
+    @Test
+    void replacedAndRemovedEntriesReachTheListener() {
+        List<String> removed = new ArrayList<>();
+        BoundedCache<String, String> cache = new BoundedCache<>(100, 0, String::length,
+                (key, value) -> removed.add(key + "=" + value));
+        cache.put("a", "1");
+        cache.put("a", "2");
+        cache.remove("a");
+        cache.put("b", "3");
+        cache.clear();
+
+        assertEquals(List.of("a=1", "a=2", "b=3"), removed);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    void cleanUpSweepsExpiredEntriesNobodyReads() throws InterruptedException {
+        List<String> removed = new ArrayList<>();
+        BoundedCache<String, String> cache = new BoundedCache<>(100, 20, String::length,
+                (key, value) -> removed.add(key));
+        cache.put("a", "1");
+        cache.put("b", "2");
+        Thread.sleep(40);
+        assertEquals(2, cache.size());
+
+        cache.cleanUp();
+        assertEquals(List.of("a", "b"), removed);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+}
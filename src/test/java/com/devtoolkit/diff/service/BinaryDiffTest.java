@@ -0,0 +1,143 @@
+package com.devtoolkit.diff.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryDiffTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void blockMapRebuildsTheSecondFile() throws Exception {
+        Random random = new Random(23);
+        for (int round = 0; round < 30; round++) {
+            byte[] first = bytes(random, random.nextInt(200_000));
+            byte[] second = edit(first, random);
+            BinaryDiff diff = new BinaryDiff(256, 1000, 64);
+            boolean equal = diff.compare(write("1", first), write("2", second));
+
+            assertEquals(Arrays.equals(first, second), equal, "round " + round);
+            assertArrayEquals(second, rebuild(first, second, diff.getBlocks()), "round " + round);
+            Map<String, Object> statistics = diff.getStatistics();
+            assertEquals((long) second.length, (long) statistics.get("bytesUnchanged")
+                    + (long) statistics.get("bytesMoved") + (long) statistics.get("bytesInserted"), "round " + round);
+        }
+    }
+
+    @Test
+    void insertionOnlyDisturbsNearbyChunks() throws Exception {
+        byte[] first = bytes(new Random(3), 500_000);
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        second.write(first, 0, 250_000);
+        second.write(new byte[]{1, 2, 3, 4, 5, 6, 7});
+        second.write(first, 250_000, 250_000);
+
+        BinaryDiff diff = new BinaryDiff(1024, 1000, 64);
+        assertFalse(diff.compare(write("1", first), write("2", second.toByteArray())));
+        assertEquals(7L, diff.getStatistics().get("bytesInserted"));
+        assertEquals(0L, diff.getStatistics().get("bytesDeleted"));
+        assertEquals(List.of("INSERTED"), diff.getChanges().stream().map(change -> change.get("type")).toList());
+        assertEquals(250_000L, ((Number) diff.getChanges().get(0).get("offset2")).longValue());
+    }
+
+    @Test
+    void swappedHalvesAreReportedAsMoved() throws Exception {
+        byte[] first = bytes(new Random(4), 200_000);
+        byte[] second = new byte[first.length];
+        System.arraycopy(first, 100_000, second, 0, 100_000);
+        System.arraycopy(first, 0, second, 100_000, 100_000);
+
+        BinaryDiff diff = new BinaryDiff(512, 1000, 64);
+        assertFalse(diff.compare(write("1", first), write("2", second)));
+        assertTrue(diff.getChanges().stream().anyMatch(change -> change.get("type").equals("MOVED")));
+        assertTrue((long) diff.getStatistics().get("bytesInserted") < 10_000, diff.getStatistics().toString());
+    }
+
+    @Test
+    void equalAndEmptyFiles() throws Exception {
+        byte[] content = bytes(new Random(5), 10_000);
+        BinaryDiff diff = new BinaryDiff(256, 10, 64);
+        assertTrue(diff.compare(write("1", content), write("2", content)));
+        assertEquals(1, diff.getBlocks().size());
+
+        BinaryDiff empty = new BinaryDiff(256, 10, 64);
+        assertTrue(empty.compare(write("3", new byte[0]), write("4", new byte[0])));
+        assertTrue(empty.getBlocks().isEmpty());
+    }
+
+    @Test
+    void chunkSizeMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new BinaryDiff(1000, 10, 64));
+        assertThrows(IllegalArgumentException.class, () -> new BinaryDiff(32, 10, 64));
+    }
+
+    private Path write(String name, byte[] content) throws Exception {
+        return Files.write(directory.resolve(name + ".bin"), content);
+    }
+
+    /**
+     * Second file put back together from copies out of the first and the inserted ranges of the second.
+     */
+    private static byte[] rebuild(byte[] first, byte[] second, List<Map<String, Object>> blocks) {
+        ByteArrayOutputStream rebuilt = new ByteArrayOutputStream();
+        for (Map<String, Object> block : blocks) {
+            int offset2 = ((Number) block.get("offset2")).intValue();
+            int length = ((Number) block.get("length")).intValue();
+            assertEquals(rebuilt.size(), offset2, "blocks must tile the second file");
+            if (block.get("type").equals("COPY")) {
+                rebuilt.write(first, ((Number) block.get("offset1")).intValue(), length);
+            } else {
+                rebuilt.write(second, offset2, length);
+            }
+        }
+        return rebuilt.toByteArray();
+    }
+
+    private static byte[] bytes(Random random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Random inserts, deletes, overwrites and block moves.
+     */
+    private static byte[] edit(byte[] content, Random random) {
+        byte[] result = content.clone();
+        for (int i = 0, edits = random.nextInt(6); i < edits; i++) {
+            int at = result.length == 0 ? 0 : random.nextInt(result.length);
+            int length = Math.min(result.length - at, random.nextInt(5000));
+            ByteArrayOutputStream edited = new ByteArrayOutputStream();
+            edited.write(result, 0, at);
+            switch (random.nextInt(3)) {
+                case 0:
+                    edited.writeBytes(bytes(random, random.nextInt(3000)));
+                    edited.write(result, at, result.length - at);
+                    break;
+                case 1:
+                    edited.write(result, at + length, result.length - at - length);
+                    break;
+                default:
+                    edited.writeBytes(bytes(random, length));
+                    edited.write(result, at + length, result.length - at - length);
+            }
+            result = edited.toByteArray();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+package com.devtoolkit.diff.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class CodeTokensTest {
+
+    @Test
+    void layoutAndCommentsDoNotChangeTheIds() {
+        CodeTokens[] tokens = CodeTokens.tokenize(
+                "int x = f(a, b); // call\n/* block\n comment */ return x;",
+                "int x=f(a,b);\n\n  return   x; /* trailing */");
+        assertArrayEquals(tokens[0].ids(), tokens[1].ids());
+        assertEquals(List.of("int", "x", "=", "f", "(", "a", ",", "b", ")", ";", "return", "x", ";"),
+                texts(tokens[0]));
+    }
+
+    @Test
+    void equalTokensShareIdsAcrossSides() {
+        CodeTokens[] tokens = CodeTokens.tokenize("a b a", "b c");
+        int[] ids1 = tokens[0].ids();
+        int[] ids2 = tokens[1].ids();
+        assertEquals(ids1[0], ids1[2]);
+        assertEquals(ids1[1], ids2[0]);
+        assertNotEquals(ids1[0], ids2[1]);
+    }
+
+    @Test
+    void literalsAreSingleTokens() {
+        CodeTokens tokens = CodeTokens.tokenize(
+                "s = \"a // b \\\" c\"; t = `x\ny`; u = \"\"\"\nblock \" text\n\"\"\"; c = '\\'';", "")[0];
+        assertEquals(List.of("s", "=", "\"a // b \\\" c\"", ";", "t", "=", "`x\ny`", ";",
+                "u", "=", "\"\"\"\nblock \" text\n\"\"\"", ";", "c", "=", "'\\''", ";"), texts(tokens));
+        assertEquals(CodeTokens.STRING, tokens.kind(2));
+        assertEquals(1, tokens.line(8));
+    }
+
+    @Test
+    void numbersKeepSignedExponentsOnly() {
+        CodeTokens tokens = CodeTokens.tokenize("1e-5 0x1p+3 0xE+1 .5f 1_000L 2.5E+10", "")[0];
+        assertEquals(List.of("1e-5", "0x1p+3", "0xE", "+", "1", ".5f", "1_000L", "2.5E+10"), texts(tokens));
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(tokens.text(i).equals("+") ? CodeTokens.PUNCTUATION : CodeTokens.NUMBER, tokens.kind(i));
+        }
+    }
+
+    @Test
+    void linesAreCountedAsCodeOrComment() {
+        CodeTokens tokens = CodeTokens.tokenize(
+                "// header\n/* a\n b */\nint x; // tail\n\nx = 1; /* c\n d */ y = 2;\n", "")[0];
+        assertEquals(3, tokens.getLinesOfCode());
+        assertEquals(3, tokens.getCommentLines());
+    }
+
+    private static List<String> texts(CodeTokens tokens) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            texts.add(tokens.text(i));
+        }
+        return texts;
+    }
+}
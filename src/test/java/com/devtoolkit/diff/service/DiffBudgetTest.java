@@ -0,0 +1,152 @@
+package com.devtoolkit.diff.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiffBudgetTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void startingLevelFollowsTheMemoryEstimate() {
+        assertEquals(DiffBudget.Level.FULL, DiffBudget.start(0, 24_000, 1000).getLevel());
+        assertEquals(DiffBudget.Level.LINES_ONLY, DiffBudget.start(0, 12_000, 1000).getLevel());
+        assertEquals(DiffBudget.Level.PREFIX_SUFFIX, DiffBudget.start(0, 4_000, 1000).getLevel());
+        DiffBudget tooLarge = DiffBudget.start(0, 100, 1000);
+        assertEquals(DiffBudget.Level.PREFIX_SUFFIX, tooLarge.getLevel());
+        assertTrue(tooLarge.isMemoryLimited());
+        assertFalse(DiffBudget.start(0, 24_000, 1000).isMemoryLimited());
+    }
+
+    @Test
+    void checkpointThrowsOnceTheDeadlineHasPassed() throws InterruptedException {
+        DiffBudget budget = expired();
+        assertThrows(DiffBudget.Exceeded.class, () -> {
+            for (int i = 0; i < 1000; i++) {
+                budget.checkpoint();
+            }
+        });
+        assertTrue(budget.isDeadlineExceeded());
+
+        for (int i = 0; i < 1000; i++) {
+            DiffBudget.UNLIMITED.checkpoint();
+        }
+        assertFalse(DiffBudget.UNLIMITED.isExpired());
+    }
+
+    @Test
+    void checkpointHonoursInterruption() {
+        DiffBudget budget = DiffBudget.start(60_000, Long.MAX_VALUE, 0);
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(CancellationException.class, () -> {
+                for (int i = 0; i < 1000; i++) {
+                    budget.checkpoint();
+                }
+            });
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    void degradeOnlyLowersAndReachesTheParent() {
+        DiffBudget parent = DiffBudget.start(0, Long.MAX_VALUE, 0);
+        DiffBudget child = parent.fork();
+        child.degrade(DiffBudget.Level.LINES_ONLY);
+        assertEquals(DiffBudget.Level.LINES_ONLY, parent.getLevel());
+
+        parent.degrade(DiffBudget.Level.FULL);
+        assertEquals(DiffBudget.Level.LINES_ONLY, parent.getLevel());
+
+        child.degradeOnDeadline(DiffBudget.Level.PREFIX_SUFFIX);
+        assertEquals(DiffBudget.Level.PREFIX_SUFFIX, parent.getLevel());
+        assertTrue(parent.isDeadlineExceeded());
+    }
+
+    @Test
+    void alignersGiveUpOnAnExpiredBudget() throws InterruptedException {
+        int[] a = sequence(0, 5000);
+        int[] b = sequence(10_000, 5000);
+        assertThrows(DiffBudget.Exceeded.class, () -> MyersDiff.diff(a, b, expired()));
+        assertThrows(DiffBudget.Exceeded.class, () -> HistogramDiff.diff(a, b, expired()));
+
+        // The fallback is still a valid edit script
+        EditScripts.assertValid(a, b, MyersDiff.prefixSuffix(a, b));
+    }
+
+    @Test
+    void jsonDiffFallsBackToPrefixSuffixAndStillPatches() throws InterruptedException {
+        ArrayNode first = mapper.createArrayNode();
+        ArrayNode second = mapper.createArrayNode();
+        for (int i = 0; i < 5000; i++) {
+            first.add("left-" + i);
+            second.add("right-" + i);
+        }
+        first.insert(0, "shared");
+        second.insert(0, "shared");
+        DiffBudget budget = expired();
+        JsonStructuralDiff diff = new JsonStructuralDiff(null, true, budget);
+
+        assertFalse(diff.compare(first, second));
+        assertEquals(DiffBudget.Level.PREFIX_SUFFIX, budget.getLevel());
+        assertTrue(budget.isDeadlineExceeded());
+        JsonNode patched = JsonPatches.apply(first, diff.getPatch());
+        assertEquals(second, patched);
+    }
+
+    @Test
+    void xmlDiffFallsBackToPairingChildrenByName() throws Exception {
+        StringBuilder left = new StringBuilder("<r>");
+        StringBuilder right = new StringBuilder("<r>");
+        for (int i = 0; i < 3000; i++) {
+            left.append("<a>").append(i).append("</a>");
+            right.append("<a>").append(-i - 1).append("</a>");
+        }
+        DiffBudget budget = expired();
+        XmlStructuralDiff diff = new XmlStructuralDiff(10, budget);
+
+        assertFalse(diff.compare(left.append("</r>").toString(), right.append("</r>").toString()));
+        assertEquals(DiffBudget.Level.PREFIX_SUFFIX, budget.getLevel());
+        assertEquals("TEXT_CHANGED", diff.getChanges().get(0).get("type"));
+        assertTrue(diff.isTruncated());
+    }
+
+    @Test
+    void tableDiffIsTruncatedWhenTheJoinRunsOutOfTime() throws Exception {
+        StringBuilder table = new StringBuilder("id,value\n");
+        for (int i = 0; i < 5000; i++) {
+            table.append(i).append(",v").append(i).append('\n');
+        }
+        DiffBudget budget = expired();
+        TableDiff diff = new TableDiff(List.of("id"), ',', true, null, 100, Long.MAX_VALUE, false, budget);
+
+        diff.compare(TableDiff.Source.of(table.toString()), TableDiff.Source.of(table.toString()));
+        assertTrue(diff.isTruncated());
+        assertEquals(DiffBudget.Level.PREFIX_SUFFIX, budget.getLevel());
+    }
+
+    private static DiffBudget expired() throws InterruptedException {
+        DiffBudget budget = DiffBudget.start(1, Long.MAX_VALUE, 0);
+        Thread.sleep(5);
+        return budget;
+    }
+
+    private static int[] sequence(int from, int length) {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = from + i;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,107 @@
+package com.devtoolkit.diff.service;
+
+import com.devtoolkit.diff.dto.DiffRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DiffSessionTest {
+
+    @Test
+    void editsKeepTheScriptValid() {
+        Random random = new Random(6);
+        for (int round = 0; round < 40; round++) {
+            List<String> left = randomLines(random, random.nextInt(300));
+            List<String> right = new ArrayList<>(left);
+            DiffSession session = new DiffSession("s", request(left, right), 1 + random.nextInt(8));
+            assertScript(session, left, right);
+
+            for (int step = 0; step < 50; step++) {
+                int side = random.nextInt(2);
+                List<String> document = side == DiffSession.LEFT ? left : right;
+                int from = random.nextInt(document.size() + 1);
+                int count = random.nextInt(Math.min(4, document.size() - from) + 1);
+                List<String> replacement = randomLines(random, random.nextInt(4));
+
+                session.replace(side, from, count, replacement);
+                document.subList(from, from + count).clear();
+                document.addAll(from, replacement);
+                assertScript(session, left, right);
+            }
+        }
+    }
+
+    @Test
+    void changedRangeCoversTheEditUntilTaken() {
+        List<String> lines = randomLines(new Random(7), 100);
+        DiffSession session = new DiffSession("s", request(lines, lines), 2);
+        assertTrue(session.getEdits().isEmpty());
+
+        session.replace(DiffSession.LEFT, 50, 1, List.of("edited"));
+        int[] range = session.takeChangedRange();
+        assertTrue(range[0] <= 50 && range[1] >= 51, "range " + range[0] + "-" + range[1]);
+        assertNull(session.takeChangedRange());
+        assertEquals(1, session.getVersion());
+    }
+
+    @Test
+    void rangesOutsideTheDocumentAreRejected() {
+        DiffSession session = new DiffSession("s", request(List.of("a", "b"), List.of("a")), 4);
+        assertThrows(IllegalArgumentException.class, () -> session.replace(DiffSession.LEFT, 1, 2, List.of()));
+        assertThrows(IllegalArgumentException.class, () -> session.replace(DiffSession.RIGHT, -1, 0, List.of()));
+        session.replace(DiffSession.RIGHT, 1, 0, List.of("appended"));
+        assertEquals(2, session.getLines(DiffSession.RIGHT).size());
+    }
+
+    @Test
+    void linesCompareByTheirNormalisedForm() {
+        DiffRequest request = request(List.of("Alpha  beta", "x"), List.of("alpha beta", "x"));
+        request.setIgnoreCase(true);
+        request.setIgnoreWhitespace(true);
+        DiffSession session = new DiffSession("s", request, 4);
+        assertTrue(session.getEdits().isEmpty());
+    }
+
+    private static void assertScript(DiffSession session, List<String> left, List<String> right) {
+        assertEquals(left, lines(session.getLines(DiffSession.LEFT)));
+        assertEquals(right, lines(session.getLines(DiffSession.RIGHT)));
+        Map<String, Integer> ids = new HashMap<>();
+        EditScripts.assertValid(ids(left, ids), ids(right, ids), session.getEdits());
+    }
+
+    private static List<String> lines(DiffLines lines) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            result.add(lines.appendLine(new StringBuilder(), i).toString());
+        }
+        return result;
+    }
+
+    private static int[] ids(List<String> lines, Map<String, Integer> ids) {
+        return lines.stream().mapToInt(line -> ids.computeIfAbsent(line, key -> ids.size())).toArray();
+    }
+
+    private static List<String> randomLines(Random random, int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            lines.add("line " + random.nextInt(30));
+        }
+        return lines;
+    }
+
+    private static DiffRequest request(List<String> left, List<String> right) {
+        DiffRequest request = new DiffRequest();
+        request.setText1(String.join("\n", left));
+        request.setText2(String.join("\n", right));
+        return request;
+    }
+}
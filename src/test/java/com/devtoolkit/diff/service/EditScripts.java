@@ -0,0 +1,99 @@
+package com.devtoolkit.diff.service;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks shared by the alignment tests: an edit script is valid when its edits are non-empty, in order,
+ * not adjacent, and everything between them is equal on both sides.
+ */
+final class EditScripts {
+
+    private EditScripts() {
+    }
+
+    static void assertValid(int[] a, int[] b, List<Edit> edits) {
+        int a0 = 0;
+        int b0 = 0;
+        for (int e = 0; e < edits.size(); e++) {
+            Edit edit = edits.get(e);
+            assertTrue(edit.getLengthA() > 0 || edit.getLengthB() > 0, "empty edit " + edit);
+            assertTrue(edit.getBeginA() >= a0 && edit.getBeginB() >= b0, "edit out of order " + edit);
+            assertEquals(edit.getBeginA() - a0, edit.getBeginB() - b0, "unequal gap before " + edit);
+            if (e > 0) {
+                assertTrue(edit.getBeginA() > a0, "adjacent edits not merged at " + edit);
+            }
+            for (int i = a0, j = b0; i < edit.getBeginA(); i++, j++) {
+                assertEquals(a[i], b[j], "unequal element in gap at a[" + i + "]");
+            }
+            a0 = edit.getEndA();
+            b0 = edit.getEndB();
+        }
+        assertTrue(a0 <= a.length && b0 <= b.length, "edit past the end");
+        assertEquals(a.length - a0, b.length - b0, "unequal tail");
+        for (int i = a0, j = b0; i < a.length; i++, j++) {
+            assertEquals(a[i], b[j], "unequal element in tail at a[" + i + "]");
+        }
+    }
+
+    /**
+     * Deleted plus inserted elements.
+     */
+    static int cost(List<Edit> edits) {
+        int cost = 0;
+        for (Edit edit : edits) {
+            cost += edit.getLengthA() + edit.getLengthB();
+        }
+        return cost;
+    }
+
+    /**
+     * Length of a longest common subsequence, by dynamic programming.
+     */
+    static int lcs(int[] a, int[] b) {
+        int[] previous = new int[b.length + 1];
+        int[] current = new int[b.length + 1];
+        for (int i = 1; i <= a.length; i++) {
+            for (int j = 1; j <= b.length; j++) {
+                current[j] = a[i - 1] == b[j - 1] ? previous[j - 1] + 1 : Math.max(previous[j], current[j - 1]);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length];
+    }
+
+    /**
+     * Copy of {@code a} with random deletions, insertions and substitutions over ids {@code [0, alphabet)}.
+     */
+    static int[] mutate(int[] a, Random random, int alphabet) {
+        int[] b = new int[a.length * 2 + 4];
+        int n = 0;
+        for (int value : a) {
+            int roll = random.nextInt(10);
+            if (roll == 0) {
+                continue;
+            }
+            if (roll == 1) {
+                b[n++] = random.nextInt(alphabet);
+            }
+            b[n++] = roll == 2 ? random.nextInt(alphabet) : value;
+        }
+        if (random.nextBoolean()) {
+            b[n++] = random.nextInt(alphabet);
+        }
+        return java.util.Arrays.copyOf(b, n);
+    }
+
+    static int[] random(Random random, int length, int alphabet) {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = random.nextInt(alphabet);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,41 @@
+package com.devtoolkit.diff.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistogramDiffTest {
+
+    @Test
+    void scriptsAreValid() {
+        Random random = new Random(2);
+        for (int round = 0; round < 500; round++) {
+            int[] a = EditScripts.random(random, random.nextInt(80), 1 + random.nextInt(12));
+            int[] b = random.nextBoolean() ? EditScripts.mutate(a, random, 12)
+                    : EditScripts.random(random, random.nextInt(80), 12);
+            EditScripts.assertValid(a, b, HistogramDiff.diff(a, b));
+        }
+    }
+
+    @Test
+    void equalSequencesHaveNoEdits() {
+        int[] a = {4, 1, 4, 2};
+        assertTrue(HistogramDiff.diff(a, a.clone()).isEmpty());
+    }
+
+    @Test
+    void anchorsOnUniqueLinesRatherThanRepeatedOnes() {
+        // 0 is a brace-like line; Myers keeps the two braces, histogram keeps the unique line 1
+        int[] a = {1, 0, 0};
+        int[] b = {0, 0, 1};
+        List<Edit> edits = HistogramDiff.diff(a, b);
+        EditScripts.assertValid(a, b, edits);
+        assertTrue(edits.stream().noneMatch(edit -> edit.getBeginA() == 0 && edit.getLengthA() > 0),
+                "line 1 should stay matched: " + edits);
+        assertEquals(2, EditScripts.cost(MyersDiff.diff(a, b)));
+    }
+}
@@ -0,0 +1,188 @@
+package com.devtoolkit.diff.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Minimal RFC 6902 applier for the operations the structural diff emits, and random documents to feed it.
+ */
+final class JsonPatches {
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private JsonPatches() {
+    }
+
+    static JsonNode apply(JsonNode document, List<Map<String, Object>> patch) {
+        JsonNode root = document.deepCopy();
+        for (Map<String, Object> operation : patch) {
+            String path = (String) operation.get("path");
+            switch ((String) operation.get("op")) {
+                case "add":
+                    root = add(root, path, (JsonNode) operation.get("value"));
+                    break;
+                case "remove":
+                    remove(root, path);
+                    break;
+                case "replace":
+                    if (path.isEmpty()) {
+                        root = (JsonNode) operation.get("value");
+                    } else {
+                        remove(root, path);
+                        root = add(root, path, (JsonNode) operation.get("value"));
+                    }
+                    break;
+                case "move":
+                    String from = (String) operation.get("from");
+                    JsonNode value = get(root, tokens(from), tokens(from).length);
+                    remove(root, from);
+                    root = add(root, path, value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unexpected operation " + operation);
+            }
+        }
+        return root;
+    }
+
+    private static JsonNode add(JsonNode root, String path, JsonNode value) {
+        String[] tokens = tokens(path);
+        if (tokens.length == 0) {
+            return value.deepCopy();
+        }
+        JsonNode parent = get(root, tokens, tokens.length - 1);
+        String last = tokens[tokens.length - 1];
+        if (parent.isArray()) {
+            ArrayNode array = (ArrayNode) parent;
+            if (last.equals("-")) {
+                array.add(value.deepCopy());
+            } else {
+                int index = Integer.parseInt(last);
+                if (index < 0 || index > array.size()) {
+                    throw new IllegalArgumentException("Index out of range in " + path);
+                }
+                array.insert(index, value.deepCopy());
+            }
+        } else {
+            ((ObjectNode) parent).set(last, value.deepCopy());
+        }
+        return root;
+    }
+
+    private static void remove(JsonNode root, String path) {
+        String[] tokens = tokens(path);
+        JsonNode parent = get(root, tokens, tokens.length - 1);
+        String last = tokens[tokens.length - 1];
+        JsonNode removed = parent.isArray() ? ((ArrayNode) parent).remove(Integer.parseInt(last))
+                : ((ObjectNode) parent).remove(last);
+        if (removed == null) {
+            throw new IllegalArgumentException("Nothing to remove at " + path);
+        }
+    }
+
+    private static JsonNode get(JsonNode root, String[] tokens, int depth) {
+        JsonNode node = root;
+        for (int i = 0; i < depth; i++) {
+            node = node.isArray() ? node.get(Integer.parseInt(tokens[i])) : node.get(tokens[i]);
+            if (node == null) {
+                throw new IllegalArgumentException("No value at " + String.join("/", tokens));
+            }
+        }
+        return node;
+    }
+
+    private static String[] tokens(String pointer) {
+        if (pointer.isEmpty()) {
+            return new String[0];
+        }
+        String[] tokens = pointer.substring(1).split("/", -1);
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = tokens[i].replace("~1", "/").replace("~0", "~");
+        }
+        return tokens;
+    }
+
+    /**
+     * Random document of limited depth; field names include characters that need pointer escaping.
+     */
+    static JsonNode randomDocument(Random random, int depth) {
+        int kind = depth <= 0 ? 3 + random.nextInt(3) : random.nextInt(6);
+        switch (kind) {
+            case 0:
+            case 1: {
+                ObjectNode object = NODES.objectNode();
+                for (int i = 0, n = random.nextInt(5); i < n; i++) {
+                    object.set(fieldName(random), randomDocument(random, depth - 1));
+                }
+                return object;
+            }
+            case 2: {
+                ArrayNode array = NODES.arrayNode();
+                for (int i = 0, n = random.nextInt(8); i < n; i++) {
+                    array.add(randomDocument(random, depth - 1));
+                }
+                return array;
+            }
+            case 3:
+                return NODES.numberNode(random.nextInt(5));
+            case 4:
+                return NODES.textNode("v" + random.nextInt(5));
+            default:
+                return random.nextBoolean() ? NODES.booleanNode(random.nextBoolean()) : NODES.nullNode();
+        }
+    }
+
+    /**
+     * Copy of {@code node} with random fields and elements added, removed, moved or changed.
+     */
+    static JsonNode mutate(JsonNode node, Random random, int depth) {
+        if (random.nextInt(8) == 0) {
+            return randomDocument(random, depth);
+        }
+        if (node.isObject()) {
+            ObjectNode copy = NODES.objectNode();
+            node.fields().forEachRemaining(field -> {
+                int roll = random.nextInt(6);
+                if (roll == 0) {
+                    return;
+                }
+                copy.set(field.getKey(), roll == 1 ? mutate(field.getValue(), random, depth - 1) : field.getValue());
+            });
+            if (random.nextInt(3) == 0) {
+                copy.set(fieldName(random), randomDocument(random, depth - 1));
+            }
+            return copy;
+        }
+        if (node.isArray()) {
+            ArrayNode copy = NODES.arrayNode();
+            for (JsonNode element : node) {
+                int roll = random.nextInt(8);
+                if (roll == 0) {
+                    continue;
+                }
+                if (roll == 1) {
+                    copy.add(randomDocument(random, depth - 1));
+                }
+                copy.add(roll == 2 ? mutate(element, random, depth - 1) : element);
+            }
+            if (copy.size() > 1 && random.nextInt(3) == 0) {
+                // Move one element elsewhere
+                JsonNode moved = copy.remove(random.nextInt(copy.size()));
+                copy.insert(random.nextInt(copy.size() + 1), moved);
+            }
+            return copy;
+        }
+        return node;
+    }
+
+    private static String fieldName(Random random) {
+        String[] names = {"a", "b", "c", "id", "a/b", "t~x", ""};
+        return names[random.nextInt(names.length)];
+    }
+}
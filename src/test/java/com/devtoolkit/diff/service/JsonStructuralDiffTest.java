@@ -0,0 +1,91 @@
+package com.devtoolkit.diff.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonStructuralDiffTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void patchTurnsTheFirstDocumentIntoTheSecond() {
+        Random random = new Random(8);
+        for (int round = 0; round < 3000; round++) {
+            JsonNode first = JsonPatches.randomDocument(random, 4);
+            JsonNode second = JsonPatches.mutate(first, random, 4);
+            JsonStructuralDiff diff = new JsonStructuralDiff(null, true, DiffBudget.UNLIMITED);
+            boolean identical = diff.compare(first, second);
+
+            assertEquals(first.equals(second), identical, "round " + round);
+            assertEquals(second, JsonPatches.apply(first, diff.getPatch()),
+                    "round " + round + ": " + first + " -> " + second + " via " + diff.getPatch());
+            assertEquals(identical, diff.getChanges().isEmpty(), "round " + round);
+        }
+    }
+
+    @Test
+    void keyedArraysRoundTripAndReportMoves() throws IOException {
+        JsonNode first = mapper.readTree("[{\"id\":1,\"v\":\"a\"},{\"id\":2,\"v\":\"b\"},{\"id\":3,\"v\":\"c\"}]");
+        JsonNode second = mapper.readTree("[{\"id\":3,\"v\":\"c\"},{\"id\":1,\"v\":\"A\"},{\"id\":4,\"v\":\"d\"}]");
+        JsonStructuralDiff diff = new JsonStructuralDiff("id", true, DiffBudget.UNLIMITED);
+
+        assertFalse(diff.compare(first, second));
+        assertEquals(second, JsonPatches.apply(first, diff.getPatch()));
+        List<String> types = diff.getChanges().stream().map(change -> (String) change.get("type")).toList();
+        assertTrue(types.contains("ARRAY_ELEMENT_REMOVED"), types.toString());
+        assertTrue(types.contains("ARRAY_ELEMENT_ADDED"), types.toString());
+        assertTrue(types.contains("VALUE_CHANGED"), types.toString());
+        assertTrue(types.contains("ARRAY_ELEMENT_MOVED"), types.toString());
+    }
+
+    @Test
+    void rotationIsASingleMove() {
+        Random random = new Random(9);
+        for (int round = 0; round < 200; round++) {
+            JsonNode first = mapper.valueToTree(IntStream.range(0, 2 + random.nextInt(100))
+                    .mapToObj(i -> "e" + i).toList());
+            JsonNode second = first.deepCopy();
+            ((ArrayNode) second).add(
+                    ((ArrayNode) second).remove(0));
+            JsonStructuralDiff diff = new JsonStructuralDiff(null, true, DiffBudget.UNLIMITED);
+            diff.compare(first, second);
+
+            assertEquals(1, diff.getPatch().size(), diff.getPatch().toString());
+            assertEquals("move", diff.getPatch().get(0).get("op"));
+            assertEquals(second, JsonPatches.apply(first, diff.getPatch()));
+        }
+    }
+
+    @Test
+    void fieldOrderDoesNotMatter() throws IOException {
+        JsonStructuralDiff diff = new JsonStructuralDiff(null, true, DiffBudget.UNLIMITED);
+        assertTrue(diff.compare(mapper.readTree("{\"a\":1,\"b\":[1,{\"c\":2,\"d\":3}]}"),
+                mapper.readTree("{\"b\":[1,{\"d\":3,\"c\":2}],\"a\":1}")));
+        assertTrue(diff.getPatch().isEmpty());
+    }
+
+    @Test
+    void changesCarryPathsAndValues() throws IOException {
+        JsonStructuralDiff diff = new JsonStructuralDiff(null, false, DiffBudget.UNLIMITED);
+        diff.compare(mapper.readTree("{\"a\":{\"b\":1},\"c\":\"x\"}"), mapper.readTree("{\"a\":{\"b\":2},\"c\":5}"));
+
+        Map<String, Map<String, Object>> byPath = new HashMap<>();
+        diff.getChanges().forEach(change -> byPath.put((String) change.get("path"), change));
+        assertEquals("VALUE_CHANGED", byPath.get("a.b").get("type"));
+        assertEquals("TYPE_CHANGED", byPath.get("c").get("type"));
+        assertTrue(diff.getPatch().isEmpty());
+    }
+}
@@ -0,0 +1,59 @@
+package com.devtoolkit.diff.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MyersDiffTest {
+
+    @Test
+    void equalSequencesHaveNoEdits() {
+        int[] a = {1, 2, 3};
+        assertTrue(MyersDiff.diff(a, a.clone()).isEmpty());
+        assertTrue(MyersDiff.diff(new int[0], new int[0]).isEmpty());
+    }
+
+    @Test
+    void insertionAndDeletionAtTheEnds() {
+        assertEquals(List.of(new Edit(0, 0, 0, 2)).toString(),
+                MyersDiff.diff(new int[0], new int[]{1, 2}).toString());
+        assertEquals(List.of(new Edit(0, 2, 0, 0)).toString(),
+                MyersDiff.diff(new int[]{1, 2}, new int[0]).toString());
+    }
+
+    @Test
+    void scriptsAreValidAndMinimal() {
+        Random random = new Random(1);
+        for (int round = 0; round < 500; round++) {
+            int[] a = EditScripts.random(random, random.nextInt(60), 1 + random.nextInt(8));
+            int[] b = random.nextBoolean() ? EditScripts.mutate(a, random, 8)
+                    : EditScripts.random(random, random.nextInt(60), 8);
+            List<Edit> edits = MyersDiff.diff(a, b);
+            EditScripts.assertValid(a, b, edits);
+            assertEquals(a.length + b.length - 2 * EditScripts.lcs(a, b), EditScripts.cost(edits),
+                    "not minimal in round " + round);
+        }
+    }
+
+    @Test
+    void subRangePositionsAreAbsolute() {
+        int[] a = {9, 9, 1, 2, 3, 9};
+        int[] b = {8, 1, 5, 3, 8, 8};
+        List<Edit> edits = MyersDiff.diff(a, 2, 5, b, 1, 4);
+        assertEquals(List.of(new Edit(3, 4, 2, 3)).toString(), edits.toString());
+    }
+
+    @Test
+    void prefixSuffixIsOneEditBetweenCommonEnds() {
+        int[] a = {1, 2, 3, 4, 5};
+        int[] b = {1, 2, 7, 5};
+        List<Edit> edits = MyersDiff.prefixSuffix(a, b);
+        EditScripts.assertValid(a, b, edits);
+        assertEquals(List.of(new Edit(2, 4, 2, 3)).toString(), edits.toString());
+        assertTrue(MyersDiff.prefixSuffix(a, a.clone()).isEmpty());
+    }
+}
@@ -0,0 +1,154 @@
+package com.devtoolkit.diff.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SimilarityIndexTest {
+
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{Nd}_]+|\\S");
+
+    @Test
+    void signatureEstimatesTheJaccardSimilarity() {
+        Random random = new Random(31);
+        int size = 256;
+        for (int round = 0; round < 50; round++) {
+            String text1 = words(random, 200 + random.nextInt(400));
+            String text2 = edit(text1, random, random.nextDouble());
+            double exact = jaccard(shingles(text1), shingles(text2));
+            double estimate = MinHashSignature.of(text1, size).similarity(MinHashSignature.of(text2, size));
+
+            // Four standard errors
+            assertEquals(exact, estimate, 4 / Math.sqrt(size), "round " + round);
+        }
+    }
+
+    @Test
+    void layoutDoesNotChangeTheSignature() {
+        MinHashSignature compact = MinHashSignature.of("if(a){return b;}", 64);
+        MinHashSignature spaced = MinHashSignature.of("if (a) {\n    return   b;\n}\n", 64);
+        assertEquals(1.0, compact.similarity(spaced));
+        assertEquals(compact.getShingles(), spaced.getShingles());
+
+        assertEquals(1.0, MinHashSignature.of("", 64).similarity(MinHashSignature.of("  \n", 64)));
+        assertEquals(0.0, MinHashSignature.of("", 64).similarity(MinHashSignature.of("x", 64)));
+        assertEquals(1, MinHashSignature.of("x y", 64).getShingles());
+    }
+
+    @Test
+    void queryFindsNearDuplicatesThroughSharedBuckets() {
+        Random random = new Random(37);
+        SimilarityIndex index = new SimilarityIndex(32, 4, 1000);
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            String text = words(random, 300);
+            texts.add(text);
+            index.put("d" + i, "doc " + i, text.length(), MinHashSignature.of(text, index.getSignatureSize()));
+        }
+
+        for (int i = 0; i < 300; i += 17) {
+            String query = edit(texts.get(i), random, 0.05);
+            SimilarityIndex.QueryResult result = index.query(
+                    MinHashSignature.of(query, index.getSignatureSize()), 3, 0.5);
+            assertFalse(result.getMatches().isEmpty(), "query " + i);
+            assertEquals("d" + i, result.getMatches().get(0).getDocument().getId());
+            assertTrue(result.getCandidates() < 30, "candidates " + result.getCandidates());
+            assertFalse(result.isExhaustive());
+        }
+    }
+
+    @Test
+    void lowThresholdQueriesFallBackToScoringEverything() {
+        Random random = new Random(41);
+        SimilarityIndex index = new SimilarityIndex(16, 8, 100);
+        String base = words(random, 200);
+        for (int i = 0; i < 20; i++) {
+            // Distant relatives of one text, below the index threshold
+            String text = edit(base, random, 0.5);
+            index.put("d" + i, null, text.length(), MinHashSignature.of(text, index.getSignatureSize()));
+        }
+        String unrelated = words(random, 100);
+        index.put("unrelated", null, unrelated.length(), MinHashSignature.of(unrelated, index.getSignatureSize()));
+
+        SimilarityIndex.QueryResult result = index.query(
+                MinHashSignature.of(base, index.getSignatureSize()), 30, 0.0);
+        assertTrue(result.isExhaustive());
+        // Documents with nothing in common are not matches even at a zero threshold
+        assertEquals(20, result.getMatches().size());
+        for (int i = 1; i < result.getMatches().size(); i++) {
+            assertTrue(result.getMatches().get(i - 1).getSimilarity() >= result.getMatches().get(i).getSimilarity());
+        }
+    }
+
+    @Test
+    void documentsAreReplacedRemovedAndCapped() {
+        SimilarityIndex index = new SimilarityIndex(8, 2, 2);
+        MinHashSignature first = MinHashSignature.of("alpha beta gamma delta", index.getSignatureSize());
+        MinHashSignature second = MinHashSignature.of("one two three four", index.getSignatureSize());
+        index.put("a", "first", 10, first);
+        index.put("b", "second", 10, second);
+        assertThrows(IllegalArgumentException.class, () -> index.put("c", "third", 10, first));
+
+        // Replacing files the document under its new signature only
+        index.put("a", "first", 10, second);
+        assertEquals(2, index.size());
+        assertTrue(index.query(first, 5, 0.9).getMatches().isEmpty());
+        assertEquals(2, index.query(second, 5, 0.9).getMatches().size());
+
+        assertTrue(index.remove("a"));
+        assertFalse(index.remove("a"));
+        assertEquals(1, index.query(second, 5, 0.9).getMatches().size());
+    }
+
+    private static Set<List<String>> shingles(String text) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(text);
+        while (matcher.find()) {
+            tokens.add(matcher.group());
+        }
+        Set<List<String>> shingles = new HashSet<>();
+        for (int i = 0; i + MinHashSignature.SHINGLE_SIZE <= tokens.size(); i++) {
+            shingles.add(tokens.subList(i, i + MinHashSignature.SHINGLE_SIZE));
+        }
+        return shingles;
+    }
+
+    private static double jaccard(Set<List<String>> set1, Set<List<String>> set2) {
+        Set<List<String>> union = new HashSet<>(set1);
+        union.addAll(set2);
+        Set<List<String>> intersection = new HashSet<>(set1);
+        intersection.retainAll(set2);
+        return union.isEmpty() ? 1.0 : (double) intersection.size() / union.size();
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(i % 12 == 11 ? ";\n" : " ").append("w").append(random.nextInt(2000));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Replace a {@code fraction} of the words.
+     */
+    private static String edit(String text, Random random, double fraction) {
+        StringBuilder edited = new StringBuilder();
+        Matcher matcher = Pattern.compile("w\\d+").matcher(text);
+        while (matcher.find()) {
+            matcher.appendReplacement(edited, random.nextDouble() < fraction ? "x" + random.nextInt(2000) : "$0");
+        }
+        return matcher.appendTail(edited).toString();
+    }
+}
@@ -0,0 +1,151 @@
+package com.devtoolkit.diff.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingUnifiedDiffTest {
+
+    private static final Pattern HEADER = Pattern.compile("@@ -(\\d+),(\\d+) \\+(\\d+),(\\d+) @@");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void identicalFilesWriteNothing() throws IOException {
+        List<String> lines = List.of("a", "b", "c");
+        Result result = diff(lines, lines, 16, 3, 1000);
+        assertEquals(0, result.hunks);
+        assertEquals("", result.output);
+    }
+
+    @Test
+    void singleChangeHasContextAndHeader() throws IOException {
+        Result result = diff(List.of("a", "b", "c", "d", "e"), List.of("a", "b", "X", "d", "e"), 16, 1, 1000);
+        assertEquals(1, result.hunks);
+        assertEquals("@@ -2,3 +2,3 @@\n  b\n- c\n+ X\n  d\n\n", result.output);
+    }
+
+    @Test
+    void hunksRebuildTheSecondFileAcrossWindows() throws IOException {
+        Random random = new Random(3);
+        for (int round = 0; round < 60; round++) {
+            List<String> left = new ArrayList<>();
+            for (int i = 0, n = random.nextInt(400); i < n; i++) {
+                left.add("line " + random.nextInt(50));
+            }
+            List<String> right = new ArrayList<>();
+            for (String line : left) {
+                int roll = random.nextInt(12);
+                if (roll == 0) {
+                    continue;
+                }
+                if (roll == 1) {
+                    // A block longer than the smallest window now and then
+                    for (int k = 0, n = random.nextInt(5) == 0 ? 40 : 1; k < n; k++) {
+                        right.add("new " + random.nextInt(1000));
+                    }
+                }
+                right.add(roll == 2 ? "changed " + random.nextInt(1000) : line);
+            }
+            int window = 16 << random.nextInt(4);
+            int context = random.nextInt(4);
+            Result result = diff(left, right, window, context, 8 + random.nextInt(64));
+            assertEquals(split(right), apply(split(left), result.output), "round " + round);
+            assertEquals(result.hunks, countHunks(result.output), "round " + round);
+        }
+    }
+
+    private Result diff(List<String> left, List<String> right, int window, int context, int maxHunk)
+            throws IOException {
+        Path file1 = Files.write(directory.resolve("left.txt"), lines(left));
+        Path file2 = Files.write(directory.resolve("right.txt"), lines(right));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int hunks = new StreamingUnifiedDiff(MappedLines.open(file1, false), MappedLines.open(file2, false),
+                out, window, context, maxHunk).run();
+        return new Result(hunks, out.toString(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] lines(List<String> lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lines as the diff sees them: the trailing newline yields a final empty line.
+     */
+    private static List<String> split(List<String> lines) {
+        List<String> split = new ArrayList<>(lines);
+        split.add("");
+        return split;
+    }
+
+    /**
+     * Patch {@code left} with the hunks, checking context and removed lines on the way.
+     */
+    private static List<String> apply(List<String> left, String diff) {
+        List<String> result = new ArrayList<>();
+        int next = 0;
+        String[] lines = diff.split("\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            Matcher header = HEADER.matcher(lines[i]);
+            if (!header.matches()) {
+                continue;
+            }
+            int start = Integer.parseInt(header.group(1)) - 1;
+            int count1 = Integer.parseInt(header.group(2));
+            int count2 = Integer.parseInt(header.group(4));
+            assertTrue(start >= next, "hunks overlap at " + lines[i]);
+            result.addAll(left.subList(next, start));
+            assertEquals(result.size(), Integer.parseInt(header.group(3)) - 1, "second-file position of " + lines[i]);
+            next = start;
+            int seen1 = 0;
+            int seen2 = 0;
+            for (i++; i < lines.length && !lines[i].isEmpty(); i++) {
+                char kind = lines[i].charAt(0);
+                String text = lines[i].substring(2);
+                if (kind != '+') {
+                    assertEquals(left.get(next++), text, "context or removed line in " + header.group());
+                    seen1++;
+                }
+                if (kind != '-') {
+                    result.add(text);
+                    seen2++;
+                }
+            }
+            assertEquals(count1, seen1, "first-file count of " + header.group());
+            assertEquals(count2, seen2, "second-file count of " + header.group());
+        }
+        result.addAll(left.subList(next, left.size()));
+        return result;
+    }
+
+    private static int countHunks(String diff) {
+        int count = 0;
+        for (String line : diff.split("\n")) {
+            if (HEADER.matcher(line).matches()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private record Result(int hunks, String output) {
+    }
+}
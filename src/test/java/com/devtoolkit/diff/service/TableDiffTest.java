@@ -0,0 +1,102 @@
+package com.devtoolkit.diff.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TableDiffTest {
+
+    @Test
+    void rowsAreMatchedByKeyRegardlessOfOrder() throws Exception {
+        TableDiff diff = inMemory(List.of("id"));
+        assertFalse(diff.compare(TableDiff.Source.of("id,name,qty\n1,a,5\n2,b,6\n3,c,7\n"),
+                TableDiff.Source.of("qty,id,name\n7,3,c\n6,2,B\n8,4,d\n")));
+
+        assertEquals(Map.of("rows1", 3L, "rows2", 3L, "added", 1L, "removed", 1L, "changed", 1L, "unchanged", 1L),
+                diff.getStatistics());
+        Map<String, Object> changed = diff.getChanges().stream()
+                .filter(change -> change.get("type").equals("CHANGED")).findFirst().orElseThrow();
+        assertEquals(Map.of("id", "2"), changed.get("key"));
+        assertEquals(List.of(Map.of("column", "name", "oldValue", "b", "newValue", "B")), changed.get("cells"));
+    }
+
+    @Test
+    void columnsOnlyInOneTableAreReported() throws Exception {
+        TableDiff diff = inMemory(List.of());
+        assertTrue(diff.compare(TableDiff.Source.of("id;a;old\n1;x;y\n"), TableDiff.Source.of("id;new;a\n1;z;x\n")));
+        assertEquals(List.of("old"), diff.getRemovedColumns());
+        assertEquals(List.of("new"), diff.getAddedColumns());
+        assertEquals(List.of("id"), diff.getKeyColumns());
+    }
+
+    @Test
+    void tooLargeTableIsRejectedWithoutSpill() {
+        TableDiff diff = new TableDiff(List.of("id"), ',', true, null, 100, 64, false, DiffBudget.UNLIMITED);
+        assertThrows(IllegalArgumentException.class,
+                () -> diff.compare(TableDiff.Source.of(table(new Random(1), 100, 0)),
+                        TableDiff.Source.of(table(new Random(1), 100, 0))));
+    }
+
+    @Test
+    void spilledJoinMatchesTheInMemoryJoin(@TempDir Path directory) throws Exception {
+        Random random = new Random(17);
+        for (int round = 0; round < 5; round++) {
+            long seed = random.nextLong();
+            Path file1 = Files.writeString(directory.resolve("1.csv"), table(new Random(seed), 2000, 0));
+            Path file2 = Files.writeString(directory.resolve("2.csv"), table(new Random(seed), 2000, 0.1));
+
+            TableDiff memory = inMemory(List.of("id"));
+            TableDiff spilled = new TableDiff(List.of("id"), null, true, null, 100_000, 64 * 1024, true,
+                    DiffBudget.UNLIMITED);
+            boolean equal = memory.compare(TableDiff.Source.of(file1), TableDiff.Source.of(file2));
+
+            assertEquals(equal, spilled.compare(TableDiff.Source.of(file1), TableDiff.Source.of(file2)));
+            assertTrue(spilled.getPartitions() > 1, "partitions " + spilled.getPartitions());
+            assertEquals(1, memory.getPartitions());
+            assertEquals(memory.getStatistics(), spilled.getStatistics());
+            assertEquals(new HashSet<>(memory.getChanges()), new HashSet<>(spilled.getChanges()));
+            assertFalse(memory.getChanges().isEmpty());
+        }
+    }
+
+    private static TableDiff inMemory(List<String> keyColumns) {
+        return new TableDiff(keyColumns, null, true, null, 100_000, Long.MAX_VALUE, false, DiffBudget.UNLIMITED);
+    }
+
+    /**
+     * Random table with duplicate keys and quoted cells; {@code churn} of the rows are edited, dropped or added.
+     */
+    private static String table(Random random, int rows, double churn) {
+        Random edits = new Random(random.nextLong() ^ Double.doubleToLongBits(churn));
+        StringBuilder table = new StringBuilder("id,name,note\n");
+        for (int i = 0; i < rows; i++) {
+            int id = random.nextInt(rows);
+            String name = "n" + random.nextInt(50);
+            String note = random.nextInt(10) == 0 ? "\"a, \"\"quoted\"\"\nnote\"" : random.nextBoolean() ? "" : "x";
+            if (edits.nextDouble() < churn) {
+                switch (edits.nextInt(3)) {
+                    case 0:
+                        name = name + "!";
+                        break;
+                    case 1:
+                        continue;
+                    default:
+                        table.append(rows + i).append(",added,\n");
+                }
+            }
+            table.append(id).append(',').append(name).append(',').append(note).append('\n');
+        }
+        return table.toString();
+    }
+}
@@ -0,0 +1,114 @@
+package com.devtoolkit.diff.service;
+
+import com.devtoolkit.diff.dto.DiffRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextNormalizerTest {
+
+    private static final String ALPHABET = "aB \t\r\n\fxYz\u000B.";
+
+    @Test
+    void noOptionsKeepsTheInput() {
+        String text = "A \r\n b";
+        NormalizedText normalized = normalizer(false, false, false).normalize(text, true);
+        assertSame(text, normalized.getText());
+        assertTrue(normalized.isIdentity());
+        assertEquals(3, normalized.toOriginal(3));
+    }
+
+    @Test
+    void matchesTheRegexChainItReplaces() {
+        Random random = new Random(4);
+        for (int round = 0; round < 2000; round++) {
+            String text = randomText(random);
+            for (int options = 1; options < 8; options++) {
+                boolean lineEndings = (options & 1) != 0;
+                boolean whitespace = (options & 2) != 0;
+                boolean lowerCase = (options & 4) != 0;
+                String expected = text;
+                if (lineEndings) {
+                    expected = expected.replaceAll("\\r\\n", "\n").replaceAll("\\r", "\n");
+                }
+                if (whitespace) {
+                    expected = expected.replaceAll("\\s+", " ").trim();
+                }
+                if (lowerCase) {
+                    expected = expected.toLowerCase(Locale.ROOT);
+                }
+                String actual = normalizer(lineEndings, whitespace, lowerCase).normalize(text, false).getText();
+                assertEquals(expected, actual, "options " + options + " on " + escape(text));
+            }
+        }
+    }
+
+    @Test
+    void offsetsPointAtTheOriginOfEveryCharacter() {
+        Random random = new Random(5);
+        for (int round = 0; round < 2000; round++) {
+            String text = randomText(random);
+            NormalizedText normalized = normalizer(true, true, true).normalize(text, true);
+            String result = normalized.getText();
+            int previous = -1;
+            for (int i = 0; i < result.length(); i++) {
+                int origin = normalized.toOriginal(i);
+                assertTrue(origin > previous, "offsets must increase in " + escape(text));
+                char original = text.charAt(origin);
+                if (result.charAt(i) == ' ') {
+                    assertTrue(Character.isWhitespace(original), "space maps to whitespace in " + escape(text));
+                } else {
+                    assertEquals(result.charAt(i), Character.toLowerCase(original), "origin in " + escape(text));
+                }
+                previous = origin;
+            }
+            assertEquals(text.length(), normalized.toOriginal(result.length()));
+        }
+    }
+
+    @Test
+    void crlfFoldsToOneCharacterStartingAtTheCarriageReturn() {
+        NormalizedText normalized = normalizer(true, false, false).normalize("a\r\nb", true);
+        assertEquals("a\nb", normalized.getText());
+        assertEquals(1, normalized.toOriginal(1));
+        assertEquals(3, normalized.toOriginal(2));
+    }
+
+    @Test
+    void offsetsAreOnlyAvailableWhenTracked() {
+        NormalizedText normalized = normalizer(false, false, true).normalize("AB", false);
+        assertEquals("ab", normalized.getText());
+        assertThrows(IllegalStateException.class, () -> normalized.toOriginal(0));
+    }
+
+    @Test
+    void nullReadsAsEmpty() {
+        assertEquals("", normalizer(true, true, true).normalize(null, true).getText());
+    }
+
+    private static TextNormalizer normalizer(boolean lineEndings, boolean whitespace, boolean lowerCase) {
+        DiffRequest request = new DiffRequest();
+        request.setIgnoreLineEndings(lineEndings);
+        request.setIgnoreWhitespace(whitespace);
+        request.setIgnoreCase(lowerCase);
+        return TextNormalizer.forRequest(request);
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0, n = random.nextInt(24); i < n; i++) {
+            text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return text.toString();
+    }
+
+    private static String escape(String text) {
+        return "\"" + text.replace("\r", "\\r").replace("\n", "\\n").replace("\t", "\\t") + "\"";
+    }
+}
@@ -0,0 +1,103 @@
+package com.devtoolkit.diff.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XmlStructuralDiffTest {
+
+    @Test
+    void attributeOrderCommentsAndWhitespaceAreIgnored() throws Exception {
+        XmlStructuralDiff diff = new XmlStructuralDiff(100, DiffBudget.UNLIMITED);
+        assertTrue(diff.compare("<a x=\"1\" y=\"2\"><b>text</b><!-- note --><c/></a>",
+                "<a y=\"2\" x=\"1\">\n  <b>text</b>\n  <c/>\n</a>"));
+        assertTrue(diff.getChanges().isEmpty());
+    }
+
+    @Test
+    void textMovedAroundAChildIsAChange() throws Exception {
+        XmlStructuralDiff diff = new XmlStructuralDiff(100, DiffBudget.UNLIMITED);
+        assertFalse(diff.compare("<a>one<b/>two</a>", "<a>two<b/>one</a>"));
+        assertEquals(List.of("TEXT_CHANGED"), types(diff.getChanges()));
+    }
+
+    @Test
+    void changesAreReportedWithTheirPaths() throws Exception {
+        XmlStructuralDiff diff = new XmlStructuralDiff(100, DiffBudget.UNLIMITED);
+        assertFalse(diff.compare(
+                "<root><item id=\"1\" kind=\"a\">x</item><item id=\"2\"/><gone/></root>",
+                "<root><item id=\"1\" kind=\"b\" extra=\"e\">y</item><item id=\"2\"/><new/></root>"));
+
+        Map<String, String> byPath = paths(diff.getChanges());
+        assertEquals("ATTRIBUTE_CHANGED", byPath.get("/root[1]/item[1]/@kind"), byPath.toString());
+        assertEquals("ATTRIBUTE_ADDED", byPath.get("/root[1]/item[1]/@extra"), byPath.toString());
+        assertEquals("TEXT_CHANGED", byPath.get("/root[1]/item[1]/text()"), byPath.toString());
+        assertEquals("ELEMENT_REMOVED", byPath.get("/root[1]/gone[1]"), byPath.toString());
+        assertEquals("ELEMENT_ADDED", byPath.get("/root[1]/new[1]"), byPath.toString());
+        assertEquals(5, byPath.size(), byPath.toString());
+    }
+
+    @Test
+    void insertedChildIsAlignedAgainstItsSiblings() throws Exception {
+        StringBuilder left = new StringBuilder("<list>");
+        StringBuilder right = new StringBuilder("<list>");
+        for (int i = 0; i < 50; i++) {
+            left.append("<e n=\"").append(i).append("\"/>");
+            if (i == 25) {
+                right.append("<inserted/>");
+            }
+            right.append("<e n=\"").append(i).append("\"/>");
+        }
+        XmlStructuralDiff diff = new XmlStructuralDiff(100, DiffBudget.UNLIMITED);
+        assertFalse(diff.compare(left.append("</list>").toString(), right.append("</list>").toString()));
+        assertEquals(Map.of("/list[1]/inserted[1]", "ELEMENT_ADDED"), paths(diff.getChanges()));
+    }
+
+    @Test
+    void changeListIsCapped() throws Exception {
+        StringBuilder left = new StringBuilder("<r>");
+        StringBuilder right = new StringBuilder("<r>");
+        for (int i = 0; i < 20; i++) {
+            left.append("<v>").append(i).append("</v>");
+            right.append("<v>").append(i + 100).append("</v>");
+        }
+        XmlStructuralDiff diff = new XmlStructuralDiff(5, DiffBudget.UNLIMITED);
+        assertFalse(diff.compare(left.append("</r>").toString(), right.append("</r>").toString()));
+        assertEquals(5, diff.getChanges().size());
+        assertTrue(diff.isTruncated());
+    }
+
+    @Test
+    void filesAreComparedLikeStrings(@TempDir Path directory) throws Exception {
+        String xml1 = "<a><b k=\"1\">t</b><c/></a>";
+        String xml2 = "<a><b k=\"2\">t</b><c/><d/></a>";
+        Path file1 = Files.writeString(directory.resolve("1.xml"), xml1);
+        Path file2 = Files.writeString(directory.resolve("2.xml"), xml2);
+
+        XmlStructuralDiff fromStrings = new XmlStructuralDiff(100, DiffBudget.UNLIMITED);
+        XmlStructuralDiff fromFiles = new XmlStructuralDiff(100, DiffBudget.UNLIMITED);
+        assertFalse(fromStrings.compare(xml1, xml2));
+        assertFalse(fromFiles.compare(file1, file2));
+        assertEquals(fromStrings.getChanges(), fromFiles.getChanges());
+        assertTrue(new XmlStructuralDiff(100, DiffBudget.UNLIMITED).compare(file1, file1));
+    }
+
+    private static List<String> types(List<Map<String, Object>> changes) {
+        return changes.stream().map(change -> (String) change.get("type")).toList();
+    }
+
+    private static Map<String, String> paths(List<Map<String, Object>> changes) {
+        Map<String, String> byPath = new TreeMap<>();
+        changes.forEach(change -> byPath.put((String) change.get("path"), (String) change.get("type")));
+        return byPath;
+    }
+}
@@ -0,0 +1,88 @@
+package com.devtoolkit.utility.codec;
+
+import com.devtoolkit.common.codec.CodecRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FormatTranscoderTest {
+
+    private static final CodecRegistry REGISTRY = new CodecRegistry(64 * 1024 * 1024, true);
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final FormatCodecs codecs = new FormatCodecs(List.of(new JsonCodec(REGISTRY), new JsonLinesCodec(REGISTRY),
+            new YamlCodec(REGISTRY), new XmlCodec(REGISTRY), new CsvCodec(REGISTRY), new TomlCodec(REGISTRY),
+            new PropertiesCodec(REGISTRY)));
+
+    @Test
+    void typedDocumentsRoundTripThroughTypedFormats() throws IOException {
+        String json = "{\"name\":\"tool\",\"count\":3,\"ratio\":1.5,\"on\":true,\"none\":null,"
+                + "\"tags\":[\"a\",\"b\"],\"nested\":{\"deep\":{\"list\":[1,{\"x\":\"y\"}]}}}";
+        for (String format : List.of("JSON", "YAML", "TOML")) {
+            String converted = convert(json, "JSON", format);
+            JsonNode back = mapper.readTree(convert(converted, format, "JSON"));
+            JsonNode expected = mapper.readTree(json);
+            if (format.equals("TOML")) {
+                // TOML has no null; it is written as an empty string
+                ((ObjectNode) expected).put("none", "");
+            }
+            assertEquals(expected, back, format + ":\n" + converted);
+        }
+    }
+
+    @Test
+    void textDocumentsRoundTripThroughXmlAndProperties() throws IOException {
+        String json = "{\"name\":\"tool\",\"owner\":{\"first\":\"Ada\",\"last\":\"L\"},\"version\":\"2\"}";
+        for (String format : List.of("XML", "PROPERTIES")) {
+            String converted = convert(json, "JSON", format);
+            assertEquals(mapper.readTree(json), mapper.readTree(convert(converted, format, "JSON")),
+                    format + ":\n" + converted);
+        }
+    }
+
+    @Test
+    void recordFormatsRoundTripThroughAnArray() throws IOException {
+        String json = "[{\"id\":\"1\",\"name\":\"a, \\\"b\\\"\"},{\"id\":\"2\",\"name\":\"line\\nbreak\"}]";
+        String csv = convert(json, "JSON", "CSV");
+        assertTrue(csv.startsWith("id,name"), csv);
+        assertEquals(mapper.readTree(json), mapper.readTree(convert(csv, "CSV", "JSON")));
+
+        String lines = convert(json, "JSON", "JSONL");
+        assertEquals(2, lines.trim().split("\n").length, lines);
+        assertEquals(mapper.readTree(json), mapper.readTree(convert(lines, "JSONL", "JSON")));
+    }
+
+    @Test
+    void streamAndStringConversionsAgree() throws IOException {
+        String yaml = "a: 1\nb:\n  - x\n  - y\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FormatTranscoder.transcode(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)),
+                codecs.get("yaml"), codecs.get("json"), out);
+        assertEquals(convert(yaml, "YAML", "JSON"), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shapesATargetCannotHoldAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> convert("[1,2]", "JSON", "TOML"));
+        assertThrows(IllegalArgumentException.class, () -> convert("\"text\"", "JSON", "TOML"));
+        assertThrows(IllegalArgumentException.class, () -> convert("{\"a\":1}\n{\"b\":2}", "JSONL", "TOML"));
+        assertThrows(IllegalArgumentException.class, () -> convert("[1,2]", "JSON", "CSV"));
+        assertThrows(IllegalArgumentException.class, () -> convert("", "JSON", "YAML"));
+        assertThrows(IllegalArgumentException.class, () -> codecs.get("INI"));
+    }
+
+    private String convert(String text, String source, String target) throws IOException {
+        return FormatTranscoder.transcode(text, codecs.get(source), codecs.get(target));
+    }
+}
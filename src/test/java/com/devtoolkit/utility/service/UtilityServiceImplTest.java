@@ -0,0 +1,104 @@
+package com.devtoolkit.utility.service;
+
+import com.devtoolkit.utility.codec.FormatCodecs;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilityServiceImplTest {
+
+    /**
+     * The back-reference keeps the matcher from memoising the nested loop, so this backtracks exponentially.
+     */
+    private static final String CATASTROPHIC = "(a+)+\\1b";
+
+    private final RegexCache regexCache = new RegexCache(1024);
+
+    @Test
+    void matchesAndGroupsAreReported() {
+        Map<String, Object> result = service(1000, 100_000_000, 1000)
+                .testRegex("(?<key>\\w+)=(\\d+)?", "a=1 b= c=3", "i");
+
+        assertEquals(false, result.get("matches"));
+        assertEquals(3, result.get("matchCount"));
+        assertEquals("i", result.get("flags"));
+        assertEquals(2, result.get("groupCount"));
+        assertEquals(List.of("key"), result.get("groupNames"));
+
+        List<?> found = (List<?>) result.get("found");
+        Map<?, ?> second = (Map<?, ?>) found.get(1);
+        assertEquals("b=", second.get("value"));
+        List<?> groups = (List<?>) second.get("groups");
+        assertEquals("b", ((Map<?, ?>) groups.get(0)).get("value"));
+        assertEquals("key", ((Map<?, ?>) groups.get(0)).get("name"));
+        assertEquals(-1, ((Map<?, ?>) groups.get(1)).get("start"));
+    }
+
+    @Test
+    void matchListIsCapped() {
+        Map<String, Object> result = service(1000, 100_000_000, 5).testRegex("a", "a".repeat(20), null);
+        assertEquals(5, result.get("matchCount"));
+        assertEquals(true, result.get("truncated"));
+        assertEquals(false, result.get("matches"));
+    }
+
+    @Test
+    void catastrophicBacktrackingStopsAtTheStepLimit() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> service(0, 1_000_000, 1000).testRegex(CATASTROPHIC, "a".repeat(40), null));
+        assertTrue(e.getMessage().contains("step limit"), e.getMessage());
+    }
+
+    @Test
+    void catastrophicBacktrackingStopsAtTheTimeLimit() {
+        long start = System.nanoTime();
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> service(100, 0, 1000).testRegex(CATASTROPHIC, "a".repeat(40), null));
+        assertTrue(e.getMessage().contains("time limit"), e.getMessage());
+        assertTrue((System.nanoTime() - start) / 1_000_000 < 5000);
+    }
+
+    @Test
+    void deepRecursionIsAnInvalidRequest() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> service(0, 0, 1000).testRegex("(a|b)*", "ab".repeat(1_000_000), null));
+        assertTrue(e.getMessage().contains("stack depth"), e.getMessage());
+    }
+
+    @Test
+    void invalidPatternsAreRejected() {
+        UtilityServiceImpl service = service(1000, 100_000_000, 1000);
+        assertThrows(IllegalArgumentException.class, () -> service.testRegex("(", "x", null));
+        assertThrows(IllegalArgumentException.class, () -> service.testRegex(" ", "x", null));
+    }
+
+    @Test
+    void compiledPatternsAreSharedPerFlags() {
+        Pattern first = regexCache.compile("a+b", 0);
+        assertSame(first, regexCache.compile("a+b", 0));
+        assertFalse(first == regexCache.compile("a+b", Pattern.CASE_INSENSITIVE));
+
+        // Longer than the whole cache: compiled every time, never stored
+        String huge = "x".repeat(2000);
+        assertFalse(regexCache.compile(huge, 0) == regexCache.compile(huge, 0));
+        assertEquals(2, regexCache.stats().get("entries"));
+    }
+
+    private UtilityServiceImpl service(long timeoutMs, long maxSteps, int maxMatches) {
+        UtilityServiceImpl service = new UtilityServiceImpl(new FormatCodecs(List.of()));
+        ReflectionTestUtils.setField(service, "regexCache", regexCache);
+        ReflectionTestUtils.setField(service, "regexTimeoutMs", timeoutMs);
+        ReflectionTestUtils.setField(service, "regexMaxSteps", maxSteps);
+        ReflectionTestUtils.setField(service, "regexMaxMatches", maxMatches);
+        return service;
+    }
+}